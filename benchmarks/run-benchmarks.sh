@@ -0,0 +1,17 @@
+#!/bin/sh
+#
+# Builds the library and its benchmarks, then runs the benchmarks
+# with JMH's GC profiler, which reports the bytes allocated per
+# operation and the collections they caused.  Any arguments are
+# passed on to JMH, so, for example,
+#
+#   benchmarks/run-benchmarks.sh IdentifierBenchmark -p valueType=long
+#
+# runs just the long-valued Identifier benchmarks.  Results are also
+# written as JSON to benchmarks/target/jmh-result.json.
+#
+set -e
+cd "$(dirname "$0")/.."
+mvn -B -q install -DskipTests
+mvn -B -q -f benchmarks/pom.xml package
+exec java -jar benchmarks/target/benchmarks.jar -prof gc -rf json -rff benchmarks/target/jmh-result.json "$@"
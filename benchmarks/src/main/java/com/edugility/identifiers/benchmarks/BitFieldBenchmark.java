@@ -0,0 +1,151 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.BitLayout;
+import com.edugility.identifiers.ExtractorHandle;
+import com.edugility.identifiers.LongIdType;
+import com.edugility.identifiers.LongIdentifier;
+import com.edugility.identifiers.StringExtractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares decomposing a packed {@code long} identifier by way of a
+ * {@link BitLayout} with doing so by converting it to a decimal
+ * {@link String} and extracting digits with a {@link
+ * StringExtractor}.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BitFieldBenchmark {
+
+  private static final int SIZE = 1024;
+
+  private BitLayout layout;
+
+  private LongIdentifier<Long>[] packed;
+
+  private ExtractorHandle<Long, Long> shard;
+
+  private long[] decimal;
+
+  private StringExtractor decimalShard;
+
+  private long[] fields;
+
+  private int index;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    this.layout = new BitLayout()
+      .field("region", 4)
+      .field("shard", 10)
+      .field("timestamp", 41)
+      .field("sequence", 9);
+    final LongIdType<Long> idType = new LongIdType<Long>("packed", this.layout.getExtractors());
+    this.shard = idType.getExtractorHandle("shard");
+    this.packed = (LongIdentifier<Long>[])new LongIdentifier<?>[SIZE];
+    this.decimal = new long[SIZE];
+    // The decimal equivalent: one digit of region, four of shard,
+    // thirteen of timestamp.
+    this.decimalShard = new StringExtractor(1, 5);
+    for (int i = 0; i < SIZE; i++) {
+      final long region = i & 0x7;
+      final long shard = i;
+      final long timestamp = 1381000000000L + i;
+      this.packed[i] = new LongIdentifier<Long>(idType, this.layout.pack(region, shard, timestamp, i & 0x1FF));
+      this.decimal[i] = Long.parseLong(String.format("%d%04d%013d", region + 1, shard, timestamp));
+    }
+    this.fields = new long[4];
+  }
+
+  private final int next() {
+    final int index = this.index;
+    this.index = (index + 1) & (SIZE - 1);
+    return index;
+  }
+
+  @Benchmark
+  public long decimalSubstring() {
+    return Long.parseLong(this.decimalShard.extractFrom(Long.toString(this.decimal[this.next()])));
+  }
+
+  @Benchmark
+  public long bitFieldExtractLong() {
+    return this.packed[this.next()].extractLong("shard");
+  }
+
+  @Benchmark
+  public long bitFieldExtractLongHandle() {
+    return this.packed[this.next()].extractLong(this.shard);
+  }
+
+  @Benchmark
+  public long[] unpack() {
+    this.layout.unpack(this.packed[this.next()].getLongValue(), this.fields);
+    return this.fields;
+  }
+
+  @Benchmark
+  public long pack() {
+    final int i = this.next();
+    return this.layout.pack(i & 0x7, i, 1381000000000L + i, i & 0x1FF);
+  }
+
+  @Benchmark
+  public long packReusedArray() {
+    final int i = this.next();
+    final long[] fields = this.fields;
+    fields[0] = i & 0x7;
+    fields[1] = i;
+    fields[2] = 1381000000000L + i;
+    fields[3] = i & 0x1FF;
+    return this.layout.pack(fields);
+  }
+
+}
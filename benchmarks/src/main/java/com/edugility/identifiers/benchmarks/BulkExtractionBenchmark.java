@@ -0,0 +1,101 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.IdType;
+import com.edugility.identifiers.StringExtractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares extracting a segment from many values one call at a time
+ * against the bulk and parallel {@link IdType} extraction methods.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkExtractionBenchmark {
+
+  @Param({ "1000000" })
+  public int size;
+
+  private IdType<String, String> idType;
+
+  private String[] values;
+
+  private String[] out;
+
+  @Setup
+  public void setUp() {
+    this.idType = new IdType<String, String>(String.class, "glAccountIdType", "first segment", new StringExtractor(0, 4));
+    this.values = new String[this.size];
+    for (int i = 0; i < this.size; i++) {
+      this.values[i] = String.format("%016d", i);
+    }
+    this.out = new String[this.size];
+  }
+
+  @Benchmark
+  public String[] loop() {
+    for (int i = 0; i < this.values.length; i++) {
+      this.out[i] = this.idType.extractFrom("first segment", this.values[i]);
+    }
+    return this.out;
+  }
+
+  @Benchmark
+  public String[] bulk() {
+    this.idType.extractFrom("first segment", this.values, this.out);
+    return this.out;
+  }
+
+  @Benchmark
+  public String[] parallel() {
+    this.idType.parallelExtractFrom("first segment", this.values, this.out);
+    return this.out;
+  }
+
+}
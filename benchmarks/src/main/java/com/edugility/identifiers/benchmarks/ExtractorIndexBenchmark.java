@@ -0,0 +1,134 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.ExtractorHandle;
+import com.edugility.identifiers.ExtractorIndex;
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.StringExtractor;
+import com.edugility.identifiers.StringIdType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding every {@link Identifier} whose first segment
+ * equals a given value by scanning with {@link
+ * Identifier#extractFrom(ExtractorHandle)} against looking it up in
+ * an {@link ExtractorIndex}, and measures the cost of maintaining
+ * the index.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtractorIndexBenchmark {
+
+  @Param({ "1000000" })
+  public int size;
+
+  private List<Identifier<String, String>> ids;
+
+  private ExtractorHandle<String, String> handle;
+
+  private ExtractorIndex<String, String> index;
+
+  private String[] prefixes;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final StringIdType<String> idType = new StringIdType<String>("glAccount", Collections.singletonMap("first", new StringExtractor(0, 3)));
+    this.handle = idType.getExtractorHandle("first");
+    this.ids = new ArrayList<Identifier<String, String>>(this.size);
+    for (int i = 0; i < this.size; i++) {
+      this.ids.add(new Identifier<String, String>(idType, String.format("%03d-%07d", i % 1000, i)));
+    }
+    this.index = new ExtractorIndex<String, String>(this.handle);
+    this.index.addAll(this.ids);
+    this.prefixes = new String[1000];
+    for (int i = 0; i < this.prefixes.length; i++) {
+      this.prefixes[i] = String.format("%03d", i);
+    }
+  }
+
+  @Benchmark
+  public List<Identifier<String, String>> scan() {
+    final String prefix = this.nextPrefix();
+    final List<Identifier<String, String>> returnValue = new ArrayList<Identifier<String, String>>();
+    for (final Identifier<String, String> id : this.ids) {
+      if (prefix.equals(id.extractFrom(this.handle))) {
+        returnValue.add(id);
+      }
+    }
+    return returnValue;
+  }
+
+  @Benchmark
+  public List<Identifier<String, String>> indexGet() {
+    return this.index.get(this.nextPrefix());
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public boolean indexRemoveAndAdd() {
+    final int next = this.next;
+    this.next = next + 1 == this.size ? 0 : next + 1;
+    final Identifier<String, String> id = this.ids.get(next);
+    this.index.remove(id);
+    return this.index.add(id);
+  }
+
+  private final String nextPrefix() {
+    final int next = this.next;
+    this.next = next + 1 >= this.prefixes.length ? 0 : next + 1;
+    return this.prefixes[next];
+  }
+
+}
@@ -0,0 +1,189 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.FuzzyIndex;
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.StringId;
+import com.edugility.identifiers.StringIdType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding every {@link StringId} within a small edit
+ * distance of a mistyped value by scanning against querying a {@link
+ * FuzzyIndex}, and times building one.
+ *
+ * <p>The scan uses an allocation-free two-row edit distance that
+ * counts adjacent transpositions, which is cheaper per comparison
+ * than the index's own distance, so it is if anything flattered.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+@State(Scope.Thread)
+public class FuzzyIndexBenchmark {
+
+  @Param({ "200000" })
+  public int size;
+
+  /**
+   * The maximum edit distance of each query, and the {@linkplain
+   * FuzzyIndex#getMaximumDistance() maximum distance} of the index.
+   */
+  @Param({ "1", "2" })
+  public int k;
+
+  private StringIdType<String> idType;
+
+  private List<String> values;
+
+  private FuzzyIndex<String> index;
+
+  private String[] queries;
+
+  private int next;
+
+  private int[] previousRow;
+
+  private int[] row;
+
+  private int[] nextRow;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.idType = StringIdType.valueOf("account");
+    final Random random = new Random(17L);
+    this.values = new ArrayList<String>(this.size);
+    for (int i = 0; i < this.size; i++) {
+      this.values.add(String.format("%c%c-%07d", (char)('A' + random.nextInt(26)), (char)('A' + random.nextInt(26)), random.nextInt(10000000)));
+    }
+    this.index = this.build();
+    System.out.printf("%n%s%n", this.index);
+    this.queries = new String[1 << 10];
+    for (int i = 0; i < this.queries.length; i++) {
+      final char[] chars = this.values.get(random.nextInt(this.size)).toCharArray();
+      final int position = 3 + random.nextInt(chars.length - 4);
+      if (random.nextBoolean()) {
+        final char c = chars[position];
+        chars[position] = chars[position + 1];
+        chars[position + 1] = c;
+      } else {
+        chars[position] = (char)('0' + random.nextInt(10));
+      }
+      this.queries[i] = new String(chars);
+    }
+    this.previousRow = new int[32];
+    this.row = new int[32];
+    this.nextRow = new int[32];
+  }
+
+  @Benchmark
+  public int scan() {
+    final String query = this.queries[this.next++ & (this.queries.length - 1)];
+    int returnValue = 0;
+    for (final String value : this.values) {
+      if (this.distance(query, value) <= this.k) {
+        returnValue++;
+      }
+    }
+    return returnValue;
+  }
+
+  @Benchmark
+  public List<Identifier<String, String>> indexFind() {
+    return this.index.findWithin(this.queries[this.next++ & (this.queries.length - 1)], this.k);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 3)
+  public FuzzyIndex<String> build() {
+    final FuzzyIndex<String> returnValue = new FuzzyIndex<String>(this.idType, this.k);
+    for (final String value : this.values) {
+      returnValue.add(value);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the optimal string alignment distance between the
+   * supplied {@link String}s, which are assumed to be shorter than
+   * 31 characters.
+   */
+  private final int distance(final String a, final String b) {
+    int[] previousRow = this.previousRow;
+    int[] row = this.row;
+    int[] nextRow = this.nextRow;
+    final int lb = b.length();
+    for (int j = 0; j <= lb; j++) {
+      row[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      final char ca = a.charAt(i - 1);
+      nextRow[0] = i;
+      for (int j = 1; j <= lb; j++) {
+        final char cb = b.charAt(j - 1);
+        int value = Math.min(row[j - 1] + (ca == cb ? 0 : 1), Math.min(row[j], nextRow[j - 1]) + 1);
+        if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+          value = Math.min(value, previousRow[j - 2] + 1);
+        }
+        nextRow[j] = value;
+      }
+      final int[] temp = previousRow;
+      previousRow = row;
+      row = nextRow;
+      nextRow = temp;
+    }
+    return row[lb];
+  }
+
+}
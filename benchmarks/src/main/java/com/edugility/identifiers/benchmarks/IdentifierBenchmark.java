@@ -0,0 +1,331 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import java.nio.ByteBuffer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.Extraction;
+import com.edugility.identifiers.Extractor;
+import com.edugility.identifiers.ExtractorHandle;
+import com.edugility.identifiers.IdType;
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.IntIdentifier;
+import com.edugility.identifiers.IntegerIdType;
+import com.edugility.identifiers.LongIdType;
+import com.edugility.identifiers.LongIdentifier;
+import com.edugility.identifiers.StringExtractor;
+import com.edugility.identifiers.StringIdType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Establishes baselines for the everyday operations on a single
+ * {@link Identifier}—hashing, equality, extraction, rendering and
+ * serialization—for each kind of value and for {@link IdType}s with
+ * differing numbers of {@link Extractor}s.
+ *
+ * <p>Run with {@code -prof gc} to see what each operation
+ * allocates.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class IdentifierBenchmark {
+
+  @Param({ "string", "long", "integer" })
+  public String valueType;
+
+  @Param({ "1", "4", "16" })
+  public int extractorCount;
+
+  private IdType idType;
+
+  private Serializable value;
+
+  /**
+   * An {@link Identifier} whose value is {@link #value}.
+   */
+  private Identifier identifier;
+
+  /**
+   * An {@link Identifier} equal to, but not identical to, {@link
+   * #identifier}, with its own copy of the value.
+   */
+  private Identifier equalIdentifier;
+
+  /**
+   * An {@link Identifier} of the same {@link IdType} as {@link
+   * #identifier} but with a different value of the same length.
+   */
+  private Identifier otherIdentifier;
+
+  /**
+   * The key of the last of the {@link #idType}'s {@link Extractor}s.
+   */
+  private Object extractorKey;
+
+  private ExtractorHandle handle;
+
+  private Extraction extraction;
+
+  private byte[] serialized;
+
+  private StringBuilder sb;
+
+  private ByteBuffer buffer;
+
+  @Setup
+  public void setUp() throws IOException {
+    final Map<Object, Extractor> extractors = new LinkedHashMap<Object, Extractor>();
+    for (int i = 0; i < this.extractorCount; i++) {
+      final Extractor extractor;
+      if ("string".equals(this.valueType)) {
+        extractor = new StringExtractor(i % 16, i % 16 + 4);
+      } else {
+        extractor = new Digits(i % 8);
+      }
+      extractors.put("e" + i, extractor);
+    }
+    if ("string".equals(this.valueType)) {
+      this.idType = new StringIdType("order", extractors);
+      this.value = "ORD-2013-000001234567";
+      this.identifier = new Identifier(this.idType, this.value);
+      this.equalIdentifier = new Identifier(this.idType, new String(((String)this.value).toCharArray()));
+      this.otherIdentifier = new Identifier(this.idType, "ORD-2013-000001234568");
+    } else if ("long".equals(this.valueType)) {
+      this.idType = new LongIdType("order", extractors);
+      this.value = Long.valueOf(20130001234567L);
+      this.identifier = new LongIdentifier(this.idType, 20130001234567L);
+      this.equalIdentifier = new LongIdentifier(this.idType, 20130001234567L);
+      this.otherIdentifier = new LongIdentifier(this.idType, 20130001234568L);
+    } else if ("integer".equals(this.valueType)) {
+      this.idType = new IntegerIdType("order", extractors);
+      this.value = Integer.valueOf(201312345);
+      this.identifier = new IntIdentifier(this.idType, 201312345);
+      this.equalIdentifier = new IntIdentifier(this.idType, 201312345);
+      this.otherIdentifier = new IntIdentifier(this.idType, 201312346);
+    } else {
+      throw new IllegalStateException("valueType: " + this.valueType);
+    }
+    this.extractorKey = "e" + (this.extractorCount - 1);
+    this.handle = this.idType.getExtractorHandle(this.extractorKey);
+    this.extraction = this.identifier.extractAll();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(this.identifier);
+    out.close();
+    this.serialized = bytes.toByteArray();
+    this.sb = new StringBuilder(256);
+    this.buffer = ByteBuffer.allocate(256);
+  }
+
+  @Benchmark
+  public int hashCodeCached() {
+    return this.identifier.hashCode();
+  }
+
+  /**
+   * Creates an {@link Identifier} and hashes it, as a {@link
+   * java.util.Map} lookup with a freshly parsed key does.
+   */
+  @Benchmark
+  public int hashCodeNew() {
+    return this.newIdentifier().hashCode();
+  }
+
+  @Benchmark
+  public boolean equalsEqual() {
+    return this.identifier.equals(this.equalIdentifier);
+  }
+
+  @Benchmark
+  public boolean equalsUnequal() {
+    return this.identifier.equals(this.otherIdentifier);
+  }
+
+  @Benchmark
+  public Object idTypeExtractFromKey() {
+    return this.idType.extractFrom(this.extractorKey, this.value);
+  }
+
+  @Benchmark
+  public Object idTypeExtractFromHandle() {
+    return this.idType.extractFrom(this.handle, this.value);
+  }
+
+  @Benchmark
+  public Object identifierExtractFrom() {
+    return this.identifier.extractFrom(this.extractorKey);
+  }
+
+  @Benchmark
+  public Extraction extractAll() {
+    return this.identifier.extractAll();
+  }
+
+  @Benchmark
+  public Extraction extractAllInto() {
+    return this.identifier.extractAll(this.extraction);
+  }
+
+  @Benchmark
+  public String toStringIdentifier() {
+    return this.identifier.toString();
+  }
+
+  @Benchmark
+  public int writeToAppendable() throws IOException {
+    final StringBuilder sb = this.sb;
+    sb.setLength(0);
+    this.identifier.writeTo(sb);
+    return sb.length();
+  }
+
+  @Benchmark
+  public int writeToByteBuffer() {
+    final ByteBuffer buffer = this.buffer;
+    buffer.clear();
+    this.identifier.writeTo(buffer);
+    return buffer.position();
+  }
+
+  @Benchmark
+  public URI toURI() throws URISyntaxException {
+    return this.identifier.toURI();
+  }
+
+  @Benchmark
+  public URI toURN() {
+    return this.identifier.toURN();
+  }
+
+  @Benchmark
+  public URI toURNEqual() {
+    return this.newIdentifier().toURN();
+  }
+
+  @Benchmark
+  public URI idTypeToURN() {
+    return this.idType.toURN(this.value);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.serialized.length);
+    final ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(this.identifier);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  @Benchmark
+  public Object deserialize() throws ClassNotFoundException, IOException {
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(this.serialized));
+    try {
+      return in.readObject();
+    } finally {
+      in.close();
+    }
+  }
+
+  private final Identifier newIdentifier() {
+    if (this.identifier instanceof LongIdentifier) {
+      return new LongIdentifier(this.idType, ((Long)this.value).longValue());
+    } else if (this.identifier instanceof IntIdentifier) {
+      return new IntIdentifier(this.idType, ((Integer)this.value).intValue());
+    }
+    return new Identifier(this.idType, this.value);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An {@link Extractor} of a pair of decimal digits from a {@link
+   * Number}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Digits implements Extractor<Number, Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long divisor;
+
+    private Digits(final int pair) {
+      super();
+      long divisor = 1L;
+      for (int i = 0; i < pair; i++) {
+        divisor *= 100L;
+      }
+      this.divisor = divisor;
+    }
+
+    @Override
+    public final Integer extractFrom(final Number value) {
+      return Integer.valueOf((int)((value.longValue() / this.divisor) % 100L));
+    }
+
+  }
+
+}
@@ -0,0 +1,185 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.IdentifierCodec;
+import com.edugility.identifiers.LongIdType;
+import com.edugility.identifiers.LongIdentifier;
+import com.edugility.identifiers.StringIdType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares writing and reading a stream of {@link Identifier}s with
+ * {@link IdentifierCodec} against doing so with {@link
+ * ObjectOutputStream} and {@link ObjectInputStream}.
+ *
+ * <p>Writes go to an {@link OutputStream} that discards its input
+ * but counts it; the sizes of both encodings are printed during
+ * setup.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdentifierCodecBenchmark {
+
+  @Param({ "1000000" })
+  public int size;
+
+  /**
+   * The kind of {@link Identifier}s to write: {@code long} for
+   * {@link LongIdentifier}s, or {@code string} for sixteen-character
+   * {@link String}-valued {@link Identifier}s.
+   */
+  @Param({ "long", "string" })
+  public String kind;
+
+  private Identifier<?, ?>[] ids;
+
+  private byte[] encoded;
+
+  private byte[] serialized;
+
+  @Setup
+  public void setUp() throws IOException {
+    this.ids = new Identifier<?, ?>[this.size];
+    final LongIdType<Long> longIdType = LongIdType.valueOf("seq");
+    final StringIdType<String> stringIdType = StringIdType.valueOf("glAccountIdType");
+    for (int i = 0; i < this.size; i++) {
+      if ("long".equals(this.kind)) {
+        this.ids[i] = LongIdentifier.valueOf(longIdType, i * 1000L);
+      } else {
+        this.ids[i] = new Identifier<String, String>(stringIdType, String.format("%016d", i));
+      }
+    }
+    final ByteArrayOutputStream codecOut = new ByteArrayOutputStream();
+    this.encode(codecOut);
+    this.encoded = codecOut.toByteArray();
+    final ByteArrayOutputStream serializationOut = new ByteArrayOutputStream();
+    this.serialize(serializationOut);
+    this.serialized = serializationOut.toByteArray();
+    System.out.printf("%n%d %s identifiers: IdentifierCodec %d bytes; ObjectOutputStream %d bytes%n", this.size, this.kind, this.encoded.length, this.serialized.length);
+  }
+
+  @Benchmark
+  public long writeCodec() throws IOException {
+    final CountingOutputStream out = new CountingOutputStream();
+    this.encode(out);
+    return out.count;
+  }
+
+  @Benchmark
+  public long writeSerialization() throws IOException {
+    final CountingOutputStream out = new CountingOutputStream();
+    this.serialize(out);
+    return out.count;
+  }
+
+  @Benchmark
+  public int readCodec() throws IOException {
+    final IdentifierCodec.Decoder decoder = new IdentifierCodec.Decoder(new ByteArrayInputStream(this.encoded));
+    int count = 0;
+    while (decoder.read() != null) {
+      count++;
+    }
+    decoder.close();
+    return count;
+  }
+
+  @Benchmark
+  public int readSerialization() throws ClassNotFoundException, IOException {
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(this.serialized));
+    int count = 0;
+    for (int i = 0; i < this.size; i++) {
+      if (in.readObject() != null) {
+        count++;
+      }
+    }
+    in.close();
+    return count;
+  }
+
+  private final void encode(final OutputStream out) throws IOException {
+    final IdentifierCodec.Encoder encoder = new IdentifierCodec.Encoder(out);
+    for (final Identifier<?, ?> id : this.ids) {
+      encoder.write(id);
+    }
+    encoder.close();
+  }
+
+  private final void serialize(final OutputStream out) throws IOException {
+    final ObjectOutputStream oos = new ObjectOutputStream(out);
+    for (final Identifier<?, ?> id : this.ids) {
+      oos.writeObject(id);
+    }
+    oos.close();
+  }
+
+  private static final class CountingOutputStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(final int b) {
+      this.count++;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+      this.count += length;
+    }
+
+  }
+
+}
@@ -0,0 +1,145 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.IntIdentifier;
+import com.edugility.identifiers.IntegerIdType;
+import com.edugility.identifiers.LongIdType;
+import com.edugility.identifiers.LongIdentifier;
+import com.edugility.identifiers.StringIdType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Map}s keyed by {@link Identifier}s when several
+ * threads use them at once: four readers, and three readers
+ * alongside a writer replacing entries.
+ *
+ * <p>Lookups use keys equal to, but not identical to, the keys in the
+ * map, so that every hit exercises {@link Identifier#equals(Object)}
+ * as a lookup with a freshly parsed key would.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class IdentifierContentionBenchmark {
+
+  @Param({ "string", "long", "integer" })
+  public String valueType;
+
+  /**
+   * The kind of {@link Map}: a {@link ConcurrentHashMap} or a {@link
+   * Collections#synchronizedMap(Map) synchronized} {@link HashMap}.
+   */
+  @Param({ "concurrent", "synchronized" })
+  public String mapType;
+
+  @Param({ "100000" })
+  public int size;
+
+  private Map<Identifier<?, ?>, Integer> map;
+
+  /**
+   * Keys equal to, but not identical to, those in {@link #map}.
+   */
+  private Identifier<?, ?>[] keys;
+
+  @Setup
+  public void setUp() {
+    if ("concurrent".equals(this.mapType)) {
+      this.map = new ConcurrentHashMap<Identifier<?, ?>, Integer>(this.size * 2);
+    } else {
+      this.map = Collections.synchronizedMap(new HashMap<Identifier<?, ?>, Integer>(this.size * 2));
+    }
+    this.keys = new Identifier<?, ?>[this.size];
+    for (int i = 0; i < this.size; i++) {
+      this.map.put(this.newIdentifier(i), Integer.valueOf(i));
+      this.keys[i] = this.newIdentifier(i);
+    }
+  }
+
+  @Benchmark
+  @Group("read")
+  @GroupThreads(4)
+  public Integer readOnly() {
+    return this.map.get(this.keys[ThreadLocalRandom.current().nextInt(this.size)]);
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(3)
+  public Integer reader() {
+    return this.map.get(this.keys[ThreadLocalRandom.current().nextInt(this.size)]);
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(1)
+  public Integer writer() {
+    final int i = ThreadLocalRandom.current().nextInt(this.size);
+    return this.map.put(this.keys[i], Integer.valueOf(i));
+  }
+
+  private final Identifier<?, ?> newIdentifier(final int i) {
+    if ("string".equals(this.valueType)) {
+      return new Identifier<String, Object>(StringIdType.valueOf("order"), String.format("ORD-2013-%012d", i));
+    } else if ("long".equals(this.valueType)) {
+      return new LongIdentifier<Object>(LongIdType.valueOf("order"), 20130000000000L + i);
+    } else if ("integer".equals(this.valueType)) {
+      return new IntIdentifier<Object>(IntegerIdType.valueOf("order"), 201300000 + i);
+    }
+    throw new IllegalStateException("valueType: " + this.valueType);
+  }
+
+}
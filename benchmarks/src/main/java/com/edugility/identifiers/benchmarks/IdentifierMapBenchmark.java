@@ -0,0 +1,183 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.IdentifierMap;
+import com.edugility.identifiers.IntIdentifier;
+import com.edugility.identifiers.IntegerIdType;
+import com.edugility.identifiers.LongIdType;
+import com.edugility.identifiers.LongIdentifier;
+import com.edugility.identifiers.StringId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link HashMap} and {@link IdentifierMap} get and put
+ * throughput for keys of several {@link
+ * com.edugility.identifiers.IdType}s.
+ *
+ * <p>The retained heap of each kind of map, once its keys are no
+ * longer otherwise referenced, is printed during setup.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IdentifierMapBenchmark {
+
+  @Param({ "1000000" })
+  public int size;
+
+  private Identifier<?, ?>[] keys;
+
+  /**
+   * Keys equal to, but not identical to, those in {@link #keys}, as
+   * they would be if they had just been read from somewhere.
+   */
+  private Identifier<?, ?>[] probes;
+
+  private Map<Identifier<?, ?>, Object> hashMap;
+
+  private Map<Identifier<?, ?>, Object> identifierMap;
+
+  private int index;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.keys = keys(this.size);
+    this.probes = keys(this.size);
+    long before = usedMemory();
+    Map<Identifier<?, ?>, Object> map = fill(new HashMap<Identifier<?, ?>, Object>(), keys(this.size));
+    final long hashMapBytes = usedMemory() - before;
+    map = null;
+    before = usedMemory();
+    map = fill(new IdentifierMap<Object>(), keys(this.size));
+    final long identifierMapBytes = usedMemory() - before;
+    map = null;
+    System.out.printf("%nRetained heap per mapping: HashMap %d bytes; IdentifierMap %d bytes%n", hashMapBytes / this.size, identifierMapBytes / this.size);
+    this.hashMap = fill(new HashMap<Identifier<?, ?>, Object>(), this.keys);
+    this.identifierMap = fill(new IdentifierMap<Object>(), this.keys);
+  }
+
+  @Benchmark
+  public Object hashMapGet() {
+    return this.hashMap.get(this.nextKey());
+  }
+
+  @Benchmark
+  public Object identifierMapGet() {
+    return this.identifierMap.get(this.nextKey());
+  }
+
+  @Benchmark
+  public Object hashMapPut() {
+    return this.hashMap.put(this.nextKey(), this);
+  }
+
+  @Benchmark
+  public Object identifierMapPut() {
+    return this.identifierMap.put(this.nextKey(), this);
+  }
+
+  private final Identifier<?, ?> nextKey() {
+    final int index = this.index;
+    this.index = index + 1 == this.probes.length ? 0 : index + 1;
+    return this.probes[index];
+  }
+
+  private static final Identifier<?, ?>[] keys(final int size) {
+    final LongIdType<Long> accounts = LongIdType.valueOf("account");
+    final LongIdType<Long> orders = LongIdType.valueOf("order");
+    final IntegerIdType<Integer> regions = IntegerIdType.valueOf("region");
+    final Identifier<?, ?>[] keys = new Identifier<?, ?>[size];
+    for (int i = 0; i < size; i++) {
+      switch (i & 3) {
+      case 0:
+        keys[i] = LongIdentifier.valueOf(accounts, i * 7919L);
+        break;
+      case 1:
+        keys[i] = LongIdentifier.valueOf(orders, i * 104729L);
+        break;
+      case 2:
+        keys[i] = IntIdentifier.valueOf(regions, i);
+        break;
+      default:
+        keys[i] = new StringId<String>("glAccount", Integer.toHexString(i * 31));
+        break;
+      }
+    }
+    // Shuffle deterministically so that lookups do not follow
+    // insertion order.
+    final Random random = new Random(42L);
+    for (int i = size - 1; i > 0; i--) {
+      final int j = random.nextInt(i + 1);
+      final Identifier<?, ?> temp = keys[i];
+      keys[i] = keys[j];
+      keys[j] = temp;
+    }
+    return keys;
+  }
+
+  private static final Map<Identifier<?, ?>, Object> fill(final Map<Identifier<?, ?>, Object> map, final Identifier<?, ?>[] keys) {
+    for (final Identifier<?, ?> key : keys) {
+      map.put(key, Boolean.TRUE);
+    }
+    return map;
+  }
+
+  private static final long usedMemory() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+}
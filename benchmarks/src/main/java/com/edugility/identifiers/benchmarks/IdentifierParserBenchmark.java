@@ -0,0 +1,164 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+import java.text.ParseException;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.IdType;
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.IdentifierParser;
+import com.edugility.identifiers.IntegerIdType;
+import com.edugility.identifiers.LongIdType;
+import com.edugility.identifiers.LongIdentifier;
+import com.edugility.identifiers.StringId;
+import com.edugility.identifiers.StringIdType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link IdentifierParser} on each kind of input, in each
+ * form, against the {@code split}-and-look-up approach it
+ * replaces.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IdentifierParserBenchmark {
+
+  @Param({ "string", "long" })
+  public String valueType;
+
+  private IdentifierParser parser;
+
+  private IdType<?, ?>[] idTypes;
+
+  private String canonical;
+
+  private char[] canonicalChars;
+
+  private byte[] canonicalBytes;
+
+  private String compact;
+
+  private byte[] compactBytes;
+
+  @Setup
+  public void setUp() {
+    final StringIdType<String> order = StringIdType.valueOf("order");
+    final LongIdType<Long> account = new LongIdType<Long>("account");
+    // A handful of other IdTypes so the lookup is not trivially a
+    // single entry.
+    this.idTypes = new IdType<?, ?>[] {
+      order,
+      account,
+      new StringIdType<String>("customer"),
+      new LongIdType<Long>("invoice"),
+      new IntegerIdType<Integer>("region"),
+      new StringIdType<String>("shipment")
+    };
+    this.parser = new IdentifierParser(Arrays.asList(this.idTypes));
+    final Identifier<?, ?> id;
+    if ("string".equals(this.valueType)) {
+      id = new StringId<String>("order", "ORD-2013-000001234567");
+    } else {
+      id = new LongIdentifier<Long>(account, 20130001234567L);
+    }
+    this.canonical = id.toString();
+    this.canonicalChars = this.canonical.toCharArray();
+    this.canonicalBytes = this.canonical.getBytes(StandardCharsets.UTF_8);
+    this.compact = id.getIdType().getName() + ":" + id.getValue();
+    this.compactBytes = this.compact.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public Identifier<?, ?> parseCharSequence() throws ParseException {
+    return this.parser.parse(this.canonical);
+  }
+
+  @Benchmark
+  public Identifier<?, ?> parseChars() throws ParseException {
+    return this.parser.parse(this.canonicalChars, 0, this.canonicalChars.length);
+  }
+
+  @Benchmark
+  public Identifier<?, ?> parseBytes() throws ParseException {
+    return this.parser.parse(this.canonicalBytes, 0, this.canonicalBytes.length);
+  }
+
+  @Benchmark
+  public Identifier<?, ?> parseCompactCharSequence() throws ParseException {
+    return this.parser.parseCompact(this.compact);
+  }
+
+  @Benchmark
+  public Identifier<?, ?> parseCompactBytes() throws ParseException {
+    return this.parser.parseCompact(this.compactBytes, 0, this.compactBytes.length);
+  }
+
+  /**
+   * Parses the canonical form by splitting it and comparing the
+   * {@link IdType} portion against each {@link IdType}'s {@linkplain
+   * IdType#toString() <code>String</code> representation}.
+   */
+  @Benchmark
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public Identifier<?, ?> splitBaseline() {
+    final String[] parts = this.canonical.split(": ", 2);
+    for (final IdType idType : this.idTypes) {
+      if (idType.toString().equals(parts[0])) {
+        if (idType.getType() == Long.class) {
+          return new LongIdentifier(idType, Long.parseLong(parts[1]));
+        }
+        return new Identifier(idType, parts[1]);
+      }
+    }
+    return null;
+  }
+
+}
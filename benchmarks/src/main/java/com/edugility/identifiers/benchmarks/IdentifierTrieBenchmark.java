@@ -0,0 +1,192 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.IdentifierTrie;
+import com.edugility.identifiers.StringIdType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link TreeSet} and {@link IdentifierTrie} membership
+ * tests, prefix counts and prefix enumeration over {@link String}
+ * identifier values, and times building an {@link IdentifierTrie}
+ * from sorted values.
+ *
+ * <p>The retained heap of each, once the values are no longer
+ * otherwise referenced, is printed during setup.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IdentifierTrieBenchmark {
+
+  @Param({ "1000000" })
+  public int size;
+
+  private StringIdType<String> idType;
+
+  private List<String> sorted;
+
+  private TreeSet<String> treeSet;
+
+  private IdentifierTrie<String> trie;
+
+  /**
+   * Values equal to, but not identical to, those in {@link #sorted},
+   * in random order.
+   */
+  private String[] probes;
+
+  /**
+   * Prefixes each matching about a hundred values.
+   */
+  private String[] prefixes;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.idType = StringIdType.valueOf("glAccount");
+    this.treeSet = new TreeSet<String>();
+    for (int i = 0; i < this.size; i++) {
+      this.treeSet.add(String.format("%04d-%04d-%06d", i / 10000, (i / 100) % 100 * 37, i));
+    }
+    this.sorted = new ArrayList<String>(this.treeSet);
+    long before = usedMemory();
+    TreeSet<String> treeSet = new TreeSet<String>(copies(this.sorted));
+    final long treeSetBytes = usedMemory() - before;
+    treeSet = null;
+    before = usedMemory();
+    this.trie = IdentifierTrie.build(this.idType, this.sorted);
+    final long trieBytes = usedMemory() - before;
+    System.out.printf("%nRetained heap per value: TreeSet<String> %d bytes; IdentifierTrie %d bytes%n", treeSetBytes / this.size, trieBytes / this.size);
+    final Random random = new Random(15L);
+    this.probes = new String[1 << 16];
+    for (int i = 0; i < this.probes.length; i++) {
+      this.probes[i] = new String(this.sorted.get(random.nextInt(this.size)).toCharArray());
+    }
+    this.prefixes = new String[1 << 10];
+    for (int i = 0; i < this.prefixes.length; i++) {
+      this.prefixes[i] = this.probes[i].substring(0, 10);
+    }
+  }
+
+  @Benchmark
+  public boolean treeSetContains() {
+    return this.treeSet.contains(this.probes[this.next++ & (this.probes.length - 1)]);
+  }
+
+  @Benchmark
+  public boolean trieContains() {
+    return this.trie.contains(this.probes[this.next++ & (this.probes.length - 1)]);
+  }
+
+  @Benchmark
+  public int treeSetCountWithPrefix() {
+    final String prefix = this.prefixes[this.next++ & (this.prefixes.length - 1)];
+    return this.treeSet.subSet(prefix, prefix + Character.MAX_VALUE).size();
+  }
+
+  @Benchmark
+  public int trieCountWithPrefix() {
+    return this.trie.countWithPrefix(this.prefixes[this.next++ & (this.prefixes.length - 1)]);
+  }
+
+  @Benchmark
+  public int treeSetWithPrefix() {
+    final String prefix = this.prefixes[this.next++ & (this.prefixes.length - 1)];
+    int returnValue = 0;
+    for (final String value : this.treeSet.subSet(prefix, prefix + Character.MAX_VALUE)) {
+      returnValue += new Identifier<String, String>(this.idType, value).hashCode();
+    }
+    return returnValue;
+  }
+
+  @Benchmark
+  public int trieWithPrefix() {
+    int returnValue = 0;
+    for (final Identifier<String, String> id : this.trie.withPrefix(this.prefixes[this.next++ & (this.prefixes.length - 1)])) {
+      returnValue += id.hashCode();
+    }
+    return returnValue;
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public IdentifierTrie<String> trieBuild() {
+    return IdentifierTrie.build(this.idType, this.sorted);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public TreeSet<String> treeSetBuild() {
+    return new TreeSet<String>(this.treeSet);
+  }
+
+  private static final List<String> copies(final List<String> values) {
+    final List<String> returnValue = new ArrayList<String>(values.size());
+    for (final String value : values) {
+      returnValue.add(new String(value.toCharArray()));
+    }
+    return returnValue;
+  }
+
+  private static final long usedMemory() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+}
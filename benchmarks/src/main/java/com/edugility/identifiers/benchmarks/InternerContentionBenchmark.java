@@ -0,0 +1,111 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.IdentifierInterner;
+import com.edugility.identifiers.LongIdType;
+import com.edugility.identifiers.LongIdentifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures {@link IdentifierInterner} throughput under contention.
+ *
+ * <p>Running this class's {@link #main(String[])} method runs the
+ * benchmark with 1, 2, 4, 8, 16, 32 and 64 threads.  When run through
+ * the regular JMH launcher, use the {@code -t} option to choose a
+ * thread count.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InternerContentionBenchmark {
+
+  @Param({ "weak", "bounded" })
+  public String mode;
+
+  @Param({ "100000" })
+  public int distinctValues;
+
+  private LongIdType<Long> idType;
+
+  private IdentifierInterner interner;
+
+  @Setup
+  public void setUp() {
+    this.idType = LongIdType.valueOf("benchmark");
+    if ("bounded".equals(this.mode)) {
+      this.interner = new IdentifierInterner(this.distinctValues);
+    } else {
+      this.interner = new IdentifierInterner();
+    }
+  }
+
+  @Benchmark
+  public Identifier<Long, Long> intern() {
+    final long value = ThreadLocalRandom.current().nextInt(this.distinctValues);
+    return this.interner.intern(new LongIdentifier<Long>(this.idType, value));
+  }
+
+  public static final void main(final String[] args) throws RunnerException {
+    for (int threads = 1; threads <= 64; threads <<= 1) {
+      final Options options = new OptionsBuilder()
+        .include(InternerContentionBenchmark.class.getSimpleName())
+        .threads(threads)
+        .build();
+      new Runner(options).run();
+    }
+  }
+
+}
@@ -0,0 +1,125 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.LongIdType;
+import com.edugility.identifiers.LongIdentifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link HashMap} put and get throughput for {@link
+ * Identifier}{@code <Long, ?>} keys against {@link LongIdentifier}
+ * keys.
+ *
+ * <p>Each operation includes the construction of the key from a
+ * primitive {@code long}, since that is where boxing costs are
+ * incurred.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LongIdentifierMapBenchmark {
+
+  @Param({ "1000000" })
+  public int size;
+
+  private LongIdType<Long> idType;
+
+  private long[] values;
+
+  private Map<Identifier<Long, Long>, Object> boxedMap;
+
+  private Map<Identifier<Long, Long>, Object> primitiveMap;
+
+  private int index;
+
+  @Setup
+  public void setUp() {
+    this.idType = LongIdType.valueOf("benchmark");
+    this.values = new long[this.size];
+    final Random random = new Random(17L);
+    this.boxedMap = new HashMap<Identifier<Long, Long>, Object>(this.size * 2);
+    this.primitiveMap = new HashMap<Identifier<Long, Long>, Object>(this.size * 2);
+    for (int i = 0; i < this.size; i++) {
+      final long value = random.nextLong();
+      this.values[i] = value;
+      this.boxedMap.put(new Identifier<Long, Long>(this.idType, value), Boolean.TRUE);
+      this.primitiveMap.put(new LongIdentifier<Long>(this.idType, value), Boolean.TRUE);
+    }
+  }
+
+  private final long nextValue() {
+    final int index = this.index;
+    this.index = index + 1 == this.size ? 0 : index + 1;
+    return this.values[index];
+  }
+
+  @Benchmark
+  public Object getBoxed() {
+    return this.boxedMap.get(new Identifier<Long, Long>(this.idType, this.nextValue()));
+  }
+
+  @Benchmark
+  public Object getPrimitive() {
+    return this.primitiveMap.get(new LongIdentifier<Long>(this.idType, this.nextValue()));
+  }
+
+  @Benchmark
+  public Object putBoxed() {
+    return this.boxedMap.put(new Identifier<Long, Long>(this.idType, this.nextValue()), Boolean.TRUE);
+  }
+
+  @Benchmark
+  public Object putPrimitive() {
+    return this.primitiveMap.put(new LongIdentifier<Long>(this.idType, this.nextValue()), Boolean.TRUE);
+  }
+
+}
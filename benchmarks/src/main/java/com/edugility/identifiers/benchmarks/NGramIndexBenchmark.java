@@ -0,0 +1,137 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.Identifier;
+import com.edugility.identifiers.NGramIndex;
+import com.edugility.identifiers.StringId;
+import com.edugility.identifiers.StringIdType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding every {@link StringId} containing a fragment by
+ * scanning with {@link String#contains(CharSequence)} against
+ * querying an {@link NGramIndex}, and times a parallel build.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Thread)
+public class NGramIndexBenchmark {
+
+  @Param({ "1000000" })
+  public int size;
+
+  /**
+   * The length of each query fragment.
+   */
+  @Param({ "3", "6" })
+  public int fragmentLength;
+
+  private StringIdType<String> idType;
+
+  private List<String> values;
+
+  private NGramIndex<String> index;
+
+  private String[] fragments;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.idType = StringIdType.valueOf("order");
+    final Random random = new Random(16L);
+    this.values = new ArrayList<String>(this.size);
+    for (int i = 0; i < this.size; i++) {
+      this.values.add(String.format("%08x-%04x-%06d", random.nextInt(), random.nextInt(1 << 16), i));
+    }
+    this.index = NGramIndex.build(this.idType, this.values);
+    System.out.printf("%n%s%n", this.index);
+    this.fragments = new String[1 << 10];
+    for (int i = 0; i < this.fragments.length; i++) {
+      final String value = this.values.get(random.nextInt(this.size));
+      final int start = random.nextInt(value.length() - this.fragmentLength + 1);
+      this.fragments[i] = value.substring(start, start + this.fragmentLength);
+    }
+  }
+
+  @Benchmark
+  public int scan() {
+    final String fragment = this.fragments[this.next++ & (this.fragments.length - 1)];
+    int returnValue = 0;
+    for (final String value : this.values) {
+      if (value.contains(fragment)) {
+        returnValue++;
+      }
+    }
+    return returnValue;
+  }
+
+  @Benchmark
+  public int indexCount() {
+    return this.index.countContaining(this.fragments[this.next++ & (this.fragments.length - 1)]);
+  }
+
+  @Benchmark
+  public List<Identifier<String, String>> indexFind() {
+    return this.index.findContaining(this.fragments[this.next++ & (this.fragments.length - 1)]);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 3)
+  public NGramIndex<String> build() {
+    return NGramIndex.build(this.idType, this.values);
+  }
+
+}
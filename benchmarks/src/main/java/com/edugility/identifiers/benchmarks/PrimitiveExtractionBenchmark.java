@@ -0,0 +1,146 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.Extractor;
+import com.edugility.identifiers.ExtractorHandle;
+import com.edugility.identifiers.LongIdType;
+import com.edugility.identifiers.LongIdentifier;
+import com.edugility.identifiers.LongToLongExtractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares extracting a numeric field out of a {@link LongIdentifier}
+ * by way of an ordinary, boxing {@link Extractor} with doing so by
+ * way of a {@link LongToLongExtractor}.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimitiveExtractionBenchmark {
+
+  private static final int SIZE = 1024;
+
+  private LongIdentifier<Long>[] boxed;
+
+  private LongIdentifier<Long>[] primitive;
+
+  private ExtractorHandle<Long, Long> handle;
+
+  private int index;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    final LongIdType<Long> boxedIdType = new LongIdType<Long>("boxed", Collections.singletonMap("shard", new BoxedShard()));
+    final LongIdType<Long> primitiveIdType = new LongIdType<Long>("primitive", Collections.singletonMap("shard", new PrimitiveShard()));
+    this.handle = primitiveIdType.getExtractorHandle("shard");
+    this.boxed = (LongIdentifier<Long>[])new LongIdentifier<?>[SIZE];
+    this.primitive = (LongIdentifier<Long>[])new LongIdentifier<?>[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      // Large values, so that boxing cannot be served from the Long
+      // cache.
+      final long value = (1L << 40) + i * 0x100000L + i;
+      this.boxed[i] = new LongIdentifier<Long>(boxedIdType, value);
+      this.primitive[i] = new LongIdentifier<Long>(primitiveIdType, value);
+    }
+  }
+
+  private final int next() {
+    final int index = this.index;
+    this.index = (index + 1) & (SIZE - 1);
+    return index;
+  }
+
+  @Benchmark
+  public long boxedExtractFrom() {
+    return this.boxed[this.next()].extractFrom("shard").longValue();
+  }
+
+  @Benchmark
+  public long boxedExtractLong() {
+    return this.boxed[this.next()].extractLong("shard");
+  }
+
+  @Benchmark
+  public long primitiveExtractFrom() {
+    return this.primitive[this.next()].extractFrom("shard").longValue();
+  }
+
+  @Benchmark
+  public long primitiveExtractLong() {
+    return this.primitive[this.next()].extractLong("shard");
+  }
+
+  @Benchmark
+  public long primitiveExtractLongHandle() {
+    return this.primitive[this.next()].extractLong(this.handle);
+  }
+
+  private static final class BoxedShard implements Extractor<Long, Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public final Long extractFrom(final Long value) {
+      return value == null ? null : Long.valueOf((value.longValue() >>> 20) & 0xFFFFFL);
+    }
+
+  }
+
+  private static final class PrimitiveShard implements LongToLongExtractor {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public final long extractLong(final long value) {
+      return (value >>> 20) & 0xFFFFFL;
+    }
+
+  }
+
+}
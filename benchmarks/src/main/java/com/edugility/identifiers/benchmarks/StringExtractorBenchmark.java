@@ -0,0 +1,106 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.identifiers.CharSequenceSlice;
+import com.edugility.identifiers.StringExtractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the ways a {@link StringExtractor} can hand back the
+ * portion of a value it extracts: as a new {@link String}, as a
+ * {@link CharSequenceSlice}, or copied into caller-supplied storage.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringExtractorBenchmark {
+
+  /**
+   * The length of the extracted portion.
+   */
+  @Param({ "4", "16" })
+  public int length;
+
+  private String value;
+
+  private StringExtractor extractor;
+
+  private StringBuilder builder;
+
+  private char[] chars;
+
+  @Setup
+  public void setUp() {
+    this.value = "ORD-2013-000001234567-EAST-0042";
+    this.extractor = new StringExtractor(4, 4 + this.length);
+    this.builder = new StringBuilder(this.value.length());
+    this.chars = new char[this.value.length()];
+  }
+
+  @Benchmark
+  public String extractFrom() {
+    return this.extractor.extractFrom(this.value);
+  }
+
+  @Benchmark
+  public CharSequenceSlice extractSliceFrom() {
+    return this.extractor.extractSliceFrom(this.value);
+  }
+
+  @Benchmark
+  public int extractIntoStringBuilder() {
+    this.builder.setLength(0);
+    return this.extractor.extractInto(this.value, this.builder);
+  }
+
+  @Benchmark
+  public int extractIntoCharArray() {
+    return this.extractor.extractInto(this.value, this.chars, 0);
+  }
+
+}
@@ -0,0 +1,516 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable description of the fields packed into a {@code long}
+ * or {@code int} identifier value, such as the region, shard,
+ * timestamp and sequence number of a 64-bit identifier.
+ *
+ * <p>Fields are declared from most significant to least significant,
+ * each with a key and a width in bits, by way of the {@link
+ * #field(Object, int)} and {@link #signedField(Object, int)} methods,
+ * each of which returns a new {@link BitLayout}:</p>
+ *
+ * <blockquote><pre>final BitLayout layout = new BitLayout()
+ *   .field("region", 4)
+ *   .field("shard", 10)
+ *   .field("timestamp", 41)
+ *   .field("sequence", 9);
+ *final LongIdType&lt;Long&gt; idType = new LongIdType&lt;Long&gt;("order", layout.getExtractors());
+ *final long value = layout.pack(3, 17, timestamp, 0);
+ *final long shard = new LongIdentifier&lt;Long&gt;(idType, value).extractLong("shard");</pre></blockquote>
+ *
+ * <p>The last field declared occupies the least significant bits.
+ * If the fields' widths add up to fewer than 64 (or 32) bits, then
+ * the most significant bits are unused.</p>
+ *
+ * <p>A {@link BitLayout} offers a {@link BitFieldExtractor} (and, if
+ * its fields fit in 32 bits, an {@link IntBitFieldExtractor}) for
+ * each of its fields, {@linkplain #pack(long...) packs} field values
+ * into a single value, and {@linkplain #unpack(long, long[]) unpacks}
+ * a single value into field values.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see BitFieldExtractor
+ *
+ * @see IntBitFieldExtractor
+ */
+public final class BitLayout {
+
+  /**
+   * The keys of this {@link BitLayout}'s fields, from most
+   * significant to least significant.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Object[] keys;
+
+  /**
+   * A {@link BitFieldExtractor} for each of this {@link BitLayout}'s
+   * fields, in the same order as {@link #keys}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BitFieldExtractor[] extractors;
+
+  /**
+   * An {@link IntBitFieldExtractor} for each of this {@link
+   * BitLayout}'s fields, in the same order as {@link #keys}, or
+   * {@code null} if this {@link BitLayout}'s fields do not fit in 32
+   * bits.
+   */
+  private final IntBitFieldExtractor[] intExtractors;
+
+  /**
+   * The sum of the widths of this {@link BitLayout}'s fields.
+   *
+   * @see #getWidth()
+   */
+  private final int width;
+
+  /**
+   * Creates a new {@link BitLayout} with no fields.
+   *
+   * @see #field(Object, int)
+   *
+   * @see #signedField(Object, int)
+   */
+  public BitLayout() {
+    this(new Object[0], new int[0], new boolean[0]);
+  }
+
+  /**
+   * Creates a new {@link BitLayout}.
+   *
+   * @param keys the keys of the fields, from most significant to
+   * least significant; must not be {@code null}
+   *
+   * @param widths the widths of the fields; must not be {@code null}
+   * and must be as long as {@code keys}
+   *
+   * @param signed whether each field is signed; must not be {@code
+   * null} and must be as long as {@code keys}
+   *
+   * @exception IllegalArgumentException if the widths add up to more
+   * than 64
+   */
+  private BitLayout(final Object[] keys, final int[] widths, final boolean[] signed) {
+    super();
+    assert keys.length == widths.length && keys.length == signed.length;
+    int width = 0;
+    for (final int w : widths) {
+      width += w;
+    }
+    if (width > Long.SIZE) {
+      throw new IllegalArgumentException("width > " + Long.SIZE + ": " + width);
+    }
+    final BitFieldExtractor[] extractors = new BitFieldExtractor[keys.length];
+    final IntBitFieldExtractor[] intExtractors = width <= Integer.SIZE ? new IntBitFieldExtractor[keys.length] : null;
+    int offset = width;
+    for (int i = 0; i < keys.length; i++) {
+      offset -= widths[i];
+      extractors[i] = new BitFieldExtractor(offset, widths[i], signed[i]);
+      if (intExtractors != null) {
+        intExtractors[i] = new IntBitFieldExtractor(offset, widths[i], signed[i]);
+      }
+    }
+    this.keys = keys;
+    this.extractors = extractors;
+    this.intExtractors = intExtractors;
+    this.width = width;
+  }
+
+
+  /*
+   * Declaration methods.
+   */
+
+
+  /**
+   * Returns a new {@link BitLayout} consisting of this {@link
+   * BitLayout}'s fields followed by a new, less significant, unsigned
+   * field.
+   *
+   * <p>This {@link BitLayout} is not modified.</p>
+   *
+   * @param key the key of the new field, under which its {@link
+   * BitFieldExtractor} will be indexed; may be {@code null}
+   *
+   * @param width the width of the new field in bits; must be greater
+   * than {@code 0}
+   *
+   * @return a new {@link BitLayout}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code width} is not
+   * greater than {@code 0}, if there is already a field with the
+   * supplied {@code key}, or if the fields' widths would add up to
+   * more than 64
+   *
+   * @see #signedField(Object, int)
+   */
+  public final BitLayout field(final Object key, final int width) {
+    return this.add(key, width, false);
+  }
+
+  /**
+   * Returns a new {@link BitLayout} consisting of this {@link
+   * BitLayout}'s fields followed by a new, less significant, signed
+   * field.
+   *
+   * <p>This {@link BitLayout} is not modified.</p>
+   *
+   * @param key the key of the new field, under which its {@link
+   * BitFieldExtractor} will be indexed; may be {@code null}
+   *
+   * @param width the width of the new field in bits, including its
+   * sign bit; must be greater than {@code 0}
+   *
+   * @return a new {@link BitLayout}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code width} is not
+   * greater than {@code 0}, if there is already a field with the
+   * supplied {@code key}, or if the fields' widths would add up to
+   * more than 64
+   *
+   * @see #field(Object, int)
+   */
+  public final BitLayout signedField(final Object key, final int width) {
+    return this.add(key, width, true);
+  }
+
+  private final BitLayout add(final Object key, final int width, final boolean signed) {
+    if (width <= 0) {
+      throw new IllegalArgumentException("width <= 0: " + width);
+    }
+    if (this.indexOf(key) >= 0) {
+      throw new IllegalArgumentException("Duplicate key: " + key);
+    }
+    final int size = this.keys.length;
+    final Object[] keys = Arrays.copyOf(this.keys, size + 1);
+    final int[] widths = new int[size + 1];
+    final boolean[] signeds = new boolean[size + 1];
+    for (int i = 0; i < size; i++) {
+      widths[i] = this.extractors[i].getWidth();
+      signeds[i] = this.extractors[i].isSigned();
+    }
+    keys[size] = key;
+    widths[size] = width;
+    signeds[size] = signed;
+    return new BitLayout(keys, widths, signeds);
+  }
+
+
+  /*
+   * Accessor methods.
+   */
+
+
+  /**
+   * Returns the sum of the widths of this {@link BitLayout}'s fields.
+   *
+   * @return the sum of the widths of this {@link BitLayout}'s fields;
+   * between {@code 0} and {@code 64}, inclusive
+   */
+  public final int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns an immutable {@link List} of the keys of this {@link
+   * BitLayout}'s fields, from most significant to least significant.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link List} of keys
+   */
+  public final List<Object> getKeys() {
+    return Collections.unmodifiableList(Arrays.asList(this.keys));
+  }
+
+  /**
+   * Returns the {@link BitFieldExtractor} for the field with the
+   * supplied {@code key}, or {@code null} if there is no such field.
+   *
+   * @param key the key of the field; may be {@code null}
+   *
+   * @return a {@link BitFieldExtractor}, or {@code null}
+   */
+  public final BitFieldExtractor getExtractor(final Object key) {
+    final int index = this.indexOf(key);
+    return index < 0 ? null : this.extractors[index];
+  }
+
+  /**
+   * Returns a new, immutable {@link Map} of {@link
+   * BitFieldExtractor}s, one for each of this {@link BitLayout}'s
+   * fields, indexed by the fields' keys and iterating from most
+   * significant to least significant, suitable for {@linkplain
+   * LongIdType#LongIdType(String, Map) creating a
+   * <code>LongIdType</code>}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link Map} of {@link
+   * BitFieldExtractor}s
+   */
+  public final Map<Object, BitFieldExtractor> getExtractors() {
+    final Map<Object, BitFieldExtractor> returnValue = new LinkedHashMap<Object, BitFieldExtractor>();
+    for (int i = 0; i < this.keys.length; i++) {
+      returnValue.put(this.keys[i], this.extractors[i]);
+    }
+    return Collections.unmodifiableMap(returnValue);
+  }
+
+  /**
+   * Returns a new, immutable {@link Map} of {@link
+   * IntBitFieldExtractor}s, one for each of this {@link BitLayout}'s
+   * fields, indexed by the fields' keys and iterating from most
+   * significant to least significant, suitable for {@linkplain
+   * IntegerIdType#IntegerIdType(String, Map) creating an
+   * <code>IntegerIdType</code>}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link Map} of {@link
+   * IntBitFieldExtractor}s
+   *
+   * @exception IllegalStateException if this {@link BitLayout}'s
+   * fields do not fit in 32 bits
+   */
+  public final Map<Object, IntBitFieldExtractor> getIntExtractors() {
+    final IntBitFieldExtractor[] intExtractors = this.intExtractors();
+    final Map<Object, IntBitFieldExtractor> returnValue = new LinkedHashMap<Object, IntBitFieldExtractor>();
+    for (int i = 0; i < this.keys.length; i++) {
+      returnValue.put(this.keys[i], intExtractors[i]);
+    }
+    return Collections.unmodifiableMap(returnValue);
+  }
+
+
+  /*
+   * Packing methods.
+   */
+
+
+  /**
+   * Packs the supplied field values, which must be supplied from most
+   * significant to least significant in the order in which this
+   * {@link BitLayout}'s fields were declared, into a single {@code
+   * long} and returns it.
+   *
+   * <p>Unused bits are zero.  Callers on hot paths may pass a reused
+   * array rather than a list of arguments, which would be collected
+   * into a new array on every call.</p>
+   *
+   * @param fields the field values; must not be {@code null}, must
+   * have exactly one element for each of this {@link BitLayout}'s
+   * fields, and each element must {@linkplain
+   * BitFieldExtractor#fits(long) fit} in its field
+   *
+   * @return the packed value
+   *
+   * @exception IllegalArgumentException if {@code fields} is {@code
+   * null}, is of the wrong length, or contains a value that does not
+   * fit in its field
+   *
+   * @see #unpack(long, long[])
+   */
+  public final long pack(final long... fields) {
+    this.checkLength(fields == null ? -1 : fields.length, "fields");
+    final BitFieldExtractor[] extractors = this.extractors;
+    long returnValue = 0L;
+    for (int i = 0; i < extractors.length; i++) {
+      returnValue = extractors[i].insert(returnValue, fields[i]);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Packs the supplied field values, which must be supplied from most
+   * significant to least significant in the order in which this
+   * {@link BitLayout}'s fields were declared, into a single {@code
+   * int} and returns it.
+   *
+   * <p>Unused bits are zero.  Callers on hot paths may pass a reused
+   * array rather than a list of arguments, which would be collected
+   * into a new array on every call.</p>
+   *
+   * @param fields the field values; must not be {@code null}, must
+   * have exactly one element for each of this {@link BitLayout}'s
+   * fields, and each element must {@linkplain
+   * IntBitFieldExtractor#fits(int) fit} in its field
+   *
+   * @return the packed value
+   *
+   * @exception IllegalArgumentException if {@code fields} is {@code
+   * null}, is of the wrong length, or contains a value that does not
+   * fit in its field
+   *
+   * @exception IllegalStateException if this {@link BitLayout}'s
+   * fields do not fit in 32 bits
+   *
+   * @see #unpack(int, int[])
+   */
+  public final int packInt(final int... fields) {
+    final IntBitFieldExtractor[] intExtractors = this.intExtractors();
+    this.checkLength(fields == null ? -1 : fields.length, "fields");
+    int returnValue = 0;
+    for (int i = 0; i < intExtractors.length; i++) {
+      returnValue = intExtractors[i].insert(returnValue, fields[i]);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Extracts every one of this {@link BitLayout}'s fields from the
+   * supplied {@code value} and stores them, from most significant to
+   * least significant, in the supplied array.
+   *
+   * @param value the packed value
+   *
+   * @param fields the array into which field values will be stored;
+   * must not be {@code null} and must have exactly one element for
+   * each of this {@link BitLayout}'s fields
+   *
+   * @exception IllegalArgumentException if {@code fields} is {@code
+   * null} or is of the wrong length
+   *
+   * @see #pack(long...)
+   */
+  public final void unpack(final long value, final long[] fields) {
+    this.checkLength(fields == null ? -1 : fields.length, "fields");
+    final BitFieldExtractor[] extractors = this.extractors;
+    for (int i = 0; i < extractors.length; i++) {
+      fields[i] = extractors[i].extractLong(value);
+    }
+  }
+
+  /**
+   * Extracts every one of this {@link BitLayout}'s fields from the
+   * supplied {@code value} and stores them, from most significant to
+   * least significant, in the supplied array.
+   *
+   * @param value the packed value
+   *
+   * @param fields the array into which field values will be stored;
+   * must not be {@code null} and must have exactly one element for
+   * each of this {@link BitLayout}'s fields
+   *
+   * @exception IllegalArgumentException if {@code fields} is {@code
+   * null} or is of the wrong length
+   *
+   * @exception IllegalStateException if this {@link BitLayout}'s
+   * fields do not fit in 32 bits
+   *
+   * @see #packInt(int...)
+   */
+  public final void unpack(final int value, final int[] fields) {
+    final IntBitFieldExtractor[] intExtractors = this.intExtractors();
+    this.checkLength(fields == null ? -1 : fields.length, "fields");
+    for (int i = 0; i < intExtractors.length; i++) {
+      fields[i] = intExtractors[i].extractInt(value);
+    }
+  }
+
+  private final int indexOf(final Object key) {
+    final Object[] keys = this.keys;
+    for (int i = 0; i < keys.length; i++) {
+      final Object k = keys[i];
+      if (k == null ? key == null : k.equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private final IntBitFieldExtractor[] intExtractors() {
+    if (this.intExtractors == null) {
+      throw new IllegalStateException("width > " + Integer.SIZE + ": " + this.width);
+    }
+    return this.intExtractors;
+  }
+
+  private final void checkLength(final int length, final String name) {
+    if (length < 0) {
+      throw new IllegalArgumentException(name, new NullPointerException(name));
+    }
+    if (length != this.keys.length) {
+      throw new IllegalArgumentException(name + ".length != " + this.keys.length + ": " + length);
+    }
+  }
+
+
+  /*
+   * Hashcode and equality methods.
+   */
+
+
+  @Override
+  public int hashCode() {
+    int hashCode = 17;
+    hashCode = 37 * hashCode + Arrays.hashCode(this.keys);
+    hashCode = 37 * hashCode + Arrays.hashCode(this.extractors);
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this) {
+      return true;
+    } else if (other instanceof BitLayout) {
+      final BitLayout him = (BitLayout)other;
+      return Arrays.equals(this.keys, him.keys) && Arrays.equals(this.extractors, him.extractors);
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < this.keys.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(this.keys[i]);
+      sb.append("=");
+      sb.append(this.extractors[i]);
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,368 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * An immutable {@link CharSequence} that is a view over a contiguous
+ * range of characters in a {@link String}.
+ *
+ * <p>Creating a {@link CharSequenceSlice}, or {@linkplain
+ * #subSequence(int, int) taking a slice of one}, never copies any
+ * characters.  Characters are copied only when {@link #toString()}
+ * is called.</p>
+ *
+ * <p>{@link CharSequenceSlice}s are {@linkplain #equals(Object)
+ * equal to} other {@link CharSequenceSlice}s with the same
+ * characters, and their {@linkplain #hashCode() hashcodes} are
+ * computed in the same way as {@link String#hashCode()}.  A {@link
+ * CharSequenceSlice} is never equal to a {@link String}; use the
+ * {@link #contentEquals(CharSequence)} method for such
+ * comparisons.</p>
+ *
+ * <p>Note that a {@link CharSequenceSlice} keeps its entire
+ * underlying {@link String} reachable.  When serialized, however,
+ * only the characters in its range are written.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see StringExtractor#extractSliceFrom(String)
+ */
+public class CharSequenceSlice implements CharSequence, Comparable<CharSequence>, Serializable {
+
+  /**
+   * The version of this class for {@linkplain Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The {@link String} over which this {@link CharSequenceSlice} is a
+   * view.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final String source;
+
+  /**
+   * The index within the {@linkplain #source underlying
+   * <code>String</code>} of the first character of this {@link
+   * CharSequenceSlice}.
+   */
+  private final int start;
+
+  /**
+   * The index within the {@linkplain #source underlying
+   * <code>String</code>} one past the last character of this {@link
+   * CharSequenceSlice}.
+   */
+  private final int end;
+
+  /**
+   * A cached hashcode for this {@link CharSequenceSlice}, or {@code
+   * 0} if it has not yet been computed.
+   *
+   * @see #hashCode()
+   */
+  private transient int hashCode;
+
+  /**
+   * Creates a new {@link CharSequenceSlice} spanning the entire
+   * supplied {@link String}.
+   *
+   * @param source the {@link String} to view; must not be {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code source} is {@code
+   * null}
+   */
+  public CharSequenceSlice(final String source) {
+    this(source, 0, source == null ? 0 : source.length());
+  }
+
+  /**
+   * Creates a new {@link CharSequenceSlice}.
+   *
+   * @param source the {@link String} to view; must not be {@code
+   * null}
+   *
+   * @param start the index within {@code source} of the first
+   * character of the new {@link CharSequenceSlice}; must be
+   * non-negative and not greater than {@code end}
+   *
+   * @param end the index within {@code source} one past the last
+   * character of the new {@link CharSequenceSlice}; must not be
+   * greater than {@code source.length()}
+   *
+   * @exception IllegalArgumentException if {@code source} is {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if {@code start} or {@code
+   * end} is out of bounds
+   */
+  public CharSequenceSlice(final String source, final int start, final int end) {
+    super();
+    if (source == null) {
+      throw new IllegalArgumentException("source", new NullPointerException("source"));
+    }
+    if (start < 0 || end < start || end > source.length()) {
+      throw new IndexOutOfBoundsException("start: " + start + "; end: " + end + "; length: " + source.length());
+    }
+    this.source = source;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Returns the number of characters in this {@link
+   * CharSequenceSlice}.
+   *
+   * @return the number of characters in this {@link
+   * CharSequenceSlice}
+   */
+  @Override
+  public final int length() {
+    return this.end - this.start;
+  }
+
+  /**
+   * Returns the character at the supplied {@code index}.
+   *
+   * @param index the index of the character to return; must be
+   * non-negative and less than {@link #length()}
+   *
+   * @return the character at the supplied {@code index}
+   *
+   * @exception IndexOutOfBoundsException if {@code index} is out of
+   * bounds
+   */
+  @Override
+  public final char charAt(final int index) {
+    if (index < 0 || index >= this.end - this.start) {
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+    return this.source.charAt(this.start + index);
+  }
+
+  /**
+   * Returns a new {@link CharSequenceSlice} that is a view over the
+   * given range of this {@link CharSequenceSlice}.
+   *
+   * <p>No characters are copied.</p>
+   *
+   * @param start the index of the first character of the new slice,
+   * relative to this {@link CharSequenceSlice}
+   *
+   * @param end the index one past the last character of the new
+   * slice, relative to this {@link CharSequenceSlice}
+   *
+   * @return a new {@link CharSequenceSlice}, or this {@link
+   * CharSequenceSlice} if the range covers it entirely; never {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if {@code start} or {@code
+   * end} is out of bounds
+   */
+  @Override
+  public CharSequenceSlice subSequence(final int start, final int end) {
+    final int length = this.end - this.start;
+    if (start < 0 || end < start || end > length) {
+      throw new IndexOutOfBoundsException("start: " + start + "; end: " + end + "; length: " + length);
+    }
+    if (start == 0 && end == length) {
+      return this;
+    }
+    return new CharSequenceSlice(this.source, this.start + start, this.start + end);
+  }
+
+  /**
+   * Copies characters from this {@link CharSequenceSlice} into the
+   * supplied destination character array.
+   *
+   * @param sourceBegin the index of the first character to copy,
+   * relative to this {@link CharSequenceSlice}
+   *
+   * @param sourceEnd the index one past the last character to copy,
+   * relative to this {@link CharSequenceSlice}
+   *
+   * @param destination the character array to copy into; must not
+   * be {@code null}
+   *
+   * @param destinationBegin the index within {@code destination} at
+   * which to start copying
+   *
+   * @exception IndexOutOfBoundsException if any index is out of
+   * bounds
+   *
+   * @see String#getChars(int, int, char[], int)
+   */
+  public final void getChars(final int sourceBegin, final int sourceEnd, final char[] destination, final int destinationBegin) {
+    final int length = this.end - this.start;
+    if (sourceBegin < 0 || sourceEnd < sourceBegin || sourceEnd > length) {
+      throw new IndexOutOfBoundsException("sourceBegin: " + sourceBegin + "; sourceEnd: " + sourceEnd + "; length: " + length);
+    }
+    this.source.getChars(this.start + sourceBegin, this.start + sourceEnd, destination, destinationBegin);
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link CharSequence} has
+   * exactly the same characters as this {@link CharSequenceSlice}.
+   *
+   * @param cs the {@link CharSequence} to compare against; may be
+   * {@code null} in which case {@code false} will be returned
+   *
+   * @return {@code true} if the supplied {@link CharSequence} has
+   * exactly the same characters as this {@link CharSequenceSlice};
+   * {@code false} otherwise
+   */
+  public final boolean contentEquals(final CharSequence cs) {
+    if (cs == null) {
+      return false;
+    }
+    final int length = this.end - this.start;
+    if (cs.length() != length) {
+      return false;
+    }
+    if (cs instanceof String) {
+      return this.source.regionMatches(this.start, (String)cs, 0, length);
+    }
+    for (int i = 0; i < length; i++) {
+      if (this.source.charAt(this.start + i) != cs.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compares this {@link CharSequenceSlice} lexicographically to the
+   * supplied {@link CharSequence} in the same manner as {@link
+   * String#compareTo(String)}.
+   *
+   * @param other the {@link CharSequence} to compare against; must
+   * not be {@code null}
+   *
+   * @return a negative integer, zero or a positive integer as this
+   * {@link CharSequenceSlice} is less than, equal to or greater than
+   * the supplied {@link CharSequence}
+   *
+   * @exception NullPointerException if {@code other} is {@code null}
+   */
+  @Override
+  public int compareTo(final CharSequence other) {
+    final int length = this.end - this.start;
+    final int otherLength = other.length();
+    final int limit = Math.min(length, otherLength);
+    for (int i = 0; i < limit; i++) {
+      final char c1 = this.source.charAt(this.start + i);
+      final char c2 = other.charAt(i);
+      if (c1 != c2) {
+        return c1 - c2;
+      }
+    }
+    return length - otherLength;
+  }
+
+  /**
+   * Returns a hashcode for this {@link CharSequenceSlice} computed in
+   * the same manner as {@link String#hashCode()}.
+   *
+   * @return a hashcode for this {@link CharSequenceSlice}
+   */
+  @Override
+  public int hashCode() {
+    int hashCode = this.hashCode;
+    if (hashCode == 0) {
+      for (int i = this.start; i < this.end; i++) {
+        hashCode = 31 * hashCode + this.source.charAt(i);
+      }
+      this.hashCode = hashCode;
+    }
+    return hashCode;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Object} is a {@link
+   * CharSequenceSlice} with exactly the same characters as this
+   * {@link CharSequenceSlice}.
+   *
+   * @param other the {@link Object} to test; may be {@code null} in
+   * which case {@code false} will be returned
+   *
+   * @return {@code true} if the supplied {@link Object} is equal to
+   * this {@link CharSequenceSlice}; {@code false} otherwise
+   */
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this) {
+      return true;
+    } else if (other != null && other.getClass().equals(this.getClass())) {
+      final CharSequenceSlice him = (CharSequenceSlice)other;
+      final int length = this.end - this.start;
+      if (length != him.end - him.start) {
+        return false;
+      }
+      return this.source.regionMatches(this.start, him.source, him.start, length);
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a new {@link String} containing the characters of this
+   * {@link CharSequenceSlice}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public String toString() {
+    return this.source.substring(this.start, this.end);
+  }
+
+  /**
+   * Returns a {@link CharSequenceSlice} whose underlying {@link
+   * String} contains only the characters of this {@link
+   * CharSequenceSlice} so that serialization does not write out the
+   * entirety of this {@link CharSequenceSlice}'s underlying {@link
+   * String}.
+   *
+   * @return a non-{@code null} {@link CharSequenceSlice}
+   *
+   * @exception ObjectStreamException if an error occurs
+   */
+  private Object writeReplace() throws ObjectStreamException {
+    if (this.start == 0 && this.end == this.source.length()) {
+      return this;
+    }
+    return new CharSequenceSlice(this.toString());
+  }
+
+}
@@ -0,0 +1,254 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable;
+
+/**
+ * The results of {@linkplain IdType#extractAll(Serializable,
+ * Extraction) applying every <code>Extractor</code>} of an {@link
+ * IdType} to a single value, stored compactly in {@linkplain
+ * ExtractorHandle#getOrdinal() ordinal} order.
+ *
+ * <p>An {@link Extraction} may be reused for any number of
+ * extractions, from any number of {@link IdType}s, so that
+ * decomposing many values allocates nothing beyond what the {@link
+ * Extractor}s themselves allocate.</p>
+ *
+ * <p>This class is not safe for use by multiple concurrent
+ * threads.</p>
+ *
+ * @param <W> the type of value that was extracted from
+ *
+ * @param <P> the type of the extracted sub-values
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see IdType#extractAll(Serializable, Extraction)
+ *
+ * @see Identifier#extractAll(Extraction)
+ */
+public class Extraction<W extends Serializable, P> {
+
+  /**
+   * An empty {@link Object} array used as the initial value of the
+   * {@link #parts} field.
+   */
+  private static final Object[] EMPTY = new Object[0];
+
+  /**
+   * The {@link IdType} whose {@link Extractor}s produced the current
+   * contents of this {@link Extraction}.
+   *
+   * <p>This field is {@code null} until this {@link Extraction} is
+   * first populated.</p>
+   */
+  private IdType<W, P> idType;
+
+  /**
+   * The extracted sub-values, in {@linkplain
+   * ExtractorHandle#getOrdinal() ordinal} order.
+   *
+   * <p>Only the first {@link #size} elements are meaningful.</p>
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private Object[] parts;
+
+  /**
+   * The number of meaningful elements in the {@link #parts} array.
+   */
+  private int size;
+
+  /**
+   * Creates a new, empty {@link Extraction}.
+   */
+  public Extraction() {
+    super();
+    this.parts = EMPTY;
+  }
+
+  /**
+   * Prepares this {@link Extraction} to receive {@code size}
+   * sub-values produced by the supplied {@link IdType}'s {@link
+   * Extractor}s.
+   *
+   * @param idType the {@link IdType} whose {@link Extractor}s are
+   * about to populate this {@link Extraction}; must not be {@code
+   * null}
+   *
+   * @param size the number of sub-values about to be stored
+   */
+  final void reset(final IdType<W, P> idType, final int size) {
+    assert idType != null;
+    assert size >= 0;
+    if (this.parts.length < size) {
+      this.parts = new Object[size];
+    } else {
+      // Release references to any stale parts.
+      for (int i = size; i < this.size; i++) {
+        this.parts[i] = null;
+      }
+    }
+    this.idType = idType;
+    this.size = size;
+  }
+
+  /**
+   * Stores the supplied sub-value at the supplied {@code ordinal}.
+   *
+   * @param ordinal the ordinal of the {@link Extractor} that produced
+   * the supplied {@code part}
+   *
+   * @param part the sub-value; may be {@code null}
+   */
+  final void set(final int ordinal, final P part) {
+    this.parts[ordinal] = part;
+  }
+
+  /**
+   * Returns the {@link IdType} whose {@link Extractor}s produced the
+   * contents of this {@link Extraction}, or {@code null} if this
+   * {@link Extraction} has never been populated.
+   *
+   * @return an {@link IdType}, or {@code null}
+   */
+  public final IdType<W, P> getIdType() {
+    return this.idType;
+  }
+
+  /**
+   * Returns the number of sub-values in this {@link Extraction},
+   * which is the same as the {@linkplain IdType#getExtractorCount()
+   * number of <code>Extractor</code>s} indexed by its {@linkplain
+   * #getIdType() <code>IdType</code>}.
+   *
+   * @return the number of sub-values in this {@link Extraction}
+   */
+  public final int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the sub-value produced by the {@link Extractor} with the
+   * supplied {@linkplain ExtractorHandle#getOrdinal() ordinal}.
+   *
+   * @param ordinal the ordinal of the {@link Extractor} in question;
+   * must be non-negative and less than {@link #size()}
+   *
+   * @return the sub-value, or {@code null}
+   *
+   * @exception IndexOutOfBoundsException if {@code ordinal} is out of
+   * bounds
+   */
+  @SuppressWarnings("unchecked")
+  public final P get(final int ordinal) {
+    if (ordinal < 0 || ordinal >= this.size) {
+      throw new IndexOutOfBoundsException(String.valueOf(ordinal));
+    }
+    return (P)this.parts[ordinal];
+  }
+
+  /**
+   * Returns the sub-value produced by the {@link Extractor} referred
+   * to by the supplied {@link ExtractorHandle}.
+   *
+   * <p>If the supplied {@link ExtractorHandle} was not issued by this
+   * {@link Extraction}'s {@linkplain #getIdType()
+   * <code>IdType</code>}, then it is resolved against that {@link
+   * IdType} by its {@linkplain ExtractorHandle#getKey() key}.</p>
+   *
+   * @param handle the {@link ExtractorHandle} in question; must not
+   * be {@code null}
+   *
+   * @return the sub-value, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
+   */
+  public final P get(final ExtractorHandle<W, P> handle) {
+    if (handle == null) {
+      throw new IllegalArgumentException("handle", new NullPointerException("handle"));
+    }
+    final IdType<W, P> idType = this.idType;
+    if (idType == null) {
+      return null;
+    }
+    final ExtractorHandle<W, P> resolvedHandle;
+    if (handle.getIdType() == idType) {
+      resolvedHandle = handle;
+    } else {
+      resolvedHandle = idType.getExtractorHandle(handle.getKey());
+    }
+    if (resolvedHandle == null) {
+      return null;
+    }
+    return this.get(resolvedHandle.getOrdinal());
+  }
+
+  /**
+   * Returns the key of the {@link Extractor} that produced the
+   * sub-value at the supplied {@code ordinal}.
+   *
+   * @param ordinal the ordinal of the {@link Extractor} in question;
+   * must be non-negative and less than {@link #size()}
+   *
+   * @return the key, which may be {@code null}
+   *
+   * @exception IndexOutOfBoundsException if {@code ordinal} is out of
+   * bounds
+   */
+  public final Object getKey(final int ordinal) {
+    if (ordinal < 0 || ordinal >= this.size) {
+      throw new IndexOutOfBoundsException(String.valueOf(ordinal));
+    }
+    return this.idType.getExtractorHandles().get(ordinal).getKey();
+  }
+
+  /**
+   * Returns a non-{@code null} {@link String} representation of this
+   * {@link Extraction}.
+   *
+   * @return a non-{@code null} {@link String} representation of this
+   * {@link Extraction}
+   */
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < this.size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(this.getKey(i)).append("=").append(this.parts[i]);
+    }
+    sb.append("}");
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,681 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable; // for javadoc only
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in instrumentation of {@linkplain IdType#extractFrom(Object,
+ * Serializable) extraction}, recording for each combination of
+ * {@link IdType} and extractor key how often extraction was
+ * attempted, how often no {@link Extractor} was indexed under the
+ * key, how often the {@link Extractor} returned {@code null}, and a
+ * histogram of how long the {@link Extractor} took.
+ *
+ * <p>Instrumentation is enabled by setting the {@value #PROPERTY}
+ * system property to {@code true} when the virtual machine starts.
+ * The property is read once, into the {@code static final} {@link
+ * #ENABLED} field, which the just-in-time compiler treats as a
+ * constant: when instrumentation is disabled the instrumented
+ * branches are compiled away entirely and extraction costs exactly
+ * what it did before.</p>
+ *
+ * <p>Metrics are kept per {@linkplain IdType#equals(Object) equal}
+ * {@link IdType}, so {@link IdType}s that are equal but not identical
+ * share them.  Counts are kept in {@link LongAdder}s, and histogram
+ * buckets in per-thread stripes, so that threads extracting at the
+ * same time rarely contend.  Histogram buckets are log-linear, in the
+ * manner of HdrHistogram: each power of two is split into {@value
+ * #SUB_BUCKETS} equal buckets, so recorded latencies are accurate to
+ * within about 6%.</p>
+ *
+ * <p>{@linkplain #snapshot() Snapshots} are assembled from counters
+ * that may be changing as they are read, so a {@link Snapshot} taken
+ * while extraction is under way may be very slightly
+ * inconsistent.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #snapshot()
+ */
+public final class ExtractionMetrics {
+
+  /**
+   * The name of the system property that, when {@code true}, enables
+   * instrumentation.
+   */
+  public static final String PROPERTY = "com.edugility.identifiers.metrics";
+
+  /**
+   * Whether instrumentation is enabled.
+   *
+   * @see #PROPERTY
+   */
+  public static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+  /**
+   * The base-2 logarithm of {@link #SUB_BUCKETS}.
+   */
+  private static final int SUB_BUCKET_BITS = 4;
+
+  /**
+   * The number of histogram buckets into which each power of two is
+   * divided.
+   */
+  public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The base-2 logarithm of one more than the largest latency, in
+   * nanoseconds, that is recorded exactly; longer latencies (over a
+   * minute) are recorded as that latency.
+   */
+  private static final int MAXIMUM_EXPONENT = 36;
+
+  /**
+   * The number of histogram buckets.
+   */
+  private static final int BUCKETS = (MAXIMUM_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  /**
+   * The number of histogram stripes: the number of processors rounded
+   * up to a power of two, but no more than 16.
+   */
+  private static final int STRIPES = Math.min(16, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+  /**
+   * The {@link Recorder}s, indexed by {@link IdType} and extractor
+   * key.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final ConcurrentMap<Key, Recorder> recorders = new ConcurrentHashMap<Key, Recorder>();
+
+  /**
+   * Prevents instantiation.
+   */
+  private ExtractionMetrics() {
+    super();
+  }
+
+
+  /*
+   * Snapshot methods.
+   */
+
+
+  /**
+   * Returns {@link Snapshot}s of the metrics recorded so far for
+   * every combination of {@link IdType} and extractor key that has
+   * been extracted with.
+   *
+   * <p>If instrumentation is not {@linkplain #ENABLED enabled}, the
+   * returned {@link List} will be empty.</p>
+   *
+   * @return a non-{@code null}, immutable {@link List} of {@link
+   * Snapshot}s
+   */
+  public static final List<Snapshot> snapshot() {
+    return snapshot(null);
+  }
+
+  /**
+   * Returns {@link Snapshot}s of the metrics recorded so far for
+   * every extractor key that has been extracted with using the
+   * supplied {@link IdType} or one {@linkplain IdType#equals(Object)
+   * equal} to it.
+   *
+   * <p>If instrumentation is not {@linkplain #ENABLED enabled}, the
+   * returned {@link List} will be empty.</p>
+   *
+   * @param idType the {@link IdType}; may be {@code null} in which
+   * case {@link Snapshot}s for every {@link IdType} will be returned
+   *
+   * @return a non-{@code null}, immutable {@link List} of {@link
+   * Snapshot}s
+   */
+  public static final List<Snapshot> snapshot(final IdType<?, ?> idType) {
+    final List<Snapshot> returnValue = new ArrayList<Snapshot>();
+    for (final Recorder recorder : recorders.values()) {
+      if (idType == null || idType.equals(recorder.idType)) {
+        returnValue.add(recorder.snapshot());
+      }
+    }
+    return Collections.unmodifiableList(returnValue);
+  }
+
+  /**
+   * Sets every metric recorded so far back to zero.
+   *
+   * <p>Extractions under way while this method runs may or may not be
+   * recorded.</p>
+   */
+  public static final void reset() {
+    for (final Recorder recorder : recorders.values()) {
+      recorder.reset();
+    }
+  }
+
+
+  /*
+   * Recording methods.
+   */
+
+
+  /**
+   * Applies the supplied {@link Extractor} to the supplied value on
+   * behalf of the supplied {@link ExtractorHandle}, recording how long
+   * it took and whether it returned {@code null}, and returns its
+   * result.
+   *
+   * <p>This method is called by {@link IdType} only if
+   * instrumentation is {@linkplain #ENABLED enabled}.</p>
+   *
+   * @param handle the {@link ExtractorHandle} designating the {@link
+   * IdType} and extractor key to record against; must not be {@code
+   * null}
+   *
+   * @param extractor the {@link Extractor} to apply; must not be
+   * {@code null}
+   *
+   * @param value the value to extract from; may be {@code null}
+   *
+   * @return the extraction, or {@code null}
+   */
+  static final <W extends Serializable, P> P extractFrom(final ExtractorHandle<W, P> handle, final Extractor<W, P> extractor, final W value) {
+    assert handle != null;
+    assert extractor != null;
+    Recorder recorder = handle.recorder;
+    if (recorder == null) {
+      // Racing threads will all find the same Recorder.
+      recorder = recorderFor(handle.getIdType(), handle.getKey());
+      handle.recorder = recorder;
+    }
+    final long start = System.nanoTime();
+    final P returnValue = extractor.extractFrom(value);
+    recorder.record(System.nanoTime() - start, returnValue == null);
+    return returnValue;
+  }
+
+  /**
+   * Records an attempt to extract using the supplied {@link IdType}
+   * with an extractor key under which it has no {@link Extractor}.
+   *
+   * <p>This method is called by {@link IdType} only if
+   * instrumentation is {@linkplain #ENABLED enabled}.</p>
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param key the extractor key; may be {@code null}
+   */
+  static final void recordMiss(final IdType<?, ?> idType, final Object key) {
+    recorderFor(idType, key).recordMiss();
+  }
+
+  /**
+   * Records a batch of {@code count} extractions attempted with the
+   * supplied {@link IdType} and extractor key that took {@code nanos}
+   * nanoseconds in all, {@code nulls} of which returned {@code null}.
+   *
+   * <p>Bulk extraction times each batch as a whole, not each
+   * extraction in it, since reading the clock would otherwise cost
+   * about as much as the extractions themselves.  Every extraction in
+   * the batch is therefore entered in the histogram, and counted
+   * towards the {@linkplain Snapshot#getMaximumNanos() maximum}, as
+   * having taken the batch's mean time.</p>
+   *
+   * <p>This method is called by {@link IdType} only if
+   * instrumentation is {@linkplain #ENABLED enabled}.</p>
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param miss whether the {@link IdType} had no {@link Extractor}
+   * indexed under the key, in which case {@code nulls} and {@code
+   * nanos} are ignored
+   *
+   * @param count the number of extractions in the batch
+   *
+   * @param nulls the number of extractions that returned {@code null}
+   *
+   * @param nanos the time the whole batch took, in nanoseconds
+   */
+  static final void recordBatch(final IdType<?, ?> idType, final Object key, final boolean miss, final int count, final int nulls, final long nanos) {
+    if (count > 0) {
+      recorderFor(idType, key).recordBatch(miss, count, nulls, nanos);
+    }
+  }
+
+  private static final Recorder recorderFor(final IdType<?, ?> idType, final Object key) {
+    assert idType != null;
+    final Key k = new Key(idType, key);
+    Recorder returnValue = recorders.get(k);
+    if (returnValue == null) {
+      returnValue = new Recorder(idType, key);
+      final Recorder existing = recorders.putIfAbsent(k, returnValue);
+      if (existing != null) {
+        returnValue = existing;
+      }
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Histogram methods.
+   */
+
+
+  /**
+   * Returns the index of the histogram bucket that records the
+   * supplied latency.
+   */
+  static final int bucketFor(final long nanos) {
+    final long value = Math.max(0L, Math.min(nanos, (1L << MAXIMUM_EXPONENT) - 1L));
+    if (value < SUB_BUCKETS) {
+      return (int)value;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int shift = exponent - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int)((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /**
+   * Returns the smallest latency recorded by the histogram bucket
+   * with the supplied index.
+   */
+  static final long lowestNanosIn(final int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    final int shift = bucket / SUB_BUCKETS - 1;
+    return (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+  }
+
+  /**
+   * Returns the largest latency recorded by the histogram bucket
+   * with the supplied index.
+   */
+  static final long highestNanosIn(final int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    return lowestNanosIn(bucket) + (1L << (bucket / SUB_BUCKETS - 1)) - 1L;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An immutable snapshot of the metrics recorded for one combination
+   * of {@link IdType} and extractor key.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see ExtractionMetrics#snapshot()
+   */
+  public static final class Snapshot {
+
+    private final IdType<?, ?> idType;
+
+    private final Object key;
+
+    private final long calls;
+
+    private final long misses;
+
+    private final long nulls;
+
+    private final long totalNanos;
+
+    private final long maximumNanos;
+
+    /**
+     * The number of timed extractions in each histogram bucket.
+     */
+    private final long[] histogram;
+
+    private Snapshot(final IdType<?, ?> idType,
+                     final Object key,
+                     final long calls,
+                     final long misses,
+                     final long nulls,
+                     final long totalNanos,
+                     final long maximumNanos,
+                     final long[] histogram) {
+      super();
+      this.idType = idType;
+      this.key = key;
+      this.calls = calls;
+      this.misses = misses;
+      this.nulls = nulls;
+      this.totalNanos = totalNanos;
+      this.maximumNanos = maximumNanos;
+      this.histogram = histogram;
+    }
+
+    /**
+     * Returns the {@link IdType} whose extractions this {@link
+     * Snapshot} describes.
+     *
+     * @return the {@link IdType}; never {@code null}
+     */
+    public final IdType<?, ?> getIdType() {
+      return this.idType;
+    }
+
+    /**
+     * Returns the extractor key whose extractions this {@link
+     * Snapshot} describes.
+     *
+     * @return the extractor key; may be {@code null}
+     */
+    public final Object getKey() {
+      return this.key;
+    }
+
+    /**
+     * Returns the number of extractions attempted, including {@link
+     * #getMisses() misses}.
+     *
+     * @return the number of extractions attempted
+     */
+    public final long getCalls() {
+      return this.calls;
+    }
+
+    /**
+     * Returns the number of extractions attempted for which the
+     * {@link IdType} had no {@link Extractor} indexed under the
+     * extractor key.
+     *
+     * @return the number of misses
+     */
+    public final long getMisses() {
+      return this.misses;
+    }
+
+    /**
+     * Returns the number of extractions for which the {@link
+     * Extractor} returned {@code null}, as a {@link StringExtractor}
+     * does for values too short to extract from.
+     *
+     * <p>{@linkplain #getMisses() Misses} are not included.</p>
+     *
+     * @return the number of {@code null} extractions
+     */
+    public final long getNulls() {
+      return this.nulls;
+    }
+
+    /**
+     * Returns the total time spent in the {@link Extractor}, in
+     * nanoseconds.
+     *
+     * @return the total time spent in the {@link Extractor}
+     */
+    public final long getTotalNanos() {
+      return this.totalNanos;
+    }
+
+    /**
+     * Returns the mean time spent in the {@link Extractor} per
+     * extraction that was not a {@linkplain #getMisses() miss}, in
+     * nanoseconds, or {@code 0} if there were none.
+     *
+     * @return the mean time spent in the {@link Extractor}
+     */
+    public final double getMeanNanos() {
+      final long timed = this.calls - this.misses;
+      return timed <= 0L ? 0.0 : (double)this.totalNanos / (double)timed;
+    }
+
+    /**
+     * Returns the longest time spent in the {@link Extractor} by a
+     * single extraction, in nanoseconds.
+     *
+     * @return the longest time spent in the {@link Extractor}
+     */
+    public final long getMaximumNanos() {
+      return this.maximumNanos;
+    }
+
+    /**
+     * Returns a latency, in nanoseconds, that the supplied percentage
+     * of timed extractions took no longer than, to within the
+     * precision of the histogram.
+     *
+     * @param percentile the percentage; must be between {@code 0.0}
+     * and {@code 100.0}, inclusive
+     *
+     * @return the latency, or {@code 0} if there were no timed
+     * extractions
+     *
+     * @exception IllegalArgumentException if {@code percentile} is out
+     * of range
+     */
+    public final long getNanosAtPercentile(final double percentile) {
+      if (!(percentile >= 0.0 && percentile <= 100.0)) {
+        throw new IllegalArgumentException("percentile: " + percentile);
+      }
+      long total = 0L;
+      for (final long count : this.histogram) {
+        total += count;
+      }
+      if (total == 0L) {
+        return 0L;
+      }
+      final long rank = Math.max(1L, (long)Math.ceil(total * percentile / 100.0));
+      long seen = 0L;
+      for (int i = 0; i < this.histogram.length; i++) {
+        seen += this.histogram[i];
+        if (seen >= rank) {
+          return Math.min(highestNanosIn(i), this.maximumNanos);
+        }
+      }
+      return this.maximumNanos;
+    }
+
+    /**
+     * Returns a {@link String} representation of this {@link
+     * Snapshot}.
+     *
+     * @return a non-{@code null} {@link String}
+     */
+    @Override
+    public String toString() {
+      return this.idType + " [" + this.key + "]: " +
+        this.calls + " calls, " +
+        this.misses + " misses, " +
+        this.nulls + " nulls, mean " +
+        Math.round(this.getMeanNanos()) + " ns, p50 " +
+        this.getNanosAtPercentile(50.0) + " ns, p99 " +
+        this.getNanosAtPercentile(99.0) + " ns, max " +
+        this.maximumNanos + " ns";
+    }
+
+  }
+
+  /**
+   * The live metrics for one combination of {@link IdType} and
+   * extractor key.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class Recorder {
+
+    private final IdType<?, ?> idType;
+
+    private final Object key;
+
+    private final LongAdder calls;
+
+    private final LongAdder misses;
+
+    private final LongAdder nulls;
+
+    private final LongAdder totalNanos;
+
+    private final LongAccumulator maximumNanos;
+
+    /**
+     * {@link #STRIPES} consecutive histograms of {@link #BUCKETS}
+     * buckets each.
+     */
+    private final AtomicLongArray histograms;
+
+    private Recorder(final IdType<?, ?> idType, final Object key) {
+      super();
+      this.idType = idType;
+      this.key = key;
+      this.calls = new LongAdder();
+      this.misses = new LongAdder();
+      this.nulls = new LongAdder();
+      this.totalNanos = new LongAdder();
+      this.maximumNanos = new LongAccumulator(Math::max, 0L);
+      this.histograms = new AtomicLongArray(STRIPES * BUCKETS);
+    }
+
+    private final void record(final long nanos, final boolean isNull) {
+      this.calls.increment();
+      if (isNull) {
+        this.nulls.increment();
+      }
+      this.totalNanos.add(nanos);
+      this.maximumNanos.accumulate(nanos);
+      long stripe = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+      stripe = (stripe >>> 32) & (STRIPES - 1);
+      this.histograms.incrementAndGet((int)stripe * BUCKETS + bucketFor(nanos));
+    }
+
+    private final void recordMiss() {
+      this.calls.increment();
+      this.misses.increment();
+    }
+
+    private final void recordBatch(final boolean miss, final int count, final int nulls, final long nanos) {
+      this.calls.add(count);
+      if (miss) {
+        this.misses.add(count);
+        return;
+      }
+      this.nulls.add(nulls);
+      this.totalNanos.add(nanos);
+      final long mean = nanos / count;
+      this.maximumNanos.accumulate(mean);
+      long stripe = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+      stripe = (stripe >>> 32) & (STRIPES - 1);
+      this.histograms.addAndGet((int)stripe * BUCKETS + bucketFor(mean), count);
+    }
+
+    private final Snapshot snapshot() {
+      final long[] histogram = new long[BUCKETS];
+      final AtomicLongArray histograms = this.histograms;
+      for (int i = 0; i < histograms.length(); i++) {
+        histogram[i % BUCKETS] += histograms.get(i);
+      }
+      return new Snapshot(this.idType,
+                          this.key,
+                          this.calls.sum(),
+                          this.misses.sum(),
+                          this.nulls.sum(),
+                          this.totalNanos.sum(),
+                          this.maximumNanos.get(),
+                          histogram);
+    }
+
+    private final void reset() {
+      this.calls.reset();
+      this.misses.reset();
+      this.nulls.reset();
+      this.totalNanos.reset();
+      this.maximumNanos.reset();
+      final AtomicLongArray histograms = this.histograms;
+      for (int i = 0; i < histograms.length(); i++) {
+        histograms.set(i, 0L);
+      }
+    }
+
+  }
+
+  /**
+   * A key in {@link #recorders}: an {@link IdType} and an extractor
+   * key.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Key {
+
+    private final IdType<?, ?> idType;
+
+    private final Object key;
+
+    private Key(final IdType<?, ?> idType, final Object key) {
+      super();
+      this.idType = idType;
+      this.key = key;
+    }
+
+    @Override
+    public final int hashCode() {
+      return this.idType.hashCode() * 31 + (this.key == null ? 0 : this.key.hashCode());
+    }
+
+    @Override
+    public final boolean equals(final Object other) {
+      if (other == this) {
+        return true;
+      } else if (other instanceof Key) {
+        final Key her = (Key)other;
+        return this.idType.equals(her.idType) && (this.key == null ? her.key == null : this.key.equals(her.key));
+      } else {
+        return false;
+      }
+    }
+
+  }
+
+}
@@ -53,6 +53,13 @@ import java.io.Serializable;
  * still another {@link Extractor} might be able to extract some sort
  * of custom {@link Object} out of all six of those characters.</p>
  *
+ * <p>Numeric identifiers are best served by the primitive
+ * specializations of this interface: {@link LongToLongExtractor},
+ * {@link LongToIntExtractor}, {@link IntToIntExtractor} and {@link
+ * CharSequenceToLongExtractor}.  {@link IdType}s recognize them and
+ * call them without boxing from methods such as {@link
+ * Identifier#extractLong(Object)}.</p>
+ *
  * @param <P> the type of the {@link Object} that this {@link
  * Extractor} is capable of extracting (<strong>P</strong> is for
  * <strong>p</strong>art)
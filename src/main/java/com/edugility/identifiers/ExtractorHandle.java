@@ -0,0 +1,165 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable; // for javadoc only
+
+import java.util.Map; // for javadoc only
+
+/**
+ * A pre-resolved reference to an {@link Extractor} {@linkplain
+ * IdType#getExtractorHandle(Object) indexed} by a particular {@link
+ * IdType}.
+ *
+ * <p>Looking up an {@link Extractor} by an arbitrary key involves a
+ * hash table lookup every time.  An {@link ExtractorHandle}, by
+ * contrast, is {@linkplain IdType#getExtractorHandle(Object) resolved
+ * once} and thereafter allows {@linkplain IdType#extractFrom(ExtractorHandle,
+ * Serializable) extraction} by simple array index.</p>
+ *
+ * <p>{@link ExtractorHandle}s are created only by {@link IdType}s and
+ * are immutable.</p>
+ *
+ * @param <W> the type of {@linkplain Identifier#getValue() value}
+ * that the {@link Extractor} this {@link ExtractorHandle} refers to
+ * extracts from
+ *
+ * @param <P> the type of sub-value that the {@link Extractor} this
+ * {@link ExtractorHandle} refers to extracts
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see IdType#getExtractorHandle(Object)
+ *
+ * @see Identifier#extractFrom(ExtractorHandle)
+ */
+public final class ExtractorHandle<W extends Serializable, P> {
+
+  /**
+   * The {@link IdType} that issued this {@link ExtractorHandle}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final IdType<W, P> idType;
+
+  /**
+   * The key under which the {@link Extractor} this {@link
+   * ExtractorHandle} refers to is indexed.
+   *
+   * <p>This field may be {@code null}.</p>
+   */
+  private final Object key;
+
+  /**
+   * The position of the {@link Extractor} this {@link
+   * ExtractorHandle} refers to within the {@linkplain #idType issuing
+   * <code>IdType</code>}.
+   */
+  private final int ordinal;
+
+  /**
+   * The {@link ExtractionMetrics.Recorder} for extractions through
+   * this {@link ExtractorHandle}, set when first needed if {@link
+   * ExtractionMetrics#ENABLED instrumentation is enabled}.
+   *
+   * <p>This field may be {@code null}.  It is a cache, not state:
+   * threads racing to set it all set it to the same value.</p>
+   */
+  ExtractionMetrics.Recorder recorder;
+
+  /**
+   * Creates a new {@link ExtractorHandle}.
+   *
+   * @param idType the {@link IdType} issuing this {@link
+   * ExtractorHandle}; must not be {@code null}
+   *
+   * @param key the key under which the {@link Extractor} is indexed;
+   * may be {@code null}
+   *
+   * @param ordinal the position of the {@link Extractor} within the
+   * supplied {@link IdType}
+   */
+  ExtractorHandle(final IdType<W, P> idType, final Object key, final int ordinal) {
+    super();
+    assert idType != null;
+    assert ordinal >= 0;
+    this.idType = idType;
+    this.key = key;
+    this.ordinal = ordinal;
+  }
+
+  /**
+   * Returns the {@link IdType} that issued this {@link
+   * ExtractorHandle}.
+   *
+   * @return the {@link IdType} that issued this {@link
+   * ExtractorHandle}; never {@code null}
+   */
+  public final IdType<W, P> getIdType() {
+    return this.idType;
+  }
+
+  /**
+   * Returns the key under which the {@link Extractor} this {@link
+   * ExtractorHandle} refers to is indexed.
+   *
+   * @return the key; may be {@code null}
+   */
+  public final Object getKey() {
+    return this.key;
+  }
+
+  /**
+   * Returns the position of the {@link Extractor} this {@link
+   * ExtractorHandle} refers to within its {@linkplain #getIdType()
+   * issuing <code>IdType</code>}.
+   *
+   * <p>Ordinals are assigned in the iteration order of the {@link
+   * Map} that the {@link IdType} was constructed with,
+   * starting at {@code 0}.</p>
+   *
+   * @return the non-negative ordinal
+   */
+  public final int getOrdinal() {
+    return this.ordinal;
+  }
+
+  /**
+   * Returns a non-{@code null} {@link String} representation of this
+   * {@link ExtractorHandle}.
+   *
+   * @return a non-{@code null} {@link String} representation of this
+   * {@link ExtractorHandle}
+   */
+  @Override
+  public String toString() {
+    return this.idType + "[" + this.ordinal + "]: " + this.key;
+  }
+
+}
@@ -0,0 +1,744 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A secondary index that groups {@link Identifier}s by the sub-value
+ * that one of their {@link IdType}'s {@link Extractor}s {@linkplain
+ * Identifier#extractFrom(ExtractorHandle) extracts} from them, so
+ * that all {@link Identifier}s whose extracted sub-value is equal to
+ * a given value may be found without scanning.
+ *
+ * <p>An {@link ExtractorIndex} is built from an {@link IdType} and
+ * the key of one of its {@link Extractor}s, and is maintained
+ * incrementally with {@link #add(Identifier)} and {@link
+ * #remove(Identifier)}.  Each {@link Identifier} is added at most
+ * once.  {@link Identifier}s from which {@code null} is extracted are
+ * not indexed.</p>
+ *
+ * <p>Extracted sub-values are matched using their own {@link
+ * Object#equals(Object)} and {@link Object#hashCode()} methods, so a
+ * {@link #get(Object)} call must supply a value of the same class as
+ * the {@link Extractor} produces; a {@link StringSliceExtractor}, for
+ * example, produces {@link CharSequenceSlice}s, which are never
+ * equal to {@link String}s.</p>
+ *
+ * <h2>Thread Safety</h2>
+ *
+ * <p>This class is safe for use by multiple concurrent threads.
+ * Lookups never block.  Each group of {@link Identifier}s sharing an
+ * extracted sub-value is held in an immutable posting list that is
+ * replaced, not modified, when the group changes, so a {@link List}
+ * returned by {@link #get(Object)} is a stable snapshot that later
+ * {@link #add(Identifier)} and {@link #remove(Identifier)} calls do
+ * not disturb.  Modifications to different groups proceed in
+ * parallel; modifications to the same group are serialized.</p>
+ *
+ * <h2>Costs</h2>
+ *
+ * <p>{@link #get(Object)} and {@link #count(Object)} perform a
+ * single hash table lookup.  Posting lists are plain arrays of
+ * {@link Identifier} references with no per-element node.  Adding
+ * an {@link Identifier} usually writes into spare room at the end of
+ * its group's array and allocates only a small snapshot object; the
+ * array grows by half when full.  Large groups also carry a small
+ * open-addressing table of positions so that checking whether an
+ * {@link Identifier} is already present does not require a scan.
+ * Removing an {@link Identifier} copies its group's posting list,
+ * and so costs time proportional to the size of the group.</p>
+ *
+ * @param <W> the type of the {@linkplain Identifier#getValue()
+ * values} of the indexed {@link Identifier}s
+ *
+ * @param <P> the type of the extracted sub-values by which the
+ * {@link Identifier}s are grouped
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see IdType#getExtractorHandle(Object)
+ *
+ * @see Identifier#extractFrom(ExtractorHandle)
+ */
+public class ExtractorIndex<W extends Serializable, P> {
+
+  /**
+   * The {@link ExtractorHandle} referring to the {@link Extractor}
+   * whose sub-values key this {@link ExtractorIndex}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ExtractorHandle<W, P> handle;
+
+  /**
+   * The {@link IdType} of every {@link Identifier} in this {@link
+   * ExtractorIndex}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final IdType<W, P> idType;
+
+  /**
+   * The posting lists, indexed by extracted sub-value.
+   *
+   * <p>This field is never {@code null}.  Empty posting lists are
+   * never stored.</p>
+   */
+  private final ConcurrentHashMap<P, Postings> postings;
+
+  /**
+   * The number of {@link Identifier}s in this {@link
+   * ExtractorIndex}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final AtomicInteger size;
+
+  /**
+   * Creates a new, empty {@link ExtractorIndex} that groups {@link
+   * Identifier}s of the supplied {@link IdType} by the sub-values
+   * extracted by the {@link Extractor} indexed under the supplied
+   * {@code extractorKey}.
+   *
+   * @param idType the {@link IdType} of the {@link Identifier}s to
+   * be indexed; must not be {@code null}
+   *
+   * @param extractorKey the key under which the {@link Extractor} is
+   * indexed in the supplied {@link IdType}; may be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null} or has no {@link Extractor} indexed under {@code
+   * extractorKey}
+   *
+   * @see IdType#getExtractorHandle(Object)
+   */
+  public ExtractorIndex(final IdType<W, P> idType, final Object extractorKey) {
+    this(handleFor(idType, extractorKey));
+  }
+
+  /**
+   * Creates a new, empty {@link ExtractorIndex} that groups {@link
+   * Identifier}s by the sub-values extracted by the {@link Extractor}
+   * that the supplied {@link ExtractorHandle} refers to.
+   *
+   * @param handle the {@link ExtractorHandle}; must not be {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
+   */
+  public ExtractorIndex(final ExtractorHandle<W, P> handle) {
+    super();
+    if (handle == null) {
+      throw new IllegalArgumentException("handle", new NullPointerException("handle"));
+    }
+    this.handle = handle;
+    this.idType = handle.getIdType();
+    this.postings = new ConcurrentHashMap<P, Postings>();
+    this.size = new AtomicInteger();
+  }
+
+  /**
+   * Returns the {@link IdType} of every {@link Identifier} in this
+   * {@link ExtractorIndex}.
+   *
+   * @return the {@link IdType}; never {@code null}
+   */
+  public final IdType<W, P> getIdType() {
+    return this.idType;
+  }
+
+  /**
+   * Returns the {@link ExtractorHandle} referring to the {@link
+   * Extractor} whose sub-values key this {@link ExtractorIndex}.
+   *
+   * @return the {@link ExtractorHandle}; never {@code null}
+   */
+  public final ExtractorHandle<W, P> getExtractorHandle() {
+    return this.handle;
+  }
+
+  /**
+   * Returns the number of {@link Identifier}s in this {@link
+   * ExtractorIndex}.
+   *
+   * @return the number of {@link Identifier}s in this {@link
+   * ExtractorIndex}
+   */
+  public final int size() {
+    return this.size.get();
+  }
+
+
+  /*
+   * Modification methods.
+   */
+
+
+  /**
+   * Adds the supplied {@link Identifier} to this {@link
+   * ExtractorIndex} if it is not already present and if its
+   * extracted sub-value is not {@code null}.
+   *
+   * @param id the {@link Identifier} to add; must not be {@code null}
+   * and must have an {@link IdType} {@linkplain IdType#equals(Object)
+   * equal to} {@linkplain #getIdType() this index's}
+   *
+   * @return {@code true} if this {@link ExtractorIndex} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   */
+  public boolean add(final Identifier<W, P> id) {
+    final P key = this.keyFor(id);
+    if (key == null) {
+      return false;
+    }
+    final int hash = id.hashCode();
+    final Postings before = this.postings.get(key);
+    if (before != null && before.indexOf(id, hash) >= 0) {
+      // Lock-free fast path for the common case of re-adding an
+      // Identifier that is already present.
+      return false;
+    }
+    final boolean[] added = new boolean[1];
+    this.postings.compute(key, (k, postings) -> {
+        if (postings == null) {
+          added[0] = true;
+          return new Postings(id);
+        } else if (postings.indexOf(id, hash) >= 0) {
+          return postings;
+        }
+        added[0] = true;
+        return postings.with(id, hash);
+      });
+    if (added[0]) {
+      this.size.incrementAndGet();
+    }
+    return added[0];
+  }
+
+  /**
+   * Adds each of the supplied {@link Identifier}s to this {@link
+   * ExtractorIndex}, exactly as though {@link #add(Identifier)} had
+   * been called on each in turn, and returns the number that were
+   * actually added.
+   *
+   * @param ids the {@link Identifier}s to add; must not be {@code
+   * null} and must not contain {@code null}
+   *
+   * @return the number of {@link Identifier}s added
+   *
+   * @exception IllegalArgumentException if {@code ids} is {@code
+   * null}, or contains {@code null} or an {@link Identifier} of the
+   * wrong {@link IdType}
+   */
+  public int addAll(final Iterable<? extends Identifier<W, P>> ids) {
+    if (ids == null) {
+      throw new IllegalArgumentException("ids", new NullPointerException("ids"));
+    }
+    int returnValue = 0;
+    for (final Identifier<W, P> id : ids) {
+      if (this.add(id)) {
+        returnValue++;
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Removes the supplied {@link Identifier} from this {@link
+   * ExtractorIndex} if it is present.
+   *
+   * @param id the {@link Identifier} to remove; must not be {@code
+   * null} and must have an {@link IdType} {@linkplain
+   * IdType#equals(Object) equal to} {@linkplain #getIdType() this
+   * index's}
+   *
+   * @return {@code true} if this {@link ExtractorIndex} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   */
+  public boolean remove(final Identifier<W, P> id) {
+    final P key = this.keyFor(id);
+    if (key == null) {
+      return false;
+    }
+    final int hash = id.hashCode();
+    final Postings before = this.postings.get(key);
+    if (before == null || before.indexOf(id, hash) < 0) {
+      return false;
+    }
+    final boolean[] removed = new boolean[1];
+    this.postings.computeIfPresent(key, (k, postings) -> {
+        final int index = postings.indexOf(id, hash);
+        if (index < 0) {
+          return postings;
+        }
+        removed[0] = true;
+        return postings.without(index);
+      });
+    if (removed[0]) {
+      this.size.decrementAndGet();
+    }
+    return removed[0];
+  }
+
+  /**
+   * Removes every {@link Identifier} from this {@link
+   * ExtractorIndex}.
+   *
+   * <p>If other threads are modifying this {@link ExtractorIndex} at
+   * the same time, some of their modifications may survive.</p>
+   */
+  public void clear() {
+    for (final P key : this.postings.keySet()) {
+      this.postings.computeIfPresent(key, (k, postings) -> {
+          this.size.addAndGet(-postings.size);
+          return null;
+        });
+    }
+  }
+
+
+  /*
+   * Query methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied {@link Identifier} is in
+   * this {@link ExtractorIndex}.
+   *
+   * @param id the {@link Identifier} to look for; may be {@code null}
+   * in which case {@code false} will be returned
+   *
+   * @return {@code true} if the supplied {@link Identifier} is in
+   * this {@link ExtractorIndex}; {@code false} otherwise
+   */
+  public boolean contains(final Identifier<W, P> id) {
+    if (id == null || (id.getIdType() != this.idType && !this.idType.equals(id.getIdType()))) {
+      return false;
+    }
+    final P key = id.extractFrom(this.handle);
+    if (key == null) {
+      return false;
+    }
+    final Postings postings = this.postings.get(key);
+    return postings != null && postings.find(id, id.hashCode()) >= 0;
+  }
+
+  /**
+   * Returns an immutable snapshot of the {@link Identifier}s in this
+   * {@link ExtractorIndex} whose extracted sub-values are equal to
+   * the supplied {@code value}, in the order in which they were
+   * added.
+   *
+   * <p>This method never returns {@code null}.  It performs one hash
+   * table lookup and allocates at most one small object; the {@link
+   * List} it returns shares its storage with this {@link
+   * ExtractorIndex}.</p>
+   *
+   * @param value the extracted sub-value; may be {@code null} in
+   * which case an empty {@link List} will be returned
+   *
+   * @return a non-{@code null}, immutable {@link List} of {@link
+   * Identifier}s
+   */
+  public List<Identifier<W, P>> get(final Object value) {
+    if (value == null) {
+      return Collections.emptyList();
+    }
+    final Postings postings = this.postings.get(value);
+    if (postings == null) {
+      return Collections.emptyList();
+    }
+    return new Snapshot<W, P>(postings.ids, postings.size);
+  }
+
+  /**
+   * Returns the number of {@link Identifier}s in this {@link
+   * ExtractorIndex} whose extracted sub-values are equal to the
+   * supplied {@code value}.
+   *
+   * <p>This method performs one hash table lookup and never
+   * allocates.</p>
+   *
+   * @param value the extracted sub-value; may be {@code null} in
+   * which case {@code 0} will be returned
+   *
+   * @return the number of matching {@link Identifier}s
+   */
+  public int count(final Object value) {
+    if (value == null) {
+      return 0;
+    }
+    final Postings postings = this.postings.get(value);
+    return postings == null ? 0 : postings.size;
+  }
+
+  /**
+   * Returns an unmodifiable view of the distinct extracted sub-values
+   * under which at least one {@link Identifier} is indexed.
+   *
+   * <p>This method never returns {@code null}.  The {@link Set} it
+   * returns reflects later changes to this {@link ExtractorIndex}, and
+   * its iterators are weakly consistent.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Set} of extracted
+   * sub-values
+   */
+  public Set<P> values() {
+    return Collections.unmodifiableSet(this.postings.keySet());
+  }
+
+  /**
+   * Returns a non-{@code null} {@link String} representation of this
+   * {@link ExtractorIndex}.
+   *
+   * @return a non-{@code null} {@link String} representation of this
+   * {@link ExtractorIndex}
+   */
+  @Override
+  public String toString() {
+    return this.handle + " (" + this.size() + " identifiers, " + this.postings.size() + " values)";
+  }
+
+  /**
+   * Validates the supplied {@link Identifier} and returns its
+   * extracted sub-value.
+   *
+   * @param id the {@link Identifier}; must not be {@code null}
+   *
+   * @return the extracted sub-value, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   */
+  private final P keyFor(final Identifier<W, P> id) {
+    if (id == null) {
+      throw new IllegalArgumentException("id", new NullPointerException("id"));
+    }
+    final IdType<W, P> idType = id.getIdType();
+    if (idType != this.idType && !this.idType.equals(idType)) {
+      throw new IllegalArgumentException("id: " + id);
+    }
+    return id.extractFrom(this.handle);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@link ExtractorHandle} indexed under the supplied
+   * {@code extractorKey} in the supplied {@link IdType}.
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param extractorKey the extractor key; may be {@code null}
+   *
+   * @return a non-{@code null} {@link ExtractorHandle}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null} or has no {@link Extractor} indexed under {@code
+   * extractorKey}
+   */
+  private static final <W extends Serializable, P> ExtractorHandle<W, P> handleFor(final IdType<W, P> idType, final Object extractorKey) {
+    if (idType == null) {
+      throw new IllegalArgumentException("idType", new NullPointerException("idType"));
+    }
+    final ExtractorHandle<W, P> returnValue = idType.getExtractorHandle(extractorKey);
+    if (returnValue == null) {
+      throw new IllegalArgumentException("extractorKey: " + extractorKey);
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An immutable snapshot of the {@link Identifier}s that share an
+   * extracted sub-value.
+   *
+   * <p>Successive {@link Postings} for the same group may share an
+   * {@link #ids} array: a {@link Postings} only ever reads the first
+   * {@link #size} elements of its array, and an element beyond that
+   * is written at most once, before the {@link Postings} that covers
+   * it is published.  {@link #without(int)} always copies.</p>
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Postings {
+
+    /**
+     * The capacity above which a {@link Postings} carries a {@link
+     * #slots} table.
+     */
+    private static final int SMALL = 8;
+
+    /**
+     * The {@link Identifier}s, in insertion order, followed by spare
+     * room.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Identifier<?, ?>[] ids;
+
+    /**
+     * The number of {@link Identifier}s in {@link #ids} that belong to
+     * this {@link Postings}.
+     */
+    private final int size;
+
+    /**
+     * An open-addressing table, whose length is a power of two at
+     * least half again the length of {@link #ids}, each of whose
+     * occupied slots holds the hashcode of an {@link Identifier} in
+     * its upper 32 bits and one plus that {@link Identifier}'s
+     * position in {@link #ids} in its lower 32 bits; empty slots are
+     * {@code 0}.
+     *
+     * <p>Keeping the hashcodes here means that the table can be
+     * probed and rebuilt without touching the {@link Identifier}s
+     * themselves.</p>
+     *
+     * <p>This field is {@code null} when {@link #ids} is no longer
+     * than {@link #SMALL}.  Like {@link #ids}, it may be shared with
+     * later {@link Postings} and so may hold positions beyond {@link
+     * #size}, which are ignored; the slots covering this {@link
+     * Postings}' own positions were all written before it was
+     * published and are never overwritten.</p>
+     */
+    private final long[] slots;
+
+    private Postings(final Identifier<?, ?> id) {
+      super();
+      this.ids = new Identifier<?, ?>[] { id };
+      this.size = 1;
+      this.slots = null;
+    }
+
+    private Postings(final Identifier<?, ?>[] ids, final int size, final long[] slots) {
+      super();
+      this.ids = ids;
+      this.size = size;
+      this.slots = slots;
+    }
+
+    /**
+     * Returns the position of the supplied {@link Identifier}, or
+     * {@code -1}, using {@link #slots} if there is one.
+     */
+    private final int indexOf(final Identifier<?, ?> id, final int hash) {
+      final long[] slots = this.slots;
+      if (slots == null) {
+        return this.find(id, hash);
+      }
+      final int mask = slots.length - 1;
+      long slot;
+      for (int i = spread(hash) & mask; (slot = slots[i]) != 0L; i = (i + 1) & mask) {
+        if ((int)(slot >>> 32) == hash) {
+          final int index = (int)slot - 1;
+          if (index < this.size && id.equals(this.ids[index])) {
+            return index;
+          }
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Returns the position of the supplied {@link Identifier}, or
+     * {@code -1}, by scanning.
+     */
+    private final int find(final Identifier<?, ?> id, final int hash) {
+      final Identifier<?, ?>[] ids = this.ids;
+      for (int i = 0; i < this.size; i++) {
+        final Identifier<?, ?> candidate = ids[i];
+        if (candidate == id || (candidate.hashCode() == hash && candidate.equals(id))) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Returns a {@link Postings} holding these {@link Identifier}s
+     * and the supplied one, which must not already be present.
+     */
+    private final Postings with(final Identifier<?, ?> id, final int hash) {
+      final int size = this.size;
+      if (size < this.ids.length) {
+        this.ids[size] = id;
+        if (this.slots != null) {
+          insert(this.slots, hash, size);
+        }
+        return new Postings(this.ids, size + 1, this.slots);
+      }
+      final Identifier<?, ?>[] ids = new Identifier<?, ?>[size + (size >>> 1) + 1];
+      System.arraycopy(this.ids, 0, ids, 0, size);
+      ids[size] = id;
+      final long[] slots = this.rehash(ids.length, -1);
+      if (slots != null) {
+        insert(slots, hash, size);
+      }
+      return new Postings(ids, size + 1, slots);
+    }
+
+    /**
+     * Returns a {@link Postings} holding these {@link Identifier}s,
+     * in the same order, except the one at the supplied position, or
+     * {@code null} if there would be none left.
+     */
+    private final Postings without(final int index) {
+      final int size = this.size - 1;
+      if (size == 0) {
+        return null;
+      }
+      // Keep spare room for subsequent additions unless the group
+      // has shrunk considerably.
+      final int capacity = size < this.ids.length >>> 2 ? size + (size >>> 1) + 1 : this.ids.length;
+      final Identifier<?, ?>[] ids = new Identifier<?, ?>[capacity];
+      System.arraycopy(this.ids, 0, ids, 0, index);
+      System.arraycopy(this.ids, index + 1, ids, index, size - index);
+      return new Postings(ids, size, this.rehash(capacity, index));
+    }
+
+    /**
+     * Returns a new {@link #slots} table sized for the supplied
+     * capacity, holding every {@link Identifier} of this {@link
+     * Postings} except the one at position {@code removed}, with
+     * later positions shifted down to close the gap, or {@code null}
+     * if the capacity is small.
+     */
+    private final long[] rehash(final int capacity, final int removed) {
+      if (capacity <= SMALL) {
+        return null;
+      }
+      int length = 1;
+      while (length < capacity + (capacity >>> 1)) {
+        length <<= 1;
+      }
+      final long[] returnValue = new long[length];
+      final long[] slots = this.slots;
+      if (slots == null) {
+        for (int i = 0; i < this.size; i++) {
+          if (i != removed) {
+            insert(returnValue, this.ids[i].hashCode(), removed >= 0 && i > removed ? i - 1 : i);
+          }
+        }
+      } else {
+        for (final long slot : slots) {
+          if (slot != 0L) {
+            final int index = (int)slot - 1;
+            if (index < this.size && index != removed) {
+              insert(returnValue, (int)(slot >>> 32), removed >= 0 && index > removed ? index - 1 : index);
+            }
+          }
+        }
+      }
+      return returnValue;
+    }
+
+    private static final void insert(final long[] slots, final int hash, final int index) {
+      final int mask = slots.length - 1;
+      int i = spread(hash) & mask;
+      while (slots[i] != 0L) {
+        i = (i + 1) & mask;
+      }
+      slots[i] = ((long)hash << 32) | ((index + 1) & 0xFFFFFFFFL);
+    }
+
+    private static final int spread(int h) {
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      return h;
+    }
+
+  }
+
+  /**
+   * An immutable {@link List} over a prefix of a posting list's
+   * array.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Snapshot<W extends Serializable, P> extends AbstractList<Identifier<W, P>> implements RandomAccess {
+
+    private final Identifier<?, ?>[] ids;
+
+    private final int size;
+
+    private Snapshot(final Identifier<?, ?>[] ids, final int size) {
+      super();
+      this.ids = ids;
+      this.size = size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final Identifier<W, P> get(final int index) {
+      if (index < 0 || index >= this.size) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+      return (Identifier<W, P>)this.ids[index];
+    }
+
+    @Override
+    public final int size() {
+      return this.size;
+    }
+
+  }
+
+}
@@ -0,0 +1,1004 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A typo-tolerant index of the {@link String} {@linkplain
+ * Identifier#getValue() values} of {@link Identifier}s that share a
+ * single {@link IdType}, which finds every value within a given
+ * {@linkplain #distance(CharSequence, CharSequence) edit distance}
+ * of a possibly mistyped one without computing its distance to every
+ * value.
+ *
+ * <h2>Distance</h2>
+ *
+ * <p>Distances are (unrestricted) Damerau-Levenshtein distances: the
+ * minimum number of single-character insertions, deletions,
+ * substitutions and transpositions of adjacent characters needed to
+ * turn one value into the other.  A transposed pair of characters,
+ * the commonest keying error after a single wrong character, is
+ * therefore one edit rather than two.</p>
+ *
+ * <h2>Structure</h2>
+ *
+ * <p>Each edit in a distance of <em>k</em> can be undone by deleting
+ * at most one character from each of the two values involved, so two
+ * values within distance <em>k</em> of each other can each be turned
+ * into some common value by deleting at most <em>k</em> characters.
+ * A {@link FuzzyIndex} is therefore built for a {@linkplain
+ * #getMaximumDistance() maximum distance}, and records, for every
+ * value, a 30-bit fingerprint of every distinct variant of it with
+ * that many or fewer characters deleted.  A search fingerprints the
+ * same deletion variants of the value sought, gathers the values
+ * sharing any of them, and computes the distance only to those.</p>
+ *
+ * <p>Each record is a single {@code long} in an open-addressed
+ * table.  A value of length <em>n</em> has at most <em>n</em> + 1
+ * variants with at most one character deleted, and at most
+ * 1 + <em>n</em> + <em>n</em>(<em>n</em> - 1)/2 with at most two, so
+ * the number of variants grows steeply with both the maximum distance
+ * and the length of the value.  Only the variants of each value's
+ * first {@linkplain #getPrefixLength() few characters} are therefore
+ * recorded, the prefix being the longest that has no more than {@link
+ * #MAXIMUM_VARIANTS} variants for the maximum distance.  This loses
+ * no matches: if two values are within distance <em>k</em> of each
+ * other, so are their prefixes of any given length when each may lose
+ * <em>k</em> characters.  Longer values sharing a prefix are simply
+ * told apart by computing their distances.  Memory is thus linear in
+ * the number of values whatever their lengths; a maximum distance of
+ * {@code 1}, enough for one mistyped or transposed character, is the
+ * {@linkplain #FuzzyIndex(IdType) default}.</p>
+ *
+ * <p>{@linkplain #remove(String) Removing} a value leaves its records
+ * in place, to be ignored by searches.  Once removed values
+ * outnumber the rest, the table is rebuilt without them.</p>
+ *
+ * <h2>Thread Safety</h2>
+ *
+ * <p>This class is safe for use by multiple concurrent threads.
+ * Queries proceed in parallel with one another; modifications are
+ * exclusive.</p>
+ *
+ * @param <P> the common supertype of any semantic bits of information
+ * that might be notionally embedded in the values
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #findWithin(CharSequence, int)
+ */
+public class FuzzyIndex<P> {
+
+  /**
+   * The default {@linkplain #getMaximumDistance() maximum distance}.
+   */
+  public static final int DEFAULT_MAXIMUM_DISTANCE = 1;
+
+  /**
+   * The largest permissible {@linkplain #getMaximumDistance() maximum
+   * distance}, beyond which the number of deletion variants makes
+   * this approach impractical.
+   */
+  public static final int MAXIMUM_MAXIMUM_DISTANCE = 3;
+
+  /**
+   * The largest number of deletion variants recorded for any one
+   * value.
+   *
+   * @see #getPrefixLength()
+   */
+  public static final int MAXIMUM_VARIANTS = 1024;
+
+  /**
+   * Indicates the absence of a value.
+   */
+  private static final int NONE = -1;
+
+  /**
+   * The minimum number of removed values that will cause the table
+   * to be rebuilt.
+   */
+  private static final int MINIMUM_REMOVED = 1024;
+
+  /**
+   * The odd multiplier of the polynomial hash from which fingerprints
+   * are derived.
+   */
+  private static final long BASE = 0x9E3779B97F4A7C15L;
+
+  /**
+   * The {@link IdType} of every {@link Identifier} whose value is in
+   * this {@link FuzzyIndex}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final IdType<String, P> idType;
+
+  /**
+   * The maximum distance this {@link FuzzyIndex} can search.
+   */
+  private final int maximumDistance;
+
+  /**
+   * The number of leading characters of each value whose deletion
+   * variants are recorded.
+   *
+   * @see #getPrefixLength()
+   */
+  private final int prefixLength;
+
+  /**
+   * The lock guarding all mutable state.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ReadWriteLock lock;
+
+  /**
+   * The values, indexed by the number of each; a {@code null} element
+   * is a removed value.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private String[] documents;
+
+  /**
+   * The number of elements of {@link #documents} in use.
+   */
+  private int documentCount;
+
+  /**
+   * The number of removed values in {@link #documents}.
+   */
+  private int removed;
+
+  /**
+   * The records: each non-zero element holds a variant's fingerprint
+   * in its upper 30 bits, the number of characters deleted to form
+   * the variant in the next 2, and one more than the number of its
+   * value in the lower 32.  A record's probe sequence starts at the
+   * slot given by the low bits of its fingerprint.
+   *
+   * <p>This field is never {@code null} and its length is always a
+   * power of two.</p>
+   */
+  private long[] table;
+
+  /**
+   * The number of non-zero elements of {@link #table}.
+   */
+  private int recordCount;
+
+  /**
+   * Creates a new, empty {@link FuzzyIndex} with a {@linkplain
+   * #getMaximumDistance() maximum distance} of {@link
+   * #DEFAULT_MAXIMUM_DISTANCE}.
+   *
+   * @param idType the {@link IdType} of every {@link Identifier} whose
+   * value will be in this {@link FuzzyIndex}; must not be {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null}
+   */
+  public FuzzyIndex(final IdType<String, P> idType) {
+    this(idType, DEFAULT_MAXIMUM_DISTANCE);
+  }
+
+  /**
+   * Creates a new, empty {@link FuzzyIndex}.
+   *
+   * @param idType the {@link IdType} of every {@link Identifier} whose
+   * value will be in this {@link FuzzyIndex}; must not be {@code
+   * null}
+   *
+   * @param maximumDistance the largest distance that this {@link
+   * FuzzyIndex} will be able to {@linkplain #findWithin(CharSequence,
+   * int) search}; must be between {@code 1} and {@link
+   * #MAXIMUM_MAXIMUM_DISTANCE}, inclusive
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null} or {@code maximumDistance} is out of range
+   */
+  public FuzzyIndex(final IdType<String, P> idType, final int maximumDistance) {
+    super();
+    if (idType == null) {
+      throw new IllegalArgumentException("idType", new NullPointerException("idType"));
+    }
+    if (maximumDistance < 1 || maximumDistance > MAXIMUM_MAXIMUM_DISTANCE) {
+      throw new IllegalArgumentException("maximumDistance: " + maximumDistance);
+    }
+    this.idType = idType;
+    this.maximumDistance = maximumDistance;
+    int prefixLength = maximumDistance;
+    while (count(prefixLength + 1, maximumDistance) <= MAXIMUM_VARIANTS) {
+      prefixLength++;
+    }
+    this.prefixLength = prefixLength;
+    this.lock = new ReentrantReadWriteLock();
+    this.documents = new String[16];
+    this.table = new long[64];
+  }
+
+  /**
+   * Returns the {@link IdType} of every {@link Identifier} whose value
+   * is in this {@link FuzzyIndex}.
+   *
+   * @return the {@link IdType}; never {@code null}
+   */
+  public final IdType<String, P> getIdType() {
+    return this.idType;
+  }
+
+  /**
+   * Returns the largest distance that this {@link FuzzyIndex} can
+   * {@linkplain #findWithin(CharSequence, int) search}.
+   *
+   * @return the maximum distance; always {@code 1} or greater
+   */
+  public final int getMaximumDistance() {
+    return this.maximumDistance;
+  }
+
+  /**
+   * Returns the number of leading characters of each value whose
+   * deletion variants this {@link FuzzyIndex} records: the longest
+   * for which there are no more than {@link #MAXIMUM_VARIANTS}
+   * variants with up to the {@linkplain #getMaximumDistance() maximum
+   * distance} characters deleted.
+   *
+   * @return the prefix length; always greater than the {@linkplain
+   * #getMaximumDistance() maximum distance}
+   */
+  public final int getPrefixLength() {
+    return this.prefixLength;
+  }
+
+  /**
+   * Returns the number of values in this {@link FuzzyIndex}.
+   *
+   * @return the number of values in this {@link FuzzyIndex}
+   */
+  public final int size() {
+    final Lock lock = this.lock.readLock();
+    lock.lock();
+    try {
+      return this.documentCount - this.removed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /*
+   * Modification methods.
+   */
+
+
+  /**
+   * Adds the {@linkplain Identifier#getValue() value} of the supplied
+   * {@link Identifier} to this {@link FuzzyIndex} if it is not
+   * already present.
+   *
+   * <p>Only the value is kept, so the {@link Identifier}s that this
+   * {@link FuzzyIndex} later returns are of the class that its {@link
+   * IdType} implies, whatever the class of the one added: a {@link
+   * StringId} if the {@link IdType} is a {@link StringIdType} and a
+   * plain {@link Identifier} otherwise, just as {@link
+   * IdentifierParser} would parse them.  Likewise, an {@link
+   * Identifier} whose value is already present is not added again,
+   * whatever its class.</p>
+   *
+   * @param id the {@link Identifier}; must not be {@code null} and
+   * must have an {@link IdType} {@linkplain IdType#equals(Object)
+   * equal to} {@linkplain #getIdType() this index's}
+   *
+   * @return {@code true} if this {@link FuzzyIndex} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   */
+  public final boolean add(final Identifier<String, P> id) {
+    return this.add(this.valueOf(id));
+  }
+
+  /**
+   * Adds the supplied value to this {@link FuzzyIndex} if it is not
+   * already present.
+   *
+   * @param value the value; must not be {@code null}
+   *
+   * @return {@code true} if this {@link FuzzyIndex} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code value} is {@code
+   * null}
+   */
+  public boolean add(final String value) {
+    if (value == null) {
+      throw new IllegalArgumentException("value", new NullPointerException("value"));
+    }
+    final Lock lock = this.lock.writeLock();
+    lock.lock();
+    try {
+      if (this.find(value) != NONE) {
+        return false;
+      }
+      this.insert(value);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the {@linkplain Identifier#getValue() value} of the
+   * supplied {@link Identifier} from this {@link FuzzyIndex} if it is
+   * present.
+   *
+   * @param id the {@link Identifier}; must not be {@code null} and
+   * must have an {@link IdType} {@linkplain IdType#equals(Object)
+   * equal to} {@linkplain #getIdType() this index's}
+   *
+   * @return {@code true} if this {@link FuzzyIndex} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   */
+  public final boolean remove(final Identifier<String, P> id) {
+    return this.remove(this.valueOf(id));
+  }
+
+  /**
+   * Removes the supplied value from this {@link FuzzyIndex} if it is
+   * present.
+   *
+   * @param value the value; may be {@code null} in which case {@code
+   * false} will be returned
+   *
+   * @return {@code true} if this {@link FuzzyIndex} changed as a
+   * result of this call
+   */
+  public boolean remove(final String value) {
+    if (value == null) {
+      return false;
+    }
+    final Lock lock = this.lock.writeLock();
+    lock.lock();
+    try {
+      final int document = this.find(value);
+      if (document == NONE) {
+        return false;
+      }
+      this.documents[document] = null;
+      this.removed++;
+      if (this.removed >= MINIMUM_REMOVED && this.removed > this.documentCount - this.removed) {
+        this.rebuild();
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /*
+   * Query methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied value is in this {@link
+   * FuzzyIndex}.
+   *
+   * @param value the value; may be {@code null} in which case {@code
+   * false} will be returned
+   *
+   * @return {@code true} if the supplied value is in this {@link
+   * FuzzyIndex}; {@code false} otherwise
+   */
+  public boolean contains(final CharSequence value) {
+    if (value == null) {
+      return false;
+    }
+    final Lock lock = this.lock.readLock();
+    lock.lock();
+    try {
+      return this.find(value) != NONE;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns {@link Identifier}s for every value in this {@link
+   * FuzzyIndex} within the supplied {@linkplain
+   * #distance(CharSequence, CharSequence) distance} of the supplied
+   * value, nearest first, with values equally distant in {@linkplain
+   * String#compareTo(String) order}.
+   *
+   * <p>{@link Identifier}s whose {@link IdType} is a {@link
+   * StringIdType} are returned as {@link StringId}s, even if they
+   * were {@linkplain #add(Identifier) added} as plain {@link
+   * Identifier}s.</p>
+   *
+   * @param value the value, which need not be in this {@link
+   * FuzzyIndex}; must not be {@code null}
+   *
+   * @param distance the maximum distance; must be between {@code 0}
+   * and the {@linkplain #getMaximumDistance() maximum distance},
+   * inclusive
+   *
+   * @return a non-{@code null} {@link List} of {@link Identifier}s
+   *
+   * @exception IllegalArgumentException if {@code value} is {@code
+   * null} or {@code distance} is out of range
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public List<Identifier<String, P>> findWithin(final CharSequence value, final int distance) {
+    if (value == null) {
+      throw new IllegalArgumentException("value", new NullPointerException("value"));
+    }
+    if (distance < 0 || distance > this.maximumDistance) {
+      throw new IllegalArgumentException("distance: " + distance);
+    }
+    final int[] keys = variants(this.prefixOf(value), distance);
+    final Lock lock = this.lock.readLock();
+    lock.lock();
+    try {
+      final String[] documents = this.documents;
+      final long[] table = this.table;
+      final int mask = table.length - 1;
+      int[] candidates = new int[16];
+      int candidateCount = 0;
+      for (final int key : keys) {
+        final int fingerprint = key >>> 2;
+        for (int slot = fingerprint & mask; table[slot] != 0L; slot = (slot + 1) & mask) {
+          final long record = table[slot];
+          if ((int)(record >>> 34) == fingerprint && (int)((record >>> 32) & 3L) <= distance) {
+            final int document = (int)record - 1;
+            if (documents[document] != null) {
+              if (candidateCount == candidates.length) {
+                candidates = Arrays.copyOf(candidates, candidateCount << 1);
+              }
+              candidates[candidateCount++] = document;
+            }
+          }
+        }
+      }
+      if (candidateCount == 0) {
+        return Collections.emptyList();
+      }
+      // Each match is packed into a long: its distance in the upper
+      // half, its document in the lower.
+      Arrays.sort(candidates, 0, candidateCount);
+      final long[] matches = new long[candidateCount];
+      int matchCount = 0;
+      final Distance calculator = new Distance();
+      for (int i = 0; i < candidateCount; i++) {
+        final int document = candidates[i];
+        if (i == 0 || document != candidates[i - 1]) {
+          final int d = calculator.compute(value, documents[document], distance);
+          if (d <= distance) {
+            matches[matchCount++] = ((long)d << 32) | document;
+          }
+        }
+      }
+      final List<Identifier<String, P>> returnValue = new ArrayList<Identifier<String, P>>(matchCount);
+      final boolean stringIdType = this.idType instanceof StringIdType;
+      Arrays.sort(matches, 0, matchCount);
+      int from = 0;
+      while (from < matchCount) {
+        // Sort each run of equally distant values by value.
+        int to = from + 1;
+        while (to < matchCount && (matches[to] >>> 32) == (matches[from] >>> 32)) {
+          to++;
+        }
+        final String[] run = new String[to - from];
+        for (int i = from; i < to; i++) {
+          run[i - from] = documents[(int)matches[i]];
+        }
+        Arrays.sort(run);
+        for (final String v : run) {
+          if (stringIdType) {
+            returnValue.add(new StringId((StringIdType)this.idType, v));
+          } else {
+            returnValue.add(new Identifier<String, P>(this.idType, v));
+          }
+        }
+        from = to;
+      }
+      return returnValue;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * FuzzyIndex}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public String toString() {
+    final Lock lock = this.lock.readLock();
+    lock.lock();
+    try {
+      return this.idType + " (" + (this.documentCount - this.removed) + " values, " + this.recordCount + " deletion variants)";
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /*
+   * Internal methods.
+   */
+
+
+  /**
+   * Returns the value of the supplied {@link Identifier} after
+   * checking its {@link IdType}.
+   */
+  private final String valueOf(final Identifier<String, P> id) {
+    if (id == null) {
+      throw new IllegalArgumentException("id", new NullPointerException("id"));
+    }
+    final IdType<String, P> idType = id.getIdType();
+    if (idType != this.idType && !this.idType.equals(idType)) {
+      throw new IllegalArgumentException("id: " + id);
+    }
+    return id.getValue();
+  }
+
+  /**
+   * Returns the first {@linkplain #getPrefixLength() prefix length}
+   * characters of the supplied value, or the value itself if it is no
+   * longer.
+   */
+  private final CharSequence prefixOf(final CharSequence value) {
+    return value.length() > this.prefixLength ? value.subSequence(0, this.prefixLength) : value;
+  }
+
+  /**
+   * Returns the number of the live value equal to the supplied
+   * value, or {@link #NONE}.
+   *
+   * <p>The caller must hold at least the read lock.</p>
+   */
+  private final int find(final CharSequence value) {
+    assert value != null;
+    final int fingerprint = variants(this.prefixOf(value), 0)[0] >>> 2;
+    final long[] table = this.table;
+    final int mask = table.length - 1;
+    for (int slot = fingerprint & mask; table[slot] != 0L; slot = (slot + 1) & mask) {
+      final long record = table[slot];
+      if ((int)(record >>> 34) == fingerprint && ((record >>> 32) & 3L) == 0L) {
+        final String document = this.documents[(int)record - 1];
+        if (document != null && document.contentEquals(value)) {
+          return (int)record - 1;
+        }
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * Adds the supplied value, which must not be present, as a new
+   * document, recording the deletion variants of its prefix.
+   *
+   * <p>The caller must hold the write lock.</p>
+   */
+  private final void insert(final String value) {
+    final int document = this.documentCount;
+    if (document == this.documents.length) {
+      this.documents = Arrays.copyOf(this.documents, document + (document >>> 1));
+    }
+    this.documents[document] = value;
+    this.documentCount = document + 1;
+    final int[] keys = variants(this.prefixOf(value), this.maximumDistance);
+    if ((this.recordCount + keys.length) * 4L > this.table.length * 3L) {
+      this.resize((this.recordCount + keys.length) * 2);
+    }
+    final long[] table = this.table;
+    final int mask = table.length - 1;
+    for (final int key : keys) {
+      int slot = (key >>> 2) & mask;
+      while (table[slot] != 0L) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = ((long)key << 32) | (document + 1L);
+    }
+    this.recordCount += keys.length;
+  }
+
+  /**
+   * Grows the table so that it has at least the supplied number of
+   * slots, reinserting every record.
+   */
+  private final void resize(final int minimumCapacity) {
+    int capacity = this.table.length;
+    while (capacity < minimumCapacity) {
+      capacity <<= 1;
+    }
+    final long[] table = new long[capacity];
+    final int mask = capacity - 1;
+    for (final long record : this.table) {
+      if (record != 0L) {
+        int slot = (int)(record >>> 34) & mask;
+        while (table[slot] != 0L) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = record;
+      }
+    }
+    this.table = table;
+  }
+
+  /**
+   * Rebuilds the table without the records of removed values.
+   */
+  private final void rebuild() {
+    final String[] documents = this.documents;
+    final int documentCount = this.documentCount;
+    final int size = documentCount - this.removed;
+    this.documents = new String[Math.max(16, size)];
+    this.documentCount = 0;
+    this.removed = 0;
+    this.table = new long[64];
+    this.recordCount = 0;
+    for (int i = 0; i < documentCount; i++) {
+      if (documents[i] != null) {
+        this.insert(documents[i]);
+      }
+    }
+  }
+
+  /**
+   * Returns the distinct keys of the variants of the supplied value
+   * formed by deleting up to the supplied number of characters, each
+   * holding the variant's 30-bit fingerprint in its upper bits and
+   * the number of characters deleted in its lower 2.
+   *
+   * <p>The value itself, with no characters deleted, is always the
+   * first key.</p>
+   */
+  private static final int[] variants(final CharSequence value, final int deletions) {
+    final int length = value.length();
+    // prefix[i] is the polynomial hash of the first i characters;
+    // power[i] is BASE to the i.
+    final long[] prefix = new long[length + 1];
+    final long[] power = new long[length + 1];
+    power[0] = 1L;
+    for (int i = 0; i < length; i++) {
+      prefix[i + 1] = prefix[i] * BASE + value.charAt(i) + 1L;
+      power[i + 1] = power[i] * BASE;
+    }
+    final long[] hashes = new long[count(length, deletions)];
+    int hashCount = 0;
+    hashes[hashCount++] = key(prefix[length], 0);
+    if (deletions > 0) {
+      hashCount = variants(value, prefix, power, 0, 0, 0L, 1, deletions, hashes, hashCount);
+    }
+    // Deleting either of two equal adjacent characters yields the same
+    // variant; keep one key for each.
+    Arrays.sort(hashes, 1, hashCount);
+    int keyCount = 1;
+    for (int i = 1; i < hashCount; i++) {
+      if (hashes[i] != hashes[keyCount - 1]) {
+        hashes[keyCount++] = hashes[i];
+      }
+    }
+    final int[] returnValue = new int[keyCount];
+    for (int i = 0; i < keyCount; i++) {
+      returnValue[i] = (int)hashes[i];
+    }
+    return returnValue;
+  }
+
+  /**
+   * Adds the keys of the variants that delete the character at each
+   * position from {@code from} onwards, together with those deleting
+   * further characters beyond it, to the supplied array, and returns
+   * the new number of keys in it.
+   *
+   * @param head the hash of the characters kept before {@code start}
+   *
+   * @param start the position of the first character not yet
+   * accounted for in {@code head}
+   *
+   * @param deleted the number of characters deleted by each variant
+   * added at this level, counting the one at its position
+   */
+  private static final int variants(final CharSequence value,
+                                    final long[] prefix,
+                                    final long[] power,
+                                    final int start,
+                                    final int from,
+                                    final long head,
+                                    final int deleted,
+                                    final int deletions,
+                                    final long[] hashes,
+                                    int hashCount) {
+    final int length = value.length();
+    for (int i = from; i < length; i++) {
+      // The hash of the kept characters up to, but excluding, i.
+      final long kept = head * power[i - start] + prefix[i] - prefix[start] * power[i - start];
+      // The hash of the whole variant deleting i and keeping the rest.
+      final long whole = kept * power[length - i - 1] + prefix[length] - prefix[i + 1] * power[length - i - 1];
+      hashes[hashCount++] = key(whole, deleted);
+      if (deleted < deletions) {
+        hashCount = variants(value, prefix, power, i + 1, i + 1, kept, deleted + 1, deletions, hashes, hashCount);
+      }
+    }
+    return hashCount;
+  }
+
+  /**
+   * Returns the number of ways to delete up to the supplied number of
+   * characters from a value of the supplied length.
+   */
+  private static final int count(final int length, final int deletions) {
+    long returnValue = 0L;
+    long choose = 1L;
+    for (int d = 0; d <= deletions && d <= length; d++) {
+      returnValue += choose;
+      choose = choose * (length - d) / (d + 1);
+    }
+    if (returnValue > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("value too long: " + length);
+    }
+    return (int)returnValue;
+  }
+
+  /**
+   * Returns the key of a variant with the supplied hash formed by
+   * deleting the supplied number of characters, sorting after keys of
+   * fewer deletions when compared as {@code long}s.
+   */
+  private static final long key(final long hash, final int deletions) {
+    long h = hash;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return ((long)deletions << 32) | ((h >>> 34) << 2) | deletions;
+  }
+
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the (unrestricted) Damerau-Levenshtein distance between
+   * the two supplied {@link CharSequence}s: the minimum number of
+   * single-character insertions, deletions, substitutions and
+   * transpositions of adjacent characters needed to turn one into the
+   * other.
+   *
+   * @param a the first {@link CharSequence}; must not be {@code null}
+   *
+   * @param b the second {@link CharSequence}; must not be {@code null}
+   *
+   * @return the distance between them
+   *
+   * @exception IllegalArgumentException if either parameter is {@code
+   * null}
+   */
+  public static final int distance(final CharSequence a, final CharSequence b) {
+    if (a == null) {
+      throw new IllegalArgumentException("a", new NullPointerException("a"));
+    }
+    if (b == null) {
+      throw new IllegalArgumentException("b", new NullPointerException("b"));
+    }
+    return new Distance().compute(a, b, Integer.MAX_VALUE - 1);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A reusable calculator of Damerau-Levenshtein distances, after
+   * Lowrance and Wagner, holding its working storage so that
+   * repeated calculations do not allocate.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Distance {
+
+    /**
+     * The dynamic programming matrix, row by row, with an extra
+     * leading row and column.
+     */
+    private int[] matrix;
+
+    /**
+     * For each Latin-1 character, the last row of the first string in
+     * which it occurred.
+     */
+    private final int[] lastRow;
+
+    /**
+     * The non-Latin-1 characters whose last rows are recorded in
+     * {@link #wideRows}.
+     */
+    private char[] wideChars;
+
+    /**
+     * For each character in {@link #wideChars}, the last row of the
+     * first string in which it occurred.
+     */
+    private int[] wideRows;
+
+    private int wideCount;
+
+    private Distance() {
+      super();
+      this.matrix = new int[256];
+      this.lastRow = new int[256];
+      this.wideChars = new char[4];
+      this.wideRows = new int[4];
+    }
+
+    /**
+     * Returns the distance between the supplied {@link
+     * CharSequence}s, or {@code limit + 1} if it exceeds {@code
+     * limit}.
+     */
+    private final int compute(final CharSequence a, final CharSequence b, final int limit) {
+      final int la = a.length();
+      final int lb = b.length();
+      if (Math.abs(la - lb) > limit) {
+        return limit + 1;
+      }
+      if (la == 0 || lb == 0) {
+        return Math.max(la, lb);
+      }
+      final int width = lb + 2;
+      final int size = (la + 2) * width;
+      if (size > this.matrix.length) {
+        this.matrix = new int[Math.max(size, this.matrix.length << 1)];
+      }
+      final int[] d = this.matrix;
+      final int infinity = la + lb;
+      // d[(i + 1) * width + (j + 1)] is the distance between the first
+      // i characters of a and the first j characters of b.
+      d[0] = infinity;
+      for (int i = 0; i <= la; i++) {
+        d[(i + 1) * width] = infinity;
+        d[(i + 1) * width + 1] = i;
+      }
+      for (int j = 0; j <= lb; j++) {
+        d[j + 1] = infinity;
+        d[width + j + 1] = j;
+      }
+      for (int i = 1; i <= la; i++) {
+        final char ca = a.charAt(i - 1);
+        int lastColumn = 0;
+        int rowMinimum = Integer.MAX_VALUE;
+        final int row = (i + 1) * width;
+        for (int j = 1; j <= lb; j++) {
+          final char cb = b.charAt(j - 1);
+          final int k = this.lastRow(cb);
+          final int l = lastColumn;
+          int cost = 1;
+          if (ca == cb) {
+            cost = 0;
+            lastColumn = j;
+          }
+          int value = d[row - width + j] + cost; // substitution
+          value = Math.min(value, d[row + j] + 1); // insertion
+          value = Math.min(value, d[row - width + j + 1] + 1); // deletion
+          value = Math.min(value, d[k * width + l] + (i - k - 1) + 1 + (j - l - 1)); // transposition
+          d[row + j + 1] = value;
+          if (value < rowMinimum) {
+            rowMinimum = value;
+          }
+        }
+        this.setLastRow(ca, i);
+        if (rowMinimum > limit && d[row + 1] > limit) {
+          // Row minima never decrease.
+          this.resetLastRows(a, i);
+          return limit + 1;
+        }
+      }
+      this.resetLastRows(a, la);
+      final int returnValue = d[(la + 1) * width + lb + 1];
+      return returnValue > limit ? limit + 1 : returnValue;
+    }
+
+    private final int lastRow(final char c) {
+      if (c < 256) {
+        return this.lastRow[c];
+      }
+      for (int i = 0; i < this.wideCount; i++) {
+        if (this.wideChars[i] == c) {
+          return this.wideRows[i];
+        }
+      }
+      return 0;
+    }
+
+    private final void setLastRow(final char c, final int row) {
+      if (c < 256) {
+        this.lastRow[c] = row;
+        return;
+      }
+      for (int i = 0; i < this.wideCount; i++) {
+        if (this.wideChars[i] == c) {
+          this.wideRows[i] = row;
+          return;
+        }
+      }
+      if (this.wideCount == this.wideChars.length) {
+        this.wideChars = Arrays.copyOf(this.wideChars, this.wideCount << 1);
+        this.wideRows = Arrays.copyOf(this.wideRows, this.wideCount << 1);
+      }
+      this.wideChars[this.wideCount] = c;
+      this.wideRows[this.wideCount] = row;
+      this.wideCount++;
+    }
+
+    /**
+     * Forgets the last rows recorded for the first {@code rows}
+     * characters of the supplied {@link CharSequence}.
+     */
+    private final void resetLastRows(final CharSequence a, final int rows) {
+      for (int i = 0; i < rows; i++) {
+        final char c = a.charAt(i);
+        if (c < 256) {
+          this.lastRow[c] = 0;
+        }
+      }
+      this.wideCount = 0;
+    }
+
+  }
+
+}
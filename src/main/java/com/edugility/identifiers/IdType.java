@@ -27,16 +27,36 @@
  */
 package com.edugility.identifiers;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
+import java.lang.reflect.Array;
+
 import java.net.URI;
 import java.net.URISyntaxException;
 
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import java.util.stream.Stream;
 
 /**
  * Metadata about an {@link Identifier}.
@@ -49,6 +69,13 @@ import java.util.Set;
  * bundled into the {@link IdType} class so that {@link IdType}
  * instances can be shared by {@link Identifier}s.</p>
  *
+ * <p>{@link IdType}s obtained from the {@linkplain #valueOf(Class,
+ * String, Map) static factory methods} of this class and its
+ * subclasses, or by deserialization, are {@linkplain
+ * IdTypeRegistry#intern(IdType) canonical}: any two such {@link
+ * IdType}s that are {@linkplain #equals(Object) equal} are also
+ * identical.</p>
+ *
  * @param <W> the ({@link Serializable}) type of {@linkplain
  * Identifier#getValue() value} that {@link Identifier}s {@linkplain
  * Identifier#getIdType() with this <code>IdType</code>}
@@ -74,6 +101,78 @@ public class IdType<W extends Serializable, P> implements Serializable {
    */
   private static final long serialVersionUID = 1L;
 
+  /**
+   * The 64-bit FNV-1a offset basis used as the starting point for
+   * {@linkplain #getFingerprint() fingerprint} computation.
+   */
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+  /**
+   * The 64-bit FNV-1a prime used during {@linkplain #getFingerprint()
+   * fingerprint} computation.
+   */
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * The smallest number of values that {@link
+   * #parallelExtractFrom(Object, Serializable[], Object[])} will
+   * process as a single unit of work.
+   */
+  private static final int MINIMUM_PARALLEL_RANGE = 1024;
+
+  /**
+   * The {@linkplain #extractorKinds kind} of an {@link Extractor} that
+   * is called only by way of its {@link Extractor#extractFrom(Object)
+   * extractFrom(Object)} method.
+   */
+  private static final byte BOXED = 0;
+
+  /**
+   * The {@linkplain #extractorKinds kind} of a {@link
+   * LongToLongExtractor}.
+   */
+  private static final byte LONG_TO_LONG = 1;
+
+  /**
+   * The {@linkplain #extractorKinds kind} of a {@link
+   * LongToIntExtractor}.
+   */
+  private static final byte LONG_TO_INT = 2;
+
+  /**
+   * The {@linkplain #extractorKinds kind} of an {@link
+   * IntToIntExtractor}.
+   */
+  private static final byte INT_TO_INT = 3;
+
+  /**
+   * The {@linkplain #extractorKinds kind} of a {@link
+   * CharSequenceToLongExtractor}.
+   */
+  private static final byte CHAR_SEQUENCE_TO_LONG = 4;
+
+  /**
+   * The name of the system property that sets the number of slots in
+   * each {@link IdType}'s cache of {@linkplain Identifier#toURN()
+   * URNs}: {@value}.
+   *
+   * <p>The value is rounded up to a power of two; {@code 0} disables
+   * caching.  The default is {@code 1024}.</p>
+   *
+   * @see #URN_CACHE_SIZE
+   */
+  static final String URN_CACHE_SIZE_PROPERTY = "com.edugility.identifiers.urnCacheSize";
+
+  /**
+   * The number of slots in each {@link IdType}'s cache of {@linkplain
+   * Identifier#toURN() URNs}; always {@code 0} or a power of two.
+   *
+   * @see #URN_CACHE_SIZE_PROPERTY
+   *
+   * @see #toURN(Identifier)
+   */
+  static final int URN_CACHE_SIZE = Integer.highestOneBit(Math.max(0, Integer.getInteger(URN_CACHE_SIZE_PROPERTY, 1024).intValue() * 2 - 1));
+
   /**
    * The {@link Class} that defines the type of the {@linkplain
    * Identifier#getValue() value} of an {@link Identifier} with this
@@ -98,6 +197,11 @@ public class IdType<W extends Serializable, P> implements Serializable {
   /**
    * A {@link Map} of {@link Extractor}s indexed by arbitrary keys.
    *
+   * <p>The iteration order of this {@link Map} is that of the {@link
+   * Map} supplied at construction time, and determines the
+   * {@linkplain ExtractorHandle#getOrdinal() ordinals} of this {@link
+   * IdType}'s {@link ExtractorHandle}s.</p>
+   *
    * <p>This field is never {@code null}.</p>
    * 
    * @see #getExtractorKeys()
@@ -106,6 +210,159 @@ public class IdType<W extends Serializable, P> implements Serializable {
    */
   private final Map<Object, Extractor<W, P>> extractors;
 
+  /**
+   * A 64-bit fingerprint of this {@link IdType} computed once from
+   * its {@link Class}, {@linkplain #getType() type}, {@linkplain
+   * #getName() name} and {@link Extractor}s.
+   *
+   * <p>Two {@link IdType}s that are {@linkplain #equals(Object)
+   * equal} always have the same fingerprint.  Two {@link IdType}s
+   * with different fingerprints are never equal.</p>
+   *
+   * <p>This field is {@code transient} because {@link Extractor}s are
+   * not required to have hashcodes that are stable across virtual
+   * machines; it is recomputed upon deserialization.</p>
+   *
+   * @see #getFingerprint()
+   *
+   * @see #initialize()
+   */
+  private transient long fingerprint;
+
+  /**
+   * The hashcode of this {@link IdType}, derived from its {@linkplain
+   * #fingerprint fingerprint}.
+   *
+   * @see #hashCode()
+   *
+   * @see #initialize()
+   */
+  private transient int hashCode;
+
+  /**
+   * This {@link IdType}'s {@link Extractor}s, frozen into an array in
+   * {@linkplain ExtractorHandle#getOrdinal() ordinal} order.
+   *
+   * <p>This field is never {@code null} once this {@link IdType} has
+   * been {@linkplain #initialize() initialized}.</p>
+   *
+   * @see #extractFrom(ExtractorHandle, Serializable)
+   */
+  private transient Extractor<W, P>[] extractorArray;
+
+  /**
+   * The kinds of this {@link IdType}'s {@link Extractor}s, one of
+   * {@link #BOXED}, {@link #LONG_TO_LONG}, {@link #LONG_TO_INT},
+   * {@link #INT_TO_INT} or {@link #CHAR_SEQUENCE_TO_LONG}, in
+   * {@linkplain ExtractorHandle#getOrdinal() ordinal} order.
+   *
+   * <p>Extractors are classified once, when this {@link IdType} is
+   * {@linkplain #initialize() initialized}, so that primitive
+   * extraction need not test each {@link Extractor} against every
+   * primitive extractor interface on every call.</p>
+   *
+   * <p>This field is never {@code null} once this {@link IdType} has
+   * been {@linkplain #initialize() initialized}.</p>
+   *
+   * @see #extractLong(ExtractorHandle, Object, Identifier)
+   */
+  private transient byte[] extractorKinds;
+
+  /**
+   * This {@link IdType}'s {@link ExtractorHandle}s, indexed by their
+   * {@linkplain ExtractorHandle#getKey() keys}.
+   *
+   * <p>This field is never {@code null} once this {@link IdType} has
+   * been {@linkplain #initialize() initialized}.</p>
+   *
+   * @see #getExtractorHandle(Object)
+   */
+  private transient Map<Object, ExtractorHandle<W, P>> extractorHandles;
+
+  /**
+   * An immutable {@link List} of this {@link IdType}'s {@link
+   * ExtractorHandle}s in {@linkplain ExtractorHandle#getOrdinal()
+   * ordinal} order.
+   *
+   * <p>This field is never {@code null} once this {@link IdType} has
+   * been {@linkplain #initialize() initialized}.</p>
+   *
+   * @see #getExtractorHandles()
+   */
+  private transient List<ExtractorHandle<W, P>> extractorHandleList;
+
+  /**
+   * An immutable {@link Set} of this {@link IdType}'s extractor keys
+   * in {@linkplain ExtractorHandle#getOrdinal() ordinal} order.
+   *
+   * <p>This field is never {@code null} once this {@link IdType} has
+   * been {@linkplain #initialize() initialized}.</p>
+   *
+   * @see #getExtractorKeys()
+   */
+  private transient Set<Object> extractorKeys;
+
+  /**
+   * The {@link String} representation of this {@link IdType},
+   * rendered once so that {@link #toString()}&mdash;which every
+   * {@link Identifier#toString()} calls&mdash;need not rebuild it.
+   *
+   * <p>This field is never {@code null} once this {@link IdType} has
+   * been {@linkplain #initialize() initialized}.</p>
+   *
+   * @see #toString()
+   */
+  private transient String string;
+
+  /**
+   * The UTF-8 encoding of this {@link IdType}'s {@linkplain
+   * #toString() <code>String</code> representation} followed by
+   * {@code ": "}, or {@code null} if it has not yet been needed.
+   *
+   * <p>As with {@link #hashCode}, this field is written racily but
+   * idempotently, so no synchronization is needed.</p>
+   *
+   * @see #getPrefixBytes()
+   */
+  private transient byte[] prefixBytes;
+
+  /**
+   * The UTF-8 encoding of this {@link IdType}'s {@linkplain
+   * #getName() name} followed by {@code ':'}, or {@code null} if it
+   * has not yet been needed.
+   *
+   * <p>As with {@link #hashCode}, this field is written racily but
+   * idempotently, so no synchronization is needed.</p>
+   *
+   * @see #getCompactPrefixBytes()
+   */
+  private transient byte[] compactPrefixBytes;
+
+  /**
+   * {@code urn:} followed by this {@link IdType}'s {@linkplain
+   * #getName() name}, percent-encoded, and {@code ':'}, or {@code
+   * null} if it has not yet been needed.
+   *
+   * <p>As with {@link #hashCode}, this field is written racily but
+   * idempotently, so no synchronization is needed.</p>
+   *
+   * @see #toURN(Serializable)
+   */
+  private transient String urnPrefix;
+
+  /**
+   * A direct-mapped cache of {@linkplain #toURN(Identifier) URNs}
+   * indexed by {@linkplain Identifier#hashCode() <code>Identifier</code>
+   * hashcode} and keyed by {@linkplain Identifier#getValue() value},
+   * or {@code null} if it has not yet been needed.
+   *
+   * <p>Slots are read and written without synchronization; this is
+   * safe because {@link URNEntry} instances are immutable.</p>
+   *
+   * @see #toURN(Identifier)
+   */
+  private transient URNEntry[] urnCache;
+
 
   /*
    * Constructors.
@@ -243,10 +500,80 @@ public class IdType<W extends Serializable, P> implements Serializable {
     this.type = type;
     this.name = name;
     if (extractors != null && !extractors.isEmpty()) {
-      this.extractors = new HashMap<Object, Extractor<W, P>>(extractors);
+      this.extractors = new LinkedHashMap<Object, Extractor<W, P>>(extractors);
     } else {
       this.extractors = Collections.emptyMap();
     }
+    this.initialize();
+  }
+
+  /**
+   * Computes the derived, {@code transient} state of this {@link
+   * IdType} once its persistent state has been established, either
+   * by construction or by deserialization.
+   *
+   * @see #fingerprint
+   *
+   * @see #readObject(ObjectInputStream)
+   */
+  private final void initialize() {
+    long fingerprint = FNV_OFFSET_BASIS;
+    fingerprint = fingerprint(fingerprint, this.getClass().getName());
+    fingerprint = fingerprint(fingerprint, this.type.getName());
+    fingerprint = fingerprint(fingerprint, this.name);
+
+    // Map equality does not depend on iteration order, so neither
+    // may this.
+    long extractorsFingerprint = 0L;
+    for (final Entry<Object, Extractor<W, P>> entry : this.extractors.entrySet()) {
+      assert entry != null;
+      final Object key = entry.getKey();
+      final Object extractor = entry.getValue();
+      final long k = key == null ? 0L : key.hashCode();
+      final long e = extractor == null ? 0L : extractor.hashCode();
+      extractorsFingerprint += mix((k << 32) ^ (e & 0xFFFFFFFFL));
+    }
+    fingerprint = mix(fingerprint ^ extractorsFingerprint);
+
+    this.fingerprint = fingerprint;
+    this.hashCode = (int)(fingerprint ^ (fingerprint >>> 32));
+
+    // Freeze the extractors into an array, and issue handles for
+    // them.
+    final int size = this.extractors.size();
+    @SuppressWarnings("unchecked")
+    final Extractor<W, P>[] extractorArray = (Extractor<W, P>[])new Extractor<?, ?>[size];
+    final byte[] extractorKinds = new byte[size];
+    final List<ExtractorHandle<W, P>> extractorHandleList = new ArrayList<ExtractorHandle<W, P>>(size);
+    final Map<Object, ExtractorHandle<W, P>> extractorHandles = new HashMap<Object, ExtractorHandle<W, P>>();
+    final Set<Object> extractorKeys = new LinkedHashSet<Object>();
+    int ordinal = 0;
+    for (final Entry<Object, Extractor<W, P>> entry : this.extractors.entrySet()) {
+      assert entry != null;
+      final Object key = entry.getKey();
+      final ExtractorHandle<W, P> handle = new ExtractorHandle<W, P>(this, key, ordinal);
+      extractorArray[ordinal] = entry.getValue();
+      extractorKinds[ordinal] = kind(entry.getValue());
+      extractorHandleList.add(handle);
+      extractorHandles.put(key, handle);
+      extractorKeys.add(key);
+      ordinal++;
+    }
+    this.extractorArray = extractorArray;
+    this.extractorKinds = extractorKinds;
+    this.extractorHandleList = Collections.unmodifiableList(extractorHandleList);
+    this.extractorHandles = extractorHandles;
+    this.extractorKeys = Collections.unmodifiableSet(extractorKeys);
+
+    final StringBuilder sb = new StringBuilder();
+    if (this.name != null) {
+      sb.append(this.name);
+      sb.append(" ");
+    }
+    sb.append("(");
+    sb.append(this.type);
+    sb.append(")");
+    this.string = sb.toString();
   }
 
 
@@ -283,6 +610,23 @@ public class IdType<W extends Serializable, P> implements Serializable {
   }
 
 
+  /**
+   * Returns a 64-bit fingerprint of this {@link IdType} computed once
+   * from its {@link Class}, {@linkplain #getType() type}, {@linkplain
+   * #getName() name} and {@link Extractor}s.
+   *
+   * <p>Two {@link IdType}s that are {@linkplain #equals(Object)
+   * equal} always have the same fingerprint.  Two {@link IdType}s
+   * with different fingerprints are never equal.  Fingerprints are
+   * not guaranteed to be stable across virtual machines.</p>
+   *
+   * @return a 64-bit fingerprint of this {@link IdType}
+   */
+  public final long getFingerprint() {
+    return this.fingerprint;
+  }
+
+
   /*
    * Methods concerning subvalue extraction.
    */
@@ -306,17 +650,57 @@ public class IdType<W extends Serializable, P> implements Serializable {
    * to {@linkplain #getExtractor(Object) look up
    * <code>Extractor</code>s}.
    *
+   * <p>The {@link Set} returned is immutable, is computed once when
+   * this {@link IdType} is created, and iterates in {@linkplain
+   * ExtractorHandle#getOrdinal() ordinal} order.</p>
+   *
    * @return a non-{@code null} {@link Set} of extractor keys
    */
   public Set<Object> getExtractorKeys() {
-    final Set<Object> returnValue;
-    final Set<Object> extractorIds = this.extractors.keySet();
-    if (extractorIds == null || extractorIds.isEmpty()) {
-      returnValue = Collections.emptySet();
-    } else {
-      returnValue = Collections.unmodifiableSet(new HashSet<Object>(extractorIds));
-    }
-    return returnValue;
+    return this.extractorKeys;
+  }
+
+  /**
+   * Returns the number of {@link Extractor}s indexed by this {@link
+   * IdType}.
+   *
+   * @return the number of {@link Extractor}s indexed by this {@link
+   * IdType}
+   */
+  public final int getExtractorCount() {
+    return this.extractorArray.length;
+  }
+
+  /**
+   * Returns the {@link ExtractorHandle} referring to the {@link
+   * Extractor} indexed under the supplied {@code extractorId}, or
+   * {@code null} if there is no such {@link Extractor}.
+   *
+   * <p>{@link ExtractorHandle}s are created once, when this {@link
+   * IdType} is created, so this method never allocates.  Callers
+   * should resolve {@link ExtractorHandle}s once and reuse them.</p>
+   *
+   * @param extractorId the key under which the desired {@link
+   * Extractor} is indexed; may be {@code null}
+   *
+   * @return an {@link ExtractorHandle}, or {@code null}
+   *
+   * @see #extractFrom(ExtractorHandle, Serializable)
+   */
+  public final ExtractorHandle<W, P> getExtractorHandle(final Object extractorId) {
+    return this.extractorHandles.get(extractorId);
+  }
+
+  /**
+   * Returns an immutable {@link List} of all of this {@link IdType}'s
+   * {@link ExtractorHandle}s in {@linkplain
+   * ExtractorHandle#getOrdinal() ordinal} order.
+   *
+   * @return a non-{@code null}, immutable {@link List} of {@link
+   * ExtractorHandle}s
+   */
+  public final List<ExtractorHandle<W, P>> getExtractorHandles() {
+    return this.extractorHandleList;
   }
 
   /**
@@ -337,6 +721,9 @@ public class IdType<W extends Serializable, P> implements Serializable {
   public P extractFrom(final Object extractorId, final W sourceValue) {
     P returnValue = null;
     final Extractor<W, P> extractor = this.getExtractor(extractorId);
+    if (ExtractionMetrics.ENABLED || IdentifierEvents.isRecording()) {
+      return this.observeExtractFrom(null, extractorId, extractor, sourceValue);
+    }
     if (extractor != null) {
       returnValue = extractor.extractFrom(sourceValue);
     }
@@ -344,128 +731,952 @@ public class IdType<W extends Serializable, P> implements Serializable {
   }
 
 
-  /*
-   * Hashcode and equality methods.
+  /**
+   * Uses the {@link Extractor} referred to by the supplied {@link
+   * ExtractorHandle} to {@linkplain Extractor#extractFrom(Object)
+   * extract} a sub-value from the larger supplied {@code
+   * sourceValue} (which is usually the return value from {@link
+   * Identifier#getValue()}).
+   *
+   * <p>If the supplied {@link ExtractorHandle} was {@linkplain
+   * #getExtractorHandle(Object) issued} by this {@link IdType}, then
+   * the {@link Extractor} is located by array index.  Otherwise it is
+   * looked up by the {@linkplain ExtractorHandle#getKey() handle's
+   * key}, exactly as though {@link #extractFrom(Object,
+   * Serializable)} had been called.</p>
+   *
+   * @param handle the {@link ExtractorHandle} referring to the {@link
+   * Extractor} to use; must not be {@code null}
+   *
+   * @param sourceValue the value from which to extract; may be {@code
+   * null}
+   *
+   * @return the extraction, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
    */
+  public P extractFrom(final ExtractorHandle<W, P> handle, final W sourceValue) {
+    final Extractor<W, P> extractor = this.getExtractor(handle);
+    if (ExtractionMetrics.ENABLED || IdentifierEvents.isRecording()) {
+      return this.observeExtractFrom(handle.getIdType() == this ? handle : null, handle.getKey(), extractor, sourceValue);
+    }
+    P returnValue = null;
+    if (extractor != null) {
+      returnValue = extractor.extractFrom(sourceValue);
+    }
+    return returnValue;
+  }
 
 
   /**
-   * Returns a hashcode for this {@link IdType}.
+   * Applies every {@link Extractor} indexed by this {@link IdType}
+   * to the supplied {@code sourceValue} and returns the results in a
+   * new {@link Extraction}.
    *
-   * @return a hashcode for this {@link IdType}
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param sourceValue the value from which to extract; may be {@code
+   * null}
+   *
+   * @return a new {@link Extraction}; never {@code null}
+   *
+   * @see #extractAll(Serializable, Extraction)
    */
-  @Override
-  public int hashCode() {
-    // http://www.linuxtopia.org/online_books/programming_books/thinking_in_java/TIJ313_029.htm
-    int hashCode = 17;
-    int c;
-
-    // Include name
-    final Object name = this.getName();
-    c = name == null ? 0 : name.hashCode();
-    hashCode = 37 * hashCode + c;
-
-    // Include data type
-    final Object type = this.getType();
-    c = type == null ? 0 : type.hashCode();
-    hashCode = 37 * hashCode + c;
-
-    // Include extractors
-    c = this.extractors.hashCode();
-    hashCode = 37 * hashCode + c;
-
-    return hashCode;
+  public final Extraction<W, P> extractAll(final W sourceValue) {
+    return this.extractAll(sourceValue, null);
   }
 
   /**
-   * Returns {@code true} if the supplied {@link Object} is equal to
-   * this {@link IdType}.
+   * Applies every {@link Extractor} indexed by this {@link IdType}
+   * to the supplied {@code sourceValue} and stores the results, in
+   * {@linkplain ExtractorHandle#getOrdinal() ordinal} order, in the
+   * supplied {@link Extraction}, which is then returned.
    *
-   * @param other the {@link Object} to test; may be {@code null}
+   * <p>Any prior contents of the supplied {@link Extraction} are
+   * discarded.  Reusing a single {@link Extraction} across many
+   * invocations of this method means that no intermediate
+   * objects need be allocated.</p>
    *
-   * @return {@code true} if the supplied {@link Object} is equal to
-   * this {@link IdType}; {@code false} otherwise
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param sourceValue the value from which to extract; may be {@code
+   * null}
+   *
+   * @param target the {@link Extraction} to populate; may be {@code
+   * null} in which case a new {@link Extraction} will be created and
+   * returned
+   *
+   * @return the populated {@link Extraction}; never {@code null}
    */
-  @Override
-  public boolean equals(final Object other) {
-    if (other == this) {
-      return true;
-    } else if (other != null && this.getClass().equals(other.getClass())) {
-      final IdType him = (IdType)other;
-
-      // Check names
-      final Object name = this.getName();
-      if (name == null) {
-        if (him.getName() != null) {
-          return false;
-        }
-      } else if (!name.equals(him.getName())) {
-        return false;
-      }
-
-      // Check data types
-      final Object type = this.getType();
-      if (type == null) {
-        if (him.getType() != null) {
-          return false;
-        }
-      } else if (!type.equals(him.getType())) {
-        return false;
-      }
-
-      // Check extractors      
-      if (!this.extractors.equals(him.extractors)) {
-        return false;
+  public Extraction<W, P> extractAll(final W sourceValue, Extraction<W, P> target) {
+    if (target == null) {
+      target = new Extraction<W, P>();
+    }
+    final Extractor<W, P>[] extractorArray = this.extractorArray;
+    final int size = extractorArray.length;
+    target.reset(this, size);
+    if (ExtractionMetrics.ENABLED || IdentifierEvents.isRecording()) {
+      final List<ExtractorHandle<W, P>> handles = this.extractorHandleList;
+      for (int i = 0; i < size; i++) {
+        final ExtractorHandle<W, P> handle = handles.get(i);
+        target.set(i, this.observeExtractFrom(handle, handle.getKey(), extractorArray[i], sourceValue));
       }
-      
-      // All tests passed
-      return true;
     } else {
-      return false;
+      for (int i = 0; i < size; i++) {
+        final Extractor<W, P> extractor = extractorArray[i];
+        target.set(i, extractor == null ? null : extractor.extractFrom(sourceValue));
+      }
     }
+    return target;
   }
 
-
   /*
-   * Formatting and representation methods.
+   * Primitive extraction methods.
    */
 
 
   /**
-   * Returns a non-{@code null} {@link String} representation of this
-   * {@link IdType}.
+   * Uses the {@link Extractor} {@linkplain #getExtractor(Object)
+   * indexed under the supplied <code>extractorId</code>} to extract a
+   * {@code long} sub-value from the supplied {@code long} {@code
+   * sourceValue}.
    *
-   * @return a non-{@code null} {@link String} representation of this
-   * {@link IdType}
+   * <p>If the {@link Extractor} is a {@link LongToLongExtractor} or
+   * a {@link LongToIntExtractor}, then it is called directly and
+   * nothing is boxed.  Otherwise {@code sourceValue} is boxed into a
+   * {@link Long}, handed to the {@link Extractor}'s {@link
+   * Extractor#extractFrom(Object) extractFrom(Object)} method, and
+   * the resulting {@link Number} is unboxed.  This {@link IdType}'s
+   * {@linkplain #getType() type} is therefore expected to be {@link
+   * Long}.</p>
+   *
+   * @param extractorId the identifier of the {@link Extractor} to
+   * use; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract
+   *
+   * @return the extraction
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} indexed under the supplied {@code extractorId} or if
+   * it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @see Identifier#extractLong(Object)
    */
-  @Override
-  public String toString() {
-    final StringBuilder sb = new StringBuilder();
-
-    final Object name = this.getName();
-    if (name != null) {
-      sb.append(name);
-    }
-
-    final Object type = this.getType();
-    if (type != null) {
-      if (name != null) {
-        sb.append(" ");
-      }
-      sb.append("(");
-      sb.append(type);
-      sb.append(")");
-    }
-
-    return sb.toString();
+  public final long extractLong(final Object extractorId, final long sourceValue) {
+    return this.extractLong(this.extractorHandles.get(extractorId), extractorId, sourceValue);
   }
 
   /**
-   * Returns a {@link URI} suitable for the supplied {@code value}, or
-   * {@code null} if the supplied {@code value} could not be returned
-   * either as a {@link URI} directly or wrapped by one.
+   * Uses the {@link Extractor} {@linkplain #getExtractor(Object)
+   * indexed under the supplied <code>extractorId</code>} to extract a
+   * {@code long} sub-value from the supplied {@code int} {@code
+   * sourceValue}.
    *
-   * <p>In almost all cases this method will return {@linkplain
+   * <p>If the {@link Extractor} is an {@link IntToIntExtractor}, then
+   * it is called directly and nothing is boxed.  Otherwise {@code
+   * sourceValue} is boxed into an {@link Integer}, handed to the
+   * {@link Extractor}'s {@link Extractor#extractFrom(Object)
+   * extractFrom(Object)} method, and the resulting {@link Number} is
+   * unboxed.  This {@link IdType}'s {@linkplain #getType() type} is
+   * therefore expected to be {@link Integer}.</p>
+   *
+   * @param extractorId the identifier of the {@link Extractor} to
+   * use; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract
+   *
+   * @return the extraction
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} indexed under the supplied {@code extractorId} or if
+   * it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @see Identifier#extractLong(Object)
+   */
+  public final long extractLong(final Object extractorId, final int sourceValue) {
+    return this.extractLong(this.extractorHandles.get(extractorId), extractorId, sourceValue);
+  }
+
+  /**
+   * Uses the {@link Extractor} {@linkplain #getExtractor(Object)
+   * indexed under the supplied <code>extractorId</code>} to extract
+   * an {@code int} sub-value from the supplied {@code long} {@code
+   * sourceValue}.
+   *
+   * <p>This method behaves exactly like {@link #extractLong(Object,
+   * long)}, except that the extraction must fit in an {@code
+   * int}.</p>
+   *
+   * @param extractorId the identifier of the {@link Extractor} to
+   * use; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract
+   *
+   * @return the extraction
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} indexed under the supplied {@code extractorId} or if
+   * it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @exception ArithmeticException if the extraction does not fit in
+   * an {@code int}
+   *
+   * @see Identifier#extractInt(Object)
+   */
+  public final int extractInt(final Object extractorId, final long sourceValue) {
+    return Math.toIntExact(this.extractLong(this.extractorHandles.get(extractorId), extractorId, sourceValue));
+  }
+
+  /**
+   * Uses the {@link Extractor} {@linkplain #getExtractor(Object)
+   * indexed under the supplied <code>extractorId</code>} to extract
+   * an {@code int} sub-value from the supplied {@code int} {@code
+   * sourceValue}.
+   *
+   * <p>This method behaves exactly like {@link #extractLong(Object,
+   * int)}, except that the extraction must fit in an {@code
+   * int}.</p>
+   *
+   * @param extractorId the identifier of the {@link Extractor} to
+   * use; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract
+   *
+   * @return the extraction
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} indexed under the supplied {@code extractorId} or if
+   * it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @exception ArithmeticException if the extraction does not fit in
+   * an {@code int}
+   *
+   * @see Identifier#extractInt(Object)
+   */
+  public final int extractInt(final Object extractorId, final int sourceValue) {
+    return Math.toIntExact(this.extractLong(this.extractorHandles.get(extractorId), extractorId, sourceValue));
+  }
+
+  /**
+   * Extracts a {@code long} sub-value from the value of the supplied
+   * {@link Identifier} using either the supplied {@link
+   * ExtractorHandle} or, if it is {@code null}, the {@link Extractor}
+   * {@linkplain #getExtractor(Object) indexed under the supplied
+   * <code>key</code>}, without boxing wherever possible.
+   *
+   * <p>{@link LongIdentifier}s and {@link IntIdentifier}s are
+   * extracted from by way of their primitive values.  {@link
+   * CharSequence} values are handed directly to {@link
+   * CharSequenceToLongExtractor}s.</p>
+   *
+   * @param handle the {@link ExtractorHandle} referring to the {@link
+   * Extractor} to use; may be {@code null}
+   *
+   * @param key the key under which the {@link Extractor} to use is
+   * indexed; must be equal to the {@linkplain ExtractorHandle#getKey()
+   * key} of {@code handle} if {@code handle} is not {@code null}; used
+   * to look up the {@link Extractor} if {@code handle} is {@code null}
+   * or was issued by some other {@link IdType}
+   *
+   * @param identifier the {@link Identifier} whose value will be
+   * extracted from; must not be {@code null}
+   *
+   * @return the extraction
+   *
+   * @exception NoSuchElementException if there is no such {@link
+   * Extractor} or if it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @see Identifier#extractLong(Object)
+   */
+  final long extractLong(final ExtractorHandle<W, P> handle, final Object key, final Identifier<W, P> identifier) {
+    final ExtractorHandle<W, P> ownHandle = this.ownHandle(handle, key);
+    if (identifier instanceof LongIdentifier) {
+      return this.extractLong(ownHandle, key, ((LongIdentifier<?>)identifier).getLongValue());
+    } else if (identifier instanceof IntIdentifier) {
+      return this.extractLong(ownHandle, key, ((IntIdentifier<?>)identifier).getIntValue());
+    }
+    return this.extractLongFromValue(ownHandle, key, identifier.getValue());
+  }
+
+  /**
+   * Returns the supplied {@link ExtractorHandle} if it was issued by
+   * this {@link IdType}, or else this {@link IdType}'s {@link
+   * ExtractorHandle} for the supplied key.
+   *
+   * @param handle an {@link ExtractorHandle}; may be {@code null}
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @return this {@link IdType}'s {@link ExtractorHandle} for {@code
+   * key}, or {@code null} if there is no {@link Extractor} indexed
+   * under it
+   */
+  final ExtractorHandle<W, P> ownHandle(final ExtractorHandle<W, P> handle, final Object key) {
+    return handle != null && handle.getIdType() == this ? handle : this.extractorHandles.get(key);
+  }
+
+  /**
+   * Extracts a {@code long} sub-value from the supplied value, which
+   * is widened rather than boxed if it is a {@link Long} or an {@link
+   * Integer}, and which is handed directly to a {@link
+   * CharSequenceToLongExtractor} if it is a {@link CharSequence}.
+   *
+   * @param ownHandle this {@link IdType}'s {@link ExtractorHandle} for
+   * the supplied key; may be {@code null} if there is no {@link
+   * Extractor} indexed under the supplied key
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param value the value from which to extract; may be {@code
+   * null}
+   *
+   * @return the extraction
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} or if it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   */
+  final long extractLongFromValue(final ExtractorHandle<W, P> ownHandle, final Object key, final W value) {
+    if (value instanceof Long) {
+      return this.extractLong(ownHandle, key, ((Long)value).longValue());
+    } else if (value instanceof Integer) {
+      return this.extractLong(ownHandle, key, ((Integer)value).intValue());
+    }
+    Extractor<W, P> extractor = null;
+    if (ownHandle != null) {
+      final int ordinal = ownHandle.getOrdinal();
+      extractor = this.extractorArray[ordinal];
+      if (this.extractorKinds[ordinal] == CHAR_SEQUENCE_TO_LONG && value instanceof CharSequence && !isObserved()) {
+        return ((CharSequenceToLongExtractor<?>)extractor).extractLong((CharSequence)value);
+      }
+    }
+    return toLong(key, this.extractBoxed(ownHandle, key, extractor, value));
+  }
+
+  /**
+   * Extracts a {@code long} sub-value from the supplied {@code long}
+   * using the {@link Extractor} referred to by the supplied {@link
+   * ExtractorHandle}, calling it directly if it is a {@link
+   * LongToLongExtractor} or a {@link LongToIntExtractor}.
+   *
+   * @param handle this {@link IdType}'s {@link ExtractorHandle} for
+   * the supplied key; may be {@code null} if there is no {@link
+   * Extractor} indexed under the supplied key
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract
+   *
+   * @return the extraction
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} or if it extracted {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  final long extractLong(final ExtractorHandle<W, P> handle, final Object key, final long sourceValue) {
+    Extractor<W, P> extractor = null;
+    if (handle != null) {
+      final int ordinal = handle.getOrdinal();
+      extractor = this.extractorArray[ordinal];
+      final byte kind = this.extractorKinds[ordinal];
+      if (kind != BOXED && !isObserved()) {
+        if (kind == LONG_TO_LONG) {
+          return ((LongToLongExtractor)extractor).extractLong(sourceValue);
+        } else if (kind == LONG_TO_INT) {
+          return ((LongToIntExtractor)extractor).extractInt(sourceValue);
+        }
+      }
+    }
+    return toLong(key, this.extractBoxed(handle, key, extractor, (W)Long.valueOf(sourceValue)));
+  }
+
+  /**
+   * Extracts a {@code long} sub-value from the supplied {@code int}
+   * using the {@link Extractor} referred to by the supplied {@link
+   * ExtractorHandle}, calling it directly if it is an {@link
+   * IntToIntExtractor}.
+   *
+   * @param handle this {@link IdType}'s {@link ExtractorHandle} for
+   * the supplied key; may be {@code null} if there is no {@link
+   * Extractor} indexed under the supplied key
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract
+   *
+   * @return the extraction
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} or if it extracted {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  final long extractLong(final ExtractorHandle<W, P> handle, final Object key, final int sourceValue) {
+    Extractor<W, P> extractor = null;
+    if (handle != null) {
+      final int ordinal = handle.getOrdinal();
+      extractor = this.extractorArray[ordinal];
+      if (this.extractorKinds[ordinal] == INT_TO_INT && !isObserved()) {
+        return ((IntToIntExtractor)extractor).extractInt(sourceValue);
+      }
+    }
+    return toLong(key, this.extractBoxed(handle, key, extractor, (W)Integer.valueOf(sourceValue)));
+  }
+
+  /**
+   * Applies the supplied {@link Extractor}, if there is one, to the
+   * supplied value by way of its {@link Extractor#extractFrom(Object)
+   * extractFrom(Object)} method, {@linkplain #observeExtractFrom(ExtractorHandle,
+   * Object, Extractor, Serializable) observing} the extraction if
+   * necessary.
+   *
+   * @param handle this {@link IdType}'s {@link ExtractorHandle} for
+   * the supplied key, if it is to hand; may be {@code null}
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param extractor the {@link Extractor} indexed under the supplied
+   * key; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract; may be {@code
+   * null}
+   *
+   * @return the extraction, or {@code null}
+   */
+  private final P extractBoxed(final ExtractorHandle<W, P> handle, final Object key, final Extractor<W, P> extractor, final W sourceValue) {
+    if (ExtractionMetrics.ENABLED || IdentifierEvents.isRecording()) {
+      return this.observeExtractFrom(handle, key, extractor, sourceValue);
+    }
+    return extractor == null ? null : extractor.extractFrom(sourceValue);
+  }
+
+
+
+  /*
+   * Bulk extraction methods.
+   */
+
+
+  /**
+   * Uses the {@link Extractor} {@linkplain #getExtractor(Object)
+   * indexed under the supplied <code>extractorId</code>} to extract a
+   * sub-value from each element of the supplied {@code values} array,
+   * storing each result in the corresponding element of the supplied
+   * {@code out} array.
+   *
+   * <p>The {@link Extractor} is looked up only once.  If there is no
+   * {@link Extractor} indexed under the supplied {@code extractorId},
+   * then the first {@code values.length} elements of {@code out} are
+   * set to {@code null}.</p>
+   *
+   * <p>If extractions are {@linkplain ExtractionMetrics metered} or
+   * {@linkplain IdentifierEvents recorded}, the array is recorded as
+   * one batch.</p>
+   *
+   * @param extractorId the identifier of the {@link Extractor} to
+   * use; may be {@code null}
+   *
+   * @param values the values from which to extract; must not be
+   * {@code null}; may contain {@code null} elements
+   *
+   * @param out the array into which extractions will be stored; must
+   * not be {@code null} and must be at least as long as {@code
+   * values}
+   *
+   * @exception IllegalArgumentException if either array is {@code
+   * null} or if {@code out} is shorter than {@code values}
+   *
+   * @see #extractFrom(Object, Serializable)
+   */
+  public final void extractFrom(final Object extractorId, final W[] values, final P[] out) {
+    checkArrays(values, out);
+    this.extractBatch(extractorId, this.getExtractor(extractorId), values, out, 0, values.length);
+  }
+
+  /**
+   * Uses the {@link Extractor} referred to by the supplied {@link
+   * ExtractorHandle} to extract a sub-value from each element of the
+   * supplied {@code values} array, storing each result in the
+   * corresponding element of the supplied {@code out} array.
+   *
+   * @param handle the {@link ExtractorHandle} referring to the {@link
+   * Extractor} to use; must not be {@code null}
+   *
+   * @param values the values from which to extract; must not be
+   * {@code null}; may contain {@code null} elements
+   *
+   * @param out the array into which extractions will be stored; must
+   * not be {@code null} and must be at least as long as {@code
+   * values}
+   *
+   * @exception IllegalArgumentException if any parameter is {@code
+   * null} or if {@code out} is shorter than {@code values}
+   *
+   * @see #extractFrom(ExtractorHandle, Serializable)
+   */
+  public final void extractFrom(final ExtractorHandle<W, P> handle, final W[] values, final P[] out) {
+    checkArrays(values, out);
+    this.extractBatch(handle.getKey(), this.getExtractor(handle), values, out, 0, values.length);
+  }
+
+  /**
+   * Uses the {@link Extractor} {@linkplain #getExtractor(Object)
+   * indexed under the supplied <code>extractorId</code>} to extract a
+   * sub-value from each element of the supplied {@code values} array
+   * in parallel, storing each result in the corresponding element of
+   * the supplied {@code out} array.
+   *
+   * <p>The work is divided evenly into contiguous ranges that are
+   * processed by the {@linkplain ForkJoinPool#commonPool() common
+   * <code>ForkJoinPool</code>}.  The {@link Extractor} in question
+   * must therefore be safe for use by multiple concurrent threads,
+   * which is normally the case.</p>
+
+   * <p>If extractions are {@linkplain ExtractionMetrics metered} or
+   * {@linkplain IdentifierEvents recorded}, each range is recorded as
+   * one batch.</p>
+   *
+   * @param extractorId the identifier of the {@link Extractor} to
+   * use; may be {@code null}
+   *
+   * @param values the values from which to extract; must not be
+   * {@code null}; may contain {@code null} elements
+   *
+   * @param out the array into which extractions will be stored; must
+   * not be {@code null} and must be at least as long as {@code
+   * values}
+   *
+   * @exception IllegalArgumentException if either array is {@code
+   * null} or if {@code out} is shorter than {@code values}
+   *
+   * @see #extractFrom(Object, Serializable[], Object[])
+   */
+  public final void parallelExtractFrom(final Object extractorId, final W[] values, final P[] out) {
+    checkArrays(values, out);
+    final Extractor<W, P> extractor = this.getExtractor(extractorId);
+    final int length = values.length;
+    final ForkJoinPool pool = ForkJoinPool.commonPool();
+    final int threshold = Math.max(MINIMUM_PARALLEL_RANGE, length / (pool.getParallelism() * 8));
+    if (length <= threshold) {
+      this.extractBatch(extractorId, extractor, values, out, 0, length);
+    } else {
+      pool.invoke(new ExtractionTask<W, P>(this, extractorId, extractor, values, out, 0, length, threshold));
+    }
+  }
+
+  /**
+   * Returns an {@link Iterable} that lazily applies the {@link
+   * Extractor} {@linkplain #getExtractor(Object) indexed under the
+   * supplied <code>extractorId</code>} to each element of the
+   * supplied {@link Iterable}.
+   *
+   * <p>The {@link Extractor} is looked up only once, when this method
+   * is called.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param extractorId the identifier of the {@link Extractor} to
+   * use; may be {@code null}
+   *
+   * @param values the values from which to extract; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link Iterable} of extractions, each
+   * of which may be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code values} is {@code
+   * null}
+   */
+  public final Iterable<P> extractEach(final Object extractorId, final Iterable<? extends W> values) {
+    if (values == null) {
+      throw new IllegalArgumentException("values", new NullPointerException("values"));
+    }
+    final Extractor<W, P> extractor = this.getExtractor(extractorId);
+    return new Iterable<P>() {
+      @Override
+      public final Iterator<P> iterator() {
+        final Iterator<? extends W> iterator = values.iterator();
+        return new Iterator<P>() {
+          @Override
+          public final boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public final P next() {
+            return extractBoxed(null, extractorId, extractor, iterator.next());
+          }
+
+          @Override
+          public final void remove() {
+            iterator.remove();
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link Stream} that applies the {@link Extractor}
+   * {@linkplain #getExtractor(Object) indexed under the supplied
+   * <code>extractorId</code>} to each element of the supplied {@link
+   * Stream}.
+   *
+   * <p>The {@link Extractor} is looked up only once, when this method
+   * is called.  The returned {@link Stream} is parallel if and only
+   * if the supplied {@link Stream} is, and splits exactly as well as
+   * the supplied {@link Stream}'s {@link Spliterator} does.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param extractorId the identifier of the {@link Extractor} to
+   * use; may be {@code null}
+   *
+   * @param values the values from which to extract; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link Stream} of extractions, each of
+   * which may be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code values} is {@code
+   * null}
+   */
+  public final Stream<P> extractEach(final Object extractorId, final Stream<? extends W> values) {
+    if (values == null) {
+      throw new IllegalArgumentException("values", new NullPointerException("values"));
+    }
+    final Extractor<W, P> extractor = this.getExtractor(extractorId);
+    return values.map(value -> this.extractBoxed(null, extractorId, extractor, value));
+  }
+
+  /**
+   * Returns the {@link Extractor} referred to by the supplied {@link
+   * ExtractorHandle}, or {@code null}.
+   *
+   * @param handle the {@link ExtractorHandle}; must not be {@code
+   * null}
+   *
+   * @return the {@link Extractor}, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
+   *
+   * @see #extractFrom(ExtractorHandle, Serializable)
+   */
+  private final Extractor<W, P> getExtractor(final ExtractorHandle<W, P> handle) {
+    if (handle == null) {
+      throw new IllegalArgumentException("handle", new NullPointerException("handle"));
+    }
+    if (handle.getIdType() == this) {
+      return this.extractorArray[handle.getOrdinal()];
+    }
+    return this.getExtractor(handle.getKey());
+  }
+
+  /**
+   * Applies the supplied {@link Extractor}, if there is one, to the
+   * supplied value while {@linkplain IdentifierEvents emitting a
+   * flight recorder event} and {@linkplain ExtractionMetrics
+   * recording metrics} as appropriate.
+   *
+   * <p>This method is called only if {@link ExtractionMetrics#ENABLED
+   * metrics are enabled} or {@linkplain IdentifierEvents#isRecording()
+   * a flight recording is running}.</p>
+   *
+   * @param handle this {@link IdType}'s {@link ExtractorHandle} for
+   * the supplied key, if it is to hand; may be {@code null}
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param extractor the {@link Extractor} indexed under the supplied
+   * key; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract; may be {@code
+   * null}
+   *
+   * @return the extraction, or {@code null}
+   */
+  private final P observeExtractFrom(final ExtractorHandle<W, P> handle, final Object key, final Extractor<W, P> extractor, final W sourceValue) {
+    if (IdentifierEvents.isRecording()) {
+      return IdentifierEvents.extractFrom(this, handle, key, extractor, sourceValue);
+    }
+    return this.recordExtractFrom(handle, key, extractor, sourceValue);
+  }
+
+  /**
+   * Applies the supplied {@link Extractor}, if there is one, to the
+   * supplied value, {@linkplain ExtractionMetrics recording} the
+   * extraction against this {@link IdType} and the supplied key if
+   * {@link ExtractionMetrics#ENABLED metrics are enabled}.
+   *
+   * @param handle this {@link IdType}'s {@link ExtractorHandle} for
+   * the supplied key, if it is to hand; may be {@code null}
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param extractor the {@link Extractor} indexed under the supplied
+   * key; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract; may be {@code
+   * null}
+   *
+   * @return the extraction, or {@code null}
+   */
+  final P recordExtractFrom(final ExtractorHandle<W, P> handle, final Object key, final Extractor<W, P> extractor, final W sourceValue) {
+    if (!ExtractionMetrics.ENABLED) {
+      return extractor == null ? null : extractor.extractFrom(sourceValue);
+    }
+    if (extractor == null) {
+      ExtractionMetrics.recordMiss(this, key);
+      return null;
+    }
+    return ExtractionMetrics.extractFrom(handle == null ? this.getExtractorHandle(key) : handle, extractor, sourceValue);
+  }
+
+  /**
+   * {@linkplain #extractRange(Extractor, Serializable[], Object[],
+   * int, int) Applies} the supplied {@link Extractor} to a range of
+   * the supplied values as one {@linkplain #observeBatch(Object,
+   * Extractor, Object[], int, int, Runnable) observed batch} if
+   * necessary.
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param extractor the {@link Extractor} indexed under the supplied
+   * key; may be {@code null}
+   *
+   * @param values the values from which to extract; must not be
+   * {@code null}
+   *
+   * @param out the array into which extractions will be stored; must
+   * not be {@code null}
+   *
+   * @param from the first index to process
+   *
+   * @param to one past the last index to process
+   */
+  private final void extractBatch(final Object key, final Extractor<W, P> extractor, final W[] values, final P[] out, final int from, final int to) {
+    if (isObserved()) {
+      this.observeBatch(key, extractor, out, from, to, () -> extractRange(extractor, values, out, from, to));
+    } else {
+      extractRange(extractor, values, out, from, to);
+    }
+  }
+
+  /**
+   * Runs the supplied batch of extractions, which must store its
+   * results in the supplied range of {@code out}, and {@linkplain
+   * ExtractionMetrics#recordBatch(IdType, Object, boolean, int, int,
+   * long) records} it, and {@linkplain
+   * IdentifierEvents#endExtraction(Object, IdType, Object, boolean,
+   * int, int) emits a flight recorder event} for it, as a whole.
+   *
+   * <p>Bulk extraction methods call this method, in place of
+   * {@linkplain #observeExtractFrom(ExtractorHandle, Object,
+   * Extractor, Serializable) observing} each extraction, only if
+   * extractions are {@linkplain #isObserved() observed}.</p>
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param extractor the {@link Extractor} indexed under the supplied
+   * key; may be {@code null}
+   *
+   * @param out the array into which {@code batch} stores extractions;
+   * must not be {@code null}
+   *
+   * @param from the first index {@code batch} stores into
+   *
+   * @param to one past the last index {@code batch} stores into
+   *
+   * @param batch the extractions; must not be {@code null}
+   */
+  final void observeBatch(final Object key, final Extractor<W, P> extractor, final Object[] out, final int from, final int to, final Runnable batch) {
+    final Object timer = IdentifierEvents.isRecording() ? IdentifierEvents.beginExtraction() : null;
+    final long start = System.nanoTime();
+    batch.run();
+    final long nanos = System.nanoTime() - start;
+    int nulls = 0;
+    if (extractor != null) {
+      for (int i = from; i < to; i++) {
+        if (out[i] == null) {
+          nulls++;
+        }
+      }
+    }
+    if (ExtractionMetrics.ENABLED) {
+      ExtractionMetrics.recordBatch(this, key, extractor == null, to - from, nulls, nanos);
+    }
+    if (timer != null) {
+      IdentifierEvents.endExtraction(timer, this, key, extractor == null, to - from, nulls);
+    }
+  }
+
+
+  /*
+   * Hashcode and equality methods.
+   */
+
+
+  /**
+   * Returns a hashcode for this {@link IdType}.
+   *
+   * <p>The hashcode is derived from this {@link IdType}'s {@linkplain
+   * #getFingerprint() fingerprint}, so this method does no work
+   * beyond a field read.</p>
+   *
+   * @return a hashcode for this {@link IdType}
+   */
+  @Override
+  public int hashCode() {
+    return this.hashCode;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Object} is equal to
+   * this {@link IdType}.
+   *
+   * @param other the {@link Object} to test; may be {@code null}
+   *
+   * @return {@code true} if the supplied {@link Object} is equal to
+   * this {@link IdType}; {@code false} otherwise
+   */
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this) {
+      return true;
+    } else if (other != null && this.getClass().equals(other.getClass())) {
+      final IdType<?, ?> him = (IdType<?, ?>)other;
+
+      // Check fingerprints; if they differ the IdTypes cannot be
+      // equal
+      if (this.fingerprint != him.fingerprint) {
+        return false;
+      }
+
+      // Check names
+      final Object name = this.getName();
+      if (name == null) {
+        if (him.getName() != null) {
+          return false;
+        }
+      } else if (!name.equals(him.getName())) {
+        return false;
+      }
+
+      // Check data types
+      final Object type = this.getType();
+      if (type == null) {
+        if (him.getType() != null) {
+          return false;
+        }
+      } else if (!type.equals(him.getType())) {
+        return false;
+      }
+
+      // Check extractors      
+      if (!this.extractors.equals(him.extractors)) {
+        return false;
+      }
+      
+      // All tests passed
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+
+  /*
+   * Formatting and representation methods.
+   */
+
+
+  /**
+   * Returns a non-{@code null} {@link String} representation of this
+   * {@link IdType}.
+   *
+   * <p>The representation is rendered once, when this {@link IdType}
+   * is {@linkplain #initialize() initialized}, and the same {@link
+   * String} is returned thereafter.</p>
+   *
+   * @return a non-{@code null} {@link String} representation of this
+   * {@link IdType}
+   */
+  @Override
+  public String toString() {
+    return this.string;
+  }
+
+  /**
+   * Returns the UTF-8 encoding of this {@link IdType}'s {@linkplain
+   * #toString() <code>String</code> representation} followed by
+   * {@code ": "}, which is how every {@linkplain
+   * Identifier#writeTo(java.nio.ByteBuffer) encoded
+   * <code>Identifier</code>} of this {@link IdType} begins.
+   *
+   * <p>The array is computed once, on first use, and shared
+   * thereafter; callers must not modify it.</p>
+   *
+   * @return the encoded prefix; never {@code null}
+   *
+   * @see IdentifierFormatter
+   */
+  final byte[] getPrefixBytes() {
+    byte[] returnValue = this.prefixBytes;
+    if (returnValue == null) {
+      returnValue = (this.toString() + ": ").getBytes(StandardCharsets.UTF_8);
+      this.prefixBytes = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the UTF-8 encoding of this {@link IdType}'s {@linkplain
+   * #getName() name}&mdash;or nothing, if it has none&mdash;followed
+   * by {@code ':'}, which is how every {@link Identifier} of this
+   * {@link IdType} begins in the {@linkplain IdentifierParser compact
+   * form}.
+   *
+   * <p>The array is computed once, on first use, and shared
+   * thereafter; callers must not modify it.</p>
+   *
+   * @return the encoded prefix; never {@code null}
+   *
+   * @see IdentifierFormatter
+   */
+  final byte[] getCompactPrefixBytes() {
+    byte[] returnValue = this.compactPrefixBytes;
+    if (returnValue == null) {
+      returnValue = ((this.name == null ? "" : this.name) + ":").getBytes(StandardCharsets.UTF_8);
+      this.compactPrefixBytes = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link URI} suitable for the supplied {@code value}, or
+   * {@code null} if the supplied {@code value} could not be returned
+   * either as a {@link URI} directly or wrapped by one.
+   *
+   * <p>In almost all cases this method will return {@linkplain
    * URI#isAbsolute() relative} {@link URI}s, since normally the
    * identity of an object is independent of where or how that object
    * is stored.</p>
@@ -508,6 +1719,200 @@ public class IdType<W extends Serializable, P> implements Serializable {
     }
   }
 
+  /**
+   * Returns a URN identifying the supplied {@code value} as a value
+   * of this {@link IdType}, or {@code null} if {@code value} is
+   * {@code null}.
+   *
+   * <p>The URN has the form {@code urn:}<em>name</em>{@code
+   * :}<em>value</em>, where <em>name</em> is this {@link IdType}'s
+   * {@linkplain #getName() name} (or nothing, if it has none) and
+   * <em>value</em> is the value's {@linkplain Object#toString()
+   * <code>String</code> representation}.  Both are percent-encoded
+   * as UTF-8 in a single pass, leaving only unreserved characters,
+   * sub-delimiters, {@code '@'} and&mdash;in the value
+   * only&mdash;{@code ':'} and {@code '/'} as they are.  The value of
+   * the URN's {@linkplain URI#getSchemeSpecificPart() scheme-specific
+   * part} is therefore always <em>name</em>{@code :}<em>value</em>,
+   * and the URN may be {@linkplain IdentifierParser#parseURI(URI)
+   * parsed} back into an {@link Identifier}.</p>
+   *
+   * <p>Unlike {@link #toURI(Serializable)}, this method never fails
+   * because of the characters a value contains.</p>
+   *
+   * <p>Subclasses may override this method, but must ensure that the
+   * URN it returns depends only on the supplied {@code value}, since
+   * {@link Identifier#toURN()} caches it.</p>
+   *
+   * @param value the value; may be {@code null} in which case {@code
+   * null} will be returned
+   *
+   * @return a URN, or {@code null}
+   *
+   * @see Identifier#toURN()
+   *
+   * @see IdentifierParser#parseURI(URI)
+   */
+  public URI toURN(final W value) {
+    if (value == null) {
+      return null;
+    }
+    String urnPrefix = this.urnPrefix;
+    if (urnPrefix == null) {
+      final String name = this.getName() == null ? "" : this.getName();
+      final char[] chars = new char[5 + 9 * name.length()];
+      "urn:".getChars(0, 4, chars, 0);
+      int length = IdentifierFormatter.percentEncode(name, 0, true, chars, 4);
+      chars[length++] = ':';
+      urnPrefix = new String(chars, 0, length);
+      this.urnPrefix = urnPrefix;
+    }
+    final String s;
+    if (value instanceof Long || value instanceof Integer) {
+      s = urnPrefix + value;
+    } else {
+      final String v = value.toString();
+      final int safe = IdentifierFormatter.safeLength(v, false);
+      if (safe == v.length()) {
+        s = urnPrefix.concat(v);
+      } else {
+        // Nine characters per character is the worst case: three
+        // percent-encoded UTF-8 bytes.
+        final int prefixLength = urnPrefix.length();
+        final char[] chars = new char[prefixLength + safe + 9 * (v.length() - safe)];
+        urnPrefix.getChars(0, prefixLength, chars, 0);
+        v.getChars(0, safe, chars, prefixLength);
+        s = new String(chars, 0, IdentifierFormatter.percentEncode(v, safe, false, chars, prefixLength + safe));
+      }
+    }
+    return URI.create(s);
+  }
+
+  /**
+   * Returns the {@linkplain #toURN(Serializable) URN} of the supplied
+   * {@link Identifier}, which must have this {@link IdType}, from
+   * this {@link IdType}'s cache if possible.
+   *
+   * <p>The cache is direct-mapped: each {@link Identifier} has
+   * exactly one slot, determined by its {@linkplain
+   * Identifier#hashCode() hashcode}, and a newly computed URN
+   * displaces whatever was in its slot.  Because slots are matched
+   * by {@linkplain Identifier#getValue() value}, on which alone the
+   * URN depends, the cache serves equal {@link Identifier}s that are
+   * distinct objects&mdash;such as those rebuilt for every
+   * request&mdash;as well as the same {@link Identifier} rendered
+   * repeatedly.  The cache holds no reference to any {@link
+   * Identifier}.</p>
+   *
+   * <p>Each filled slot retains a small entry, the value and the
+   * {@link URI}: about 300 bytes for a value of a dozen or so
+   * characters or digits, and more for longer values.  A full cache
+   * of the default 1024 slots therefore retains about 300 to 350
+   * kilobytes per {@link IdType}.  The cache is allocated only when an
+   * {@link Identifier} of this {@link IdType} is first rendered, and
+   * {@link #URN_CACHE_SIZE_PROPERTY} bounds it.</p>
+   *
+   * @param id the {@link Identifier}; must not be {@code null}
+   *
+   * @return the URN of {@code id}, or {@code null} if it has no
+   * {@linkplain Identifier#getValue() value}
+   *
+   * @see #URN_CACHE_SIZE
+   */
+  final URI toURN(final Identifier<W, P> id) {
+    if (URN_CACHE_SIZE == 0) {
+      return this.toURN(id.getValue());
+    }
+    URNEntry[] cache = this.urnCache;
+    if (cache == null) {
+      cache = new URNEntry[URN_CACHE_SIZE];
+      this.urnCache = cache;
+    }
+    int h = id.hashCode();
+    h ^= h >>> 16;
+    final int slot = h & (cache.length - 1);
+    final URNEntry entry = cache[slot];
+    if (entry != null && entry.hashCode == h && id.hasValue(entry.value)) {
+      return entry.urn;
+    }
+    final W value = id.getValue();
+    final URI returnValue = this.toURN(value);
+    if (returnValue != null) {
+      cache[slot] = new URNEntry(h, value, returnValue);
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Serialization methods.
+   */
+
+
+  /**
+   * Returns the object that will be serialized in place of this
+   * {@link IdType}.
+   *
+   * <p>Instances of exactly {@link IdType}, {@link StringIdType},
+   * {@link LongIdType} and {@link IntegerIdType} are replaced with a
+   * compact proxy that writes only their {@linkplain #getName() name}
+   * and {@link Extractor}s, and that resolves to the {@linkplain
+   * IdTypeRegistry#intern(IdType) canonical} instance upon
+   * deserialization.  Instances of other subclasses, whose state this
+   * class cannot know about, are serialized normally.</p>
+   *
+   * @return the object to serialize; never {@code null}
+   *
+   * @exception ObjectStreamException if an error occurs
+   */
+  protected Object writeReplace() throws ObjectStreamException {
+    if (IdTypeProxy.supports(this)) {
+      return new IdTypeProxy(this);
+    }
+    return this;
+  }
+
+  /**
+   * Restores this {@link IdType}'s persistent state from the supplied
+   * {@link ObjectInputStream} and recomputes its derived state.
+   *
+   * @param in the {@link ObjectInputStream} to read from; must not be
+   * {@code null}
+   *
+   * @exception IOException if an error occurs
+   *
+   * @exception ClassNotFoundException if a class could not be found
+   */
+  private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    if (this.type == null) {
+      throw new InvalidObjectException("type");
+    }
+    this.initialize();
+  }
+
+  /**
+   * Returns the {@linkplain IdTypeRegistry#intern(IdType) canonical}
+   * {@link IdType} that is {@linkplain #equals(Object) equal to} this
+   * one upon deserialization.
+   *
+   * @return the canonical {@link IdType} that is {@linkplain
+   * #equals(Object) equal to} this one; never {@code null}
+   *
+   * @exception ObjectStreamException if an error occurs
+   *
+   * @see IdTypeRegistry#intern(IdType)
+   */
+  protected Object readResolve() throws ObjectStreamException {
+    return IdTypeRegistry.getInstance().intern(this);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
   /**
    * Returns a non-{@code null} {@link IdType} whose {@linkplain
    * #getType() type} is equal&mdash;but not necessarily
@@ -517,6 +1922,11 @@ public class IdType<W extends Serializable, P> implements Serializable {
    * {@link Extractor} map is equal&mdash;but not necessarily
    * identical&mdash;to the supplied {@link Extractor} {@link Map}.
    *
+   * <p>The {@link IdType} returned is {@linkplain
+   * IdTypeRegistry#intern(IdType) canonical}, so repeated invocations
+   * of this method with equal arguments will return the same {@link
+   * IdType} instance.</p>
+   *
    * @param <X> the ({@link Serializable}) type of {@linkplain
    * Identifier#getValue() value} that {@link Identifier}s {@linkplain
    * Identifier#getIdType() with the <code>IdType</code> returned by
@@ -549,8 +1959,291 @@ public class IdType<W extends Serializable, P> implements Serializable {
    * null}
    */
   public static final <X extends Serializable, Y> IdType<X, Y> valueOf(final Class<X> type, final String name, final Map<Object, Extractor<X, Y>> extractors) {
-    return new IdType<X, Y>(type, name, extractors);
+    return IdTypeRegistry.getInstance().intern(new IdType<X, Y>(type, name, extractors));
+  }
+
+  /**
+   * Ensures that the supplied arrays are suitable for bulk
+   * extraction.
+   *
+   * <p>This method is shared by the bulk extraction methods of this
+   * class and its subclasses, whose arrays may be arrays of
+   * primitives.</p>
+   *
+   * @param values the array of values from which to extract
+   *
+   * @param out the array into which extractions will be stored
+   *
+   * @exception IllegalArgumentException if either array is {@code
+   * null} or if {@code out} is shorter than {@code values}
+   */
+  static final void checkArrays(final Object values, final Object out) {
+    if (values == null) {
+      throw new IllegalArgumentException("values", new NullPointerException("values"));
+    }
+    if (out == null) {
+      throw new IllegalArgumentException("out", new NullPointerException("out"));
+    }
+    final int valuesLength = Array.getLength(values);
+    final int outLength = Array.getLength(out);
+    if (outLength < valuesLength) {
+      throw new IllegalArgumentException("out.length < values.length: " + outLength + " < " + valuesLength);
+    }
+  }
+
+  /**
+   * Applies the supplied {@link Extractor} to the elements of {@code
+   * values} between {@code from} (inclusive) and {@code to}
+   * (exclusive), storing each result in the corresponding element of
+   * {@code out}.
+   *
+   * <p>{@link StringExtractor}s are handled by a dedicated loop so
+   * that the call site within it remains monomorphic no matter how
+   * many other kinds of {@link Extractor} pass through this
+   * method.</p>
+   *
+   * @param extractor the {@link Extractor} to apply; may be {@code
+   * null} in which case the range of {@code out} will be set to
+   * {@code null}
+   *
+   * @param values the values from which to extract; must not be
+   * {@code null}
+   *
+   * @param out the array into which extractions will be stored; must
+   * not be {@code null}
+   *
+   * @param from the first index to process
+   *
+   * @param to one past the last index to process
+   */
+  static final <W extends Serializable, P> void extractRange(final Extractor<W, P> extractor, final W[] values, final P[] out, final int from, final int to) {
+    if (extractor == null) {
+      for (int i = from; i < to; i++) {
+        out[i] = null;
+      }
+    } else if (extractor.getClass() == StringExtractor.class) {
+      final StringExtractor stringExtractor = (StringExtractor)extractor;
+      final Object[] stringOut = out;
+      for (int i = from; i < to; i++) {
+        stringOut[i] = stringExtractor.extractFrom((String)values[i]);
+      }
+    } else {
+      for (int i = from; i < to; i++) {
+        out[i] = extractor.extractFrom(values[i]);
+      }
+    }
+  }
+
+  /**
+   * Returns the {@linkplain #extractorKinds kind} of the supplied
+   * {@link Extractor}.
+   *
+   * @param extractor the {@link Extractor} to classify; may be {@code
+   * null}
+   *
+   * @return one of {@link #BOXED}, {@link #LONG_TO_LONG}, {@link
+   * #LONG_TO_INT}, {@link #INT_TO_INT} or {@link
+   * #CHAR_SEQUENCE_TO_LONG}
+   */
+  private static final byte kind(final Extractor<?, ?> extractor) {
+    if (extractor instanceof LongToLongExtractor) {
+      return LONG_TO_LONG;
+    } else if (extractor instanceof LongToIntExtractor) {
+      return LONG_TO_INT;
+    } else if (extractor instanceof IntToIntExtractor) {
+      return INT_TO_INT;
+    } else if (extractor instanceof CharSequenceToLongExtractor) {
+      return CHAR_SEQUENCE_TO_LONG;
+    } else {
+      return BOXED;
+    }
+  }
+
+  /**
+   * Returns {@code true} if extractions must currently be {@linkplain
+   * #observeExtractFrom(ExtractorHandle, Object, Extractor,
+   * Serializable) observed}, either because {@linkplain
+   * ExtractionMetrics#ENABLED metrics are enabled} or because a flight
+   * recording has {@linkplain IdentifierEvents#isExtractionEnabled()
+   * enabled extraction events}.
+   *
+   * <p>Primitive extractions are performed without boxing, and bulk
+   * extractions without being {@linkplain #observeBatch(Object,
+   * Extractor, Object[], int, int, Runnable) timed as a batch}, only
+   * when this method returns {@code false}.</p>
+   *
+   * @return {@code true} if extractions must be observed
+   */
+  static final boolean isObserved() {
+    return ExtractionMetrics.ENABLED || IdentifierEvents.isExtractionEnabled();
+  }
+
+  /**
+   * Unboxes the supplied extraction, which must be a {@link Number},
+   * into a {@code long}.
+   *
+   * @param key the extractor key that produced the extraction; used
+   * only in error messages; may be {@code null}
+   *
+   * @param extraction the extraction; may be {@code null}
+   *
+   * @return the {@code long} value of the supplied extraction
+   *
+   * @exception NoSuchElementException if {@code extraction} is {@code
+   * null}
+   *
+   * @exception ClassCastException if {@code extraction} is not a
+   * {@link Number}
+   */
+  private static final long toLong(final Object key, final Object extraction) {
+    if (extraction == null) {
+      throw new NoSuchElementException(String.valueOf(key));
+    }
+    return ((Number)extraction).longValue();
+  }
+
+  /**
+   * Folds the characters of the supplied {@link CharSequence} into
+   * the supplied 64-bit FNV-1a {@code hash} and returns the result.
+   *
+   * @param hash the hash to fold into
+   *
+   * @param s the {@link CharSequence} to fold; may be {@code null}
+   *
+   * @return the new hash
+   */
+  private static final long fingerprint(long hash, final CharSequence s) {
+    if (s == null) {
+      hash ^= 0xFFL;
+      hash *= FNV_PRIME;
+    } else {
+      final int length = s.length();
+      for (int i = 0; i < length; i++) {
+        final char c = s.charAt(i);
+        hash ^= c & 0xFF;
+        hash *= FNV_PRIME;
+        hash ^= c >>> 8;
+        hash *= FNV_PRIME;
+      }
+      // Terminate so that ("ab", "c") and ("a", "bc") differ.
+      hash ^= 0xFEL;
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Thoroughly mixes the bits of the supplied 64-bit value and
+   * returns the result.
+   *
+   * <p>This is the 64-bit finalization step of MurmurHash3.</p>
+   *
+   * @param h the value to mix
+   *
+   * @return the mixed value
+   */
+  private static final long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An immutable pairing of an {@link Identifier}'s {@linkplain
+   * Identifier#getValue() value} with its {@linkplain
+   * IdType#toURN(Serializable) URN}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see IdType#toURN(Identifier)
+   */
+  private static final class URNEntry {
+
+    /**
+     * The spread {@linkplain Identifier#hashCode() hashcode} of the
+     * {@link Identifier} whose value this {@link URNEntry} holds.
+     */
+    private final int hashCode;
+
+    private final Object value;
+
+    private final URI urn;
+
+    private URNEntry(final int hashCode, final Object value, final URI urn) {
+      super();
+      this.hashCode = hashCode;
+      this.value = value;
+      this.urn = urn;
+    }
+
   }
 
+  /**
+   * A {@link RecursiveAction} that applies an {@link Extractor} to a
+   * range of an array of values by recursively splitting the range
+   * in half until it is no larger than a threshold.
+   *
+   * @param <W> the type of value being extracted from
+   *
+   * @param <P> the type of extraction
+   *
+   * @see #parallelExtractFrom(Object, Serializable[], Object[])
+   */
+  private static final class ExtractionTask<W extends Serializable, P> extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IdType<W, P> idType;
+
+    private final Object key;
+
+    private final Extractor<W, P> extractor;
+
+    private final W[] values;
+
+    private final P[] out;
+
+    private final int from;
+
+    private final int to;
+
+    private final int threshold;
+
+    private ExtractionTask(final IdType<W, P> idType, final Object key, final Extractor<W, P> extractor, final W[] values, final P[] out, final int from, final int to, final int threshold) {
+      super();
+      this.idType = idType;
+      this.key = key;
+      this.extractor = extractor;
+      this.values = values;
+      this.out = out;
+      this.from = from;
+      this.to = to;
+      this.threshold = threshold;
+    }
+
+    @Override
+    protected final void compute() {
+      final int from = this.from;
+      final int to = this.to;
+      if (to - from <= this.threshold) {
+        this.idType.extractBatch(this.key, this.extractor, this.values, this.out, from, to);
+      } else {
+        final int middle = (from + to) >>> 1;
+        invokeAll(new ExtractionTask<W, P>(this.idType, this.key, this.extractor, this.values, this.out, from, middle, this.threshold),
+                  new ExtractionTask<W, P>(this.idType, this.key, this.extractor, this.values, this.out, middle, to, this.threshold));
+      }
+    }
+
+  }
 
 }
@@ -0,0 +1,415 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Externalizable;
+import java.io.InvalidObjectException;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact serialized form for {@link IdType}s of the four classes
+ * that ship with this package.
+ *
+ * <p>Rather than the default serialized form, which includes the
+ * class descriptors and internal structure of {@link IdType}'s
+ * {@link Map} of {@link Extractor}s, an {@link IdTypeProxy} writes a
+ * one-byte kind, the {@linkplain IdType#getName() name}, and the
+ * {@link Extractor}s in {@linkplain ExtractorHandle#getOrdinal()
+ * ordinal} order, writing {@link StringExtractor}s and {@link
+ * StringSliceExtractor}s as bare pairs of integers, and {@link
+ * BitFieldExtractor}s and {@link IntBitFieldExtractor}s as bare
+ * offsets, widths and signedness flags.  Upon
+ * deserialization the {@link IdType} is rebuilt and {@linkplain
+ * IdTypeRegistry#intern(IdType) resolved to its canonical
+ * instance}.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see IdType#writeReplace()
+ */
+final class IdTypeProxy implements Externalizable {
+
+  /**
+   * The version of this class for {@linkplain Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The version of the format written by {@link
+   * #writeExternal(ObjectOutput)}.
+   */
+  private static final byte VERSION = 1;
+
+  private static final byte ID_TYPE = 0;
+
+  private static final byte STRING_ID_TYPE = 1;
+
+  private static final byte LONG_ID_TYPE = 2;
+
+  private static final byte INTEGER_ID_TYPE = 3;
+
+  private static final byte STRING_EXTRACTOR = 1;
+
+  private static final byte STRING_SLICE_EXTRACTOR = 2;
+
+  private static final byte BIT_FIELD_EXTRACTOR = 3;
+
+  private static final byte INT_BIT_FIELD_EXTRACTOR = 4;
+
+  private static final byte OTHER = 0;
+
+  private static final byte STRING = 1;
+
+  private static final byte LONG = 2;
+
+  private static final byte INTEGER = 3;
+
+  private static final byte NULL = 4;
+
+  /**
+   * The longest {@link String} that is guaranteed to be writable with
+   * {@link ObjectOutput#writeUTF(String)}, whose encoding of any
+   * single {@code char} occupies at most three bytes and whose
+   * maximum encoded length is 65535 bytes.
+   */
+  private static final int MAXIMUM_UTF_LENGTH = 65535 / 3;
+
+  /**
+   * The {@link IdType} being written, or the {@link IdType} that has
+   * been read.
+   */
+  private IdType<?, ?> idType;
+
+  /**
+   * Creates a new {@link IdTypeProxy} for use by the serialization
+   * machinery only.
+   */
+  public IdTypeProxy() {
+    super();
+  }
+
+  /**
+   * Creates a new {@link IdTypeProxy}.
+   *
+   * @param idType the {@link IdType} to be written; must not be
+   * {@code null} and must be {@linkplain #supports(IdType) supported}
+   */
+  IdTypeProxy(final IdType<?, ?> idType) {
+    super();
+    assert supports(idType);
+    this.idType = idType;
+  }
+
+  @Override
+  public final void writeExternal(final ObjectOutput out) throws IOException {
+    final IdType<?, ?> idType = this.idType;
+    out.writeByte(VERSION);
+    final byte kind = kindOf(idType);
+    out.writeByte(kind);
+    if (kind == ID_TYPE) {
+      writeType(out, idType.getType());
+    }
+    writeString(out, idType.getName());
+    final List<? extends ExtractorHandle<?, ?>> handles = idType.getExtractorHandles();
+    final int size = handles.size();
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      final Object key = handles.get(i).getKey();
+      out.writeObject(key);
+      final Extractor<?, ?> extractor = idType.getExtractor(key);
+      if (extractor != null && extractor.getClass() == StringExtractor.class) {
+        final StringExtractor stringExtractor = (StringExtractor)extractor;
+        out.writeByte(STRING_EXTRACTOR);
+        out.writeInt(stringExtractor.getInclusiveStart());
+        out.writeInt(stringExtractor.getExclusiveEnd());
+      } else if (extractor != null && extractor.getClass() == StringSliceExtractor.class) {
+        final StringSliceExtractor stringSliceExtractor = (StringSliceExtractor)extractor;
+        out.writeByte(STRING_SLICE_EXTRACTOR);
+        out.writeInt(stringSliceExtractor.getInclusiveStart());
+        out.writeInt(stringSliceExtractor.getExclusiveEnd());
+      } else if (extractor != null && extractor.getClass() == BitFieldExtractor.class) {
+        final BitFieldExtractor bitFieldExtractor = (BitFieldExtractor)extractor;
+        out.writeByte(BIT_FIELD_EXTRACTOR);
+        out.writeByte(bitFieldExtractor.getOffset());
+        out.writeByte(bitFieldExtractor.getWidth());
+        out.writeBoolean(bitFieldExtractor.isSigned());
+      } else if (extractor != null && extractor.getClass() == IntBitFieldExtractor.class) {
+        final IntBitFieldExtractor intBitFieldExtractor = (IntBitFieldExtractor)extractor;
+        out.writeByte(INT_BIT_FIELD_EXTRACTOR);
+        out.writeByte(intBitFieldExtractor.getOffset());
+        out.writeByte(intBitFieldExtractor.getWidth());
+        out.writeBoolean(intBitFieldExtractor.isSigned());
+      } else {
+        out.writeByte(OTHER);
+        out.writeObject(extractor);
+      }
+    }
+  }
+
+  @Override
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public final void readExternal(final ObjectInput in) throws ClassNotFoundException, IOException {
+    final byte version = in.readByte();
+    if (version != VERSION) {
+      throw new InvalidObjectException("Unsupported version: " + version);
+    }
+    final byte kind = in.readByte();
+    final Class type;
+    switch (kind) {
+    case ID_TYPE:
+      type = readType(in);
+      break;
+    case STRING_ID_TYPE:
+      type = String.class;
+      break;
+    case LONG_ID_TYPE:
+      type = Long.class;
+      break;
+    case INTEGER_ID_TYPE:
+      type = Integer.class;
+      break;
+    default:
+      throw new InvalidObjectException("Unsupported kind: " + kind);
+    }
+    final String name = readString(in);
+    final int size = in.readInt();
+    if (size < 0) {
+      throw new InvalidObjectException("size: " + size);
+    }
+    final Map extractors = new LinkedHashMap();
+    for (int i = 0; i < size; i++) {
+      final Object key = in.readObject();
+      final byte extractorKind = in.readByte();
+      final Object extractor;
+      switch (extractorKind) {
+      case STRING_EXTRACTOR:
+        extractor = new StringExtractor(in.readInt(), in.readInt());
+        break;
+      case STRING_SLICE_EXTRACTOR:
+        extractor = new StringSliceExtractor(in.readInt(), in.readInt());
+        break;
+      case BIT_FIELD_EXTRACTOR:
+        extractor = readBitFieldExtractor(in, false);
+        break;
+      case INT_BIT_FIELD_EXTRACTOR:
+        extractor = readBitFieldExtractor(in, true);
+        break;
+      case OTHER:
+        extractor = in.readObject();
+        if (extractor != null && !(extractor instanceof Extractor)) {
+          throw new InvalidObjectException("Not an Extractor: " + extractor);
+        }
+        break;
+      default:
+        throw new InvalidObjectException("Unsupported extractor kind: " + extractorKind);
+      }
+      extractors.put(key, extractor);
+    }
+    final IdType idType;
+    switch (kind) {
+    case STRING_ID_TYPE:
+      idType = new StringIdType(name, extractors);
+      break;
+    case LONG_ID_TYPE:
+      idType = new LongIdType(name, extractors);
+      break;
+    case INTEGER_ID_TYPE:
+      idType = new IntegerIdType(name, extractors);
+      break;
+    default:
+      idType = new IdType(type, name, extractors);
+      break;
+    }
+    this.idType = idType;
+  }
+
+  /**
+   * Returns the {@linkplain IdTypeRegistry#intern(IdType) canonical}
+   * {@link IdType} equal to the one that was read.
+   *
+   * @return the canonical {@link IdType}; never {@code null}
+   *
+   * @exception ObjectStreamException if an error occurs
+   */
+  private Object readResolve() throws ObjectStreamException {
+    if (this.idType == null) {
+      throw new InvalidObjectException("idType");
+    }
+    return IdTypeRegistry.getInstance().intern(this.idType);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied {@link IdType} can be
+   * written by an {@link IdTypeProxy}.
+   *
+   * @param idType the {@link IdType} in question; may be {@code null}
+   *
+   * @return {@code true} if the supplied {@link IdType} can be
+   * written by an {@link IdTypeProxy}; {@code false} otherwise
+   */
+  static final boolean supports(final IdType<?, ?> idType) {
+    return idType != null && kindOf(idType) >= 0;
+  }
+
+  private static final byte kindOf(final IdType<?, ?> idType) {
+    final Class<?> c = idType.getClass();
+    if (c == IdType.class) {
+      return ID_TYPE;
+    } else if (c == StringIdType.class) {
+      return STRING_ID_TYPE;
+    } else if (c == LongIdType.class) {
+      return LONG_ID_TYPE;
+    } else if (c == IntegerIdType.class) {
+      return INTEGER_ID_TYPE;
+    } else {
+      return -1;
+    }
+  }
+
+  private static final Extractor<?, ?> readBitFieldExtractor(final ObjectInput in, final boolean intBitField) throws IOException {
+    final int offset = in.readByte();
+    final int width = in.readByte();
+    final boolean signed = in.readBoolean();
+    try {
+      if (intBitField) {
+        return new IntBitFieldExtractor(offset, width, signed);
+      }
+      return new BitFieldExtractor(offset, width, signed);
+    } catch (final IllegalArgumentException e) {
+      final InvalidObjectException throwMe = new InvalidObjectException(e.getMessage());
+      throwMe.initCause(e);
+      throw throwMe;
+    }
+  }
+
+  private static final void writeType(final ObjectOutput out, final Class<?> type) throws IOException {
+    if (type == String.class) {
+      out.writeByte(STRING);
+    } else if (type == Long.class) {
+      out.writeByte(LONG);
+    } else if (type == Integer.class) {
+      out.writeByte(INTEGER);
+    } else {
+      out.writeByte(OTHER);
+      out.writeObject(type);
+    }
+  }
+
+  private static final Class<?> readType(final ObjectInput in) throws ClassNotFoundException, IOException {
+    final byte tag = in.readByte();
+    switch (tag) {
+    case STRING:
+      return String.class;
+    case LONG:
+      return Long.class;
+    case INTEGER:
+      return Integer.class;
+    case OTHER:
+      final Object type = in.readObject();
+      if (!(type instanceof Class)) {
+        throw new InvalidObjectException("Not a Class: " + type);
+      }
+      return (Class<?>)type;
+    default:
+      throw new InvalidObjectException("Unsupported type tag: " + tag);
+    }
+  }
+
+  /**
+   * Writes the supplied {@link String}, which may be {@code null},
+   * compactly.
+   *
+   * @param out the {@link ObjectOutput} to write to; must not be
+   * {@code null}
+   *
+   * @param s the {@link String} to write; may be {@code null}
+   *
+   * @exception IOException if an error occurs
+   *
+   * @see #readString(ObjectInput)
+   */
+  private static final void writeString(final ObjectOutput out, final String s) throws IOException {
+    if (s == null) {
+      out.writeByte(NULL);
+    } else if (s.length() <= MAXIMUM_UTF_LENGTH) {
+      out.writeByte(STRING);
+      out.writeUTF(s);
+    } else {
+      out.writeByte(OTHER);
+      out.writeObject(s);
+    }
+  }
+
+  /**
+   * Reads a {@link String} written by {@link
+   * #writeString(ObjectOutput, String)}.
+   *
+   * @param in the {@link ObjectInput} to read from; must not be
+   * {@code null}
+   *
+   * @return the {@link String}, or {@code null}
+   *
+   * @exception ClassNotFoundException if a class could not be found
+   *
+   * @exception IOException if an error occurs
+   */
+  private static final String readString(final ObjectInput in) throws ClassNotFoundException, IOException {
+    final byte tag = in.readByte();
+    switch (tag) {
+    case NULL:
+      return null;
+    case STRING:
+      return in.readUTF();
+    case OTHER:
+      final Object s = in.readObject();
+      if (!(s instanceof String)) {
+        throw new InvalidObjectException("Not a String: " + s);
+      }
+      return (String)s;
+    default:
+      throw new InvalidObjectException("Unsupported string tag: " + tag);
+    }
+  }
+
+}
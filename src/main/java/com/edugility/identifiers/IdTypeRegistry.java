@@ -0,0 +1,283 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A registry of canonical {@link IdType} instances.
+ *
+ * <p>{@link IdType}s are immutable value objects, and there are
+ * normally very few distinct ones in any given application, but
+ * there may be many millions of {@link Identifier}s that refer to
+ * them.  An {@link IdTypeRegistry} ensures that all {@link
+ * IdType}s that are {@linkplain IdType#equals(Object) equal} to one
+ * another&mdash;that is, that share the same {@link Class}, the same
+ * {@linkplain IdType#getType() type}, the same {@linkplain
+ * IdType#getName() name} and the same {@link Extractor}s&mdash;can
+ * be represented by a single shared instance.</p>
+ *
+ * <p>Lookups of already-registered {@link IdType}s never block.  The
+ * {@linkplain IdType#valueOf(Class, String, Map) static factory
+ * methods} of {@link IdType} and its subclasses, as well as {@link
+ * IdType}'s deserialization machinery, all route through the
+ * {@linkplain #getInstance() default <code>IdTypeRegistry</code>}.</p>
+ *
+ * <p>{@link IdType}s, once registered, are never removed.</p>
+ *
+ * <p>This class is safe for use by multiple concurrent threads.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #intern(IdType)
+ *
+ * @see IdType#valueOf(Class, String, Map)
+ */
+public class IdTypeRegistry {
+
+  /**
+   * The default {@link IdTypeRegistry}.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #getInstance()
+   */
+  private static final IdTypeRegistry INSTANCE = new IdTypeRegistry();
+
+  /**
+   * A {@link ConcurrentMap} of canonical {@link IdType}s indexed by
+   * themselves.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<IdType<?, ?>, IdType<?, ?>> idTypes;
+
+  /**
+   * For each of {@link StringIdType}, {@link LongIdType} and {@link
+   * IntegerIdType}, a {@link ConcurrentMap} of the canonical
+   * instances of that exact class that have no {@link Extractor}s,
+   * indexed by name.
+   *
+   * <p>This field is never {@code null}.  It lets {@link
+   * #getNamed(Class, String)} find such an {@link IdType} without
+   * first constructing an equal one to look it up by.</p>
+   */
+  private final Map<Class<?>, ConcurrentMap<String, IdType<?, ?>>> named;
+
+  /**
+   * The number of {@link IdType}s ever registered with this {@link
+   * IdTypeRegistry}, incremented after each is registered.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #getVersion()
+   */
+  private final AtomicInteger version;
+
+  /**
+   * Creates a new, empty {@link IdTypeRegistry}.
+   *
+   * <p>Most callers will want to use the {@linkplain #getInstance()
+   * default <code>IdTypeRegistry</code>} instead.</p>
+   *
+   * @see #getInstance()
+   */
+  public IdTypeRegistry() {
+    super();
+    this.idTypes = new ConcurrentHashMap<IdType<?, ?>, IdType<?, ?>>();
+    this.version = new AtomicInteger();
+    final Map<Class<?>, ConcurrentMap<String, IdType<?, ?>>> named = new HashMap<Class<?>, ConcurrentMap<String, IdType<?, ?>>>();
+    named.put(StringIdType.class, new ConcurrentHashMap<String, IdType<?, ?>>());
+    named.put(LongIdType.class, new ConcurrentHashMap<String, IdType<?, ?>>());
+    named.put(IntegerIdType.class, new ConcurrentHashMap<String, IdType<?, ?>>());
+    this.named = Collections.unmodifiableMap(named);
+  }
+
+  /**
+   * Returns the canonical {@link IdType} that is {@linkplain
+   * IdType#equals(Object) equal to} the supplied {@link IdType},
+   * registering the supplied {@link IdType} as the canonical instance
+   * if no such {@link IdType} has been registered yet.
+   *
+   * <p>This method never returns {@code null} and never blocks if an
+   * equal {@link IdType} has already been registered.</p>
+   *
+   * @param <T> the type of {@link IdType} to intern
+   *
+   * @param idType the {@link IdType} to intern; must not be {@code
+   * null}
+   *
+   * @return the canonical {@link IdType} equal to the supplied {@code
+   * idType}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null}
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends IdType<?, ?>> T intern(final T idType) {
+    if (idType == null) {
+      throw new IllegalArgumentException("idType", new NullPointerException("idType"));
+    }
+    IdType<?, ?> returnValue = this.idTypes.get(idType);
+    if (returnValue == null) {
+      returnValue = this.idTypes.putIfAbsent(idType, idType);
+      if (returnValue == null) {
+        returnValue = idType;
+        final ConcurrentMap<String, IdType<?, ?>> named = this.named.get(idType.getClass());
+        final String name = idType.getName();
+        if (named != null && name != null && idType.getExtractorKeys().isEmpty()) {
+          named.putIfAbsent(name, idType);
+        }
+        this.version.incrementAndGet();
+      }
+    }
+    // IdType#equals(Object) guarantees that the two IdTypes share the
+    // same Class, so this cast is safe.
+    return (T)returnValue;
+  }
+
+  /**
+   * Returns the canonical instance of exactly the supplied class,
+   * which must be {@link StringIdType}, {@link LongIdType} or {@link
+   * IntegerIdType}, that has the supplied name and no {@link
+   * Extractor}s, or {@code null} if there is none yet.
+   *
+   * <p>This method does not allocate, and lets the {@code valueOf}
+   * methods of those classes construct an {@link IdType} only when
+   * none has been {@linkplain #intern(IdType) interned} yet.</p>
+   *
+   * @param <T> the type of {@link IdType} to return
+   *
+   * @param idTypeClass the class of the {@link IdType}; must not be
+   * {@code null}
+   *
+   * @param name the name of the {@link IdType}; may be {@code null}
+   * in which case {@code null} will be returned
+   *
+   * @return the canonical {@link IdType}, or {@code null}
+   *
+   * @see StringIdType#valueOf(String)
+   */
+  @SuppressWarnings("unchecked")
+  final <T extends IdType<?, ?>> T getNamed(final Class<?> idTypeClass, final String name) {
+    final ConcurrentMap<String, IdType<?, ?>> named = this.named.get(idTypeClass);
+    if (named == null || name == null) {
+      return null;
+    }
+    return (T)named.get(name);
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link IdType} is the
+   * canonical instance registered with this {@link IdTypeRegistry}.
+   *
+   * @param idType the {@link IdType} to test; may be {@code null} in
+   * which case {@code false} will be returned
+   *
+   * @return {@code true} if the supplied {@link IdType} is the
+   * canonical instance registered with this {@link IdTypeRegistry};
+   * {@code false} otherwise
+   */
+  public boolean isCanonical(final IdType<?, ?> idType) {
+    return idType != null && this.idTypes.get(idType) == idType;
+  }
+
+  /**
+   * Returns the number of canonical {@link IdType}s registered with
+   * this {@link IdTypeRegistry}.
+   *
+   * @return the number of canonical {@link IdType}s registered with
+   * this {@link IdTypeRegistry}
+   */
+  public int size() {
+    return this.idTypes.size();
+  }
+
+  /**
+   * Returns a number that changes whenever an {@link IdType} is
+   * registered with this {@link IdTypeRegistry}.
+   *
+   * <p>An {@link IdType} is registered before the number changes, so
+   * a caller that reads the number and then {@linkplain #getIdTypes()
+   * reads the registered <code>IdType</code>s} has seen at least
+   * every {@link IdType} registered before the number it read.</p>
+   *
+   * @return the current version
+   *
+   * @see IdentifierParser
+   */
+  final int getVersion() {
+    return this.version.get();
+  }
+
+  /**
+   * Returns an unmodifiable, live view of the canonical {@link
+   * IdType}s registered with this {@link IdTypeRegistry}.
+   *
+   * <p>This method never returns {@code null}.  Iterating over the
+   * {@link Collection} that is returned never blocks and never throws
+   * a {@link java.util.ConcurrentModificationException}; it may or may
+   * not reflect {@link IdType}s registered while the iteration is in
+   * progress.</p>
+   *
+   * @return a non-{@code null} {@link Collection} of canonical {@link
+   * IdType}s
+   *
+   * @see IdentifierParser
+   */
+  public Collection<IdType<?, ?>> getIdTypes() {
+    return Collections.unmodifiableCollection(this.idTypes.values());
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the default {@link IdTypeRegistry}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the default {@link IdTypeRegistry}; never {@code null}
+   */
+  public static final IdTypeRegistry getInstance() {
+    return INSTANCE;
+  }
+
+}
@@ -27,12 +27,18 @@
  */
 package com.edugility.identifiers;
 
+import java.io.IOException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 import java.net.URI;
 import java.net.URISyntaxException;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 import java.util.Collections;
+import java.util.NoSuchElementException; // for javadoc only
 import java.util.Set;
 
 /**
@@ -71,12 +77,24 @@ public class Identifier<W extends Serializable, P> implements Serializable {
 
   /**
    * The value of this {@link Identifier}.  This field is never {@code
-   * null}.
+   * null} unless a subclass {@linkplain #Identifier(IdType) stores
+   * its value in some other form} and overrides {@link #getValue()}.
    *
    * @see #getValue()
    */
   private final W value;
 
+  /**
+   * A cached hashcode for this {@link Identifier}, or {@code 0} if
+   * it has not yet been computed.
+   *
+   * <p>As with {@link String#hashCode()}, this field is written
+   * racily but idempotently, so no synchronization is needed.</p>
+   *
+   * @see #hashCode()
+   */
+  private transient int hashCode;
+
   /**
    * Creates a new {@link Identifier}.
    *
@@ -100,6 +118,41 @@ public class Identifier<W extends Serializable, P> implements Serializable {
     }
     this.idType = idType;
     this.value = value;
+    if (IdentifierEvents.isRecording()) {
+      // Only the Class is handed over, so that this Identifier does
+      // not escape before any subclass constructor has run.
+      IdentifierEvents.created(idType, this.getClass());
+    }
+  }
+
+  /**
+   * Creates a new {@link Identifier} on behalf of a subclass that
+   * stores its value in some other form (such as a primitive), and
+   * that therefore overrides the {@link #getValue()} method.
+   *
+   * @param idType the {@link IdType} that defines everything about
+   * this {@link Identifier} except its actual {@linkplain #getValue()
+   * value}; must not be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null}
+   *
+   * @see LongIdentifier
+   *
+   * @see IntIdentifier
+   */
+  protected Identifier(final IdType<W, P> idType) {
+    super();
+    if (idType == null) {
+      throw new IllegalArgumentException("idType", new NullPointerException("idType"));
+    }
+    this.idType = idType;
+    this.value = null;
+    if (IdentifierEvents.isRecording()) {
+      // Only the Class is handed over, so that this Identifier does
+      // not escape before any subclass constructor has run.
+      IdentifierEvents.created(idType, this.getClass());
+    }
   }
 
   /**
@@ -117,8 +170,13 @@ public class Identifier<W extends Serializable, P> implements Serializable {
 
   /**
    * Returns the non-{@code null} value of this {@link Identifier}.
+   *
+   * <p>Subclasses that store their value in some other form must
+   * override this method.</p>
+   *
+   * @return the non-{@code null} value of this {@link Identifier}
    */
-  public final W getValue() {
+  public W getValue() {
     return this.value;
   }
 
@@ -151,6 +209,210 @@ public class Identifier<W extends Serializable, P> implements Serializable {
     return returnValue;
   }
 
+  /**
+   * Extracts a sub-value from this {@link Identifier}'s {@linkplain
+   * #getValue() full value} using the {@link Extractor} referred to
+   * by the supplied {@link ExtractorHandle} and returns the result.
+   *
+   * <p>{@link ExtractorHandle}s are {@linkplain
+   * IdType#getExtractorHandle(Object) resolved once} from an {@link
+   * IdType}; using one avoids the hash table lookup that {@link
+   * #extractFrom(Object)} performs.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param handle the {@link ExtractorHandle} referring to the {@link
+   * Extractor} to use; must not be {@code null}
+   *
+   * @return the sub-value, or {@code null} if no such sub-value could
+   * be extracted for any reason
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
+   *
+   * @see IdType#getExtractorHandle(Object)
+   *
+   * @see IdType#extractFrom(ExtractorHandle, Serializable)
+   */
+  public final P extractFrom(final ExtractorHandle<W, P> handle) {
+    return this.getIdType().extractFrom(handle, this.getValue());
+  }
+
+  /**
+   * Extracts a {@code long} sub-value from this {@link Identifier}'s
+   * {@linkplain #getValue() full value} using the {@linkplain
+   * IdType#getExtractor(Object) <code>Extractor</code> indexed under
+   * the supplied <code>extractorKey</code>} and returns the result.
+   *
+   * <p>If the {@link Extractor} is a {@link LongToLongExtractor}, a
+   * {@link LongToIntExtractor}, an {@link IntToIntExtractor} or a
+   * {@link CharSequenceToLongExtractor} that applies to this {@link
+   * Identifier}'s value, then it is called directly: a {@link
+   * LongIdentifier} or {@link IntIdentifier} is never boxed, and
+   * neither is the extraction.  Any other {@link Extractor} is called
+   * by way of its {@link Extractor#extractFrom(Object)
+   * extractFrom(Object)} method and must extract a {@link
+   * Number}.</p>
+   *
+   * @param extractorKey the {@linkplain #getExtractorKeys() key}
+   * under which an {@linkplain IdType#getExtractor(Object)
+   * <code>IdType</code>'s affiliated <code>Extractor</code>} might be
+   * found; may be {@code null}
+   *
+   * @return the sub-value
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} indexed under the supplied {@code extractorKey} or if
+   * it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @see IdType#extractLong(Object, long)
+   */
+  public final long extractLong(final Object extractorKey) {
+    return this.getIdType().extractLong(null, extractorKey, this);
+  }
+
+  /**
+   * Extracts a {@code long} sub-value from this {@link Identifier}'s
+   * {@linkplain #getValue() full value} using the {@link Extractor}
+   * referred to by the supplied {@link ExtractorHandle} and returns
+   * the result.
+   *
+   * <p>This method behaves exactly like {@link
+   * #extractLong(Object)}, except that it avoids the hash table
+   * lookup that method performs.</p>
+   *
+   * @param handle the {@link ExtractorHandle} referring to the {@link
+   * Extractor} to use; must not be {@code null}
+   *
+   * @return the sub-value
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} referred to by the supplied {@code handle} or if it
+   * extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @see #extractLong(Object)
+   */
+  public final long extractLong(final ExtractorHandle<W, P> handle) {
+    if (handle == null) {
+      throw new IllegalArgumentException("handle", new NullPointerException("handle"));
+    }
+    return this.getIdType().extractLong(handle, handle.getKey(), this);
+  }
+
+  /**
+   * Extracts an {@code int} sub-value from this {@link Identifier}'s
+   * {@linkplain #getValue() full value} using the {@linkplain
+   * IdType#getExtractor(Object) <code>Extractor</code> indexed under
+   * the supplied <code>extractorKey</code>} and returns the result.
+   *
+   * <p>This method behaves exactly like {@link
+   * #extractLong(Object)}, except that the extraction must fit in an
+   * {@code int}.</p>
+   *
+   * @param extractorKey the {@linkplain #getExtractorKeys() key}
+   * under which an {@linkplain IdType#getExtractor(Object)
+   * <code>IdType</code>'s affiliated <code>Extractor</code>} might be
+   * found; may be {@code null}
+   *
+   * @return the sub-value
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} indexed under the supplied {@code extractorKey} or if
+   * it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @exception ArithmeticException if the extraction does not fit in
+   * an {@code int}
+   *
+   * @see #extractLong(Object)
+   */
+  public final int extractInt(final Object extractorKey) {
+    return Math.toIntExact(this.getIdType().extractLong(null, extractorKey, this));
+  }
+
+  /**
+   * Extracts an {@code int} sub-value from this {@link Identifier}'s
+   * {@linkplain #getValue() full value} using the {@link Extractor}
+   * referred to by the supplied {@link ExtractorHandle} and returns
+   * the result.
+   *
+   * <p>This method behaves exactly like {@link
+   * #extractLong(ExtractorHandle)}, except that the extraction must
+   * fit in an {@code int}.</p>
+   *
+   * @param handle the {@link ExtractorHandle} referring to the {@link
+   * Extractor} to use; must not be {@code null}
+   *
+   * @return the sub-value
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} referred to by the supplied {@code handle} or if it
+   * extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @exception ArithmeticException if the extraction does not fit in
+   * an {@code int}
+   *
+   * @see #extractLong(ExtractorHandle)
+   */
+  public final int extractInt(final ExtractorHandle<W, P> handle) {
+    return Math.toIntExact(this.extractLong(handle));
+  }
+
+  /**
+   * Extracts every sub-value that this {@link Identifier}'s
+   * {@linkplain #getIdType() affiliated <code>IdType</code>} knows
+   * how to extract from this {@link Identifier}'s {@linkplain
+   * #getValue() full value}, and returns them in a new {@link
+   * Extraction}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new {@link Extraction}; never {@code null}
+   *
+   * @see IdType#extractAll(Serializable, Extraction)
+   */
+  public final Extraction<W, P> extractAll() {
+    return this.getIdType().extractAll(this.getValue(), null);
+  }
+
+  /**
+   * Extracts every sub-value that this {@link Identifier}'s
+   * {@linkplain #getIdType() affiliated <code>IdType</code>} knows
+   * how to extract from this {@link Identifier}'s {@linkplain
+   * #getValue() full value}, and stores them in the supplied,
+   * reusable {@link Extraction}, which is then returned.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param target the {@link Extraction} to populate; may be {@code
+   * null} in which case a new {@link Extraction} will be created and
+   * returned
+   *
+   * @return the populated {@link Extraction}; never {@code null}
+   *
+   * @see IdType#extractAll(Serializable, Extraction)
+   */
+  public final Extraction<W, P> extractAll(final Extraction<W, P> target) {
+    return this.getIdType().extractAll(this.getValue(), target);
+  }
+
   /**
    * Returns all {@linkplain IdType#getExtractorKeys() known keys}
    * under which this {@link Identifier}'s {@linkplain #getIdType()
@@ -158,9 +420,7 @@ public class Identifier<W extends Serializable, P> implements Serializable {
    *
    * <p>This method never returns {@code null} and the {@link Set}
    * that is returned is {@linkplain Collections#unmodifiableSet(Set)
-   * immutable} and a clone of the actual {@link Set} that is stored
-   * by the {@linkplain #getIdType() affiliated
-   * <code>IdType</code>}.</p>
+   * immutable}.</p>
    *
    * @return a non-{@code null} {@link Set} of extractor keys
    *
@@ -183,11 +443,36 @@ public class Identifier<W extends Serializable, P> implements Serializable {
    * Returns a hashcode for this {@link Identifier} factoring in its
    * {@linkplain #getValue() value} and its {@link #getIdType()
    * IdType}.
+   *
+   * <p>The hashcode is computed once and cached thereafter.  {@link
+   * Identifier}s are presumed to be immutable, so {@linkplain
+   * #getValue() values} whose own hashcodes may change over time are
+   * not suitable.</p>
    * 
    * @return a hashcode for this {@link Identifier}
    */
   @Override
   public int hashCode() {
+    int hashCode = this.hashCode;
+    if (hashCode == 0) {
+      hashCode = this.computeHashCode();
+      this.hashCode = hashCode;
+    }
+    return hashCode;
+  }
+
+  /**
+   * Computes the hashcode that the {@link #hashCode()} method caches.
+   *
+   * <p>Subclasses that store their {@linkplain #getValue() value} in
+   * some other form may override this method to compute the same
+   * result without boxing.</p>
+   *
+   * @return a hashcode for this {@link Identifier}
+   *
+   * @see #hashCode()
+   */
+  int computeHashCode() {
     int hashCode = 17;
     int c;
 
@@ -222,7 +507,17 @@ public class Identifier<W extends Serializable, P> implements Serializable {
     if (other == this) {
       return true;
     } else if (other != null && other.getClass().equals(this.getClass())) {
-      final Identifier him = (Identifier)other;
+      final Identifier<?, ?> him = (Identifier<?, ?>)other;
+
+      // If both hashcodes have already been computed and they differ
+      // then the Identifiers cannot be equal.
+      final int hashCode = this.hashCode;
+      if (hashCode != 0) {
+        final int hisHashCode = him.hashCode;
+        if (hisHashCode != 0 && hashCode != hisHashCode) {
+          return false;
+        }
+      }
 
       final Object value = this.getValue();
       if (value == null) {
@@ -233,13 +528,16 @@ public class Identifier<W extends Serializable, P> implements Serializable {
         return false;
       }
 
+      // Canonical IdTypes (see IdTypeRegistry) are very often
+      // identical, so check that first.
       final Object idType = this.getIdType();
-      if (idType == null) {
-        if (him.getIdType() != null) {
+      final Object hisIdType = him.getIdType();
+      if (idType != hisIdType) {
+        if (idType == null) {
+          return false;
+        } else if (!idType.equals(hisIdType)) {
           return false;
         }
-      } else if (!idType.equals(him.getIdType())) {
-        return false;
       }
 
       return true;
@@ -248,31 +546,107 @@ public class Identifier<W extends Serializable, P> implements Serializable {
     }
   }
 
+  /**
+   * Returns {@code true} if this {@link Identifier}'s {@linkplain
+   * #getValue() value} is equal to the supplied {@link Object}.
+   *
+   * <p>Subclasses that store their value in some other form override
+   * this method so that it does not box.</p>
+   *
+   * @param value the {@link Object} to test; may be {@code null}
+   *
+   * @return {@code true} if this {@link Identifier}'s value is equal
+   * to {@code value}; {@code false} otherwise
+   */
+  boolean hasValue(final Object value) {
+    final W myValue = this.getValue();
+    return myValue == value || (myValue != null && myValue.equals(value));
+  }
+
   /**
    * Returns a non-{@code null} {@link String} representation of this
    * {@link Identifier}.
    *
+   * <p>The representation consists of the {@linkplain
+   * IdType#toString() <code>String</code> representation} of this
+   * {@link Identifier}'s {@link IdType}, followed by {@code ": "} and
+   * its {@linkplain #getValue() value}.</p>
+   *
    * @return a non-{@code null} {@link String} representation of this
    * {@link Identifier}
+   *
+   * @see #writeTo(Appendable)
    */
   @Override
   public String toString() {
-    final StringBuilder sb = new StringBuilder();
-    
-    final Object idType = this.getIdType();
-    if (idType != null) {
-      sb.append(idType);
+    final StringBuilder sb = new StringBuilder(this.getIdType().toString().length() + 24);
+    try {
+      this.writeTo(sb);
+    } catch (final IOException cannotHappen) {
+      throw new IllegalStateException(cannotHappen);
     }
+    return sb.toString();
+  }
 
-    final Object value = this.getValue();
-    if (value != null) {
-      if (idType != null) {
-        sb.append(": ");
-      }
-      sb.append(value);
+  /**
+   * Appends the characters of this {@link Identifier}'s {@linkplain
+   * #toString() <code>String</code> representation} to the supplied
+   * {@link Appendable} without building that {@link String}.
+   *
+   * <p>The {@linkplain IdType#toString() <code>IdType</code>'s
+   * representation} is rendered once per {@link IdType}, and {@link
+   * String}, {@link Long} and {@link Integer} values&mdash;including
+   * those of {@link LongIdentifier}s and {@link
+   * IntIdentifier}s&mdash;are appended without any intermediate
+   * objects.  Other values are appended using their {@link
+   * Object#toString() toString()} methods.</p>
+   *
+   * @param out the {@link Appendable} to write to; must not be {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code out} is {@code
+   * null}
+   *
+   * @exception IOException if {@code out} throws one
+   *
+   * @see IdentifierFormatter
+   */
+  public final void writeTo(final Appendable out) throws IOException {
+    if (out == null) {
+      throw new IllegalArgumentException("out", new NullPointerException("out"));
     }
+    IdentifierFormatter.append(this, out, false);
+  }
 
-    return sb.toString();
+  /**
+   * Puts the UTF-8 encoding of this {@link Identifier}'s {@linkplain
+   * #toString() <code>String</code> representation} into the supplied
+   * {@link ByteBuffer} at its current {@linkplain
+   * ByteBuffer#position() position}, which is advanced past it.
+   *
+   * <p>As with {@link #writeTo(Appendable)}, no intermediate objects
+   * are created for {@link String}, {@link Long} or {@link Integer}
+   * values.</p>
+   *
+   * @param buffer the {@link ByteBuffer} to write to; must not be
+   * {@code null}
+   *
+   * @exception IllegalArgumentException if {@code buffer} is {@code
+   * null}
+   *
+   * @exception BufferOverflowException if there is not enough room in
+   * {@code buffer}, in which case nothing will have been written to
+   * it and its position will be unchanged
+   *
+   * @see IdentifierFormatter
+   */
+  public final void writeTo(final ByteBuffer buffer) {
+    if (buffer == null) {
+      throw new IllegalArgumentException("buffer", new NullPointerException("buffer"));
+    }
+    if (!IdentifierFormatter.encode(this, buffer, false)) {
+      throw new BufferOverflowException();
+    }
   }
 
   /**
@@ -291,11 +665,70 @@ public class Identifier<W extends Serializable, P> implements Serializable {
     URI returnValue = null;
     final IdType<W, P> idType = this.getIdType();
     if (idType != null) {
-      returnValue = idType.toURI(this.getValue());
+      if (IdentifierEvents.isRecording()) {
+        returnValue = IdentifierEvents.toURI(idType, this.getValue());
+      } else {
+        returnValue = idType.toURI(this.getValue());
+      }
     }
     return returnValue;
   }
 
+  /**
+   * Returns a URN identifying this {@link Identifier}, of the form
+   * {@code urn:}<em>name</em>{@code :}<em>value</em>, or {@code null}
+   * if it has no {@linkplain #getValue() value}.
+   *
+   * <p>URNs are rendered by {@link IdType#toURN(Serializable)} and
+   * cached by the {@link IdType} in a small direct-mapped cache keyed
+   * by {@linkplain #getValue() value}, so rendering the same or an
+   * {@linkplain #equals(Object) equal} {@link Identifier} again
+   * normally costs only a lookup.  The cache retains values and
+   * URNs, never {@link Identifier}s; a full cache costs a few hundred
+   * kilobytes per {@link IdType}.  The size of each cache is set by
+   * the {@code com.edugility.identifiers.urnCacheSize} system
+   * property; it defaults to {@code 1024} and {@code 0} disables
+   * caching.</p>
+   *
+   * @return a URN, or {@code null}
+   *
+   * @see IdType#toURN(Serializable)
+   *
+   * @see IdentifierParser#parseURI(URI)
+   */
+  public final URI toURN() {
+    return this.getIdType().toURN(this);
+  }
+
+
+  /*
+   * Serialization methods.
+   */
+
+
+  /**
+   * Returns the object that will be serialized in place of this
+   * {@link Identifier}.
+   *
+   * <p>{@link LongIdentifier}s, {@link IntIdentifier}s and
+   * instances of exactly {@link Identifier} whose values are {@link
+   * Long}s or {@link Integer}s are replaced with a compact form that
+   * writes the value as a bare primitive.  All other {@link
+   * Identifier}s are serialized normally; their {@link IdType}s
+   * {@linkplain IdType#writeReplace() take care of themselves}.</p>
+   *
+   * @return the object to serialize; never {@code null}
+   *
+   * @exception ObjectStreamException if an error occurs
+   */
+  protected Object writeReplace() throws ObjectStreamException {
+    final Object replacement = IdentifierProxy.replacementFor(this);
+    if (replacement != null) {
+      return replacement;
+    }
+    return this;
+  }
+
   
   /*
    * Static methods.
@@ -0,0 +1,1109 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compact binary format for streams of {@link Identifier}s, with
+ * an {@link Encoder} that writes it and a {@link Decoder} that reads
+ * it.
+ *
+ * <p>A stream begins with a four-byte magic number and a one-byte
+ * version.  It is followed by records, each of which begins with an
+ * unsigned variable-length integer <em>tag</em> whose low three bits
+ * hold the record's <em>form</em> and whose remaining bits hold the
+ * index of an {@link IdType} in the stream's dictionary:</p>
+ *
+ * <ul>
+ *
+ * <li>The first time an {@link IdType} is encountered, a
+ * <em>definition</em> record assigns it the next dictionary index.
+ * Its body is the {@link IdType}, Java-serialized, since its {@link
+ * Extractor}s may be of any class.  Each {@link IdType} is therefore
+ * written only once per stream.</li>
+ *
+ * <li>{@link Long} and {@link Integer} values, whether held by an
+ * {@link Identifier}, a {@link LongIdentifier} or an {@link
+ * IntIdentifier}, are written as zigzag-encoded variable-length
+ * integers, so small values of either sign occupy few bytes.</li>
+ *
+ * <li>{@link String} values, whether held by an {@link Identifier}
+ * or a {@link StringId}, are written as a variable-length byte count
+ * followed by the value's UTF-8 encoding.</li>
+ *
+ * <li>Any other {@link Identifier} is written as a length-prefixed,
+ * Java-serialized blob.</li>
+ *
+ * </ul>
+ *
+ * <p>A {@link Decoder} deserializes only instances of a short list
+ * of classes: {@link IdType}s, {@link Identifier}s and {@link
+ * Extractor}s, the classes of this package that stand in for them in
+ * serialized form, {@link String}s, boxed primitives, arrays of any
+ * of these, the common {@link java.util} collections, and
+ * serializable lambdas.  Any other class, such as that of an {@link
+ * Identifier}'s value or an {@link Extractor}'s key, must be
+ * {@linkplain Decoder#permit(Class) permitted} explicitly, and a
+ * stream that names a class that is not is rejected before any
+ * instance of it is created.</p>
+ *
+ * <p>Variable-length integers use seven bits per byte, least
+ * significant group first, with the high bit of each byte set if
+ * another byte follows.</p>
+ *
+ * <p>Both the {@link Encoder} and the {@link Decoder} use a single
+ * fixed-size buffer, and so use constant memory apart from the
+ * dictionary of distinct {@link IdType}s.  Neither is safe for use
+ * by multiple threads.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+public final class IdentifierCodec {
+
+  /**
+   * The magic number with which every stream begins: {@code EDID} in
+   * ASCII.
+   */
+  static final int MAGIC = 0x45444944;
+
+  /**
+   * The version of the format.
+   */
+  static final byte VERSION = 1;
+
+  /**
+   * The default size, in bytes, of the buffers used by {@link
+   * Encoder}s and {@link Decoder}s.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The smallest permissible buffer size.
+   */
+  private static final int MINIMUM_BUFFER_SIZE = 64;
+
+  private static final int FORM_BITS = 3;
+
+  private static final int FORM_MASK = (1 << FORM_BITS) - 1;
+
+  private static final int DEFINITION = 0;
+
+  private static final int STRING = 1;
+
+  private static final int LONG = 2;
+
+  private static final int INTEGER = 3;
+
+  private static final int STRING_ID = 4;
+
+  private static final int LONG_IDENTIFIER = 5;
+
+  private static final int INT_IDENTIFIER = 6;
+
+  private static final int SERIALIZED = 7;
+
+  /**
+   * The prefix of the name of every class in this package.
+   */
+  private static final String PACKAGE_PREFIX = IdentifierCodec.class.getName().substring(0, IdentifierCodec.class.getName().lastIndexOf('.') + 1);
+
+  /**
+   * The names of the classes outside this package, other than
+   * {@link IdType}s, {@link Identifier}s and {@link Extractor}s, that
+   * a {@link Decoder} will deserialize without being {@linkplain
+   * Decoder#permit(Class) told to}.
+   */
+  private static final Set<String> PERMITTED_CLASS_NAMES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+    "java.lang.Boolean",
+    "java.lang.Byte",
+    "java.lang.Character",
+    "java.lang.Double",
+    "java.lang.Enum",
+    "java.lang.Float",
+    "java.lang.Integer",
+    "java.lang.Long",
+    "java.lang.Number",
+    "java.lang.Short",
+    "java.lang.String",
+    "java.lang.invoke.SerializedLambda",
+    "java.util.ArrayList",
+    "java.util.Arrays$ArrayList",
+    "java.util.Collections$EmptyList",
+    "java.util.Collections$EmptyMap",
+    "java.util.Collections$EmptySet",
+    "java.util.Collections$SingletonList",
+    "java.util.Collections$SingletonMap",
+    "java.util.Collections$SingletonSet",
+    "java.util.Collections$UnmodifiableCollection",
+    "java.util.Collections$UnmodifiableList",
+    "java.util.Collections$UnmodifiableMap",
+    "java.util.Collections$UnmodifiableRandomAccessList",
+    "java.util.Collections$UnmodifiableSet",
+    "java.util.HashMap",
+    "java.util.HashSet",
+    "java.util.ImmutableCollections$CollSer",
+    "java.util.LinkedHashMap",
+    "java.util.LinkedHashSet",
+    "java.util.TreeMap",
+    "java.util.TreeSet")));
+
+  /**
+   * Creates a new {@link IdentifierCodec}.
+   */
+  private IdentifierCodec() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final int checkBufferSize(final int bufferSize) {
+    if (bufferSize < MINIMUM_BUFFER_SIZE) {
+      throw new IllegalArgumentException("bufferSize < " + MINIMUM_BUFFER_SIZE + ": " + bufferSize);
+    }
+    return bufferSize;
+  }
+
+  private static final byte[] serialize(final Object object) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final ObjectOutputStream oos = new ObjectOutputStream(baos);
+    try {
+      oos.writeObject(object);
+    } finally {
+      oos.close();
+    }
+    return baos.toByteArray();
+  }
+
+  private static final Object deserialize(final byte[] bytes, final Set<Class<?>> permittedClasses) throws IOException {
+    final ObjectInputStream ois = new FilteringObjectInputStream(new ByteArrayInputStream(bytes), permittedClasses);
+    try {
+      return ois.readObject();
+    } catch (final ClassNotFoundException classNotFoundException) {
+      throw (StreamCorruptedException)new StreamCorruptedException(classNotFoundException.getMessage()).initCause(classNotFoundException);
+    } finally {
+      ois.close();
+    }
+  }
+
+  /**
+   * Returns the number of bytes in the UTF-8 encoding of the
+   * supplied {@link String}, encoding unpaired surrogates as {@code
+   * ?} just as {@link String#getBytes(java.nio.charset.Charset)}
+   * does.
+   *
+   * @param s the {@link String} in question; must not be {@code null}
+   *
+   * @return the number of bytes in the UTF-8 encoding of {@code s}
+   */
+  static final int utf8Length(final String s) {
+    final int length = s.length();
+    int returnValue = length;
+    for (int i = 0; i < length; i++) {
+      final char c = s.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          returnValue += 1;
+        } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+          // Two chars, four bytes.
+          returnValue += 2;
+          i++;
+        } else if (!Character.isSurrogate(c)) {
+          returnValue += 2;
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Writes the UTF-8 encoding of the supplied {@link String} into the
+   * supplied {@code byte} array, which must have room for it.
+   *
+   * @param s the {@link String} to encode; must not be {@code null}
+   *
+   * @param bytes the {@code byte} array to write into; must not be
+   * {@code null}
+   *
+   * @param position the index within {@code bytes} at which to begin
+   * writing
+   *
+   * @return the index within {@code bytes} just past the last byte
+   * written
+   *
+   * @see #utf8Length(String)
+   */
+  static final int encodeUtf8(final String s, final byte[] bytes, int position) {
+    final int length = s.length();
+    int i = 0;
+
+    // ASCII fast path.
+    while (i < length) {
+      final char c = s.charAt(i);
+      if (c >= 0x80) {
+        break;
+      }
+      bytes[position++] = (byte)c;
+      i++;
+    }
+
+    for (; i < length; i++) {
+      final char c = s.charAt(i);
+      if (c < 0x80) {
+        bytes[position++] = (byte)c;
+      } else if (c < 0x800) {
+        bytes[position++] = (byte)(0xC0 | (c >> 6));
+        bytes[position++] = (byte)(0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+          final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+          bytes[position++] = (byte)(0xF0 | (codePoint >> 18));
+          bytes[position++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+          bytes[position++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+          bytes[position++] = (byte)(0x80 | (codePoint & 0x3F));
+        } else {
+          bytes[position++] = (byte)'?';
+        }
+      } else {
+        bytes[position++] = (byte)(0xE0 | (c >> 12));
+        bytes[position++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+        bytes[position++] = (byte)(0x80 | (c & 0x3F));
+      }
+    }
+    return position;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * Writes {@link Identifier}s in the {@linkplain IdentifierCodec
+   * format described above} to a {@link WritableByteChannel}.
+   *
+   * <p>Output is buffered; call {@link #flush()} or {@link #close()}
+   * to make sure it reaches the underlying channel.</p>
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see Decoder
+   */
+  public static final class Encoder implements Closeable, Flushable {
+
+    /**
+     * The {@link WritableByteChannel} to write to.  This field is
+     * never {@code null}.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * The buffer.  This field is never {@code null}.
+     */
+    private final byte[] bytes;
+
+    /**
+     * A {@link ByteBuffer} wrapping {@link #bytes}, used to hand its
+     * contents to the {@link #channel}.  This field is never {@code
+     * null}.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The index within {@link #bytes} at which the next byte will be
+     * written.
+     */
+    private int position;
+
+    /**
+     * The dictionary of {@link IdType}s that have been defined so
+     * far, indexed by {@link IdType}.  This field is never {@code
+     * null}.
+     */
+    private final Map<IdType<?, ?>, Integer> idTypes;
+
+    /**
+     * The {@link IdType} most recently written, which in most streams
+     * is the {@link IdType} of the next {@link Identifier} as well.
+     */
+    private IdType<?, ?> lastIdType;
+
+    /**
+     * The dictionary index of {@link #lastIdType}.
+     */
+    private int lastIndex;
+
+    /**
+     * The number of {@link Identifier}s written so far.
+     */
+    private long count;
+
+    /**
+     * Whether this {@link Encoder} has been {@linkplain #close()
+     * closed}.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a new {@link Encoder} that writes to the supplied
+     * {@link OutputStream}.
+     *
+     * @param out the {@link OutputStream} to write to; must not be
+     * {@code null}
+     *
+     * @exception IllegalArgumentException if {@code out} is {@code
+     * null}
+     */
+    public Encoder(final OutputStream out) {
+      this(newChannel(out), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new {@link Encoder} that writes to the supplied
+     * {@link WritableByteChannel}.
+     *
+     * @param channel the {@link WritableByteChannel} to write to;
+     * must not be {@code null}
+     *
+     * @exception IllegalArgumentException if {@code channel} is
+     * {@code null}
+     */
+    public Encoder(final WritableByteChannel channel) {
+      this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new {@link Encoder} that writes to the supplied
+     * {@link WritableByteChannel}.
+     *
+     * @param channel the {@link WritableByteChannel} to write to;
+     * must not be {@code null}
+     *
+     * @param bufferSize the size of this {@link Encoder}'s buffer, in
+     * bytes; must be at least {@code 64}
+     *
+     * @exception IllegalArgumentException if {@code channel} is
+     * {@code null} or {@code bufferSize} is too small
+     */
+    public Encoder(final WritableByteChannel channel, final int bufferSize) {
+      super();
+      if (channel == null) {
+        throw new IllegalArgumentException("channel", new NullPointerException("channel"));
+      }
+      this.channel = channel;
+      this.bytes = new byte[checkBufferSize(bufferSize)];
+      this.buffer = ByteBuffer.wrap(this.bytes);
+      this.idTypes = new HashMap<IdType<?, ?>, Integer>();
+      this.lastIndex = -1;
+      this.writeInt(MAGIC);
+      this.bytes[this.position++] = VERSION;
+    }
+
+    /**
+     * Returns the number of {@link Identifier}s written so far.
+     *
+     * @return the number of {@link Identifier}s written so far
+     */
+    public final long getCount() {
+      return this.count;
+    }
+
+    /**
+     * Writes the supplied {@link Identifier}.
+     *
+     * @param id the {@link Identifier} to write; must not be {@code
+     * null}
+     *
+     * @exception IllegalArgumentException if {@code id} is {@code
+     * null}
+     *
+     * @exception IOException if an error occurs
+     */
+    public final void write(final Identifier<?, ?> id) throws IOException {
+      if (id == null) {
+        throw new IllegalArgumentException("id", new NullPointerException("id"));
+      }
+      this.checkOpen();
+      // The form is chosen by the IdType's type, which the Decoder
+      // checks, rather than by the value's class: an IdType whose
+      // type is, say, Serializable may hold a String.
+      final Class<?> c = id.getClass();
+      final Class<?> type = id.getIdType().getType();
+      if (c == LongIdentifier.class && type == Long.class) {
+        this.writeZigZag(this.indexOf(id.getIdType()), LONG_IDENTIFIER, ((LongIdentifier<?>)id).getLongValue());
+      } else if (c == IntIdentifier.class && type == Integer.class) {
+        this.writeZigZag(this.indexOf(id.getIdType()), INT_IDENTIFIER, ((IntIdentifier<?>)id).getIntValue());
+      } else if (c == StringId.class) {
+        this.writeString(this.indexOf(id.getIdType()), STRING_ID, ((StringId<?>)id).getValue());
+      } else if (c == Identifier.class && type == String.class) {
+        this.writeString(this.indexOf(id.getIdType()), STRING, (String)id.getValue());
+      } else if (c == Identifier.class && type == Long.class) {
+        this.writeZigZag(this.indexOf(id.getIdType()), LONG, ((Long)id.getValue()).longValue());
+      } else if (c == Identifier.class && type == Integer.class) {
+        this.writeZigZag(this.indexOf(id.getIdType()), INTEGER, ((Integer)id.getValue()).intValue());
+      } else {
+        this.writeBlob(0, SERIALIZED, serialize(id));
+      }
+      this.count++;
+    }
+
+    /**
+     * Writes any buffered output to the underlying channel.
+     *
+     * @exception IOException if an error occurs
+     */
+    @Override
+    public final void flush() throws IOException {
+      this.checkOpen();
+      this.drain();
+      if (this.channel instanceof Flushable) {
+        ((Flushable)this.channel).flush();
+      }
+    }
+
+    /**
+     * Writes any buffered output to the underlying channel and closes
+     * it.
+     *
+     * <p>Closing an {@link Encoder} that is already closed has no
+     * effect.</p>
+     *
+     * @exception IOException if an error occurs
+     */
+    @Override
+    public final void close() throws IOException {
+      if (!this.closed) {
+        this.closed = true;
+        try {
+          this.drain();
+        } finally {
+          this.channel.close();
+        }
+      }
+    }
+
+    /**
+     * Returns the dictionary index of the supplied {@link IdType},
+     * writing a definition record for it first if it has not been
+     * seen before.
+     */
+    private final int indexOf(final IdType<?, ?> idType) throws IOException {
+      if (idType == this.lastIdType) {
+        return this.lastIndex;
+      }
+      final Integer existing = this.idTypes.get(idType);
+      final int index;
+      if (existing == null) {
+        index = this.idTypes.size();
+        this.writeBlob(index, DEFINITION, serialize(idType));
+        this.idTypes.put(idType, Integer.valueOf(index));
+      } else {
+        index = existing.intValue();
+      }
+      this.lastIdType = idType;
+      this.lastIndex = index;
+      return index;
+    }
+
+    private final void writeZigZag(final int index, final int form, final long value) throws IOException {
+      this.ensure(20);
+      this.writeTag(index, form);
+      this.writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private final void writeString(final int index, final int form, final String value) throws IOException {
+      final int length = value.length();
+      // Three bytes per char is the worst case for UTF-8; a surrogate
+      // pair, two chars, occupies four.
+      if (length <= (this.bytes.length - 10) / 3) {
+        this.ensure(10 + 3 * length);
+        this.writeTag(index, form);
+        this.writeVarLong(utf8Length(value));
+        this.position = encodeUtf8(value, this.bytes, this.position);
+      } else {
+        this.writeBlob(index, form, value.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    private final void writeBlob(final int index, final int form, final byte[] blob) throws IOException {
+      this.ensure(10);
+      this.writeTag(index, form);
+      this.writeVarLong(blob.length);
+      if (blob.length <= this.bytes.length - this.position) {
+        System.arraycopy(blob, 0, this.bytes, this.position, blob.length);
+        this.position += blob.length;
+      } else {
+        this.drain();
+        this.write(ByteBuffer.wrap(blob));
+      }
+    }
+
+    private final void writeTag(final int index, final int form) {
+      this.writeVarLong(((long)index << FORM_BITS) | form);
+    }
+
+    /**
+     * Writes the supplied {@code long} as an unsigned variable-length
+     * integer; the caller must have {@linkplain #ensure(int) ensured}
+     * that there is room for ten bytes.
+     */
+    private final void writeVarLong(long value) {
+      final byte[] bytes = this.bytes;
+      int position = this.position;
+      while ((value & ~0x7FL) != 0L) {
+        bytes[position++] = (byte)((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[position++] = (byte)value;
+      this.position = position;
+    }
+
+    private final void writeInt(final int value) {
+      this.bytes[this.position++] = (byte)(value >>> 24);
+      this.bytes[this.position++] = (byte)(value >>> 16);
+      this.bytes[this.position++] = (byte)(value >>> 8);
+      this.bytes[this.position++] = (byte)value;
+    }
+
+    private final void ensure(final int size) throws IOException {
+      assert size <= this.bytes.length;
+      if (this.bytes.length - this.position < size) {
+        this.drain();
+      }
+    }
+
+    private final void drain() throws IOException {
+      if (this.position > 0) {
+        final ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        buffer.limit(this.position);
+        this.write(buffer);
+        this.position = 0;
+      }
+    }
+
+    /**
+     * Writes all of the remaining bytes in the supplied {@link
+     * ByteBuffer} to the channel.
+     */
+    private final void write(final ByteBuffer buffer) throws IOException {
+      final Object timer = IdentifierEvents.isRecording() ? IdentifierEvents.beginIO() : null;
+      final int bytes = buffer.remaining();
+      while (buffer.hasRemaining()) {
+        this.channel.write(buffer);
+      }
+      if (timer != null) {
+        IdentifierEvents.endIO(timer, bytes, false);
+      }
+    }
+
+    private final void checkOpen() throws IOException {
+      if (this.closed) {
+        throw new IOException("closed");
+      }
+    }
+
+    private static final WritableByteChannel newChannel(final OutputStream out) {
+      if (out == null) {
+        throw new IllegalArgumentException("out", new NullPointerException("out"));
+      }
+      return Channels.newChannel(out);
+    }
+
+  }
+
+  /**
+   * Reads {@link Identifier}s in the {@linkplain IdentifierCodec
+   * format described above} from a {@link ReadableByteChannel}, one
+   * at a time.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see Encoder
+   */
+  public static final class Decoder implements Closeable {
+
+    /**
+     * The {@link ReadableByteChannel} to read from.  This field is
+     * never {@code null}.
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * The buffer.  This field is never {@code null}.
+     */
+    private final byte[] bytes;
+
+    /**
+     * A {@link ByteBuffer} wrapping {@link #bytes}, used to fill it
+     * from the {@link #channel}.  This field is never {@code null}.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The index within {@link #bytes} of the next byte to be read.
+     */
+    private int position;
+
+    /**
+     * The index within {@link #bytes} just past the last byte read
+     * from the {@link #channel}.
+     */
+    private int limit;
+
+    /**
+     * The dictionary of {@link IdType}s that have been defined so
+     * far, in order of definition.  This field is never {@code null}.
+     */
+    private final List<IdType<?, ?>> idTypes;
+
+    /**
+     * Classes beyond the usual ones whose instances may be
+     * deserialized.  This field is never {@code null}.
+     *
+     * @see #permit(Class)
+     */
+    private final Set<Class<?>> permittedClasses;
+
+    /**
+     * Whether the magic number and version have been read and
+     * checked.
+     */
+    private boolean started;
+
+    /**
+     * Creates a new {@link Decoder} that reads from the supplied
+     * {@link InputStream}.
+     *
+     * @param in the {@link InputStream} to read from; must not be
+     * {@code null}
+     *
+     * @exception IllegalArgumentException if {@code in} is {@code
+     * null}
+     */
+    public Decoder(final InputStream in) {
+      this(newChannel(in), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new {@link Decoder} that reads from the supplied
+     * {@link ReadableByteChannel}.
+     *
+     * @param channel the {@link ReadableByteChannel} to read from;
+     * must not be {@code null}
+     *
+     * @exception IllegalArgumentException if {@code channel} is
+     * {@code null}
+     */
+    public Decoder(final ReadableByteChannel channel) {
+      this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new {@link Decoder} that reads from the supplied
+     * {@link ReadableByteChannel}.
+     *
+     * @param channel the {@link ReadableByteChannel} to read from;
+     * must not be {@code null}
+     *
+     * @param bufferSize the size of this {@link Decoder}'s buffer, in
+     * bytes; must be at least {@code 64}
+     *
+     * @exception IllegalArgumentException if {@code channel} is
+     * {@code null} or {@code bufferSize} is too small
+     */
+    public Decoder(final ReadableByteChannel channel, final int bufferSize) {
+      super();
+      if (channel == null) {
+        throw new IllegalArgumentException("channel", new NullPointerException("channel"));
+      }
+      this.channel = channel;
+      this.bytes = new byte[checkBufferSize(bufferSize)];
+      this.buffer = ByteBuffer.wrap(this.bytes);
+      this.idTypes = new ArrayList<IdType<?, ?>>();
+      this.permittedClasses = new HashSet<Class<?>>();
+    }
+
+    /**
+     * Permits this {@link Decoder} to deserialize instances of the
+     * supplied class, which is not one of those {@linkplain
+     * IdentifierCodec permitted by default}.
+     *
+     * <p>Only the supplied class itself is permitted, not its
+     * subclasses.</p>
+     *
+     * @param c the class to permit; must not be {@code null}
+     *
+     * @exception IllegalArgumentException if {@code c} is {@code
+     * null}
+     */
+    public final void permit(final Class<?> c) {
+      if (c == null) {
+        throw new IllegalArgumentException("c", new NullPointerException("c"));
+      }
+      this.permittedClasses.add(c);
+    }
+
+    /**
+     * Reads and returns the next {@link Identifier}, or returns
+     * {@code null} if the end of the stream has been reached.
+     *
+     * @return the next {@link Identifier}, or {@code null}
+     *
+     * @exception EOFException if the stream ends in the middle of a
+     * record
+     *
+     * @exception StreamCorruptedException if the stream is not in the
+     * {@linkplain IdentifierCodec expected format}
+     *
+     * @exception IOException if an error occurs
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public final Identifier<?, ?> read() throws IOException {
+      if (!this.started) {
+        if (!this.fill(5)) {
+          throw new EOFException();
+        }
+        final int magic = ((this.bytes[this.position] & 0xFF) << 24) | ((this.bytes[this.position + 1] & 0xFF) << 16) | ((this.bytes[this.position + 2] & 0xFF) << 8) | (this.bytes[this.position + 3] & 0xFF);
+        if (magic != MAGIC) {
+          throw new StreamCorruptedException("Bad magic number: " + Integer.toHexString(magic));
+        }
+        final byte version = this.bytes[this.position + 4];
+        if (version != VERSION) {
+          throw new StreamCorruptedException("Unsupported version: " + version);
+        }
+        this.position += 5;
+        this.started = true;
+      }
+      while (this.fill(1)) {
+        final long tag = this.readVarLong();
+        final int form = (int)(tag & FORM_MASK);
+        final long index = tag >>> FORM_BITS;
+        if (form == DEFINITION) {
+          if (index != this.idTypes.size()) {
+            throw new StreamCorruptedException("Unexpected IdType index: " + index);
+          }
+          final Object idType = deserialize(this.readBlob(), this.permittedClasses);
+          if (!(idType instanceof IdType)) {
+            throw new StreamCorruptedException("Not an IdType: " + idType);
+          }
+          this.idTypes.add((IdType<?, ?>)idType);
+        } else if (form == SERIALIZED) {
+          final Object id = deserialize(this.readBlob(), this.permittedClasses);
+          if (!(id instanceof Identifier)) {
+            throw new StreamCorruptedException("Not an Identifier: " + id);
+          }
+          return (Identifier<?, ?>)id;
+        } else {
+          if (index >= this.idTypes.size()) {
+            throw new StreamCorruptedException("Undefined IdType index: " + index);
+          }
+          final IdType idType = this.idTypes.get((int)index);
+          switch (form) {
+          case STRING:
+            return new Identifier(checkType(idType, String.class), this.readString());
+          case LONG:
+            return new Identifier(checkType(idType, Long.class), Long.valueOf(this.readZigZag()));
+          case INTEGER:
+            return new Identifier(checkType(idType, Integer.class), Integer.valueOf((int)this.readZigZag()));
+          case STRING_ID:
+            if (!(idType instanceof StringIdType)) {
+              throw new StreamCorruptedException("Not a StringIdType: " + idType);
+            }
+            return new StringId((StringIdType)idType, this.readString());
+          case LONG_IDENTIFIER:
+            return new LongIdentifier(checkType(idType, Long.class), this.readZigZag());
+          case INT_IDENTIFIER:
+            return new IntIdentifier(checkType(idType, Integer.class), (int)this.readZigZag());
+          default:
+            throw new StreamCorruptedException("Unexpected form: " + form);
+          }
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Closes the underlying channel.
+     *
+     * @exception IOException if an error occurs
+     */
+    @Override
+    public final void close() throws IOException {
+      this.channel.close();
+    }
+
+    private final long readZigZag() throws IOException {
+      final long value = this.readVarLong();
+      return (value >>> 1) ^ -(value & 1L);
+    }
+
+    private final long readVarLong() throws IOException {
+      final byte[] bytes = this.bytes;
+      if (this.limit - this.position < 10) {
+        this.fill(10);
+      }
+      int position = this.position;
+      final int limit = this.limit;
+      long value = 0L;
+      for (int shift = 0; shift < 64; shift += 7) {
+        if (position >= limit) {
+          throw new EOFException();
+        }
+        final byte b = bytes[position++];
+        value |= (long)(b & 0x7F) << shift;
+        if (b >= 0) {
+          this.position = position;
+          return value;
+        }
+      }
+      throw new StreamCorruptedException("Malformed variable-length integer");
+    }
+
+    private final int readLength() throws IOException {
+      final long length = this.readVarLong();
+      if (length < 0L || length > Integer.MAX_VALUE) {
+        throw new StreamCorruptedException("Bad length: " + length);
+      }
+      return (int)length;
+    }
+
+    private final String readString() throws IOException {
+      final int length = this.readLength();
+      if (length <= this.bytes.length) {
+        if (!this.fill(length)) {
+          throw new EOFException();
+        }
+        final String returnValue = new String(this.bytes, this.position, length, StandardCharsets.UTF_8);
+        this.position += length;
+        return returnValue;
+      }
+      return new String(this.readFully(length), StandardCharsets.UTF_8);
+    }
+
+    private final byte[] readBlob() throws IOException {
+      return this.readFully(this.readLength());
+    }
+
+    private final byte[] readFully(final int length) throws IOException {
+      final byte[] returnValue = new byte[length];
+      int offset = Math.min(length, this.limit - this.position);
+      System.arraycopy(this.bytes, this.position, returnValue, 0, offset);
+      this.position += offset;
+      if (offset < length) {
+        final ByteBuffer buffer = ByteBuffer.wrap(returnValue, offset, length - offset);
+        while (buffer.hasRemaining()) {
+          if (this.read(buffer) < 0) {
+            throw new EOFException();
+          }
+        }
+      }
+      return returnValue;
+    }
+
+    /**
+     * Makes sure that at least {@code size} unread bytes are in the
+     * buffer, reading from the channel as necessary, and returns
+     * {@code false} if the channel ends before that is possible.
+     */
+    private final boolean fill(final int size) throws IOException {
+      assert size <= this.bytes.length;
+      int available = this.limit - this.position;
+      if (available >= size) {
+        return true;
+      }
+      System.arraycopy(this.bytes, this.position, this.bytes, 0, available);
+      this.position = 0;
+      this.limit = available;
+      final ByteBuffer buffer = this.buffer;
+      buffer.clear();
+      buffer.position(available);
+      while (this.limit < size) {
+        final int read = this.read(buffer);
+        if (read < 0) {
+          return false;
+        }
+        this.limit += read;
+      }
+      return true;
+    }
+
+    /**
+     * Reads as many bytes as the channel will supply, up to the number
+     * remaining in the supplied {@link ByteBuffer}, and returns their
+     * number, or {@code -1} if the channel has ended.
+     */
+    private final int read(final ByteBuffer buffer) throws IOException {
+      final Object timer = IdentifierEvents.isRecording() ? IdentifierEvents.beginIO() : null;
+      final int returnValue = this.channel.read(buffer);
+      if (timer != null) {
+        IdentifierEvents.endIO(timer, Math.max(0, returnValue), true);
+      }
+      return returnValue;
+    }
+
+    private static final IdType<?, ?> checkType(final IdType<?, ?> idType, final Class<?> type) throws StreamCorruptedException {
+      if (idType.getType() != type) {
+        throw new StreamCorruptedException("Unexpected IdType type: " + idType.getType());
+      }
+      return idType;
+    }
+
+    private static final ReadableByteChannel newChannel(final InputStream in) {
+      if (in == null) {
+        throw new IllegalArgumentException("in", new NullPointerException("in"));
+      }
+      return Channels.newChannel(in);
+    }
+
+  }
+
+  /**
+   * An {@link ObjectInputStream} that refuses to resolve any class
+   * that a {@link Decoder} does not permit, so that a hostile stream
+   * cannot make it instantiate arbitrary serializable classes.
+   *
+   * <p>Overriding {@link #resolveClass(ObjectStreamClass)} works on
+   * every Java version this library supports, unlike {@code
+   * java.io.ObjectInputFilter}, which arrived in Java 9.</p>
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class FilteringObjectInputStream extends ObjectInputStream {
+
+    /**
+     * Classes permitted beyond the usual ones.  This field is never
+     * {@code null}.
+     */
+    private final Set<Class<?>> permittedClasses;
+
+    private FilteringObjectInputStream(final InputStream in, final Set<Class<?>> permittedClasses) throws IOException {
+      super(in);
+      assert permittedClasses != null;
+      this.permittedClasses = permittedClasses;
+    }
+
+    /**
+     * Resolves the class described by the supplied {@link
+     * ObjectStreamClass}, without initializing it, and returns it if
+     * it is permitted.
+     *
+     * @param descriptor the {@link ObjectStreamClass}; must not be
+     * {@code null}
+     *
+     * @return the class; never {@code null}
+     *
+     * @exception InvalidClassException if the class is not permitted
+     *
+     * @exception IOException if an error occurs
+     *
+     * @exception ClassNotFoundException if the class could not be
+     * found
+     */
+    @Override
+    protected final Class<?> resolveClass(final ObjectStreamClass descriptor) throws IOException, ClassNotFoundException {
+      final Class<?> returnValue = super.resolveClass(descriptor);
+      if (!this.isPermitted(returnValue)) {
+        throw new InvalidClassException(descriptor.getName(), "Not permitted");
+      }
+      return returnValue;
+    }
+
+    /**
+     * Refuses to resolve any dynamic proxy class.
+     *
+     * @param interfaces the names of the interfaces the proxy class
+     * implements; ignored
+     *
+     * @return nothing
+     *
+     * @exception InvalidClassException always
+     */
+    @Override
+    protected final Class<?> resolveProxyClass(final String[] interfaces) throws InvalidClassException {
+      throw new InvalidClassException(Arrays.toString(interfaces), "Proxy classes are not permitted");
+    }
+
+    private final boolean isPermitted(Class<?> c) {
+      while (c.isArray()) {
+        c = c.getComponentType();
+      }
+      // Interfaces are never instantiated, and are resolved only as
+      // the values of Class fields such as IdType's type.
+      return
+        c.isPrimitive() ||
+        c.isInterface() ||
+        this.permittedClasses.contains(c) ||
+        PERMITTED_CLASS_NAMES.contains(c.getName()) ||
+        Identifier.class.isAssignableFrom(c) ||
+        IdType.class.isAssignableFrom(c) ||
+        Extractor.class.isAssignableFrom(c) ||
+        (c.getName().startsWith(PACKAGE_PREFIX) && c.getName().indexOf('.', PACKAGE_PREFIX.length()) < 0);
+    }
+
+  }
+
+}
@@ -0,0 +1,392 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Emits Java Flight Recorder events describing the creation of
+ * {@link Identifier}s, {@linkplain IdType#extractFrom(Object,
+ * Serializable) extraction}, {@linkplain Identifier#toURI()
+ * conversion to <code>URI</code>s} and the stream input and output
+ * of an {@link IdentifierCodec}.
+ *
+ * <p>This class refers to no {@code jdk.jfr} type, and so loads and
+ * runs on any Java 8 virtual machine.  The events themselves are
+ * emitted by a subclass, {@code FlightRecorderEvents}, which is
+ * compiled separately and loaded reflectively only if the {@code
+ * jdk.jfr} API is present and the {@value #PROPERTY} system property
+ * is not {@code false}.  If it cannot be loaded, {@link #AVAILABLE}
+ * is {@code false} and no event is ever emitted.</p>
+ *
+ * <p>Every event method in this class must be guarded by a call to
+ * {@link #isRecording()}, which returns {@code true} only while a
+ * recording is running.  It reads a single {@code volatile} field
+ * that the subclass keeps up to date as recordings start and stop,
+ * so that when nothing is being recorded the guarded paths cost a
+ * load and a branch, and no event is ever allocated.</p>
+ *
+ * <p>While a recording is running, events cost almost nothing unless
+ * it has enabled them.  The events that span an operation have
+ * thresholds of {@value #THRESHOLD}, so that a recording made with
+ * the default settings captures only the unusually slow; lower the
+ * threshold of an event in a recording's settings to see more.
+ * Creation events, which are instantaneous and very frequent, are
+ * instead sampled: only one {@link Identifier} in every {@link
+ * #CREATION_SAMPLE_INTERVAL} (set by the {@value
+ * #CREATION_SAMPLE_INTERVAL_PROPERTY} system property, and rounded up
+ * to a power of two) is recorded.  Every {@link Identifier}
+ * constructor reports its creation, so {@link Identifier}s made by
+ * parsers, codecs, stores and deserialization are all counted.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+abstract class IdentifierEvents {
+
+  /**
+   * The name of the system property that, when {@code false},
+   * prevents any events from being emitted.
+   */
+  static final String PROPERTY = "com.edugility.identifiers.jfr";
+
+  /**
+   * The name of the system property that sets {@link
+   * #CREATION_SAMPLE_INTERVAL}.
+   */
+  static final String CREATION_SAMPLE_INTERVAL_PROPERTY = "com.edugility.identifiers.jfr.creationSampleInterval";
+
+  /**
+   * The default threshold of events that span an operation.
+   */
+  static final String THRESHOLD = "10 us";
+
+  /**
+   * One more than the number of {@link Identifier} creations that
+   * pass unrecorded, on average, for every one that is recorded;
+   * always a power of two.
+   */
+  static final int CREATION_SAMPLE_INTERVAL = Integer.highestOneBit(Math.max(1, Integer.getInteger(CREATION_SAMPLE_INTERVAL_PROPERTY, 1024).intValue() * 2 - 1));
+
+  /**
+   * The fully-qualified name of the subclass that emits events.
+   */
+  private static final String IMPLEMENTATION = "com.edugility.identifiers.FlightRecorderEvents";
+
+  /**
+   * Whether a recording is running.
+   *
+   * @see #isRecording()
+   *
+   * @see #setRecording(boolean)
+   */
+  private static volatile boolean recording;
+
+  /**
+   * The instance that emits events, or {@code null} if events cannot
+   * be emitted.
+   */
+  private static final IdentifierEvents INSTANCE = load();
+
+  /**
+   * Whether Java Flight Recorder events can be emitted.
+   */
+  static final boolean AVAILABLE = INSTANCE != null;
+
+  /**
+   * Creates a new {@link IdentifierEvents}; for use by the subclass
+   * that emits events only.
+   */
+  IdentifierEvents() {
+    super();
+  }
+
+
+  /*
+   * Abstract methods.
+   */
+
+
+  /**
+   * Possibly records the creation of an {@link Identifier} of the
+   * supplied {@link Class} with the supplied {@link IdType}.
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param identifierClass the {@link Class} of the new {@link
+   * Identifier}; must not be {@code null}
+   */
+  abstract void recordCreation(final IdType<?, ?> idType, final Class<?> identifierClass);
+
+  /**
+   * Returns {@code true} if extraction events are enabled in a
+   * running recording.
+   *
+   * @return {@code true} if extraction events are enabled
+   */
+  abstract boolean isExtractionEventEnabled();
+
+  /**
+   * Implements {@link #extractFrom(IdType, ExtractorHandle, Object,
+   * Extractor, Serializable)}.
+   */
+  abstract <W extends Serializable, P> P recordExtraction(final IdType<W, P> idType,
+                                                          final ExtractorHandle<W, P> handle,
+                                                          final Object key,
+                                                          final Extractor<W, P> extractor,
+                                                          final W sourceValue);
+
+  /**
+   * Implements {@link #beginExtraction()}.
+   */
+  abstract Object startExtraction();
+
+  /**
+   * Implements {@link #endExtraction(Object, IdType, Object, boolean,
+   * int, int)}.
+   */
+  abstract void recordExtractionBatch(final Object timer, final IdType<?, ?> idType, final Object key, final boolean miss, final int count, final int nulls);
+
+  /**
+   * Implements {@link #toURI(IdType, Serializable)}.
+   */
+  abstract <W extends Serializable> URI recordURIConversion(final IdType<W, ?> idType, final W value) throws URISyntaxException;
+
+  /**
+   * Implements {@link #beginIO()}.
+   */
+  abstract Object startIO();
+
+  /**
+   * Implements {@link #endIO(Object, long, boolean)}.
+   */
+  abstract void recordIO(final Object timer, final long bytes, final boolean read);
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns {@code true} if a Java Flight Recorder recording is
+   * running, and so might have enabled some of the events emitted by
+   * this class.
+   *
+   * <p>This method is cheap enough to call on every extraction, and
+   * must be called, and must return {@code true}, before any other
+   * event method in this class is called.</p>
+   *
+   * @return {@code true} if a recording is running
+   */
+  static final boolean isRecording() {
+    return recording;
+  }
+
+  /**
+   * Notes whether a recording is running; called by the subclass that
+   * emits events as recordings start and stop.
+   *
+   * @param running whether any recording is running
+   */
+  static final void setRecording(final boolean running) {
+    recording = running;
+  }
+
+  /**
+   * Possibly records the creation of an {@link Identifier} of the
+   * supplied {@link Class} with the supplied {@link IdType}.
+   *
+   * <p>The {@link Identifier} itself is not passed, so that a
+   * constructor may call this method without letting an incompletely
+   * constructed instance escape.</p>
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param identifierClass the {@link Class} of the new {@link
+   * Identifier}; must not be {@code null}
+   */
+  static final void created(final IdType<?, ?> idType, final Class<?> identifierClass) {
+    INSTANCE.recordCreation(idType, identifierClass);
+  }
+
+  /**
+   * Returns {@code true} if extraction events are enabled in any
+   * running recording.
+   *
+   * <p>Callers that extract without boxing use this method to decide
+   * whether they must instead take the path through {@link
+   * #extractFrom(IdType, ExtractorHandle, Object, Extractor,
+   * Serializable)}.  Unlike the other methods in this class it may be
+   * called at any time; it allocates nothing.</p>
+   *
+   * @return {@code true} if extraction events are enabled
+   */
+  static final boolean isExtractionEnabled() {
+    return recording && INSTANCE.isExtractionEventEnabled();
+  }
+
+  /**
+   * Extracts from the supplied value on behalf of the supplied {@link
+   * IdType}, recording the extraction if it took long enough.
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param handle the {@link IdType}'s {@link ExtractorHandle} for the
+   * supplied key; may be {@code null}
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param extractor the {@link Extractor} indexed under the supplied
+   * key; may be {@code null}
+   *
+   * @param sourceValue the value from which to extract; may be {@code
+   * null}
+   *
+   * @return the extraction, or {@code null}
+   */
+  static final <W extends Serializable, P> P extractFrom(final IdType<W, P> idType,
+                                                         final ExtractorHandle<W, P> handle,
+                                                         final Object key,
+                                                         final Extractor<W, P> extractor,
+                                                         final W sourceValue) {
+    return INSTANCE.recordExtraction(idType, handle, key, extractor, sourceValue);
+  }
+
+  /**
+   * Returns an object that will time a batch of extractions, or
+   * {@code null} if no recording is interested.
+   *
+   * <p>Pass the returned object, if it is not {@code null}, to {@link
+   * #endExtraction(Object, IdType, Object, boolean, int, int)} once
+   * the batch is complete.</p>
+   *
+   * @return an opaque timer, or {@code null}
+   */
+  static final Object beginExtraction() {
+    return INSTANCE.startExtraction();
+  }
+
+  /**
+   * Records a batch of extractions, as a single event, if it took
+   * long enough.
+   *
+   * @param timer the object returned by {@link #beginExtraction()};
+   * must not be {@code null}
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param key the extractor key; may be {@code null}
+   *
+   * @param miss whether the {@link IdType} had no {@link Extractor}
+   * indexed under the key
+   *
+   * @param count the number of extractions in the batch
+   *
+   * @param nulls the number of extractions that returned {@code null}
+   */
+  static final void endExtraction(final Object timer, final IdType<?, ?> idType, final Object key, final boolean miss, final int count, final int nulls) {
+    INSTANCE.recordExtractionBatch(timer, idType, key, miss, count, nulls);
+  }
+
+  /**
+   * Converts the supplied value to a {@link URI} on behalf of the
+   * supplied {@link IdType}, recording the conversion if it took long
+   * enough.
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param value the value; may be {@code null}
+   *
+   * @return the {@link URI}, or {@code null}
+   *
+   * @exception URISyntaxException if the {@link URI} could not be
+   * constructed
+   */
+  static final <W extends Serializable> URI toURI(final IdType<W, ?> idType, final W value) throws URISyntaxException {
+    return INSTANCE.recordURIConversion(idType, value);
+  }
+
+  /**
+   * Returns an object that will time a read from or a write to the
+   * channel underlying an {@link IdentifierCodec}, or {@code null} if
+   * no recording is interested.
+   *
+   * <p>Pass the returned object, if it is not {@code null}, to {@link
+   * #endIO(Object, long, boolean)} once the read or write is
+   * complete.</p>
+   *
+   * @return an opaque timer, or {@code null}
+   */
+  static final Object beginIO() {
+    return INSTANCE.startIO();
+  }
+
+  /**
+   * Records a read from or a write to the channel underlying an
+   * {@link IdentifierCodec} if it took long enough.
+   *
+   * @param timer the object returned by {@link #beginIO()}; must not
+   * be {@code null}
+   *
+   * @param bytes the number of bytes read or written
+   *
+   * @param read {@code true} if bytes were read; {@code false} if
+   * they were written
+   */
+  static final void endIO(final Object timer, final long bytes, final boolean read) {
+    INSTANCE.recordIO(timer, bytes, read);
+  }
+
+  /**
+   * Returns an instance of the subclass that emits events, or {@code
+   * null} if events are switched off or the {@code jdk.jfr} API or
+   * the subclass is unavailable.
+   *
+   * @return an {@link IdentifierEvents}, or {@code null}
+   */
+  private static final IdentifierEvents load() {
+    if ("false".equalsIgnoreCase(System.getProperty(PROPERTY))) {
+      return null;
+    }
+    final ClassLoader loader = IdentifierEvents.class.getClassLoader();
+    try {
+      Class.forName("jdk.jfr.FlightRecorder", false, loader);
+      return (IdentifierEvents)Class.forName(IMPLEMENTATION, true, loader).getDeclaredConstructor().newInstance();
+    } catch (final ReflectiveOperationException | LinkageError | RuntimeException notAvailable) {
+      // No jdk.jfr API, no FlightRecorderEvents (or one compiled for
+      // a later Java than this one), or no permission to listen for
+      // recordings.
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,817 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes the {@linkplain Identifier#toString() <code>String</code>
+ * representations} of many {@link Identifier}s, one per line, to a
+ * {@link Writer} or, encoded as UTF-8, to a {@link
+ * WritableByteChannel}.
+ *
+ * <p>Each {@link Identifier} is rendered straight into a single,
+ * reusable buffer: {@linkplain IdType#toString() <code>IdType</code>
+ * representations} are rendered once per {@link IdType}, and {@link
+ * String}, {@link Long} and {@link Integer} values are rendered
+ * without any intermediate objects, so in the steady state writing
+ * an {@link Identifier} allocates nothing.  Each line is terminated
+ * by a single {@code '\n'}.</p>
+ *
+ * <p>An {@link IdentifierFormatter} may instead be {@linkplain
+ * #IdentifierFormatter(Writer, int, boolean) created} to write the
+ * {@linkplain IdentifierParser compact form}, {@code name:value},
+ * which omits each {@link IdType}'s {@linkplain IdType#getType()
+ * type}.</p>
+ *
+ * <p>Output is buffered; call {@link #flush()} or {@link #close()}
+ * to make sure it reaches the underlying {@link Writer} or
+ * channel.</p>
+ *
+ * <p>Instances of this class are not safe for use by multiple
+ * threads.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Identifier#writeTo(Appendable)
+ *
+ * @see Identifier#writeTo(ByteBuffer)
+ *
+ * @see IdentifierParser
+ */
+public final class IdentifierFormatter implements Closeable, Flushable {
+
+  /**
+   * The default size, in {@code char}s or bytes, of the buffer used
+   * by an {@link IdentifierFormatter}.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The smallest permissible buffer size.
+   */
+  private static final int MINIMUM_BUFFER_SIZE = 64;
+
+  /**
+   * Powers of ten from 10<sup>0</sup> through 10<sup>18</sup>, used
+   * to render {@code long}s one digit at a time.
+   */
+  private static final long[] POWERS_OF_TEN = new long[19];
+
+  /**
+   * The hexadecimal digits used in percent-encoding.
+   */
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  /**
+   * For each ASCII character, whether it may appear as it is in the
+   * value portion of a {@linkplain IdType#toURN(java.io.Serializable)
+   * URN}: unreserved characters, sub-delimiters, {@code ':'}, {@code
+   * '@'} and {@code '/'}.
+   */
+  private static final boolean[] URN_VALUE_SAFE = new boolean[128];
+
+  /**
+   * For each ASCII character, whether it may appear as it is in the
+   * name portion of a {@linkplain IdType#toURN(java.io.Serializable)
+   * URN}: as for {@link #URN_VALUE_SAFE}, less {@code ':'} and
+   * {@code '/'}.
+   */
+  private static final boolean[] URN_NAME_SAFE = new boolean[128];
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      URN_NAME_SAFE[c] = true;
+      URN_NAME_SAFE[c - 'a' + 'A'] = true;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      URN_NAME_SAFE[c] = true;
+    }
+    for (final char c : "-._~!$&'()*+,;=@".toCharArray()) {
+      URN_NAME_SAFE[c] = true;
+    }
+    System.arraycopy(URN_NAME_SAFE, 0, URN_VALUE_SAFE, 0, 128);
+    URN_VALUE_SAFE[':'] = true;
+    URN_VALUE_SAFE['/'] = true;
+  }
+
+  static {
+    long p = 1L;
+    for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = p;
+      p *= 10L;
+    }
+  }
+
+  /**
+   * The {@link Writer} to write to, or {@code null} if this {@link
+   * IdentifierFormatter} writes to a {@link #channel}.
+   */
+  private final Writer writer;
+
+  /**
+   * The buffer into which {@link Identifier}s are rendered before
+   * being handed to the {@link #writer}, or {@code null} if this
+   * {@link IdentifierFormatter} writes to a {@link #channel}.
+   */
+  private final StringBuilder chars;
+
+  /**
+   * An array through which the contents of {@link #chars} are handed
+   * to the {@link #writer}, or {@code null} if this {@link
+   * IdentifierFormatter} writes to a {@link #channel}.
+   */
+  private final char[] transfer;
+
+  /**
+   * The {@link WritableByteChannel} to write to, or {@code null} if
+   * this {@link IdentifierFormatter} writes to a {@link #writer}.
+   */
+  private final WritableByteChannel channel;
+
+  /**
+   * The buffer into which {@link Identifier}s are encoded before
+   * being handed to the {@link #channel}, or {@code null} if this
+   * {@link IdentifierFormatter} writes to a {@link #writer}.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The size of this {@link IdentifierFormatter}'s buffer.
+   */
+  private final int bufferSize;
+
+  /**
+   * Whether this {@link IdentifierFormatter} writes the {@linkplain
+   * IdentifierParser compact form}.
+   */
+  private final boolean compact;
+
+  /**
+   * The number of {@link Identifier}s written so far.
+   */
+  private long count;
+
+  /**
+   * Whether this {@link IdentifierFormatter} has been {@linkplain
+   * #close() closed}.
+   */
+  private boolean closed;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link IdentifierFormatter} that writes to the
+   * supplied {@link Writer}.
+   *
+   * @param writer the {@link Writer} to write to; must not be {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code writer} is {@code
+   * null}
+   */
+  public IdentifierFormatter(final Writer writer) {
+    this(writer, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a new {@link IdentifierFormatter} that writes to the
+   * supplied {@link Writer}.
+   *
+   * @param writer the {@link Writer} to write to; must not be {@code
+   * null}
+   *
+   * @param bufferSize the size of this {@link IdentifierFormatter}'s
+   * buffer, in {@code char}s; must be at least {@code 64}
+   *
+   * @exception IllegalArgumentException if {@code writer} is {@code
+   * null} or {@code bufferSize} is too small
+   */
+  public IdentifierFormatter(final Writer writer, final int bufferSize) {
+    this(writer, bufferSize, false);
+  }
+
+  /**
+   * Creates a new {@link IdentifierFormatter} that writes to the
+   * supplied {@link Writer}.
+   *
+   * @param writer the {@link Writer} to write to; must not be {@code
+   * null}
+   *
+   * @param bufferSize the size of this {@link IdentifierFormatter}'s
+   * buffer, in {@code char}s; must be at least {@code 64}
+   *
+   * @param compact whether to write the {@linkplain IdentifierParser
+   * compact form}, {@code name:value}, instead of the {@linkplain
+   * Identifier#toString() <code>String</code> representation}
+   *
+   * @exception IllegalArgumentException if {@code writer} is {@code
+   * null} or {@code bufferSize} is too small
+   */
+  public IdentifierFormatter(final Writer writer, final int bufferSize, final boolean compact) {
+    super();
+    if (writer == null) {
+      throw new IllegalArgumentException("writer", new NullPointerException("writer"));
+    }
+    this.bufferSize = checkBufferSize(bufferSize);
+    this.compact = compact;
+    this.writer = writer;
+    this.chars = new StringBuilder(bufferSize + MINIMUM_BUFFER_SIZE);
+    this.transfer = new char[bufferSize];
+    this.channel = null;
+    this.buffer = null;
+  }
+
+  /**
+   * Creates a new {@link IdentifierFormatter} that writes UTF-8 to
+   * the supplied {@link OutputStream}.
+   *
+   * @param out the {@link OutputStream} to write to; must not be
+   * {@code null}
+   *
+   * @exception IllegalArgumentException if {@code out} is {@code
+   * null}
+   */
+  public IdentifierFormatter(final OutputStream out) {
+    this(newChannel(out), DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a new {@link IdentifierFormatter} that writes UTF-8 to
+   * the supplied {@link WritableByteChannel}.
+   *
+   * @param channel the {@link WritableByteChannel} to write to;
+   * must not be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code channel} is
+   * {@code null}
+   */
+  public IdentifierFormatter(final WritableByteChannel channel) {
+    this(channel, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a new {@link IdentifierFormatter} that writes UTF-8 to
+   * the supplied {@link WritableByteChannel}.
+   *
+   * @param channel the {@link WritableByteChannel} to write to;
+   * must not be {@code null}
+   *
+   * @param bufferSize the size of this {@link IdentifierFormatter}'s
+   * buffer, in bytes; must be at least {@code 64}
+   *
+   * @exception IllegalArgumentException if {@code channel} is
+   * {@code null} or {@code bufferSize} is too small
+   */
+  public IdentifierFormatter(final WritableByteChannel channel, final int bufferSize) {
+    this(channel, bufferSize, false);
+  }
+
+  /**
+   * Creates a new {@link IdentifierFormatter} that writes UTF-8 to
+   * the supplied {@link WritableByteChannel}.
+   *
+   * @param channel the {@link WritableByteChannel} to write to;
+   * must not be {@code null}
+   *
+   * @param bufferSize the size of this {@link IdentifierFormatter}'s
+   * buffer, in bytes; must be at least {@code 64}
+   *
+   * @param compact whether to write the {@linkplain IdentifierParser
+   * compact form}, {@code name:value}, instead of the {@linkplain
+   * Identifier#toString() <code>String</code> representation}
+   *
+   * @exception IllegalArgumentException if {@code channel} is
+   * {@code null} or {@code bufferSize} is too small
+   */
+  public IdentifierFormatter(final WritableByteChannel channel, final int bufferSize, final boolean compact) {
+    super();
+    if (channel == null) {
+      throw new IllegalArgumentException("channel", new NullPointerException("channel"));
+    }
+    this.bufferSize = checkBufferSize(bufferSize);
+    this.compact = compact;
+    this.writer = null;
+    this.chars = null;
+    this.transfer = null;
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the number of {@link Identifier}s written so far.
+   *
+   * @return the number of {@link Identifier}s written so far
+   */
+  public final long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Writes the {@linkplain Identifier#toString() <code>String</code>
+   * representation}, or the {@linkplain IdentifierParser compact
+   * form}, of the supplied {@link Identifier}, followed by a {@code
+   * '\n'}.
+   *
+   * @param id the {@link Identifier} to write; must not be {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code
+   * null}
+   *
+   * @exception IOException if an error occurs
+   */
+  public final void write(final Identifier<?, ?> id) throws IOException {
+    if (id == null) {
+      throw new IllegalArgumentException("id", new NullPointerException("id"));
+    }
+    this.checkOpen();
+    if (this.writer != null) {
+      final StringBuilder chars = this.chars;
+      append(id, chars, this.compact);
+      chars.append('\n');
+      if (chars.length() >= this.bufferSize) {
+        this.drain();
+      }
+    } else {
+      ByteBuffer buffer = this.buffer;
+      if (!encode(id, buffer, this.compact)) {
+        this.drain();
+        if (!encode(id, buffer, this.compact)) {
+          // Larger than the whole buffer; encode it on its own.
+          int size = 2 * buffer.capacity();
+          do {
+            buffer = ByteBuffer.allocate(size);
+            size *= 2;
+          } while (!encode(id, buffer, this.compact));
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+          }
+          buffer = this.buffer;
+        }
+      }
+      if (!buffer.hasRemaining()) {
+        this.drain();
+      }
+      buffer.put((byte)'\n');
+    }
+    this.count++;
+  }
+
+  /**
+   * Writes each of the supplied {@link Identifier}s as if by the
+   * {@link #write(Identifier)} method.
+   *
+   * @param ids the {@link Identifier}s to write; must not be {@code
+   * null} and must not contain {@code null}
+   *
+   * @return the number of {@link Identifier}s written
+   *
+   * @exception IllegalArgumentException if {@code ids} is {@code
+   * null} or contains {@code null}
+   *
+   * @exception IOException if an error occurs
+   */
+  public final long writeAll(final Iterable<? extends Identifier<?, ?>> ids) throws IOException {
+    if (ids == null) {
+      throw new IllegalArgumentException("ids", new NullPointerException("ids"));
+    }
+    final long start = this.count;
+    for (final Identifier<?, ?> id : ids) {
+      this.write(id);
+    }
+    return this.count - start;
+  }
+
+  /**
+   * Writes any buffered output to the underlying {@link Writer} or
+   * channel.
+   *
+   * @exception IOException if an error occurs
+   */
+  @Override
+  public final void flush() throws IOException {
+    this.checkOpen();
+    this.drain();
+    if (this.writer != null) {
+      this.writer.flush();
+    } else if (this.channel instanceof Flushable) {
+      ((Flushable)this.channel).flush();
+    }
+  }
+
+  /**
+   * Writes any buffered output to the underlying {@link Writer} or
+   * channel and closes it.
+   *
+   * <p>Closing an {@link IdentifierFormatter} that is already closed
+   * has no effect.</p>
+   *
+   * @exception IOException if an error occurs
+   */
+  @Override
+  public final void close() throws IOException {
+    if (!this.closed) {
+      this.closed = true;
+      try {
+        this.drain();
+      } finally {
+        if (this.writer != null) {
+          this.writer.close();
+        } else {
+          this.channel.close();
+        }
+      }
+    }
+  }
+
+  private final void drain() throws IOException {
+    if (this.writer != null) {
+      final StringBuilder chars = this.chars;
+      final char[] transfer = this.transfer;
+      final int length = chars.length();
+      for (int i = 0; i < length; i += transfer.length) {
+        final int end = Math.min(length, i + transfer.length);
+        chars.getChars(i, end, transfer, 0);
+        this.writer.write(transfer, 0, end - i);
+      }
+      chars.setLength(0);
+    } else {
+      final ByteBuffer buffer = this.buffer;
+      if (buffer.position() > 0) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          this.channel.write(buffer);
+        }
+        buffer.clear();
+      }
+    }
+  }
+
+  private final void checkOpen() throws IOException {
+    if (this.closed) {
+      throw new IOException("closed");
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Appends the {@linkplain Identifier#toString() <code>String</code>
+   * representation}, or the {@linkplain IdentifierParser compact
+   * form}, of the supplied {@link Identifier} to the supplied {@link
+   * Appendable}.
+   *
+   * @param id the {@link Identifier} to render; must not be {@code
+   * null}
+   *
+   * @param out the {@link Appendable} to append to; must not be
+   * {@code null}
+   *
+   * @param compact whether to render the {@linkplain IdentifierParser
+   * compact form}
+   *
+   * @exception IOException if {@code out} throws one
+   *
+   * @see Identifier#writeTo(Appendable)
+   */
+  static final void append(final Identifier<?, ?> id, final Appendable out, final boolean compact) throws IOException {
+    final IdType<?, ?> idType = id.getIdType();
+    final String separator;
+    if (compact) {
+      final String name = idType.getName();
+      if (name != null) {
+        out.append(name);
+      }
+      separator = ":";
+    } else {
+      out.append(idType.toString());
+      separator = ": ";
+    }
+    if (id instanceof LongIdentifier) {
+      out.append(separator);
+      appendLong(((LongIdentifier<?>)id).getLongValue(), out);
+    } else if (id instanceof IntIdentifier) {
+      out.append(separator);
+      appendLong(((IntIdentifier<?>)id).getIntValue(), out);
+    } else {
+      final Object value = id.getValue();
+      if (value != null) {
+        out.append(separator);
+        if (value instanceof String) {
+          out.append((String)value);
+        } else if (value instanceof Long || value instanceof Integer) {
+          appendLong(((Number)value).longValue(), out);
+        } else {
+          out.append(String.valueOf(value));
+        }
+      }
+    }
+  }
+
+  /**
+   * Puts the UTF-8 encoding of the {@linkplain Identifier#toString()
+   * <code>String</code> representation}, or of the {@linkplain
+   * IdentifierParser compact form}, of the supplied {@link
+   * Identifier} into the supplied {@link ByteBuffer} if there is room
+   * for all of it.
+   *
+   * @param id the {@link Identifier} to encode; must not be {@code
+   * null}
+   *
+   * @param buffer the {@link ByteBuffer} to write to; must not be
+   * {@code null}
+   *
+   * @param compact whether to encode the {@linkplain IdentifierParser
+   * compact form}
+   *
+   * @return {@code true} if the encoding was written; {@code false}
+   * if there was not enough room, in which case {@code buffer} is
+   * untouched
+   *
+   * @see Identifier#writeTo(ByteBuffer)
+   */
+  static final boolean encode(final Identifier<?, ?> id, final ByteBuffer buffer, final boolean compact) {
+    final IdType<?, ?> idType = id.getIdType();
+    final byte[] prefix = compact ? idType.getCompactPrefixBytes() : idType.getPrefixBytes();
+    if (id instanceof LongIdentifier) {
+      return encodeLong(prefix, ((LongIdentifier<?>)id).getLongValue(), buffer);
+    } else if (id instanceof IntIdentifier) {
+      return encodeLong(prefix, ((IntIdentifier<?>)id).getIntValue(), buffer);
+    }
+    final Object value = id.getValue();
+    if (value == null) {
+      // The prefix without its trailing separator.
+      final int length = prefix.length - (compact ? 1 : 2);
+      if (length > buffer.remaining()) {
+        return false;
+      }
+      buffer.put(prefix, 0, length);
+      return true;
+    } else if (value instanceof Long || value instanceof Integer) {
+      return encodeLong(prefix, ((Number)value).longValue(), buffer);
+    }
+    final String s = value instanceof String ? (String)value : String.valueOf(value);
+    if (prefix.length + IdentifierCodec.utf8Length(s) > buffer.remaining()) {
+      return false;
+    }
+    buffer.put(prefix);
+    if (buffer.hasArray()) {
+      final int offset = buffer.arrayOffset();
+      buffer.position(IdentifierCodec.encodeUtf8(s, buffer.array(), offset + buffer.position()) - offset);
+    } else {
+      encodeUtf8(s, buffer);
+    }
+    return true;
+  }
+
+  /**
+   * Appends the decimal representation of the supplied {@code long}
+   * to the supplied {@link Appendable}, one {@code char} at a time
+   * unless it is a {@link StringBuilder}.
+   */
+  private static final void appendLong(final long value, final Appendable out) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder)out).append(value);
+      return;
+    }
+    // Work with non-positive numbers so that Long.MIN_VALUE needs no
+    // special treatment.
+    final long v;
+    if (value < 0L) {
+      out.append('-');
+      v = value;
+    } else {
+      v = -value;
+    }
+    for (int i = digits(v) - 1; i >= 0; i--) {
+      out.append((char)('0' - (v / POWERS_OF_TEN[i]) % 10L));
+    }
+  }
+
+  private static final boolean encodeLong(final byte[] prefix, final long value, final ByteBuffer buffer) {
+    long v = value < 0L ? value : -value;
+    final int length = prefix.length + digits(v) + (value < 0L ? 1 : 0);
+    if (length > buffer.remaining()) {
+      return false;
+    }
+    buffer.put(prefix);
+    final int end = buffer.position() + length - prefix.length;
+    int i = end;
+    do {
+      buffer.put(--i, (byte)('0' - v % 10L));
+      v /= 10L;
+    } while (v != 0L);
+    if (value < 0L) {
+      buffer.put(--i, (byte)'-');
+    }
+    buffer.position(end);
+    return true;
+  }
+
+  /**
+   * Returns the number of decimal digits in the supplied
+   * non-positive {@code long}.
+   */
+  private static final int digits(final long nonPositive) {
+    assert nonPositive <= 0L;
+    int returnValue = 1;
+    while (returnValue < POWERS_OF_TEN.length && nonPositive <= -POWERS_OF_TEN[returnValue]) {
+      returnValue++;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Puts the UTF-8 encoding of the supplied {@link String} into a
+   * {@link ByteBuffer} that is not backed by an array and that has
+   * room for it.
+   *
+   * @see IdentifierCodec#encodeUtf8(String, byte[], int)
+   */
+  private static final void encodeUtf8(final String s, final ByteBuffer buffer) {
+    final int length = s.length();
+    for (int i = 0; i < length; i++) {
+      final char c = s.charAt(i);
+      if (c < 0x80) {
+        buffer.put((byte)c);
+      } else if (c < 0x800) {
+        buffer.put((byte)(0xC0 | (c >> 6)));
+        buffer.put((byte)(0x80 | (c & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+          final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+          buffer.put((byte)(0xF0 | (codePoint >> 18)));
+          buffer.put((byte)(0x80 | ((codePoint >> 12) & 0x3F)));
+          buffer.put((byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+          buffer.put((byte)(0x80 | (codePoint & 0x3F)));
+        } else {
+          buffer.put((byte)'?');
+        }
+      } else {
+        buffer.put((byte)(0xE0 | (c >> 12)));
+        buffer.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+        buffer.put((byte)(0x80 | (c & 0x3F)));
+      }
+    }
+  }
+
+  /**
+   * Returns the length of the longest prefix of the supplied {@link
+   * String} that needs no {@linkplain #percentEncode(String, int,
+   * boolean, char[], int) percent-encoding}.
+   *
+   * @param s the {@link String} in question; must not be {@code null}
+   *
+   * @param name whether {@code s} is the name portion of a URN
+   * rather than the value portion
+   *
+   * @return the length of the prefix
+   */
+  static final int safeLength(final String s, final boolean name) {
+    final boolean[] safe = name ? URN_NAME_SAFE : URN_VALUE_SAFE;
+    final int length = s.length();
+    int i = 0;
+    while (i < length) {
+      final char c = s.charAt(i);
+      if (c >= 0x80 || !safe[c]) {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Percent-encodes the UTF-8 encoding of the supplied {@link
+   * String}, from the supplied index onwards, into the supplied
+   * {@code char} array, which must have room for nine {@code char}s
+   * per {@code char} encoded.
+   *
+   * <p>Unpaired surrogates are encoded as {@code ?}, just as {@link
+   * String#getBytes(java.nio.charset.Charset)} does.</p>
+   *
+   * @param s the {@link String} to encode; must not be {@code null}
+   *
+   * @param from the index within {@code s} of the first {@code char}
+   * to encode
+   *
+   * @param name whether {@code s} is the name portion of a URN
+   * rather than the value portion
+   *
+   * @param chars the {@code char} array to write into; must not be
+   * {@code null}
+   *
+   * @param position the index within {@code chars} at which to begin
+   * writing
+   *
+   * @return the index within {@code chars} just past the last {@code
+   * char} written
+   *
+   * @see IdType#toURN(java.io.Serializable)
+   */
+  static final int percentEncode(final String s, final int from, final boolean name, final char[] chars, int position) {
+    final boolean[] safe = name ? URN_NAME_SAFE : URN_VALUE_SAFE;
+    final int length = s.length();
+    for (int i = from; i < length; i++) {
+      final char c = s.charAt(i);
+      if (c < 0x80) {
+        if (safe[c]) {
+          chars[position++] = c;
+        } else {
+          position = percentEncode(c, chars, position);
+        }
+      } else if (c < 0x800) {
+        position = percentEncode(0xC0 | (c >> 6), chars, position);
+        position = percentEncode(0x80 | (c & 0x3F), chars, position);
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+          final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+          position = percentEncode(0xF0 | (codePoint >> 18), chars, position);
+          position = percentEncode(0x80 | ((codePoint >> 12) & 0x3F), chars, position);
+          position = percentEncode(0x80 | ((codePoint >> 6) & 0x3F), chars, position);
+          position = percentEncode(0x80 | (codePoint & 0x3F), chars, position);
+        } else {
+          position = percentEncode('?', chars, position);
+        }
+      } else {
+        position = percentEncode(0xE0 | (c >> 12), chars, position);
+        position = percentEncode(0x80 | ((c >> 6) & 0x3F), chars, position);
+        position = percentEncode(0x80 | (c & 0x3F), chars, position);
+      }
+    }
+    return position;
+  }
+
+  private static final int percentEncode(final int b, final char[] chars, int position) {
+    chars[position++] = '%';
+    chars[position++] = HEX[(b >> 4) & 0xF];
+    chars[position++] = HEX[b & 0xF];
+    return position;
+  }
+
+  private static final int checkBufferSize(final int bufferSize) {
+    if (bufferSize < MINIMUM_BUFFER_SIZE) {
+      throw new IllegalArgumentException("bufferSize < " + MINIMUM_BUFFER_SIZE + ": " + bufferSize);
+    }
+    return bufferSize;
+  }
+
+  private static final WritableByteChannel newChannel(final OutputStream out) {
+    if (out == null) {
+      throw new IllegalArgumentException("out", new NullPointerException("out"));
+    }
+    return Channels.newChannel(out);
+  }
+
+}
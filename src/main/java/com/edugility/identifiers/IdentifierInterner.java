@@ -0,0 +1,448 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A concurrent pool of canonical {@link Identifier}s.
+ *
+ * <p>An {@link IdentifierInterner} returns, for any {@link
+ * Identifier}, a single canonical {@link Identifier} that is
+ * {@linkplain Identifier#equals(Object) equal} to it, so that
+ * duplicate {@link Identifier}s may be discarded immediately and so
+ * that subsequent equality checks succeed on the identity check that
+ * {@link Identifier#equals(Object)} performs first.</p>
+ *
+ * <p>An {@link IdentifierInterner} created with the {@linkplain
+ * #IdentifierInterner() zero-argument constructor} holds its
+ * canonical {@link Identifier}s {@linkplain WeakReference weakly}, so
+ * that a canonical {@link Identifier} that is no longer referenced
+ * elsewhere is garbage collected as usual.  An {@link
+ * IdentifierInterner} created with the {@linkplain
+ * #IdentifierInterner(int) bounded constructor} holds its canonical
+ * {@link Identifier}s strongly, discarding the least recently used
+ * ones once it grows beyond its maximum size.</p>
+ *
+ * <p>Internally, an {@link IdentifierInterner} is divided into a
+ * number of independently locked stripes, so that threads interning
+ * different {@link Identifier}s rarely contend with one another.</p>
+ *
+ * <p>This class is safe for use by multiple concurrent threads.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #intern(Identifier)
+ *
+ * @see IdTypeRegistry
+ */
+public class IdentifierInterner {
+
+  /**
+   * The stripes that make up this {@link IdentifierInterner}.
+   *
+   * <p>The length of this array is always a power of two.</p>
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Stripe[] stripes;
+
+  /**
+   * The mask that, applied to the high byte of a spread hashcode,
+   * yields a stripe index.
+   */
+  private final int stripeMask;
+
+  /**
+   * Creates a new {@link IdentifierInterner} that holds its canonical
+   * {@link Identifier}s {@linkplain WeakReference weakly}.
+   */
+  public IdentifierInterner() {
+    this(-1);
+  }
+
+  /**
+   * Creates a new {@link IdentifierInterner} that holds at most
+   * (approximately) {@code maximumSize} canonical {@link
+   * Identifier}s strongly, discarding the least recently used ones
+   * first.
+   *
+   * @param maximumSize the maximum number of canonical {@link
+   * Identifier}s to retain; if negative, canonical {@link
+   * Identifier}s will be held {@linkplain WeakReference weakly}
+   * instead and there will be no maximum
+   *
+   * @exception IllegalArgumentException if {@code maximumSize} is
+   * {@code 0}
+   */
+  public IdentifierInterner(final int maximumSize) {
+    super();
+    if (maximumSize == 0) {
+      throw new IllegalArgumentException("maximumSize == 0");
+    }
+    int stripeCount = 1;
+    while (stripeCount < Runtime.getRuntime().availableProcessors() * 4 && stripeCount < 256) {
+      stripeCount <<= 1;
+    }
+    if (maximumSize > 0) {
+      while (stripeCount > 1 && maximumSize / stripeCount < 16) {
+        stripeCount >>>= 1;
+      }
+    }
+    this.stripeMask = stripeCount - 1;
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      if (maximumSize < 0) {
+        this.stripes[i] = new WeakStripe();
+      } else {
+        this.stripes[i] = new StrongStripe(Math.max(1, maximumSize / stripeCount));
+      }
+    }
+  }
+
+  /**
+   * Returns the canonical {@link Identifier} that is {@linkplain
+   * Identifier#equals(Object) equal to} the supplied {@link
+   * Identifier}, making the supplied {@link Identifier} canonical if
+   * there is no such {@link Identifier}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <W> the type of the {@link Identifier}'s {@linkplain
+   * Identifier#getValue() value}
+   *
+   * @param <P> the common supertype of any semantic bits of
+   * information that might be notionally embedded in the {@link
+   * Identifier}
+   *
+   * @param identifier the {@link Identifier} to intern; must not be
+   * {@code null}
+   *
+   * @return the canonical {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code identifier} is
+   * {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  public <W extends Serializable, P> Identifier<W, P> intern(final Identifier<W, P> identifier) {
+    if (identifier == null) {
+      throw new IllegalArgumentException("identifier", new NullPointerException("identifier"));
+    }
+    final int hash = spread(identifier.hashCode());
+    return (Identifier<W, P>)this.stripes[(hash >>> 24) & this.stripeMask].intern(identifier, hash);
+  }
+
+  /**
+   * Returns the canonical {@link Identifier} whose {@linkplain
+   * Identifier#getIdType() <code>IdType</code>} and {@linkplain
+   * Identifier#getValue() value} are equal to the supplied {@link
+   * IdType} and {@code value}, creating (via {@link
+   * Identifier#valueOf(IdType, Serializable)}) and making canonical a
+   * new {@link Identifier} if there is no such {@link Identifier}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <W> the type of the {@link Identifier}'s {@linkplain
+   * Identifier#getValue() value}
+   *
+   * @param <P> the common supertype of any semantic bits of
+   * information that might be notionally embedded in the {@link
+   * Identifier}
+   *
+   * @param idType the {@link IdType} of the {@link Identifier}; must
+   * not be {@code null}
+   *
+   * @param value the value of the {@link Identifier}; must not be
+   * {@code null}
+   *
+   * @return the canonical {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if either parameter is {@code
+   * null}
+   */
+  public <W extends Serializable, P> Identifier<W, P> intern(final IdType<W, P> idType, final W value) {
+    return this.intern(Identifier.valueOf(idType, value));
+  }
+
+  /**
+   * Returns the approximate number of canonical {@link Identifier}s
+   * held by this {@link IdentifierInterner}.
+   *
+   * @return the approximate number of canonical {@link Identifier}s
+   * held by this {@link IdentifierInterner}
+   */
+  public int size() {
+    int size = 0;
+    for (final Stripe stripe : this.stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  /**
+   * Discards all canonical {@link Identifier}s held by this {@link
+   * IdentifierInterner}.
+   */
+  public void clear() {
+    for (final Stripe stripe : this.stripes) {
+      stripe.clear();
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Spreads the bits of the supplied hashcode so that both its high
+   * bits (used to select a stripe) and its low bits (used to select a
+   * bucket) are well distributed.
+   *
+   * @param h the hashcode to spread
+   *
+   * @return the spread hashcode
+   */
+  private static final int spread(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An independently locked portion of an {@link
+   * IdentifierInterner}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static abstract class Stripe {
+
+    private Stripe() {
+      super();
+    }
+
+    abstract Identifier<?, ?> intern(final Identifier<?, ?> identifier, final int hash);
+
+    abstract int size();
+
+    abstract void clear();
+
+  }
+
+  /**
+   * A {@link Stripe} that holds its canonical {@link Identifier}s
+   * {@linkplain WeakReference weakly} in a chained hash table.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class WeakStripe extends Stripe {
+
+    private final ReferenceQueue<Identifier<?, ?>> queue;
+
+    private WeakEntry[] table;
+
+    private int size;
+
+    private WeakStripe() {
+      super();
+      this.queue = new ReferenceQueue<Identifier<?, ?>>();
+      this.table = new WeakEntry[16];
+    }
+
+    @Override
+    final synchronized Identifier<?, ?> intern(final Identifier<?, ?> identifier, final int hash) {
+      this.expunge();
+      WeakEntry[] table = this.table;
+      int index = hash & (table.length - 1);
+      for (WeakEntry entry = table[index]; entry != null; entry = entry.next) {
+        if (entry.hash == hash) {
+          final Identifier<?, ?> candidate = entry.get();
+          if (candidate != null && candidate.equals(identifier)) {
+            return candidate;
+          }
+        }
+      }
+      if (this.size >= table.length - (table.length >>> 2)) {
+        this.resize();
+        table = this.table;
+        index = hash & (table.length - 1);
+      }
+      table[index] = new WeakEntry(identifier, hash, table[index], this.queue);
+      this.size++;
+      return identifier;
+    }
+
+    @Override
+    final synchronized int size() {
+      this.expunge();
+      return this.size;
+    }
+
+    @Override
+    final synchronized void clear() {
+      while (this.queue.poll() != null) {
+        // Drain the queue.
+      }
+      this.table = new WeakEntry[16];
+      this.size = 0;
+    }
+
+    private final void resize() {
+      final WeakEntry[] oldTable = this.table;
+      final WeakEntry[] newTable = new WeakEntry[oldTable.length << 1];
+      final int mask = newTable.length - 1;
+      int size = 0;
+      for (WeakEntry entry : oldTable) {
+        while (entry != null) {
+          final WeakEntry next = entry.next;
+          if (entry.get() != null) {
+            final int index = entry.hash & mask;
+            entry.next = newTable[index];
+            newTable[index] = entry;
+            size++;
+          }
+          // Entries whose referents have been cleared are simply
+          // dropped; they will be ignored by expunge().
+          entry = next;
+        }
+      }
+      this.table = newTable;
+      this.size = size;
+    }
+
+    private final void expunge() {
+      Object reference;
+      while ((reference = this.queue.poll()) != null) {
+        final WeakEntry cleared = (WeakEntry)reference;
+        final WeakEntry[] table = this.table;
+        final int index = cleared.hash & (table.length - 1);
+        WeakEntry previous = null;
+        for (WeakEntry entry = table[index]; entry != null; entry = entry.next) {
+          if (entry == cleared) {
+            if (previous == null) {
+              table[index] = entry.next;
+            } else {
+              previous.next = entry.next;
+            }
+            this.size--;
+            break;
+          }
+          previous = entry;
+        }
+      }
+    }
+
+  }
+
+  /**
+   * A {@link WeakReference} to a canonical {@link Identifier} that is
+   * also a hash chain link.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class WeakEntry extends WeakReference<Identifier<?, ?>> {
+
+    private final int hash;
+
+    private WeakEntry next;
+
+    private WeakEntry(final Identifier<?, ?> identifier, final int hash, final WeakEntry next, final ReferenceQueue<Identifier<?, ?>> queue) {
+      super(identifier, queue);
+      this.hash = hash;
+      this.next = next;
+    }
+
+  }
+
+  /**
+   * A {@link Stripe} that holds a bounded number of canonical {@link
+   * Identifier}s strongly, discarding the least recently used ones
+   * first.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class StrongStripe extends Stripe {
+
+    private final LinkedHashMap<Identifier<?, ?>, Identifier<?, ?>> map;
+
+    private StrongStripe(final int maximumSize) {
+      super();
+      this.map = new LinkedHashMap<Identifier<?, ?>, Identifier<?, ?>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected final boolean removeEldestEntry(final Map.Entry<Identifier<?, ?>, Identifier<?, ?>> eldest) {
+          return this.size() > maximumSize;
+        }
+      };
+    }
+
+    @Override
+    final synchronized Identifier<?, ?> intern(final Identifier<?, ?> identifier, final int hash) {
+      final Identifier<?, ?> candidate = this.map.get(identifier);
+      if (candidate != null) {
+        return candidate;
+      }
+      this.map.put(identifier, identifier);
+      return identifier;
+    }
+
+    @Override
+    final synchronized int size() {
+      return this.map.size();
+    }
+
+    @Override
+    final synchronized void clear() {
+      this.map.clear();
+    }
+
+  }
+
+}
@@ -0,0 +1,726 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Map} from {@link Identifier}s of any number of {@link
+ * IdType}s to values, which stores its keys not as {@link
+ * Identifier}s but as bare {@code long}s, {@code int}s and {@link
+ * String}s.
+ *
+ * <p>Mappings are partitioned by {@link IdType}.  Within a partition
+ * for an {@link IdType} whose {@linkplain IdType#getType() type} is
+ * {@link Long}, {@link Integer} or {@link String}, keys that are
+ * instances of exactly {@link Identifier}, and keys that are {@link
+ * LongIdentifier}s, {@link IntIdentifier}s or {@link StringId}s
+ * respectively, are stored in two open-addressing tables whose keys
+ * are the {@link Identifier}s' values.  Since {@linkplain
+ * Identifier#equals(Object) <code>Identifier</code>s of different
+ * classes are never equal}, the two tables are kept separate.  All
+ * other keys are stored in an ordinary {@link HashMap}.</p>
+ *
+ * <p>Keys are therefore not retained: the {@link Identifier}s
+ * returned by {@link #keySet()} and {@link #entrySet()} are
+ * reconstructed, equal to but not identical to the keys that were
+ * supplied, as {@link LongIdentifier}s, {@link IntIdentifier}s,
+ * {@link StringId}s or {@link Identifier}s as appropriate.  {@code
+ * null} keys are not permitted; {@code null} values are.</p>
+ *
+ * <p>Like {@link HashMap}, an {@link IdentifierMap} is not safe for
+ * use by multiple threads without external synchronization, and its
+ * iterators are fail-fast.</p>
+ *
+ * @param <V> the type of the values
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+public class IdentifierMap<V> extends AbstractMap<Identifier<?, ?>, V> {
+
+  private static final int LONG = 1;
+
+  private static final int INT = 2;
+
+  private static final int STRING = 3;
+
+  private static final int OTHER = 0;
+
+  /**
+   * The {@link Partition}s, indexed by {@link IdType}.  This field is
+   * never {@code null}.
+   */
+  private final Map<IdType<?, ?>, Partition<V>> partitions;
+
+  /**
+   * The {@link Partition}s in order of creation, for iteration.  This
+   * field is never {@code null}.
+   */
+  private final List<Partition<V>> partitionList;
+
+  /**
+   * The {@link Partition} most recently used, which in most
+   * workloads is the next one to be used as well; may be {@code
+   * null}.
+   */
+  private Partition<V> lastPartition;
+
+  /**
+   * The number of mappings.
+   */
+  private int size;
+
+  /**
+   * The number of structural modifications made to this {@link
+   * IdentifierMap}, for detecting concurrent modification during
+   * iteration.
+   */
+  private int modCount;
+
+  /**
+   * The {@link Set} view of this {@link IdentifierMap}'s mappings, or
+   * {@code null} if it has not yet been requested.
+   *
+   * @see #entrySet()
+   */
+  private Set<Entry<Identifier<?, ?>, V>> entrySet;
+
+  /**
+   * Creates a new, empty {@link IdentifierMap}.
+   */
+  public IdentifierMap() {
+    super();
+    this.partitions = new HashMap<IdType<?, ?>, Partition<V>>();
+    this.partitionList = new ArrayList<Partition<V>>();
+  }
+
+  /**
+   * Creates a new {@link IdentifierMap} containing the mappings in
+   * the supplied {@link Map}.
+   *
+   * @param map the {@link Map} whose mappings will be copied; must
+   * not be {@code null} and must not contain a {@code null} key
+   *
+   * @exception IllegalArgumentException if {@code map} is {@code
+   * null} or contains a {@code null} key
+   */
+  public IdentifierMap(final Map<? extends Identifier<?, ?>, ? extends V> map) {
+    this();
+    if (map == null) {
+      throw new IllegalArgumentException("map", new NullPointerException("map"));
+    }
+    this.putAll(map);
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  @Override
+  public V get(final Object key) {
+    if (key instanceof Identifier) {
+      final Identifier<?, ?> id = (Identifier<?, ?>)key;
+      final Partition<V> partition = this.partition(id.getIdType(), false);
+      if (partition != null) {
+        final KeyTable<V> table = partition.tableFor(id);
+        if (table == null) {
+          return partition.others == null ? null : partition.others.get(id);
+        }
+        final int slot = partition.find(table, id);
+        if (slot >= 0) {
+          return table.valueAt(slot);
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    if (key instanceof Identifier) {
+      final Identifier<?, ?> id = (Identifier<?, ?>)key;
+      final Partition<V> partition = this.partition(id.getIdType(), false);
+      if (partition != null) {
+        final KeyTable<V> table = partition.tableFor(id);
+        if (table == null) {
+          return partition.others != null && partition.others.containsKey(id);
+        }
+        return partition.find(table, id) >= 0;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Maps the supplied value under the supplied key, and returns the
+   * value previously mapped under it, or {@code null}.
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @param value the value; may be {@code null}
+   *
+   * @return the previous value, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code key} is {@code
+   * null}
+   */
+  @Override
+  public V put(final Identifier<?, ?> key, final V value) {
+    if (key == null) {
+      throw new IllegalArgumentException("key", new NullPointerException("key"));
+    }
+    final Partition<V> partition = this.partition(key.getIdType(), true);
+    final KeyTable<V> table = partition.tableFor(key);
+    final int oldSize;
+    final int newSize;
+    final V returnValue;
+    if (table == null) {
+      if (partition.others == null) {
+        partition.others = new HashMap<Identifier<?, ?>, V>();
+      }
+      oldSize = partition.others.size();
+      returnValue = partition.others.put(key, value);
+      newSize = partition.others.size();
+    } else {
+      oldSize = table.size();
+      returnValue = partition.put(table, key, value);
+      newSize = table.size();
+    }
+    if (newSize != oldSize) {
+      this.size++;
+      this.modCount++;
+    }
+    return returnValue;
+  }
+
+  @Override
+  public V remove(final Object key) {
+    if (key instanceof Identifier) {
+      final Identifier<?, ?> id = (Identifier<?, ?>)key;
+      final Partition<V> partition = this.partition(id.getIdType(), false);
+      if (partition != null) {
+        final KeyTable<V> table = partition.tableFor(id);
+        if (table == null) {
+          if (partition.others != null && partition.others.containsKey(id)) {
+            this.size--;
+            this.modCount++;
+            return partition.others.remove(id);
+          }
+        } else {
+          final int slot = partition.find(table, id);
+          if (slot >= 0) {
+            this.size--;
+            this.modCount++;
+            return table.removeAt(slot);
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void clear() {
+    this.partitions.clear();
+    this.partitionList.clear();
+    this.lastPartition = null;
+    this.size = 0;
+    this.modCount++;
+  }
+
+  /**
+   * Returns a {@link Set} view of the mappings in this {@link
+   * IdentifierMap}.
+   *
+   * <p>The keys of the {@link Entry Map.Entry}s are reconstructed as
+   * they are iterated over; see the {@linkplain IdentifierMap class
+   * documentation}.  The {@link Set} supports removal, and its {@link
+   * Entry Map.Entry}s support {@link Entry#setValue(Object)}.</p>
+   *
+   * @return a {@link Set} view of the mappings in this {@link
+   * IdentifierMap}; never {@code null}
+   */
+  @Override
+  public Set<Entry<Identifier<?, ?>, V>> entrySet() {
+    Set<Entry<Identifier<?, ?>, V>> entrySet = this.entrySet;
+    if (entrySet == null) {
+      entrySet = new AbstractSet<Entry<Identifier<?, ?>, V>>() {
+          @Override
+          public final int size() {
+            return IdentifierMap.this.size;
+          }
+
+          @Override
+          public final boolean contains(final Object o) {
+            if (o instanceof Entry) {
+              final Entry<?, ?> entry = (Entry<?, ?>)o;
+              final Object key = entry.getKey();
+              if (containsKey(key)) {
+                final Object value = get(key);
+                return value == null ? entry.getValue() == null : value.equals(entry.getValue());
+              }
+            }
+            return false;
+          }
+
+          @Override
+          public final void clear() {
+            IdentifierMap.this.clear();
+          }
+
+          @Override
+          public final Iterator<Entry<Identifier<?, ?>, V>> iterator() {
+            return new EntryIterator();
+          }
+        };
+      this.entrySet = entrySet;
+    }
+    return entrySet;
+  }
+
+  /**
+   * Returns the {@link Partition} for the supplied {@link IdType},
+   * creating it if requested.
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param create whether to create the {@link Partition} if it does
+   * not exist
+   *
+   * @return the {@link Partition}, or {@code null} if it does not
+   * exist and {@code create} is {@code false}
+   */
+  private final Partition<V> partition(final IdType<?, ?> idType, final boolean create) {
+    Partition<V> partition = this.lastPartition;
+    if (partition != null && partition.idType == idType) {
+      return partition;
+    }
+    final List<Partition<V>> partitionList = this.partitionList;
+    final int size = partitionList.size();
+    if (size <= 8) {
+      // IdTypes are usually canonical and few, so an identity scan
+      // usually beats a hash lookup.
+      for (int i = 0; i < size; i++) {
+        partition = partitionList.get(i);
+        if (partition.idType == idType) {
+          this.lastPartition = partition;
+          return partition;
+        }
+      }
+    }
+    partition = this.partitions.get(idType);
+    if (partition == null) {
+      if (!create) {
+        return null;
+      }
+      partition = new Partition<V>(idType);
+      this.partitions.put(idType, partition);
+      this.partitionList.add(partition);
+    }
+    this.lastPartition = partition;
+    return partition;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The mappings whose keys share an {@link IdType}.
+   *
+   * @param <V> the type of the values
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Partition<V> {
+
+    /**
+     * The {@link IdType} of every key in this {@link Partition}.  This
+     * field is never {@code null}.
+     */
+    private final IdType<?, ?> idType;
+
+    /**
+     * The kind of value held by keys with this {@link Partition}'s
+     * {@link IdType}: one of {@link #LONG}, {@link #INT}, {@link
+     * #STRING} or {@link #OTHER}.
+     */
+    private final int kind;
+
+    /**
+     * The {@link KeyTable} for keys that are instances of exactly
+     * {@link Identifier}, or {@code null} if {@link #kind} is {@link
+     * #OTHER}.
+     */
+    private final KeyTable<V> plain;
+
+    /**
+     * The {@link KeyTable} for keys that are {@link LongIdentifier}s,
+     * {@link IntIdentifier}s or {@link StringId}s, as appropriate, or
+     * {@code null} if {@link #kind} is {@link #OTHER}.
+     */
+    private final KeyTable<V> special;
+
+    /**
+     * The mappings for all other keys, or {@code null} if there have
+     * never been any.
+     */
+    private Map<Identifier<?, ?>, V> others;
+
+    private Partition(final IdType<?, ?> idType) {
+      super();
+      this.idType = idType;
+      final Class<?> type = idType.getType();
+      if (type == Long.class) {
+        this.kind = LONG;
+        this.plain = new LongKeyTable<V>();
+        this.special = new LongKeyTable<V>();
+      } else if (type == Integer.class) {
+        this.kind = INT;
+        this.plain = new IntKeyTable<V>();
+        this.special = new IntKeyTable<V>();
+      } else if (type == String.class) {
+        this.kind = STRING;
+        this.plain = new StringKeyTable<V>();
+        this.special = new StringKeyTable<V>();
+      } else {
+        this.kind = OTHER;
+        this.plain = null;
+        this.special = null;
+      }
+    }
+
+    /**
+     * Returns the {@link KeyTable} in which the supplied key belongs,
+     * or {@code null} if it belongs in {@link #others}.
+     */
+    private final KeyTable<V> tableFor(final Identifier<?, ?> id) {
+      final Class<?> c = id.getClass();
+      switch (this.kind) {
+      case LONG:
+        if (c == LongIdentifier.class) {
+          return this.special;
+        } else if (c == Identifier.class && id.getValue() instanceof Long) {
+          return this.plain;
+        }
+        return null;
+      case INT:
+        if (c == IntIdentifier.class) {
+          return this.special;
+        } else if (c == Identifier.class && id.getValue() instanceof Integer) {
+          return this.plain;
+        }
+        return null;
+      case STRING:
+        if (c == StringId.class) {
+          return this.special;
+        } else if (c == Identifier.class && id.getValue() instanceof String) {
+          return this.plain;
+        }
+        return null;
+      default:
+        return null;
+      }
+    }
+
+    private final int find(final KeyTable<V> table, final Identifier<?, ?> id) {
+      switch (this.kind) {
+      case LONG:
+        return ((LongKeyTable<V>)table).find(longKey(id));
+      case INT:
+        return ((IntKeyTable<V>)table).find(intKey(id));
+      default:
+        return ((StringKeyTable<V>)table).find((String)id.getValue());
+      }
+    }
+
+    private final V put(final KeyTable<V> table, final Identifier<?, ?> id, final V value) {
+      switch (this.kind) {
+      case LONG:
+        return ((LongKeyTable<V>)table).put(longKey(id), value);
+      case INT:
+        return ((IntKeyTable<V>)table).put(intKey(id), value);
+      default:
+        return ((StringKeyTable<V>)table).put((String)id.getValue(), value);
+      }
+    }
+
+    /**
+     * Reconstructs the key in the supplied live slot of the supplied
+     * {@link KeyTable}.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private final Identifier<?, ?> keyAt(final KeyTable<V> table, final int slot) {
+      final IdType idType = this.idType;
+      switch (this.kind) {
+      case LONG:
+        final long longKey = ((LongKeyTable<V>)table).keyAt(slot);
+        return table == this.special ? new LongIdentifier(idType, longKey) : new Identifier(idType, Long.valueOf(longKey));
+      case INT:
+        final int intKey = ((IntKeyTable<V>)table).keyAt(slot);
+        return table == this.special ? new IntIdentifier(idType, intKey) : new Identifier(idType, Integer.valueOf(intKey));
+      default:
+        final String stringKey = ((StringKeyTable<V>)table).keyAt(slot);
+        return table == this.special ? new StringId((StringIdType)idType, stringKey) : new Identifier(idType, stringKey);
+      }
+    }
+
+    private static final long longKey(final Identifier<?, ?> id) {
+      if (id instanceof LongIdentifier) {
+        return ((LongIdentifier<?>)id).getLongValue();
+      }
+      return ((Long)id.getValue()).longValue();
+    }
+
+    private static final int intKey(final Identifier<?, ?> id) {
+      if (id instanceof IntIdentifier) {
+        return ((IntIdentifier<?>)id).getIntValue();
+      }
+      return ((Integer)id.getValue()).intValue();
+    }
+
+  }
+
+  /**
+   * A live mapping in a {@link KeyTable}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private final class TableEntry extends SimpleEntry<Identifier<?, ?>, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final KeyTable<V> table;
+
+    private final int slot;
+
+    /**
+     * The modification count of the {@link IdentifierMap} when this
+     * {@link TableEntry} was created; while it is unchanged, {@link
+     * #slot} still holds this {@link TableEntry}'s key.
+     */
+    private final int expectedModCount;
+
+    private TableEntry(final Identifier<?, ?> key, final KeyTable<V> table, final int slot) {
+      super(key, table.valueAt(slot));
+      this.table = table;
+      this.slot = slot;
+      this.expectedModCount = modCount;
+    }
+
+    /**
+     * Sets the value of this {@link TableEntry}, and, if its key is
+     * still mapped, the value mapped under it in the {@link
+     * IdentifierMap}.
+     *
+     * <p>If the key has been removed since this {@link TableEntry}
+     * was created, only this {@link TableEntry} is changed.</p>
+     *
+     * @param value the new value; may be {@code null}
+     *
+     * @return the previous value, or {@code null}
+     */
+    @Override
+    public final V setValue(final V value) {
+      final V returnValue = super.setValue(value);
+      if (modCount == this.expectedModCount) {
+        return this.table.setValueAt(this.slot, value);
+      }
+      // The slot may since have been vacated, reused or rehashed.
+      final Identifier<?, ?> key = this.getKey();
+      if (containsKey(key)) {
+        return put(key, value);
+      }
+      return returnValue;
+    }
+
+  }
+
+  /**
+   * An {@link Iterator} over every mapping in every {@link
+   * Partition}: first the live slots of each {@link KeyTable}, then
+   * the {@link Partition#others} map.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private final class EntryIterator implements Iterator<Entry<Identifier<?, ?>, V>> {
+
+    /**
+     * The modification count that this {@link EntryIterator} expects
+     * its {@link IdentifierMap} to have.
+     */
+    private int expectedModCount;
+
+    /**
+     * The index of the current {@link Partition}.
+     */
+    private int partitionIndex;
+
+    /**
+     * Which source within the current {@link Partition} is being
+     * iterated: {@code 0} for {@link Partition#plain}, {@code 1} for
+     * {@link Partition#special} and {@code 2} for {@link
+     * Partition#others}.
+     */
+    private int source;
+
+    /**
+     * The next slot to examine in the current {@link KeyTable}.
+     */
+    private int slot;
+
+    /**
+     * The {@link Iterator} over {@link Partition#others}, if it is
+     * being iterated.
+     */
+    private Iterator<Entry<Identifier<?, ?>, V>> othersIterator;
+
+    /**
+     * The {@link KeyTable} holding the most recently returned mapping,
+     * or {@code null} if it came from {@link #othersIterator} or if
+     * there is no such mapping.
+     */
+    private KeyTable<V> lastTable;
+
+    /**
+     * The slot of the most recently returned mapping, or {@code -1}.
+     */
+    private int lastSlot;
+
+    /**
+     * The {@link Iterator} that returned the most recent mapping, if
+     * it came from a {@link Partition#others} map, or {@code null}.
+     */
+    private Iterator<Entry<Identifier<?, ?>, V>> lastOthersIterator;
+
+    private EntryIterator() {
+      super();
+      this.expectedModCount = modCount;
+      this.lastSlot = -1;
+    }
+
+    @Override
+    public final boolean hasNext() {
+      this.checkForComodification();
+      final List<Partition<V>> partitionList = IdentifierMap.this.partitionList;
+      while (this.partitionIndex < partitionList.size()) {
+        final Partition<V> partition = partitionList.get(this.partitionIndex);
+        if (this.source < 2) {
+          final KeyTable<V> table = this.source == 0 ? partition.plain : partition.special;
+          if (table != null) {
+            final int capacity = table.capacity();
+            while (this.slot < capacity) {
+              if (table.isLive(this.slot)) {
+                return true;
+              }
+              this.slot++;
+            }
+          }
+          this.source++;
+          this.slot = 0;
+        } else {
+          if (this.othersIterator == null && partition.others != null) {
+            this.othersIterator = partition.others.entrySet().iterator();
+          }
+          if (this.othersIterator != null && this.othersIterator.hasNext()) {
+            return true;
+          }
+          this.othersIterator = null;
+          this.source = 0;
+          this.partitionIndex++;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public final Entry<Identifier<?, ?>, V> next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final Partition<V> partition = IdentifierMap.this.partitionList.get(this.partitionIndex);
+      if (this.source < 2) {
+        final KeyTable<V> table = this.source == 0 ? partition.plain : partition.special;
+        this.lastTable = table;
+        this.lastSlot = this.slot++;
+        this.lastOthersIterator = null;
+        return new TableEntry(partition.keyAt(table, this.lastSlot), table, this.lastSlot);
+      }
+      this.lastTable = null;
+      this.lastSlot = -1;
+      this.lastOthersIterator = this.othersIterator;
+      return this.othersIterator.next();
+    }
+
+    @Override
+    public final void remove() {
+      this.checkForComodification();
+      if (this.lastTable != null) {
+        this.lastTable.removeAt(this.lastSlot);
+        this.lastTable = null;
+      } else if (this.lastOthersIterator != null) {
+        this.lastOthersIterator.remove();
+        this.lastOthersIterator = null;
+      } else {
+        throw new IllegalStateException();
+      }
+      size--;
+      modCount++;
+      this.expectedModCount = modCount;
+    }
+
+    private final void checkForComodification() {
+      if (modCount != this.expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+
+  }
+
+}
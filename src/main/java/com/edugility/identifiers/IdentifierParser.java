@@ -0,0 +1,1074 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.net.URI;
+
+import java.nio.charset.StandardCharsets;
+
+import java.text.ParseException;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses {@link Identifier}s from their {@linkplain
+ * Identifier#toString() <code>String</code> representations} and
+ * from a compact variant of them, given as {@link CharSequence}s,
+ * {@code char} arrays or UTF-8-encoded {@code byte} arrays.
+ *
+ * <p>The <em>canonical form</em> of an {@link Identifier} is its
+ * {@linkplain Identifier#toString() <code>String</code>
+ * representation}: its {@link IdType}'s {@linkplain
+ * IdType#toString() <code>String</code> representation}&mdash;for
+ * example, {@code order (class java.lang.String)}&mdash;followed by
+ * {@code ": "} and its {@linkplain Identifier#getValue() value}.  The
+ * <em>compact form</em> is its {@link IdType}'s {@linkplain
+ * IdType#getName() name} (or nothing, if it has none) followed by
+ * {@code ':'} and its value; for example, {@code order:ORD-1}.  Both
+ * forms are written by {@link IdentifierFormatter}s.  A
+ * <em>URN</em>, as returned by {@link Identifier#toURN()}, is the
+ * compact form, percent-encoded, following {@code urn:}.</p>
+ *
+ * <p>Neither form records an {@link IdType}'s {@link Extractor}s, so
+ * an {@link IdentifierParser} resolves the {@link IdType} portion of
+ * the text against a fixed set of {@link IdType}s or against an
+ * {@link IdTypeRegistry}.  The lookup hashes the characters or bytes
+ * in place and compares them against pre-rendered keys, so nothing
+ * is allocated for it.  If two known {@link IdType}s render the same
+ * key&mdash;two {@link IdType}s named {@code order} with different
+ * {@link Extractor}s, say, or, in the compact form, with different
+ * {@linkplain IdType#getType() types}&mdash;then text bearing that key
+ * cannot be parsed.</p>
+ *
+ * <p>{@link IdType}s whose {@linkplain IdType#getType() type} is
+ * {@link String}, {@link Long} or {@link Integer} are supported.
+ * {@link Long} and {@link Integer} values are decoded directly from
+ * the characters or bytes.  Neither form records which class of
+ * {@link Identifier} was written, and {@link Identifier}s of
+ * different classes are never {@linkplain Identifier#equals(Object)
+ * equal}, so the class of each {@link Identifier} returned follows
+ * from the class of its {@link IdType}: values whose {@link IdType}
+ * is a {@link LongIdType}, an {@link IntegerIdType} or a {@link
+ * StringIdType} are returned in {@link LongIdentifier}s, {@link
+ * IntIdentifier}s and {@link StringId}s respectively, and all others
+ * in plain {@link Identifier}s.  An {@link Identifier} of the class
+ * its {@link IdType} implies parses back into one equal to it; any
+ * other must be converted after parsing, or written with an {@link
+ * IdentifierCodec}, which records the class.</p>
+ *
+ * <p>This class is safe for use by multiple concurrent threads.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see IdentifierFormatter
+ *
+ * @see Identifier#toString()
+ */
+public final class IdentifierParser {
+
+  private static final int STRING = 0;
+
+  private static final int LONG = 1;
+
+  private static final int INTEGER = 2;
+
+  private static final int STRING_ID = 3;
+
+  private static final int LONG_IDENTIFIER = 4;
+
+  private static final int INT_IDENTIFIER = 5;
+
+  private static final int UNSUPPORTED = 6;
+
+  /**
+   * The {@link IdTypeRegistry} against which {@link IdType}s are
+   * resolved, or {@code null} if this {@link IdentifierParser} was
+   * {@linkplain #IdentifierParser(Iterable) created with a fixed set
+   * of <code>IdType</code>s}.
+   */
+  private final IdTypeRegistry registry;
+
+  /**
+   * The lookup tables currently in use.  This field is never {@code
+   * null}.
+   *
+   * @see #refresh(Tables)
+   */
+  private volatile Tables tables;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link IdentifierParser} that resolves {@link
+   * IdType}s against the {@linkplain IdTypeRegistry#getInstance()
+   * default <code>IdTypeRegistry</code>}.
+   */
+  public IdentifierParser() {
+    this(IdTypeRegistry.getInstance());
+  }
+
+  /**
+   * Creates a new {@link IdentifierParser} that resolves {@link
+   * IdType}s against the supplied {@link IdTypeRegistry}.
+   *
+   * <p>{@link IdType}s registered after this {@link IdentifierParser}
+   * is created are picked up the first time text that refers to an
+   * unknown {@link IdType} is parsed.</p>
+   *
+   * @param registry the {@link IdTypeRegistry} to use; must not be
+   * {@code null}
+   *
+   * @exception IllegalArgumentException if {@code registry} is
+   * {@code null}
+   */
+  public IdentifierParser(final IdTypeRegistry registry) {
+    super();
+    if (registry == null) {
+      throw new IllegalArgumentException("registry", new NullPointerException("registry"));
+    }
+    this.registry = registry;
+    this.tables = new Tables(registry.getVersion(), registry.getIdTypes());
+  }
+
+  /**
+   * Creates a new {@link IdentifierParser} that resolves {@link
+   * IdType}s against the supplied {@link IdType}s only.
+   *
+   * @param idTypes the {@link IdType}s to use; must not be {@code
+   * null} and must not contain {@code null}
+   *
+   * @exception IllegalArgumentException if {@code idTypes} is {@code
+   * null} or contains {@code null}
+   */
+  public IdentifierParser(final Iterable<? extends IdType<?, ?>> idTypes) {
+    super();
+    if (idTypes == null) {
+      throw new IllegalArgumentException("idTypes", new NullPointerException("idTypes"));
+    }
+    this.registry = null;
+    this.tables = new Tables(0, idTypes);
+  }
+
+
+  /*
+   * Canonical form methods.
+   */
+
+
+  /**
+   * Parses the supplied canonical form.
+   *
+   * @param text the text to parse; must not be {@code null}
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code text} is {@code
+   * null}
+   *
+   * @exception ParseException if {@code text} could not be parsed
+   */
+  public final Identifier<?, ?> parse(final CharSequence text) throws ParseException {
+    if (text == null) {
+      throw new IllegalArgumentException("text", new NullPointerException("text"));
+    }
+    return this.parse(text, 0, text.length(), false);
+  }
+
+  /**
+   * Parses the canonical form found in the supplied range of the
+   * supplied {@link CharSequence}.
+   *
+   * @param text the {@link CharSequence} to parse; must not be
+   * {@code null}
+   *
+   * @param start the index of the first character to parse
+   *
+   * @param end the index one past the last character to parse
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code text} is {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if {@code start} or {@code
+   * end} is out of bounds
+   *
+   * @exception ParseException if the text could not be parsed; its
+   * {@linkplain ParseException#getErrorOffset() error offset} is an
+   * index within {@code text}
+   */
+  public final Identifier<?, ?> parse(final CharSequence text, final int start, final int end) throws ParseException {
+    if (text == null) {
+      throw new IllegalArgumentException("text", new NullPointerException("text"));
+    }
+    checkRange(start, end, text.length());
+    return this.parse(text, start, end, false);
+  }
+
+  /**
+   * Parses the canonical form found in the supplied range of the
+   * supplied {@code char} array.
+   *
+   * @param chars the {@code char} array to parse; must not be {@code
+   * null}
+   *
+   * @param offset the index of the first {@code char} to parse
+   *
+   * @param length the number of {@code char}s to parse
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code chars} is {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if {@code offset} or {@code
+   * length} is out of bounds
+   *
+   * @exception ParseException if the text could not be parsed; its
+   * {@linkplain ParseException#getErrorOffset() error offset} is an
+   * index within {@code chars}
+   */
+  public final Identifier<?, ?> parse(final char[] chars, final int offset, final int length) throws ParseException {
+    if (chars == null) {
+      throw new IllegalArgumentException("chars", new NullPointerException("chars"));
+    }
+    checkRange(offset, offset + length, chars.length);
+    return this.parse(chars, offset, offset + length, false);
+  }
+
+  /**
+   * Parses the UTF-8-encoded canonical form found in the supplied
+   * range of the supplied {@code byte} array.
+   *
+   * @param bytes the {@code byte} array to parse; must not be {@code
+   * null}
+   *
+   * @param offset the index of the first byte to parse
+   *
+   * @param length the number of bytes to parse
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code bytes} is {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if {@code offset} or {@code
+   * length} is out of bounds
+   *
+   * @exception ParseException if the text could not be parsed; its
+   * {@linkplain ParseException#getErrorOffset() error offset} is an
+   * index within {@code bytes}
+   */
+  public final Identifier<?, ?> parse(final byte[] bytes, final int offset, final int length) throws ParseException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes", new NullPointerException("bytes"));
+    }
+    checkRange(offset, offset + length, bytes.length);
+    return this.parse(bytes, offset, offset + length, false);
+  }
+
+
+  /*
+   * Compact form methods.
+   */
+
+
+  /**
+   * Parses the supplied compact form.
+   *
+   * @param text the text to parse; must not be {@code null}
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code text} is {@code
+   * null}
+   *
+   * @exception ParseException if {@code text} could not be parsed
+   */
+  public final Identifier<?, ?> parseCompact(final CharSequence text) throws ParseException {
+    if (text == null) {
+      throw new IllegalArgumentException("text", new NullPointerException("text"));
+    }
+    return this.parse(text, 0, text.length(), true);
+  }
+
+  /**
+   * Parses the compact form found in the supplied range of the
+   * supplied {@link CharSequence}.
+   *
+   * @param text the {@link CharSequence} to parse; must not be
+   * {@code null}
+   *
+   * @param start the index of the first character to parse
+   *
+   * @param end the index one past the last character to parse
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code text} is {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if {@code start} or {@code
+   * end} is out of bounds
+   *
+   * @exception ParseException if the text could not be parsed; its
+   * {@linkplain ParseException#getErrorOffset() error offset} is an
+   * index within {@code text}
+   */
+  public final Identifier<?, ?> parseCompact(final CharSequence text, final int start, final int end) throws ParseException {
+    if (text == null) {
+      throw new IllegalArgumentException("text", new NullPointerException("text"));
+    }
+    checkRange(start, end, text.length());
+    return this.parse(text, start, end, true);
+  }
+
+  /**
+   * Parses the compact form found in the supplied range of the
+   * supplied {@code char} array.
+   *
+   * @param chars the {@code char} array to parse; must not be {@code
+   * null}
+   *
+   * @param offset the index of the first {@code char} to parse
+   *
+   * @param length the number of {@code char}s to parse
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code chars} is {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if {@code offset} or {@code
+   * length} is out of bounds
+   *
+   * @exception ParseException if the text could not be parsed; its
+   * {@linkplain ParseException#getErrorOffset() error offset} is an
+   * index within {@code chars}
+   */
+  public final Identifier<?, ?> parseCompact(final char[] chars, final int offset, final int length) throws ParseException {
+    if (chars == null) {
+      throw new IllegalArgumentException("chars", new NullPointerException("chars"));
+    }
+    checkRange(offset, offset + length, chars.length);
+    return this.parse(chars, offset, offset + length, true);
+  }
+
+  /**
+   * Parses the UTF-8-encoded compact form found in the supplied range
+   * of the supplied {@code byte} array.
+   *
+   * @param bytes the {@code byte} array to parse; must not be {@code
+   * null}
+   *
+   * @param offset the index of the first byte to parse
+   *
+   * @param length the number of bytes to parse
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code bytes} is {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if {@code offset} or {@code
+   * length} is out of bounds
+   *
+   * @exception ParseException if the text could not be parsed; its
+   * {@linkplain ParseException#getErrorOffset() error offset} is an
+   * index within {@code bytes}
+   */
+  public final Identifier<?, ?> parseCompact(final byte[] bytes, final int offset, final int length) throws ParseException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes", new NullPointerException("bytes"));
+    }
+    checkRange(offset, offset + length, bytes.length);
+    return this.parse(bytes, offset, offset + length, true);
+  }
+
+
+  /*
+   * URN methods.
+   */
+
+
+  /**
+   * Parses the supplied URN, as returned by {@link
+   * Identifier#toURN()} or {@link IdType#toURN(java.io.Serializable)}.
+   *
+   * <p>The {@link IdType} is resolved by {@linkplain IdType#getName()
+   * name}, just as it is for the compact form.  Any fragment is
+   * ignored.</p>
+   *
+   * @param uri the URN to parse; must not be {@code null}
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code uri} is {@code
+   * null}
+   *
+   * @exception ParseException if {@code uri} is not a URN or could
+   * not be parsed; its {@linkplain ParseException#getErrorOffset()
+   * error offset} is an index within {@code uri}'s {@linkplain
+   * URI#toString() <code>String</code> representation}
+   *
+   * @see Identifier#toURN()
+   */
+  public final Identifier<?, ?> parseURI(final URI uri) throws ParseException {
+    if (uri == null) {
+      throw new IllegalArgumentException("uri", new NullPointerException("uri"));
+    }
+    final String scheme = uri.getScheme();
+    if (!uri.isOpaque() || !"urn".equalsIgnoreCase(scheme)) {
+      throw new ParseException("Not a URN: " + uri, 0);
+    }
+    final String ssp = uri.getRawSchemeSpecificPart();
+    final int offset = scheme.length() + 1;
+    final int colon = ssp.indexOf(':');
+    if (colon < 0) {
+      throw new ParseException("Missing ':': " + uri, offset + ssp.length());
+    }
+    final String name = percentDecode(ssp, 0, colon, offset);
+    final String value = percentDecode(ssp, colon + 1, ssp.length(), offset);
+    Tables tables = this.tables;
+    while (true) {
+      final Entry entry = tables.compact.get(name.hashCode(), name, 0, name.length());
+      if (entry != null) {
+        try {
+          return entry.newIdentifier(value, 0, value.length());
+        } catch (final ParseException parseException) {
+          throw (ParseException)new ParseException(parseException.getMessage(), offset + colon + 1 + parseException.getErrorOffset()).initCause(parseException);
+        }
+      }
+      final Tables refreshed = this.refresh(tables);
+      if (refreshed == tables) {
+        throw new ParseException("No known IdType: " + name, offset);
+      }
+      tables = refreshed;
+    }
+  }
+
+
+  /*
+   * Parsing methods.
+   */
+
+
+  /*
+   * Each of the following three methods scans its input once, from
+   * left to right, maintaining the hash of the characters (or bytes)
+   * seen so far.  At each position where the IdType portion could
+   * end--a ':' in the compact form, or a ':' that follows a ')' and
+   * precedes a ' ' in the canonical form--it looks that hash up.
+   * Trying every such position, rather than only the first, permits
+   * IdType names that themselves contain the delimiter.
+   */
+
+
+  private final Identifier<?, ?> parse(final CharSequence text, final int start, final int end, final boolean compact) throws ParseException {
+    Tables tables = this.tables;
+    while (true) {
+      final Table table = compact ? tables.compact : tables.canonical;
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        final char c = text.charAt(i);
+        if (c == ':' && (compact || (i > start && text.charAt(i - 1) == ')' && i + 1 < end && text.charAt(i + 1) == ' '))) {
+          final Entry entry = table.get(hash, text, start, i);
+          if (entry != null) {
+            return entry.newIdentifier(text, compact ? i + 1 : i + 2, end);
+          }
+        }
+        hash = 31 * hash + c;
+      }
+      final Tables refreshed = this.refresh(tables);
+      if (refreshed == tables) {
+        throw new ParseException("No known IdType: " + text.subSequence(start, end), start);
+      }
+      tables = refreshed;
+    }
+  }
+
+  private final Identifier<?, ?> parse(final char[] chars, final int start, final int end, final boolean compact) throws ParseException {
+    Tables tables = this.tables;
+    while (true) {
+      final Table table = compact ? tables.compact : tables.canonical;
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        final char c = chars[i];
+        if (c == ':' && (compact || (i > start && chars[i - 1] == ')' && i + 1 < end && chars[i + 1] == ' '))) {
+          final Entry entry = table.get(hash, chars, start, i);
+          if (entry != null) {
+            return entry.newIdentifier(chars, compact ? i + 1 : i + 2, end);
+          }
+        }
+        hash = 31 * hash + c;
+      }
+      final Tables refreshed = this.refresh(tables);
+      if (refreshed == tables) {
+        throw new ParseException("No known IdType: " + new String(chars, start, end - start), start);
+      }
+      tables = refreshed;
+    }
+  }
+
+  private final Identifier<?, ?> parse(final byte[] bytes, final int start, final int end, final boolean compact) throws ParseException {
+    Tables tables = this.tables;
+    while (true) {
+      final Table table = compact ? tables.compact : tables.canonical;
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        final byte b = bytes[i];
+        if (b == ':' && (compact || (i > start && bytes[i - 1] == ')' && i + 1 < end && bytes[i + 1] == ' '))) {
+          final Entry entry = table.get(hash, bytes, start, i);
+          if (entry != null) {
+            return entry.newIdentifier(bytes, compact ? i + 1 : i + 2, end);
+          }
+        }
+        hash = 31 * hash + (b & 0xFF);
+      }
+      final Tables refreshed = this.refresh(tables);
+      if (refreshed == tables) {
+        throw new ParseException("No known IdType: " + new String(bytes, start, end - start, StandardCharsets.UTF_8), start);
+      }
+      tables = refreshed;
+    }
+  }
+
+  /**
+   * Rebuilds this {@link IdentifierParser}'s lookup tables if it
+   * resolves {@link IdType}s against an {@link IdTypeRegistry} to
+   * which {@link IdType}s have been added since the supplied {@link
+   * Tables} were built, and returns the {@link Tables} to use.
+   *
+   * <p>Unless the {@link IdTypeRegistry}'s {@linkplain
+   * IdTypeRegistry#getVersion() version} has changed, this method
+   * neither locks nor allocates, so text naming an unknown {@link
+   * IdType} is rejected as cheaply as it can be.</p>
+   *
+   * @param tables the {@link Tables} in which a lookup just failed;
+   * must not be {@code null}
+   *
+   * @return the {@link Tables} to use; identical to {@code tables} if
+   * there is nothing new to look in
+   */
+  private final Tables refresh(final Tables tables) {
+    final IdTypeRegistry registry = this.registry;
+    if (registry == null) {
+      return tables;
+    }
+    Tables current = this.tables;
+    if (current != tables || registry.getVersion() == tables.version) {
+      return current;
+    }
+    synchronized (this) {
+      current = this.tables;
+      if (current == tables) {
+        // Read the version first, so that the new Tables are rebuilt
+        // again if anything is registered while they are built.
+        current = new Tables(registry.getVersion(), registry.getIdTypes());
+        this.tables = current;
+      }
+      return current;
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final void checkRange(final int start, final int end, final int length) {
+    if (start < 0 || end < start || end > length) {
+      throw new IndexOutOfBoundsException("start: " + start + "; end: " + end + "; length: " + length);
+    }
+  }
+
+  /**
+   * Decodes the UTF-8 percent-encoded characters in the supplied
+   * range of the supplied {@link String}.
+   *
+   * @param s the {@link String}; must not be {@code null}
+   *
+   * @param start the index of the first character to decode
+   *
+   * @param end the index one past the last character to decode
+   *
+   * @param offset the amount to add to indices within {@code s} when
+   * reporting errors
+   *
+   * @return the decoded {@link String}; never {@code null}
+   *
+   * @exception ParseException if {@code s} contains a malformed
+   * escape or an unencoded non-ASCII character
+   *
+   * @see IdentifierFormatter#percentEncode(String, int, boolean,
+   * char[], int)
+   */
+  private static final String percentDecode(final String s, final int start, final int end, final int offset) throws ParseException {
+    final int percent = s.indexOf('%', start);
+    if (percent < 0 || percent >= end) {
+      return s.substring(start, end);
+    }
+    final byte[] bytes = new byte[end - start];
+    int length = 0;
+    for (int i = start; i < end; i++) {
+      final char c = s.charAt(i);
+      if (c == '%') {
+        final int high = i + 2 < end ? Character.digit(s.charAt(i + 1), 16) : -1;
+        final int low = high < 0 ? -1 : Character.digit(s.charAt(i + 2), 16);
+        if (low < 0) {
+          throw new ParseException("Malformed escape", offset + i);
+        }
+        bytes[length++] = (byte)((high << 4) | low);
+        i += 2;
+      } else if (c < 0x80) {
+        bytes[length++] = (byte)c;
+      } else {
+        throw new ParseException("Unencoded character: " + c, offset + i);
+      }
+    }
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the kind of value that {@link Identifier}s of the
+   * supplied {@link IdType} have.
+   */
+  private static final int kindOf(final IdType<?, ?> idType) {
+    final Class<?> type = idType.getType();
+    if (type == String.class) {
+      return idType instanceof StringIdType ? STRING_ID : STRING;
+    } else if (type == Long.class) {
+      return idType instanceof LongIdType ? LONG_IDENTIFIER : LONG;
+    } else if (type == Integer.class) {
+      return idType instanceof IntegerIdType ? INT_IDENTIFIER : INTEGER;
+    } else {
+      return UNSUPPORTED;
+    }
+  }
+
+  /*
+   * The following three methods decode a decimal integer no smaller
+   * than minimum and no larger than -(minimum + 1), accumulating it
+   * negatively as Long#parseLong(String) does so that the minimum
+   * itself needs no special treatment.
+   */
+
+  private static final long parseLong(final CharSequence text, final int start, final int end, final long minimum) throws ParseException {
+    int i = start;
+    final boolean negative = i < end && text.charAt(i) == '-';
+    if (negative) {
+      i++;
+    }
+    if (i == end) {
+      throw new ParseException("Missing digits", i);
+    }
+    final long limit = negative ? minimum : minimum + 1L;
+    final long multiplicationLimit = limit / 10L;
+    long returnValue = 0L;
+    for (; i < end; i++) {
+      final int digit = text.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new ParseException("Not a digit: " + text.charAt(i), i);
+      }
+      if (returnValue < multiplicationLimit) {
+        throw new ParseException("Out of range", start);
+      }
+      returnValue *= 10L;
+      if (returnValue < limit + digit) {
+        throw new ParseException("Out of range", start);
+      }
+      returnValue -= digit;
+    }
+    return negative ? returnValue : -returnValue;
+  }
+
+  private static final long parseLong(final char[] chars, final int start, final int end, final long minimum) throws ParseException {
+    int i = start;
+    final boolean negative = i < end && chars[i] == '-';
+    if (negative) {
+      i++;
+    }
+    if (i == end) {
+      throw new ParseException("Missing digits", i);
+    }
+    final long limit = negative ? minimum : minimum + 1L;
+    final long multiplicationLimit = limit / 10L;
+    long returnValue = 0L;
+    for (; i < end; i++) {
+      final int digit = chars[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new ParseException("Not a digit: " + chars[i], i);
+      }
+      if (returnValue < multiplicationLimit) {
+        throw new ParseException("Out of range", start);
+      }
+      returnValue *= 10L;
+      if (returnValue < limit + digit) {
+        throw new ParseException("Out of range", start);
+      }
+      returnValue -= digit;
+    }
+    return negative ? returnValue : -returnValue;
+  }
+
+  private static final long parseLong(final byte[] bytes, final int start, final int end, final long minimum) throws ParseException {
+    int i = start;
+    final boolean negative = i < end && bytes[i] == '-';
+    if (negative) {
+      i++;
+    }
+    if (i == end) {
+      throw new ParseException("Missing digits", i);
+    }
+    final long limit = negative ? minimum : minimum + 1L;
+    final long multiplicationLimit = limit / 10L;
+    long returnValue = 0L;
+    for (; i < end; i++) {
+      final int digit = bytes[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new ParseException("Not a digit: " + (bytes[i] & 0xFF), i);
+      }
+      if (returnValue < multiplicationLimit) {
+        throw new ParseException("Out of range", start);
+      }
+      returnValue *= 10L;
+      if (returnValue < limit + digit) {
+        throw new ParseException("Out of range", start);
+      }
+      returnValue -= digit;
+    }
+    return negative ? returnValue : -returnValue;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An immutable pair of {@link Table}s, one for each form, built
+   * from a snapshot of a set of {@link IdType}s.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Tables {
+
+    /**
+     * The {@link Table} of canonical keys.
+     */
+    private final Table canonical;
+
+    /**
+     * The {@link Table} of compact keys.
+     */
+    private final Table compact;
+
+    /**
+     * The {@linkplain IdTypeRegistry#getVersion() version} of the
+     * {@link IdTypeRegistry} these {@link Tables} were built from, or
+     * {@code 0} if they were built from a fixed set of {@link
+     * IdType}s.
+     */
+    private final int version;
+
+    private Tables(final int version, final Iterable<? extends IdType<?, ?>> idTypes) {
+      super();
+      final Map<String, Entry> canonical = new LinkedHashMap<String, Entry>();
+      final Map<String, Entry> compact = new LinkedHashMap<String, Entry>();
+      for (final IdType<?, ?> idType : idTypes) {
+        if (idType == null) {
+          throw new IllegalArgumentException("idTypes", new NullPointerException("idType"));
+        }
+        put(canonical, idType.toString(), idType);
+        final String name = idType.getName();
+        put(compact, name == null ? "" : name, idType);
+      }
+      this.canonical = new Table(canonical.values());
+      this.compact = new Table(compact.values());
+      this.version = version;
+    }
+
+    /**
+     * Adds an {@link Entry} for the supplied {@link IdType} under the
+     * supplied key, or marks the existing {@link Entry} for that key
+     * ambiguous if it is for a different {@link IdType}.
+     */
+    private static final void put(final Map<String, Entry> entries, final String key, final IdType<?, ?> idType) {
+      final Entry existing = entries.get(key);
+      if (existing == null) {
+        entries.put(key, new Entry(key, idType));
+      } else if (existing.idType != null && !existing.idType.equals(idType)) {
+        entries.put(key, new Entry(key, null));
+      }
+    }
+
+  }
+
+  /**
+   * An open-addressed hash table of {@link Entry}s, probed linearly,
+   * with one array indexed by the hashes of the {@link Entry}s' keys'
+   * {@code char}s and another indexed by the hashes of their UTF-8
+   * bytes.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Table {
+
+    private final Entry[] byChars;
+
+    private final Entry[] byBytes;
+
+    private final int mask;
+
+    private Table(final Collection<Entry> entries) {
+      super();
+      int capacity = 8;
+      while (capacity < 2 * entries.size()) {
+        capacity <<= 1;
+      }
+      this.byChars = new Entry[capacity];
+      this.byBytes = new Entry[capacity];
+      this.mask = capacity - 1;
+      for (final Entry entry : entries) {
+        int i = entry.charHash & this.mask;
+        while (this.byChars[i] != null) {
+          i = (i + 1) & this.mask;
+        }
+        this.byChars[i] = entry;
+        i = entry.byteHash & this.mask;
+        while (this.byBytes[i] != null) {
+          i = (i + 1) & this.mask;
+        }
+        this.byBytes[i] = entry;
+      }
+    }
+
+    private final Entry get(final int hash, final CharSequence text, final int start, final int end) throws ParseException {
+      final Entry[] entries = this.byChars;
+      final int length = end - start;
+      for (int i = hash & this.mask; ; i = (i + 1) & this.mask) {
+        final Entry entry = entries[i];
+        if (entry == null) {
+          return null;
+        }
+        if (entry.charHash == hash && entry.key.length() == length) {
+          final String key = entry.key;
+          int j = 0;
+          while (j < length && key.charAt(j) == text.charAt(start + j)) {
+            j++;
+          }
+          if (j == length) {
+            return entry.check(start);
+          }
+        }
+      }
+    }
+
+    private final Entry get(final int hash, final char[] chars, final int start, final int end) throws ParseException {
+      final Entry[] entries = this.byChars;
+      final int length = end - start;
+      for (int i = hash & this.mask; ; i = (i + 1) & this.mask) {
+        final Entry entry = entries[i];
+        if (entry == null) {
+          return null;
+        }
+        if (entry.charHash == hash && entry.key.length() == length) {
+          final String key = entry.key;
+          int j = 0;
+          while (j < length && key.charAt(j) == chars[start + j]) {
+            j++;
+          }
+          if (j == length) {
+            return entry.check(start);
+          }
+        }
+      }
+    }
+
+    private final Entry get(final int hash, final byte[] bytes, final int start, final int end) throws ParseException {
+      final Entry[] entries = this.byBytes;
+      final int length = end - start;
+      for (int i = hash & this.mask; ; i = (i + 1) & this.mask) {
+        final Entry entry = entries[i];
+        if (entry == null) {
+          return null;
+        }
+        if (entry.byteHash == hash && entry.keyBytes.length == length) {
+          final byte[] key = entry.keyBytes;
+          int j = 0;
+          while (j < length && key[j] == bytes[start + j]) {
+            j++;
+          }
+          if (j == length) {
+            return entry.check(start);
+          }
+        }
+      }
+    }
+
+  }
+
+  /**
+   * A key under which an {@link IdType} is known, pre-rendered as
+   * {@code char}s and as UTF-8 bytes, together with the {@link
+   * IdType} itself.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Entry {
+
+    private final String key;
+
+    private final byte[] keyBytes;
+
+    private final int charHash;
+
+    private final int byteHash;
+
+    /**
+     * The {@link IdType}, or {@code null} if more than one {@link
+     * IdType} has this {@link Entry}'s key.
+     */
+    private final IdType<?, ?> idType;
+
+    private final int kind;
+
+    private Entry(final String key, final IdType<?, ?> idType) {
+      super();
+      this.key = key;
+      this.keyBytes = key.getBytes(StandardCharsets.UTF_8);
+      this.charHash = key.hashCode();
+      int byteHash = 0;
+      for (final byte b : this.keyBytes) {
+        byteHash = 31 * byteHash + (b & 0xFF);
+      }
+      this.byteHash = byteHash;
+      this.idType = idType;
+      this.kind = idType == null ? UNSUPPORTED : kindOf(idType);
+    }
+
+    /**
+     * Returns this {@link Entry} if its {@link IdType} can be used to
+     * parse values.
+     *
+     * @param start the offset to report in any {@link
+     * ParseException}
+     *
+     * @return this {@link Entry}
+     *
+     * @exception ParseException if more than one {@link IdType} has
+     * this {@link Entry}'s key, or if its {@link IdType}'s values are
+     * of an unsupported type
+     */
+    private final Entry check(final int start) throws ParseException {
+      if (this.idType == null) {
+        throw new ParseException("Ambiguous IdType: " + this.key, start);
+      } else if (this.kind == UNSUPPORTED) {
+        throw new ParseException("Unsupported IdType: " + this.key, start);
+      }
+      return this;
+    }
+
+    private final Identifier<?, ?> newIdentifier(final CharSequence text, final int start, final int end) throws ParseException {
+      switch (this.kind) {
+      case LONG:
+      case LONG_IDENTIFIER:
+        return this.newLongIdentifier(parseLong(text, start, end, Long.MIN_VALUE));
+      case INTEGER:
+      case INT_IDENTIFIER:
+        return this.newIntIdentifier((int)parseLong(text, start, end, Integer.MIN_VALUE));
+      default:
+        return this.newStringIdentifier(text.subSequence(start, end).toString());
+      }
+    }
+
+    private final Identifier<?, ?> newIdentifier(final char[] chars, final int start, final int end) throws ParseException {
+      switch (this.kind) {
+      case LONG:
+      case LONG_IDENTIFIER:
+        return this.newLongIdentifier(parseLong(chars, start, end, Long.MIN_VALUE));
+      case INTEGER:
+      case INT_IDENTIFIER:
+        return this.newIntIdentifier((int)parseLong(chars, start, end, Integer.MIN_VALUE));
+      default:
+        return this.newStringIdentifier(new String(chars, start, end - start));
+      }
+    }
+
+    private final Identifier<?, ?> newIdentifier(final byte[] bytes, final int start, final int end) throws ParseException {
+      switch (this.kind) {
+      case LONG:
+      case LONG_IDENTIFIER:
+        return this.newLongIdentifier(parseLong(bytes, start, end, Long.MIN_VALUE));
+      case INTEGER:
+      case INT_IDENTIFIER:
+        return this.newIntIdentifier((int)parseLong(bytes, start, end, Integer.MIN_VALUE));
+      default:
+        return this.newStringIdentifier(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+      }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private final Identifier<?, ?> newLongIdentifier(final long value) {
+      if (this.kind == LONG_IDENTIFIER) {
+        return new LongIdentifier((IdType)this.idType, value);
+      }
+      return new Identifier((IdType)this.idType, Long.valueOf(value));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private final Identifier<?, ?> newIntIdentifier(final int value) {
+      if (this.kind == INT_IDENTIFIER) {
+        return new IntIdentifier((IdType)this.idType, value);
+      }
+      return new Identifier((IdType)this.idType, Integer.valueOf(value));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private final Identifier<?, ?> newStringIdentifier(final String value) {
+      if (this.kind == STRING_ID) {
+        return new StringId((StringIdType)this.idType, value);
+      }
+      return new Identifier((IdType)this.idType, value);
+    }
+
+  }
+
+}
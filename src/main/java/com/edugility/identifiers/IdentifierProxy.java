@@ -0,0 +1,225 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * A holder of compact serialized forms for {@link Identifier}s whose
+ * {@linkplain Identifier#getValue() values} are {@code long}s or
+ * {@code int}s.
+ *
+ * <p>The default serialized form of an {@link Identifier} is already
+ * small once its {@link IdType} is {@linkplain IdType#writeReplace()
+ * written compactly}: it consists of a back-reference to the {@link
+ * IdType}, which is written only once per stream, and the value.
+ * But a {@link Long} or {@link Integer} value is written as an object
+ * of its own, together with the class descriptors of its class and
+ * of {@link Number}, and a {@link LongIdentifier} or {@link
+ * IntIdentifier} carries the descriptor of {@link Identifier} and its
+ * unused {@code value} field.  The forms in this class write the
+ * {@link IdType} followed by the bare primitive value instead.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Identifier#writeReplace()
+ */
+final class IdentifierProxy {
+
+  /**
+   * Creates a new {@link IdentifierProxy}.
+   */
+  private IdentifierProxy() {
+    super();
+  }
+
+  /**
+   * Returns a compact serialized form for the supplied {@link
+   * Identifier}, or {@code null} if the {@link Identifier} should be
+   * serialized normally.
+   *
+   * @param identifier the {@link Identifier} to be serialized; must
+   * not be {@code null}
+   *
+   * @return a compact serialized form for the supplied {@link
+   * Identifier}, or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  static final Object replacementFor(final Identifier<?, ?> identifier) {
+    assert identifier != null;
+    final Class<?> c = identifier.getClass();
+    if (c == LongIdentifier.class) {
+      final LongIdentifier<?> id = (LongIdentifier<?>)identifier;
+      return new LongIdentifierForm(id.getIdType(), id.getLongValue());
+    } else if (c == IntIdentifier.class) {
+      final IntIdentifier<?> id = (IntIdentifier<?>)identifier;
+      return new IntIdentifierForm(id.getIdType(), id.getIntValue());
+    } else if (c == Identifier.class) {
+      // Choose a form by the IdType's type, not by the value's class:
+      // an IdType whose type is, say, Number may hold a Long, but
+      // must be read back by way of the normal serialized form.
+      final Class<?> type = identifier.getIdType().getType();
+      if (type == Long.class) {
+        return new LongForm((IdType<Long, ?>)identifier.getIdType(), ((Long)identifier.getValue()).longValue());
+      } else if (type == Integer.class) {
+        return new IntegerForm((IdType<Integer, ?>)identifier.getIdType(), ((Integer)identifier.getValue()).intValue());
+      }
+    }
+    return null;
+  }
+
+  private static final IdType<?, ?> checkIdType(final IdType<?, ?> idType, final Class<?> type) throws InvalidObjectException {
+    if (idType == null) {
+      throw new InvalidObjectException("idType");
+    }
+    if (idType.getType() != type) {
+      throw new InvalidObjectException("Unexpected type: " + idType.getType());
+    }
+    return idType;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The serialized form of an {@link Identifier} with a {@link Long}
+   * value.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class LongForm implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IdType<Long, ?> idType;
+
+    private final long value;
+
+    private LongForm(final IdType<Long, ?> idType, final long value) {
+      super();
+      this.idType = idType;
+      this.value = value;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private Object readResolve() throws ObjectStreamException {
+      return new Identifier(checkIdType(this.idType, Long.class), Long.valueOf(this.value));
+    }
+
+  }
+
+  /**
+   * The serialized form of an {@link Identifier} with an {@link
+   * Integer} value.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class IntegerForm implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IdType<Integer, ?> idType;
+
+    private final int value;
+
+    private IntegerForm(final IdType<Integer, ?> idType, final int value) {
+      super();
+      this.idType = idType;
+      this.value = value;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private Object readResolve() throws ObjectStreamException {
+      return new Identifier(checkIdType(this.idType, Integer.class), Integer.valueOf(this.value));
+    }
+
+  }
+
+  /**
+   * The serialized form of a {@link LongIdentifier}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class LongIdentifierForm implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IdType<Long, ?> idType;
+
+    private final long value;
+
+    private LongIdentifierForm(final IdType<Long, ?> idType, final long value) {
+      super();
+      this.idType = idType;
+      this.value = value;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private Object readResolve() throws ObjectStreamException {
+      return new LongIdentifier(checkIdType(this.idType, Long.class), this.value);
+    }
+
+  }
+
+  /**
+   * The serialized form of an {@link IntIdentifier}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class IntIdentifierForm implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IdType<Integer, ?> idType;
+
+    private final int value;
+
+    private IntIdentifierForm(final IdType<Integer, ?> idType, final int value) {
+      super();
+      this.idType = idType;
+      this.value = value;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private Object readResolve() throws ObjectStreamException {
+      return new IntIdentifier(checkIdType(this.idType, Integer.class), this.value);
+    }
+
+  }
+
+}
@@ -0,0 +1,909 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Spliterator;
+
+import java.util.function.Consumer;
+
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An append-only, memory-mapped, columnar store of the {@linkplain
+ * Identifier#getValue() values} of {@link Identifier}s that share a
+ * single {@link IdType}, kept off the Java heap.
+ *
+ * <p>An {@link IdentifierStore} occupies a directory.  Depending on
+ * the {@linkplain IdType#getType() type} of its {@link IdType}, the
+ * values live in one of two layouts:</p>
+ *
+ * <ul>
+ *
+ * <li>{@link Long} and {@link Integer} values occupy a fixed-width
+ * column of eight or four bytes per row in a file named {@code
+ * values}, so that row <em>n</em> lives at byte <em>n</em> times the
+ * width.</li>
+ *
+ * <li>{@link String} values are stored UTF-8-encoded and
+ * back-to-back in a file named {@code bytes}; a file named {@code
+ * offsets} holds, for each row, the {@code long} offset in {@code
+ * bytes} just past the end of that row's value.</li>
+ *
+ * </ul>
+ *
+ * <p>A small file named {@code header} records a magic number, a
+ * format version, the layout and the number of rows, and a file
+ * named {@code idtype} holds the serialized {@link IdType}.  A file
+ * named {@code forms} holds one bit per row that is set when the row
+ * was appended as an {@link Identifier} of the other of the two
+ * classes that can carry its value (see {@link #get(long)}); it
+ * stays empty, and sparse, for a store whose rows all have the usual
+ * class.</p>
+ *
+ * <p>The row count in the {@code header} file is written only by
+ * {@link #flush()}, and only after the other files have been {@linkplain
+ * java.nio.MappedByteBuffer#force() forced} out to the storage
+ * device, so that a store that is reopened after a crash holds
+ * exactly the rows it held when it was last flushed or {@linkplain
+ * #close() closed}.  Reopening a store maps its files and reads its
+ * header; nothing is rebuilt.</p>
+ *
+ * <p>Files are {@linkplain MappedColumn mapped} in chunks and grow a
+ * chunk at a time.  Rows may be read by any number of threads at
+ * once, including while another thread appends; appends are
+ * serialized.</p>
+ *
+ * @param <W> the type of the values stored
+ *
+ * @param <P> the common supertype of any semantic bits of information
+ * that might be notionally embedded in the stored values
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+public class IdentifierStore<W extends Serializable, P> implements Closeable, Flushable {
+
+  /**
+   * The magic number at the start of every {@code header} file:
+   * {@code EDIS} in ASCII.
+   */
+  private static final int MAGIC = 0x45444953;
+
+  /**
+   * The version of the format.
+   */
+  private static final int VERSION = 2;
+
+  /**
+   * The layout for {@link Long} values.
+   */
+  private static final int LONG = 1;
+
+  /**
+   * The layout for {@link Integer} values.
+   */
+  private static final int INT = 2;
+
+  /**
+   * The layout for {@link String} values.
+   */
+  private static final int STRING = 3;
+
+  private static final long MAGIC_POSITION = 0L;
+
+  private static final long VERSION_POSITION = 4L;
+
+  private static final long KIND_POSITION = 8L;
+
+  private static final long SIZE_POSITION = 16L;
+
+  private static final long BYTE_SIZE_POSITION = 24L;
+
+  private static final int HEADER_CHUNK_SHIFT = 12;
+
+  /**
+   * The base-two logarithm of the default size, in bytes, of the
+   * chunks in which the column files are mapped: 64 megabytes.
+   */
+  private static final int DEFAULT_CHUNK_SHIFT = 26;
+
+  /**
+   * The {@link IdType} of every {@link Identifier} in this {@link
+   * IdentifierStore}.  This field is never {@code null}.
+   */
+  private final IdType<W, P> idType;
+
+  /**
+   * The layout of this {@link IdentifierStore}: one of {@link #LONG},
+   * {@link #INT} or {@link #STRING}.
+   */
+  private final int kind;
+
+  /**
+   * The {@code header} file.  This field is never {@code null}.
+   */
+  private final MappedColumn header;
+
+  /**
+   * The {@code values} file for {@link Long} and {@link Integer}
+   * values, or the {@code offsets} file for {@link String} values.
+   * This field is never {@code null}.
+   */
+  private final MappedColumn values;
+
+  /**
+   * The {@code bytes} file for {@link String} values, or {@code
+   * null}.
+   */
+  private final MappedColumn bytes;
+
+  /**
+   * The {@code forms} file, holding one bit per row, set when the
+   * row's {@link Identifier} was not of the {@linkplain #natural
+   * usual class}.  This field is never {@code null}.
+   */
+  private final MappedColumn forms;
+
+  /**
+   * Whether an {@link Identifier} {@linkplain #get(long) read} from
+   * this store is, unless its row's bit in {@link #forms} is set, a
+   * {@link LongIdentifier}, {@link IntIdentifier} or {@link StringId}
+   * rather than a plain {@link Identifier}: {@code true} when the
+   * {@link IdType} is a {@link LongIdType}, {@link IntegerIdType} or
+   * {@link StringIdType}.
+   */
+  private final boolean natural;
+
+  /**
+   * The number of rows.  This field is written only after the row's
+   * data, so a reader that sees a row count may read every row below
+   * it.  It reaches the {@code header} file only when this store is
+   * {@linkplain #flush() flushed}.
+   *
+   * @see #size()
+   */
+  private volatile long size;
+
+  /**
+   * The number of bytes in use in {@link #bytes}.
+   */
+  private long byteSize;
+
+  /**
+   * A scratch buffer into which {@link String} values are encoded
+   * before being appended.  Guarded by {@code this}.
+   */
+  private byte[] scratch;
+
+  /**
+   * Whether this {@link IdentifierStore} has been {@linkplain
+   * #close() closed}.  Guarded by {@code this}.
+   */
+  private boolean closed;
+
+  /**
+   * Opens the {@link IdentifierStore} in the supplied directory,
+   * creating it if it does not exist.
+   *
+   * @param directory the directory in which the store's files live;
+   * must not be {@code null}; will be created if necessary
+   *
+   * @param idType the {@link IdType} of the {@link Identifier}s in
+   * the store; must not be {@code null}, must have a {@linkplain
+   * IdType#getType() type} of {@link Long}, {@link Integer} or {@link
+   * String}, and, if the store already exists, must be {@linkplain
+   * IdType#equals(Object) equal to} the {@link IdType} it was created
+   * with
+   *
+   * @exception IllegalArgumentException if either parameter is {@code
+   * null}, or if {@code idType} is unsuitable
+   *
+   * @exception IOException if an error occurs, or if the directory
+   * contains something other than an {@link IdentifierStore}
+   */
+  public IdentifierStore(final Path directory, final IdType<W, P> idType) throws IOException {
+    this(directory, idType, DEFAULT_CHUNK_SHIFT);
+  }
+
+  /**
+   * Opens the {@link IdentifierStore} in the supplied directory,
+   * creating it if it does not exist, mapping its columns in chunks
+   * of the supplied size.
+   *
+   * @param directory the directory in which the store's files live;
+   * must not be {@code null}; will be created if necessary
+   *
+   * @param idType the {@link IdType} of the {@link Identifier}s in
+   * the store; see {@link #IdentifierStore(Path, IdType)}
+   *
+   * @param chunkShift the base-two logarithm of the size of the
+   * chunks in which the columns are mapped; must be between {@code 3}
+   * and {@code 30}, inclusive
+   *
+   * @exception IllegalArgumentException if either reference
+   * parameter is {@code null}, or if {@code idType} is unsuitable
+   *
+   * @exception IOException if an error occurs, or if the directory
+   * contains something other than an {@link IdentifierStore}
+   */
+  IdentifierStore(final Path directory, final IdType<W, P> idType, final int chunkShift) throws IOException {
+    super();
+    if (directory == null) {
+      throw new IllegalArgumentException("directory", new NullPointerException("directory"));
+    }
+    if (idType == null) {
+      throw new IllegalArgumentException("idType", new NullPointerException("idType"));
+    }
+    if (chunkShift < 3 || chunkShift > 30) {
+      throw new IllegalArgumentException("chunkShift: " + chunkShift);
+    }
+    final Class<W> type = idType.getType();
+    if (type == Long.class) {
+      this.kind = LONG;
+    } else if (type == Integer.class) {
+      this.kind = INT;
+    } else if (type == String.class) {
+      this.kind = STRING;
+    } else {
+      throw new IllegalArgumentException("Unsupported IdType type: " + type);
+    }
+    this.idType = idType;
+    this.natural = idType instanceof LongIdType || idType instanceof IntegerIdType || idType instanceof StringIdType;
+
+    Files.createDirectories(directory);
+    final Path idTypePath = directory.resolve("idtype");
+    this.header = new MappedColumn(directory.resolve("header"), HEADER_CHUNK_SHIFT);
+    this.header.ensureCapacity(1L << HEADER_CHUNK_SHIFT);
+    final int magic = this.header.getInt(MAGIC_POSITION);
+    if (magic == 0) {
+      // A new store.
+      writeIdType(idTypePath, idType);
+      this.header.putInt(VERSION_POSITION, VERSION);
+      this.header.putInt(KIND_POSITION, this.kind);
+      this.header.putLong(SIZE_POSITION, 0L);
+      this.header.putLong(BYTE_SIZE_POSITION, 0L);
+      this.header.putInt(MAGIC_POSITION, MAGIC);
+      this.header.force();
+    } else if (magic != MAGIC) {
+      throw new StreamCorruptedException(directory + " does not contain an IdentifierStore");
+    } else {
+      final int version = this.header.getInt(VERSION_POSITION);
+      if (version != VERSION) {
+        throw new StreamCorruptedException("Unsupported version: " + version);
+      }
+      if (this.header.getInt(KIND_POSITION) != this.kind) {
+        throw new IllegalArgumentException("idType: " + idType);
+      }
+      final Object storedIdType = readIdType(idTypePath);
+      if (!idType.equals(storedIdType)) {
+        throw new IllegalArgumentException("idType: " + idType + " != " + storedIdType);
+      }
+    }
+
+    if (this.kind == STRING) {
+      this.values = new MappedColumn(directory.resolve("offsets"), chunkShift);
+      this.bytes = new MappedColumn(directory.resolve("bytes"), chunkShift);
+    } else {
+      this.values = new MappedColumn(directory.resolve("values"), chunkShift);
+      this.bytes = null;
+    }
+    // One bit per row: a chunk of forms spans as many rows as a chunk
+    // of eight-byte values.
+    this.forms = new MappedColumn(directory.resolve("forms"), Math.max(HEADER_CHUNK_SHIFT, chunkShift - 6));
+    this.byteSize = this.header.getLong(BYTE_SIZE_POSITION);
+    this.size = this.header.getLong(SIZE_POSITION);
+    this.scratch = new byte[64];
+  }
+
+  /**
+   * Returns the {@link IdType} of every {@link Identifier} in this
+   * {@link IdentifierStore}.
+   *
+   * @return the {@link IdType} of every {@link Identifier} in this
+   * {@link IdentifierStore}; never {@code null}
+   */
+  public final IdType<W, P> getIdType() {
+    return this.idType;
+  }
+
+  /**
+   * Returns the number of rows in this {@link IdentifierStore}.
+   *
+   * @return the number of rows in this {@link IdentifierStore}
+   */
+  public final long size() {
+    return this.size;
+  }
+
+
+  /*
+   * Append methods.
+   */
+
+
+  /**
+   * Appends the {@linkplain Identifier#getValue() value} of the
+   * supplied {@link Identifier}, and returns its row.
+   *
+   * @param id the {@link Identifier} to append; must not be {@code
+   * null} and must have an {@link IdType} {@linkplain
+   * IdType#equals(Object) equal to} {@linkplain #getIdType() this
+   * store's}
+   *
+   * @return the row of the appended value
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   *
+   * @exception IOException if an error occurs
+   */
+  public final long append(final Identifier<W, P> id) throws IOException {
+    if (id == null) {
+      throw new IllegalArgumentException("id", new NullPointerException("id"));
+    }
+    final IdType<W, P> idType = id.getIdType();
+    if (idType != this.idType && !this.idType.equals(idType)) {
+      throw new IllegalArgumentException("id: " + id);
+    }
+    if (id instanceof LongIdentifier) {
+      return this.appendLong(((LongIdentifier<?>)id).getLongValue(), !this.natural);
+    } else if (id instanceof IntIdentifier) {
+      return this.appendInt(((IntIdentifier<?>)id).getIntValue(), !this.natural);
+    }
+    final boolean other = this.natural && id.getClass() == Identifier.class;
+    switch (this.kind) {
+    case LONG:
+      return this.appendLong(((Long)id.getValue()).longValue(), other);
+    case INT:
+      return this.appendInt(((Integer)id.getValue()).intValue(), other);
+    default:
+      return this.appendString((String)id.getValue(), other);
+    }
+  }
+
+  /**
+   * Appends the supplied value, and returns its row.
+   *
+   * @param value the value to append; must not be {@code null}
+   *
+   * @return the row of the appended value
+   *
+   * @exception IllegalArgumentException if {@code value} is {@code
+   * null}
+   *
+   * @exception IOException if an error occurs
+   */
+  public final long append(final W value) throws IOException {
+    if (value == null) {
+      throw new IllegalArgumentException("value", new NullPointerException("value"));
+    }
+    switch (this.kind) {
+    case LONG:
+      return this.appendLong(((Long)value).longValue());
+    case INT:
+      return this.appendInt(((Integer)value).intValue());
+    default:
+      return this.appendString((String)value, false);
+    }
+  }
+
+  /**
+   * Appends the supplied {@code long} value to this {@link
+   * IdentifierStore}, whose {@link IdType}'s {@linkplain
+   * IdType#getType() type} must be {@link Long}, and returns its
+   * row.
+   *
+   * @param value the value to append
+   *
+   * @return the row of the appended value
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * IdentifierStore} does not hold {@link Long} values
+   *
+   * @exception IOException if an error occurs
+   */
+  public final long appendLong(final long value) throws IOException {
+    return this.appendLong(value, false);
+  }
+
+  private final synchronized long appendLong(final long value, final boolean other) throws IOException {
+    this.checkKind(LONG);
+    final long row = this.size;
+    final long position = row << 3;
+    this.values.ensureCapacity(position + 8L);
+    this.values.putLong(position, value);
+    this.setForm(row, other);
+    this.publish(row + 1L);
+    return row;
+  }
+
+  /**
+   * Appends the supplied {@code int} value to this {@link
+   * IdentifierStore}, whose {@link IdType}'s {@linkplain
+   * IdType#getType() type} must be {@link Integer}, and returns its
+   * row.
+   *
+   * @param value the value to append
+   *
+   * @return the row of the appended value
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * IdentifierStore} does not hold {@link Integer} values
+   *
+   * @exception IOException if an error occurs
+   */
+  public final long appendInt(final int value) throws IOException {
+    return this.appendInt(value, false);
+  }
+
+  private final synchronized long appendInt(final int value, final boolean other) throws IOException {
+    this.checkKind(INT);
+    final long row = this.size;
+    final long position = row << 2;
+    this.values.ensureCapacity(position + 4L);
+    this.values.putInt(position, value);
+    this.setForm(row, other);
+    this.publish(row + 1L);
+    return row;
+  }
+
+  private final synchronized long appendString(final String value, final boolean other) throws IOException {
+    this.checkKind(STRING);
+    final int length = IdentifierCodec.utf8Length(value);
+    if (this.scratch.length < length) {
+      this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+    }
+    IdentifierCodec.encodeUtf8(value, this.scratch, 0);
+    final long start = this.byteSize;
+    final long end = start + length;
+    this.bytes.ensureCapacity(end);
+    this.bytes.put(start, this.scratch, 0, length);
+    final long row = this.size;
+    final long position = row << 3;
+    this.values.ensureCapacity(position + 8L);
+    this.values.putLong(position, end);
+    this.setForm(row, other);
+    this.byteSize = end;
+    this.publish(row + 1L);
+    return row;
+  }
+
+  /**
+   * Sets or clears the bit in {@link #forms} for the supplied row.
+   *
+   * <p>A bit may be left over from a row that was appended but never
+   * {@linkplain #flush() flushed} before a crash, so a bit that is
+   * not wanted is cleared if the file already spans it.</p>
+   */
+  private final void setForm(final long row, final boolean other) throws IOException {
+    final long position = (row >>> 6) << 3;
+    final long bit = 1L << row;
+    if (other) {
+      this.forms.ensureCapacity(position + 8L);
+      this.forms.putLong(position, this.forms.getLong(position) | bit);
+    } else if (position < this.forms.capacity()) {
+      final long word = this.forms.getLong(position);
+      if ((word & bit) != 0L) {
+        this.forms.putLong(position, word & ~bit);
+      }
+    }
+  }
+
+  private final boolean isOther(final long row) {
+    final long position = (row >>> 6) << 3;
+    return position < this.forms.capacity() && (this.forms.getLong(position) & (1L << row)) != 0L;
+  }
+
+  /**
+   * Makes every row up to, but not including, the supplied one
+   * visible to readers in this process.
+   *
+   * <p>The row count is written to the {@code header} file only by
+   * {@link #flush()}, after the rows themselves are on the storage
+   * device; writing it here would let the operating system write the
+   * header out before the rows it counts.</p>
+   */
+  private final void publish(final long size) {
+    this.size = size;
+  }
+
+  private final void checkKind(final int kind) {
+    if (this.closed) {
+      throw new IllegalStateException("closed");
+    }
+    if (this.kind != kind) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+
+  /*
+   * Random access methods.
+   */
+
+
+  /**
+   * Returns a new {@link Identifier} whose {@linkplain
+   * Identifier#getValue() value} is the one stored at the supplied
+   * row.
+   *
+   * <p>The {@link Identifier} is of the class of the one that was
+   * {@linkplain #append(Identifier) appended}: a {@link
+   * LongIdentifier}, an {@link IntIdentifier} or a plain {@link
+   * Identifier} for {@link Long} and {@link Integer} values, and a
+   * {@link StringId} or a plain {@link Identifier} for {@link String}
+   * values.  A row appended as a bare value, or as an instance of
+   * some other subclass, is returned as a {@link LongIdentifier},
+   * {@link IntIdentifier} or {@link StringId} if the {@link IdType}
+   * is a {@link LongIdType}, {@link IntegerIdType} or {@link
+   * StringIdType} respectively, and as a plain {@link Identifier}
+   * otherwise, just as {@link IdentifierParser} would parse it.</p>
+   *
+   * @param row the row; must be greater than or equal to {@code 0}
+   * and less than {@link #size()}
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IndexOutOfBoundsException if {@code row} is out of
+   * range
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public final Identifier<W, P> get(final long row) {
+    this.checkRow(row);
+    final IdType idType = this.idType;
+    final boolean specialized = this.natural != this.isOther(row);
+    switch (this.kind) {
+    case LONG:
+      final long longValue = this.values.getLong(row << 3);
+      return specialized ? new LongIdentifier(idType, longValue) : new Identifier(idType, Long.valueOf(longValue));
+    case INT:
+      final int intValue = this.values.getInt(row << 2);
+      return specialized ? new IntIdentifier(idType, intValue) : new Identifier(idType, Integer.valueOf(intValue));
+    default:
+      final String value = this.readString(row);
+      return specialized ? new StringId((StringIdType)idType, value) : new Identifier(idType, value);
+    }
+  }
+
+  /**
+   * Returns the value stored at the supplied row.
+   *
+   * @param row the row; must be greater than or equal to {@code 0}
+   * and less than {@link #size()}
+   *
+   * @return the value stored at the supplied row; never {@code null}
+   *
+   * @exception IndexOutOfBoundsException if {@code row} is out of
+   * range
+   */
+  @SuppressWarnings("unchecked")
+  public final W getValue(final long row) {
+    this.checkRow(row);
+    switch (this.kind) {
+    case LONG:
+      return (W)Long.valueOf(this.values.getLong(row << 3));
+    case INT:
+      return (W)Integer.valueOf(this.values.getInt(row << 2));
+    default:
+      return (W)this.readString(row);
+    }
+  }
+
+  /**
+   * Returns the {@code long} value stored at the supplied row of
+   * this {@link IdentifierStore}, whose {@link IdType}'s {@linkplain
+   * IdType#getType() type} must be {@link Long}.
+   *
+   * @param row the row; must be greater than or equal to {@code 0}
+   * and less than {@link #size()}
+   *
+   * @return the value stored at the supplied row
+   *
+   * @exception IndexOutOfBoundsException if {@code row} is out of
+   * range
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * IdentifierStore} does not hold {@link Long} values
+   */
+  public final long getLong(final long row) {
+    if (this.kind != LONG) {
+      throw new UnsupportedOperationException();
+    }
+    this.checkRow(row);
+    return this.values.getLong(row << 3);
+  }
+
+  /**
+   * Returns the {@code int} value stored at the supplied row of this
+   * {@link IdentifierStore}, whose {@link IdType}'s {@linkplain
+   * IdType#getType() type} must be {@link Integer}.
+   *
+   * @param row the row; must be greater than or equal to {@code 0}
+   * and less than {@link #size()}
+   *
+   * @return the value stored at the supplied row
+   *
+   * @exception IndexOutOfBoundsException if {@code row} is out of
+   * range
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * IdentifierStore} does not hold {@link Integer} values
+   */
+  public final int getInt(final long row) {
+    if (this.kind != INT) {
+      throw new UnsupportedOperationException();
+    }
+    this.checkRow(row);
+    return this.values.getInt(row << 2);
+  }
+
+  private final String readString(final long row) {
+    final long start = row == 0L ? 0L : this.values.getLong((row - 1L) << 3);
+    final long end = this.values.getLong(row << 3);
+    final int length = (int)(end - start);
+    final byte[] bytes = new byte[length];
+    this.bytes.get(start, bytes, 0, length);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private final void checkRow(final long row) {
+    if (row < 0L || row >= this.size) {
+      throw new IndexOutOfBoundsException("row: " + row);
+    }
+  }
+
+
+  /*
+   * Bulk access methods.
+   */
+
+
+  /**
+   * Returns a {@link Spliterator} over the {@link Identifier}s in the
+   * rows of this {@link IdentifierStore} that exist at the time of
+   * the call.
+   *
+   * <p>The {@link Spliterator} splits its range of rows in half, so
+   * that a {@linkplain #parallelStream() parallel stream} reads
+   * disjoint ranges of the underlying files on each thread.</p>
+   *
+   * @return a new {@link Spliterator}; never {@code null}
+   *
+   * @see #get(long)
+   */
+  public final Spliterator<Identifier<W, P>> spliterator() {
+    return new RowSpliterator(0L, this.size);
+  }
+
+  /**
+   * Returns a sequential {@link Stream} of the {@link Identifier}s in
+   * the rows of this {@link IdentifierStore} that exist at the time of
+   * the call.
+   *
+   * @return a new {@link Stream}; never {@code null}
+   *
+   * @see #spliterator()
+   */
+  public final Stream<Identifier<W, P>> stream() {
+    return StreamSupport.stream(this.spliterator(), false);
+  }
+
+  /**
+   * Returns a parallel {@link Stream} of the {@link Identifier}s in
+   * the rows of this {@link IdentifierStore} that exist at the time of
+   * the call.
+   *
+   * @return a new {@link Stream}; never {@code null}
+   *
+   * @see #spliterator()
+   */
+  public final Stream<Identifier<W, P>> parallelStream() {
+    return StreamSupport.stream(this.spliterator(), true);
+  }
+
+
+  /*
+   * Lifecycle methods.
+   */
+
+
+  /**
+   * Forces all rows appended so far out to the storage device, and
+   * then records their number in the {@code header} file.
+   *
+   * @exception IOException if an error occurs
+   */
+  @Override
+  public final synchronized void flush() throws IOException {
+    if (this.bytes != null) {
+      this.bytes.force();
+    }
+    this.values.force();
+    this.forms.force();
+    this.header.putLong(BYTE_SIZE_POSITION, this.byteSize);
+    this.header.putLong(SIZE_POSITION, this.size);
+    this.header.force();
+  }
+
+  /**
+   * {@linkplain #flush() Flushes} this {@link IdentifierStore} and
+   * closes its files.
+   *
+   * <p>Closing an {@link IdentifierStore} that is already closed has
+   * no effect.</p>
+   *
+   * @exception IOException if an error occurs
+   */
+  @Override
+  public final synchronized void close() throws IOException {
+    if (!this.closed) {
+      this.closed = true;
+      try {
+        this.flush();
+      } finally {
+        try {
+          if (this.bytes != null) {
+            this.bytes.close();
+          }
+        } finally {
+          try {
+            this.values.close();
+          } finally {
+            try {
+              this.forms.close();
+            } finally {
+              this.header.close();
+            }
+          }
+        }
+      }
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final void writeIdType(final Path path, final IdType<?, ?> idType) throws IOException {
+    final OutputStream out = Files.newOutputStream(path);
+    try {
+      final ObjectOutputStream oos = new ObjectOutputStream(out);
+      oos.writeObject(idType);
+      oos.flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  private static final Object readIdType(final Path path) throws IOException {
+    final InputStream in = Files.newInputStream(path);
+    try {
+      return new ObjectInputStream(in).readObject();
+    } catch (final ClassNotFoundException classNotFoundException) {
+      throw (StreamCorruptedException)new StreamCorruptedException(classNotFoundException.getMessage()).initCause(classNotFoundException);
+    } finally {
+      in.close();
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A {@link Spliterator} over a range of rows.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private final class RowSpliterator implements Spliterator<Identifier<W, P>> {
+
+    /**
+     * The next row to be read.
+     */
+    private long row;
+
+    /**
+     * The row just past the last one to be read.
+     */
+    private final long end;
+
+    private RowSpliterator(final long row, final long end) {
+      super();
+      this.row = row;
+      this.end = end;
+    }
+
+    @Override
+    public final boolean tryAdvance(final Consumer<? super Identifier<W, P>> action) {
+      if (action == null) {
+        throw new NullPointerException("action");
+      }
+      if (this.row < this.end) {
+        action.accept(get(this.row++));
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public final void forEachRemaining(final Consumer<? super Identifier<W, P>> action) {
+      if (action == null) {
+        throw new NullPointerException("action");
+      }
+      final long end = this.end;
+      for (long row = this.row; row < end; row++) {
+        action.accept(get(row));
+      }
+      this.row = end;
+    }
+
+    @Override
+    public final Spliterator<Identifier<W, P>> trySplit() {
+      final long row = this.row;
+      final long middle = (row + this.end) >>> 1;
+      if (middle <= row) {
+        return null;
+      }
+      this.row = middle;
+      return new RowSpliterator(row, middle);
+    }
+
+    @Override
+    public final long estimateSize() {
+      return this.end - this.row;
+    }
+
+    @Override
+    public final int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+  }
+
+}
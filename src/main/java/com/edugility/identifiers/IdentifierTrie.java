@@ -0,0 +1,1164 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import java.util.stream.Stream;
+
+/**
+ * A compact, ordered set of the {@link String} {@linkplain
+ * Identifier#getValue() values} of {@link Identifier}s that share a
+ * single {@link IdType}, held in a radix trie so that values sharing
+ * a prefix share its storage, and supporting prefix enumeration,
+ * range scans and ordered iteration.
+ *
+ * <p>Since a {@link StringExtractor} works on fixed character
+ * ranges, many queries over {@link StringIdType} identifiers are
+ * really prefix queries; {@link #withPrefix(CharSequence)} and
+ * {@link #countWithPrefix(CharSequence)} answer them without
+ * scanning.</p>
+ *
+ * <h2>Layout</h2>
+ *
+ * <p>The trie is stored as a structure of arrays rather than as node
+ * objects.  Each node is an index into five parallel {@code int}
+ * arrays holding the start and end of its label, its first child,
+ * its next sibling and the number of values beneath it, plus one bit
+ * marking whether a value ends at it.  Labels are ranges of a single
+ * shared array, so only the part of a value that it does not share
+ * with an earlier one is stored.  Like {@link String} itself, that
+ * array holds one byte per character for as long as every character
+ * is in the Latin-1 range.  Siblings are kept
+ * in order of their first character.  Looking a value up, or
+ * counting the values with a given prefix, walks these arrays and
+ * allocates nothing; iteration allocates one {@link String} and one
+ * {@link Identifier} per value it returns, and nothing per node it
+ * visits.</p>
+ *
+ * <p>{@linkplain #remove(String) Removing} a value frees the nodes
+ * that no other value passes through, and later additions reuse
+ * them.  The characters of their labels are not reclaimed, however,
+ * and a node left with a single child is not merged with it, so a
+ * trie that sees much removal and re-addition of distinct values
+ * holds more label storage than one {@linkplain #build(IdType,
+ * Iterable) built} from the same values.</p>
+ *
+ * <h2>Ordering</h2>
+ *
+ * <p>Values are ordered as {@link String#compareTo(String)} orders
+ * them.  {@link #build(IdType, Iterable)} accepts values already in
+ * that order and builds a trie from them in linear time.</p>
+ *
+ * <h2>Thread Safety</h2>
+ *
+ * <p>This class is not safe for concurrent modification.  Any number
+ * of threads may read an {@link IdentifierTrie} at once provided
+ * that none modifies it.  Iterators are fail-fast.</p>
+ *
+ * @param <P> the common supertype of any semantic bits of information
+ * that might be notionally embedded in the values
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see StringIdType
+ */
+public class IdentifierTrie<P> implements Iterable<Identifier<String, P>> {
+
+  /**
+   * The root node, whose label is empty.
+   */
+  private static final int ROOT = 0;
+
+  /**
+   * The {@link IdType} of every {@link Identifier} whose value is in
+   * this {@link IdentifierTrie}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final IdType<String, P> idType;
+
+  /**
+   * The characters of every node's label, one byte per character,
+   * while every character is in the Latin-1 range.
+   *
+   * <p>Exactly one of this field and {@link #chars} is non-{@code
+   * null}.</p>
+   */
+  private byte[] latin1;
+
+  /**
+   * The characters of every node's label, once any character outside
+   * the Latin-1 range has been added.
+   *
+   * <p>Exactly one of this field and {@link #latin1} is non-{@code
+   * null}.</p>
+   */
+  private char[] chars;
+
+  /**
+   * The number of characters of label storage in use.
+   */
+  private int charCount;
+
+  /**
+   * The position in label storage of the first character of each
+   * node's label.
+   */
+  private int[] labelStart;
+
+  /**
+   * The position in label storage just past the last character of
+   * each node's label.
+   */
+  private int[] labelEnd;
+
+  /**
+   * Each node's first child, or {@code 0} if it has none.
+   */
+  private int[] firstChild;
+
+  /**
+   * Each node's next sibling, or {@code 0} if it has none.
+   */
+  private int[] nextSibling;
+
+  /**
+   * The number of values that end at or beneath each node.
+   */
+  private int[] count;
+
+  /**
+   * A bit for each node that is set if a value ends at that node.
+   */
+  private long[] terminal;
+
+  /**
+   * The number of nodes allocated, including the root and any {@link
+   * #freeNode free} nodes.
+   */
+  private int nodeCount;
+
+  /**
+   * The first of the nodes freed by {@link #remove(String)} and not
+   * yet reused, which are chained through {@link #nextSibling}, or
+   * {@code 0} if there are none.
+   */
+  private int freeNode;
+
+  /**
+   * The number of free nodes.
+   */
+  private int freeCount;
+
+  /**
+   * The number of structural modifications made so far, used to make
+   * iterators fail-fast.
+   */
+  private int modCount;
+
+  /**
+   * Creates a new, empty {@link IdentifierTrie}.
+   *
+   * @param idType the {@link IdType} of every {@link Identifier}
+   * whose value will be in this {@link IdentifierTrie}; must not be
+   * {@code null}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null}
+   */
+  public IdentifierTrie(final IdType<String, P> idType) {
+    super();
+    if (idType == null) {
+      throw new IllegalArgumentException("idType", new NullPointerException("idType"));
+    }
+    this.idType = idType;
+    this.latin1 = new byte[64];
+    this.labelStart = new int[16];
+    this.labelEnd = new int[16];
+    this.firstChild = new int[16];
+    this.nextSibling = new int[16];
+    this.count = new int[16];
+    this.terminal = new long[1];
+    this.nodeCount = 1; // the root
+  }
+
+  /**
+   * Returns the {@link IdType} of every {@link Identifier} whose value
+   * is in this {@link IdentifierTrie}.
+   *
+   * @return the {@link IdType}; never {@code null}
+   */
+  public final IdType<String, P> getIdType() {
+    return this.idType;
+  }
+
+  /**
+   * Returns the number of values in this {@link IdentifierTrie}.
+   *
+   * @return the number of values in this {@link IdentifierTrie}
+   */
+  public final int size() {
+    return this.count[ROOT];
+  }
+
+  /**
+   * Returns {@code true} if this {@link IdentifierTrie} holds no
+   * values.
+   *
+   * @return {@code true} if this {@link IdentifierTrie} holds no
+   * values; {@code false} otherwise
+   */
+  public final boolean isEmpty() {
+    return this.count[ROOT] == 0;
+  }
+
+  /**
+   * Returns the number of characters of label storage in use, which
+   * is the total length of the values in this {@link IdentifierTrie}
+   * less the length of the prefixes they share, plus any left behind
+   * by {@linkplain #remove(String) removal}.
+   *
+   * @return the number of characters of label storage in use
+   */
+  final int getLabelLength() {
+    return this.charCount;
+  }
+
+
+  /*
+   * Modification methods.
+   */
+
+
+  /**
+   * Adds the {@linkplain Identifier#getValue() value} of the supplied
+   * {@link Identifier} to this {@link IdentifierTrie} if it is not
+   * already present.
+   *
+   * <p>Only the value is kept, so the {@link Identifier}s that this
+   * {@link IdentifierTrie} later returns are of the class that its
+   * {@link IdType} implies, whatever the class of the one added: a
+   * {@link StringId} if the {@link IdType} is a {@link StringIdType}
+   * and a plain {@link Identifier} otherwise, just as {@link
+   * IdentifierParser} would parse them.  Likewise, {@link
+   * #contains(Identifier)} considers only the value.</p>
+   *
+   * @param id the {@link Identifier}; must not be {@code null} and
+   * must have an {@link IdType} {@linkplain IdType#equals(Object)
+   * equal to} {@linkplain #getIdType() this trie's}
+   *
+   * @return {@code true} if this {@link IdentifierTrie} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   */
+  public final boolean add(final Identifier<String, P> id) {
+    return this.add(this.valueOf(id));
+  }
+
+  /**
+   * Adds the supplied value to this {@link IdentifierTrie} if it is
+   * not already present.
+   *
+   * @param value the value; must not be {@code null}
+   *
+   * @return {@code true} if this {@link IdentifierTrie} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code value} is {@code
+   * null}
+   */
+  public boolean add(final String value) {
+    if (value == null) {
+      throw new IllegalArgumentException("value", new NullPointerException("value"));
+    }
+    if (this.contains(value)) {
+      return false;
+    }
+    final int length = value.length();
+    int node = ROOT;
+    int position = 0;
+    this.count[ROOT]++;
+    while (position < length) {
+      final char c = value.charAt(position);
+      int previous = 0;
+      int child = this.firstChild[node];
+      while (child != 0 && this.charAt(this.labelStart[child]) < c) {
+        previous = child;
+        child = this.nextSibling[child];
+      }
+      if (child == 0 || this.charAt(this.labelStart[child]) != c) {
+        final int leaf = this.newLeaf(value, position, length);
+        this.nextSibling[leaf] = child;
+        if (previous == 0) {
+          this.firstChild[node] = leaf;
+        } else {
+          this.nextSibling[previous] = leaf;
+        }
+        node = leaf;
+        break;
+      }
+      final int start = this.labelStart[child];
+      final int labelLength = this.labelEnd[child] - start;
+      int k = 1;
+      while (k < labelLength && position + k < length && this.charAt(start + k) == value.charAt(position + k)) {
+        k++;
+      }
+      if (k < labelLength) {
+        this.split(child, k);
+      }
+      this.count[child]++;
+      node = child;
+      position += k;
+    }
+    this.setTerminal(node, true);
+    this.modCount++;
+    return true;
+  }
+
+  /**
+   * Removes the {@linkplain Identifier#getValue() value} of the
+   * supplied {@link Identifier} from this {@link IdentifierTrie} if
+   * it is present.
+   *
+   * @param id the {@link Identifier}; must not be {@code null} and
+   * must have an {@link IdType} {@linkplain IdType#equals(Object)
+   * equal to} {@linkplain #getIdType() this trie's}
+   *
+   * @return {@code true} if this {@link IdentifierTrie} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   */
+  public final boolean remove(final Identifier<String, P> id) {
+    return this.remove(this.valueOf(id));
+  }
+
+  /**
+   * Removes the supplied value from this {@link IdentifierTrie} if it
+   * is present.
+   *
+   * @param value the value; may be {@code null} in which case {@code
+   * false} will be returned
+   *
+   * @return {@code true} if this {@link IdentifierTrie} changed as a
+   * result of this call
+   */
+  public boolean remove(final String value) {
+    if (!this.contains(value)) {
+      return false;
+    }
+    final int length = value.length();
+    int node = ROOT;
+    int position = 0;
+    // The topmost node beneath which no value remains, and its parent.
+    int dead = 0;
+    int deadParent = 0;
+    this.count[ROOT]--;
+    while (position < length) {
+      final int child = this.childStartingWith(node, value.charAt(position));
+      if (--this.count[child] == 0 && dead == 0) {
+        dead = child;
+        deadParent = node;
+      }
+      node = child;
+      position += this.labelEnd[child] - this.labelStart[child];
+    }
+    this.setTerminal(node, false);
+    if (dead != 0) {
+      this.unlink(deadParent, dead);
+      this.free(dead);
+    }
+    this.modCount++;
+    return true;
+  }
+
+
+  /*
+   * Query methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied {@link Identifier} has an
+   * {@link IdType} {@linkplain IdType#equals(Object) equal to}
+   * {@linkplain #getIdType() this trie's} and a {@linkplain
+   * Identifier#getValue() value} in this {@link IdentifierTrie}.
+   *
+   * <p>This method does not allocate.</p>
+   *
+   * @param id the {@link Identifier}; may be {@code null} in which
+   * case {@code false} will be returned
+   *
+   * @return {@code true} if the supplied {@link Identifier}'s value is
+   * in this {@link IdentifierTrie}; {@code false} otherwise
+   */
+  public final boolean contains(final Identifier<String, P> id) {
+    if (id == null || (id.getIdType() != this.idType && !this.idType.equals(id.getIdType()))) {
+      return false;
+    }
+    return this.contains(id.getValue());
+  }
+
+  /**
+   * Returns {@code true} if the supplied value is in this {@link
+   * IdentifierTrie}.
+   *
+   * <p>This method does not allocate.</p>
+   *
+   * @param value the value; may be {@code null} in which case {@code
+   * false} will be returned
+   *
+   * @return {@code true} if the supplied value is in this {@link
+   * IdentifierTrie}; {@code false} otherwise
+   */
+  public boolean contains(final CharSequence value) {
+    if (value == null) {
+      return false;
+    }
+    final long location = this.locate(value);
+    if (location < 0L) {
+      return false;
+    }
+    final int node = (int)(location >>> 32);
+    return value.length() - (int)location == this.labelEnd[node] - this.labelStart[node] && this.isTerminal(node);
+  }
+
+  /**
+   * Returns the number of values in this {@link IdentifierTrie} that
+   * begin with the supplied prefix.
+   *
+   * <p>This method does not allocate, and takes time proportional to
+   * the length of the prefix, not to the number of matching
+   * values.</p>
+   *
+   * @param prefix the prefix; must not be {@code null}
+   *
+   * @return the number of matching values
+   *
+   * @exception IllegalArgumentException if {@code prefix} is {@code
+   * null}
+   */
+  public int countWithPrefix(final CharSequence prefix) {
+    if (prefix == null) {
+      throw new IllegalArgumentException("prefix", new NullPointerException("prefix"));
+    }
+    final long location = this.locate(prefix);
+    return location < 0L ? 0 : this.count[(int)(location >>> 32)];
+  }
+
+
+  /*
+   * Iteration methods.
+   */
+
+
+  /**
+   * Returns an {@link Iterator} over {@link Identifier}s for every
+   * value in this {@link IdentifierTrie}, in {@linkplain
+   * String#compareTo(String) order}.
+   *
+   * <p>{@link Identifier}s whose {@link IdType} is a {@link
+   * StringIdType} are returned as {@link StringId}s, even if they
+   * were {@linkplain #add(Identifier) added} as plain {@link
+   * Identifier}s.</p>
+   *
+   * @return a non-{@code null}, fail-fast {@link Iterator}
+   */
+  @Override
+  public Iterator<Identifier<String, P>> iterator() {
+    return new Cursor(ROOT, 0, null, null);
+  }
+
+  /**
+   * Returns an {@link Iterable} over {@link Identifier}s for every
+   * value in this {@link IdentifierTrie} that begins with the
+   * supplied prefix, in {@linkplain String#compareTo(String) order}.
+   *
+   * <p>Iteration begins at the node where the prefix ends, without
+   * visiting any value that does not match.</p>
+   *
+   * @param prefix the prefix; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Iterable}
+   *
+   * @exception IllegalArgumentException if {@code prefix} is {@code
+   * null}
+   */
+  public Iterable<Identifier<String, P>> withPrefix(final CharSequence prefix) {
+    if (prefix == null) {
+      throw new IllegalArgumentException("prefix", new NullPointerException("prefix"));
+    }
+    final String p = prefix.toString();
+    return new Iterable<Identifier<String, P>>() {
+      @Override
+      public final Iterator<Identifier<String, P>> iterator() {
+        final long location = locate(p);
+        if (location < 0L) {
+          return Collections.<Identifier<String, P>>emptyIterator();
+        }
+        final Cursor cursor = new Cursor((int)(location >>> 32), (int)location, null, null);
+        p.getChars(0, (int)location, cursor.buffer(p.length()), 0);
+        return cursor;
+      }
+    };
+  }
+
+  /**
+   * Returns an {@link Iterable} over {@link Identifier}s for every
+   * value in this {@link IdentifierTrie} that is greater than or equal
+   * to {@code fromInclusive} and less than {@code toExclusive}, in
+   * {@linkplain String#compareTo(String) order}.
+   *
+   * @param fromInclusive the low end of the range; may be {@code null}
+   * in which case the range is unbounded below
+   *
+   * @param toExclusive the high end of the range; may be {@code null}
+   * in which case the range is unbounded above
+   *
+   * @return a non-{@code null} {@link Iterable}
+   */
+  public Iterable<Identifier<String, P>> range(final String fromInclusive, final String toExclusive) {
+    return new Iterable<Identifier<String, P>>() {
+      @Override
+      public final Iterator<Identifier<String, P>> iterator() {
+        return new Cursor(ROOT, 0, fromInclusive, toExclusive);
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * IdentifierTrie}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public String toString() {
+    return this.idType + " (" + this.size() + " values, " + (this.nodeCount - this.freeCount) + " nodes)";
+  }
+
+
+  /*
+   * Internal methods.
+   */
+
+
+  /**
+   * Returns the value of the supplied {@link Identifier} after
+   * checking its {@link IdType}.
+   */
+  private final String valueOf(final Identifier<String, P> id) {
+    if (id == null) {
+      throw new IllegalArgumentException("id", new NullPointerException("id"));
+    }
+    final IdType<String, P> idType = id.getIdType();
+    if (idType != this.idType && !this.idType.equals(idType)) {
+      throw new IllegalArgumentException("id: " + id);
+    }
+    return id.getValue();
+  }
+
+  /**
+   * Finds the node at or within whose label the supplied {@link
+   * CharSequence} ends, and returns that node in the upper 32 bits
+   * and the number of characters of the {@link CharSequence} that
+   * precede the node's label in the lower 32 bits, or {@code -1} if
+   * no value begins with the {@link CharSequence}.
+   */
+  private final long locate(final CharSequence s) {
+    final int length = s.length();
+    int node = ROOT;
+    int position = 0;
+    while (position < length) {
+      final int child = this.childStartingWith(node, s.charAt(position));
+      if (child == 0) {
+        return -1L;
+      }
+      final int start = this.labelStart[child];
+      final int labelLength = this.labelEnd[child] - start;
+      int k = 1;
+      while (k < labelLength && position + k < length) {
+        if (this.charAt(start + k) != s.charAt(position + k)) {
+          return -1L;
+        }
+        k++;
+      }
+      if (position + k == length) {
+        return ((long)child << 32) | position;
+      }
+      node = child;
+      position += k;
+    }
+    return ((long)ROOT << 32) | 0L;
+  }
+
+  /**
+   * Returns the child of the supplied node whose label begins with
+   * the supplied character, or {@code 0}.
+   */
+  private final int childStartingWith(final int node, final char c) {
+    for (int child = this.firstChild[node]; child != 0; child = this.nextSibling[child]) {
+      final char first = this.charAt(this.labelStart[child]);
+      if (first == c) {
+        return child;
+      } else if (first > c) {
+        break;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Splits the supplied node's label after its first {@code k}
+   * characters, moving the rest of the label, the node's children and
+   * its terminal bit to a new only child, which is returned.
+   */
+  private final int split(final int node, final int k) {
+    final int tail = this.newNode();
+    this.labelStart[tail] = this.labelStart[node] + k;
+    this.labelEnd[tail] = this.labelEnd[node];
+    this.firstChild[tail] = this.firstChild[node];
+    this.count[tail] = this.count[node];
+    this.setTerminal(tail, this.isTerminal(node));
+    this.labelEnd[node] = this.labelStart[node] + k;
+    this.firstChild[node] = tail;
+    this.setTerminal(node, false);
+    return tail;
+  }
+
+  /**
+   * Creates a node holding exactly one value, whose label is the
+   * supplied range of the supplied {@link String}, and returns it.
+   */
+  private final int newLeaf(final String value, final int from, final int to) {
+    final int length = to - from;
+    byte[] latin1 = this.latin1;
+    if (latin1 != null) {
+      for (int i = from; i < to; i++) {
+        if (value.charAt(i) > 0xFF) {
+          this.inflate();
+          latin1 = null;
+          break;
+        }
+      }
+    }
+    final int capacity = latin1 == null ? this.chars.length : latin1.length;
+    if (this.charCount + length > capacity) {
+      final int newCapacity = Math.max(this.charCount + length, capacity + (capacity >>> 1));
+      if (latin1 == null) {
+        this.chars = Arrays.copyOf(this.chars, newCapacity);
+      } else {
+        latin1 = Arrays.copyOf(latin1, newCapacity);
+        this.latin1 = latin1;
+      }
+    }
+    if (latin1 == null) {
+      value.getChars(from, to, this.chars, this.charCount);
+    } else {
+      for (int i = from, j = this.charCount; i < to; i++, j++) {
+        latin1[j] = (byte)value.charAt(i);
+      }
+    }
+    final int leaf = this.newNode();
+    this.labelStart[leaf] = this.charCount;
+    this.labelEnd[leaf] = this.charCount + length;
+    this.count[leaf] = 1;
+    this.charCount += length;
+    return leaf;
+  }
+
+  /**
+   * Allocates a node, reusing a {@linkplain #freeNode free} one if
+   * there is one and otherwise growing the node arrays if necessary,
+   * and returns it.
+   */
+  private final int newNode() {
+    final int free = this.freeNode;
+    if (free != 0) {
+      this.freeNode = this.nextSibling[free];
+      this.nextSibling[free] = 0;
+      this.freeCount--;
+      return free;
+    }
+    final int node = this.nodeCount;
+    if (node == this.labelStart.length) {
+      // The arrays may have been trimmed to a single node.
+      this.resize(Math.max(node + 1, node + (node >>> 1)));
+    }
+    this.nodeCount = node + 1;
+    return node;
+  }
+
+  /**
+   * Removes the supplied node from the supplied parent's children.
+   */
+  private final void unlink(final int parent, final int node) {
+    int child = this.firstChild[parent];
+    if (child == node) {
+      this.firstChild[parent] = this.nextSibling[node];
+    } else {
+      while (this.nextSibling[child] != node) {
+        child = this.nextSibling[child];
+      }
+      this.nextSibling[child] = this.nextSibling[node];
+    }
+    this.nextSibling[node] = 0;
+  }
+
+  /**
+   * Adds the supplied {@linkplain #unlink(int, int) unlinked} node,
+   * and every node beneath it, to the {@linkplain #freeNode free
+   * nodes}.
+   */
+  private final void free(final int node) {
+    // Nodes still to be freed are chained through nextSibling; each
+    // node's children are spliced onto the chain as it is freed.
+    int pending = node;
+    while (pending != 0) {
+      final int n = pending;
+      pending = this.nextSibling[n];
+      final int child = this.firstChild[n];
+      if (child != 0) {
+        int last = child;
+        while (this.nextSibling[last] != 0) {
+          last = this.nextSibling[last];
+        }
+        this.nextSibling[last] = pending;
+        pending = child;
+      }
+      this.firstChild[n] = 0;
+      this.count[n] = 0;
+      this.setTerminal(n, false);
+      this.nextSibling[n] = this.freeNode;
+      this.freeNode = n;
+      this.freeCount++;
+    }
+  }
+
+  /**
+   * Resizes the node arrays to the supplied capacity, which must be
+   * at least {@link #nodeCount}.
+   */
+  private final void resize(final int capacity) {
+    this.labelStart = Arrays.copyOf(this.labelStart, capacity);
+    this.labelEnd = Arrays.copyOf(this.labelEnd, capacity);
+    this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+    this.nextSibling = Arrays.copyOf(this.nextSibling, capacity);
+    this.count = Arrays.copyOf(this.count, capacity);
+    this.terminal = Arrays.copyOf(this.terminal, (capacity + 63) >>> 6);
+  }
+
+  /**
+   * Releases any spare room in the internal arrays.
+   */
+  private final void trimToSize() {
+    this.resize(this.nodeCount);
+    if (this.latin1 == null) {
+      this.chars = Arrays.copyOf(this.chars, this.charCount);
+    } else {
+      this.latin1 = Arrays.copyOf(this.latin1, this.charCount);
+    }
+  }
+
+  /**
+   * Switches label storage from {@link #latin1} to {@link #chars}.
+   */
+  private final void inflate() {
+    final byte[] latin1 = this.latin1;
+    final char[] chars = new char[latin1.length];
+    for (int i = 0; i < this.charCount; i++) {
+      chars[i] = (char)(latin1[i] & 0xFF);
+    }
+    this.chars = chars;
+    this.latin1 = null;
+  }
+
+  /**
+   * Returns the character at the supplied position in label storage.
+   */
+  private final char charAt(final int position) {
+    final byte[] latin1 = this.latin1;
+    return latin1 == null ? this.chars[position] : (char)(latin1[position] & 0xFF);
+  }
+
+  /**
+   * Copies the supplied range of label storage into the supplied
+   * buffer.
+   */
+  private final void copyLabel(final int from, final int to, final char[] buffer, final int position) {
+    final byte[] latin1 = this.latin1;
+    if (latin1 == null) {
+      System.arraycopy(this.chars, from, buffer, position, to - from);
+    } else {
+      for (int i = from, j = position; i < to; i++, j++) {
+        buffer[j] = (char)(latin1[i] & 0xFF);
+      }
+    }
+  }
+
+  private final boolean isTerminal(final int node) {
+    return (this.terminal[node >>> 6] & (1L << node)) != 0L;
+  }
+
+  private final void setTerminal(final int node, final boolean terminal) {
+    if (terminal) {
+      this.terminal[node >>> 6] |= 1L << node;
+    } else {
+      this.terminal[node >>> 6] &= ~(1L << node);
+    }
+  }
+
+  /**
+   * Returns a new {@link Identifier} with the supplied value, as a
+   * {@link StringId} if this trie's {@link IdType} is a {@link
+   * StringIdType}.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private final Identifier<String, P> identifierFor(final String value) {
+    if (this.idType instanceof StringIdType) {
+      return new StringId((StringIdType)this.idType, value);
+    }
+    return new Identifier<String, P>(this.idType, value);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Builds a new {@link IdentifierTrie} from values supplied in
+   * ascending {@linkplain String#compareTo(String) order}.
+   *
+   * <p>Each value is appended along the rightmost path of the trie
+   * built so far, so building takes time proportional to the total
+   * length of the values, with no searching of sibling lists.
+   * Duplicate values are ignored.  The trie's internal arrays are
+   * trimmed to size once it has been built.</p>
+   *
+   * @param <P> the common supertype of any semantic bits of
+   * information that might be notionally embedded in the values
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param sortedValues the values, in ascending order; must not be
+   * {@code null} and must not contain {@code null}
+   *
+   * @return a new {@link IdentifierTrie}; never {@code null}
+   *
+   * @exception IllegalArgumentException if either parameter is {@code
+   * null}, or if {@code sortedValues} contains {@code null} or is not
+   * in ascending order
+   */
+  public static final <P> IdentifierTrie<P> build(final IdType<String, P> idType, final Iterable<String> sortedValues) {
+    if (sortedValues == null) {
+      throw new IllegalArgumentException("sortedValues", new NullPointerException("sortedValues"));
+    }
+    final IdentifierTrie<P> returnValue = new IdentifierTrie<P>(idType);
+    if (sortedValues instanceof Collection) {
+      // Each value adds at most a leaf and the node split to make room
+      // for it.
+      final long capacity = 2L * ((Collection<?>)sortedValues).size() + 1L;
+      if (capacity > returnValue.labelStart.length && capacity <= Integer.MAX_VALUE) {
+        returnValue.resize((int)capacity);
+      }
+    }
+    // The nodes along the rightmost path, and the length of the value
+    // prefix that each one ends.
+    int[] path = new int[16];
+    int[] depth = new int[16];
+    int top = 0; // path[0] is the root
+    String previous = null;
+    for (final String value : sortedValues) {
+      if (value == null) {
+        throw new IllegalArgumentException("sortedValues contains null");
+      }
+      int lcp = 0;
+      if (previous != null) {
+        final int comparison = value.compareTo(previous);
+        if (comparison == 0) {
+          continue;
+        } else if (comparison < 0) {
+          throw new IllegalArgumentException("sortedValues is not sorted: \"" + value + "\" follows \"" + previous + "\"");
+        }
+        final int limit = Math.min(value.length(), previous.length());
+        while (lcp < limit && value.charAt(lcp) == previous.charAt(lcp)) {
+          lcp++;
+        }
+      }
+      // Find the deepest node on the rightmost path that ends within
+      // the common prefix.
+      int i = top;
+      while (depth[i] > lcp) {
+        i--;
+      }
+      int node = path[i];
+      // The last child of node, which is always on the rightmost
+      // path.
+      int last = i < top ? path[i + 1] : 0;
+      if (depth[i] < lcp) {
+        // The common prefix ends partway through path[i + 1]'s label.
+        node = path[i + 1];
+        last = returnValue.split(node, lcp - depth[i]);
+        i++;
+        depth[i] = lcp;
+      }
+      for (int j = 0; j <= i; j++) {
+        returnValue.count[path[j]]++;
+      }
+      if (lcp == value.length()) {
+        // Only possible for the empty string, which sorts first.
+        returnValue.setTerminal(node, true);
+        top = i;
+      } else {
+        final int leaf = returnValue.newLeaf(value, lcp, value.length());
+        returnValue.setTerminal(leaf, true);
+        if (last == 0) {
+          returnValue.firstChild[node] = leaf;
+        } else {
+          returnValue.nextSibling[last] = leaf;
+        }
+        top = i + 1;
+        if (top == path.length) {
+          path = Arrays.copyOf(path, top << 1);
+          depth = Arrays.copyOf(depth, top << 1);
+        }
+        path[top] = leaf;
+        depth[top] = value.length();
+      }
+      previous = value;
+    }
+    returnValue.trimToSize();
+    returnValue.modCount++;
+    return returnValue;
+  }
+
+  /**
+   * Builds a new {@link IdentifierTrie} from a {@link Stream} of
+   * values in ascending {@linkplain String#compareTo(String) order}.
+   *
+   * @param <P> the common supertype of any semantic bits of
+   * information that might be notionally embedded in the values
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param sortedValues the values, in ascending order; must not be
+   * {@code null} and must not contain {@code null}
+   *
+   * @return a new {@link IdentifierTrie}; never {@code null}
+   *
+   * @exception IllegalArgumentException if either parameter is {@code
+   * null}, or if {@code sortedValues} contains {@code null} or is not
+   * in ascending order
+   *
+   * @see #build(IdType, Iterable)
+   */
+  public static final <P> IdentifierTrie<P> build(final IdType<String, P> idType, final Stream<String> sortedValues) {
+    if (sortedValues == null) {
+      throw new IllegalArgumentException("sortedValues", new NullPointerException("sortedValues"));
+    }
+    return build(idType, (Iterable<String>)sortedValues::iterator);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A depth-first, fail-fast {@link Iterator} over the values beneath
+   * a node, optionally bounded below and above.
+   *
+   * <p>A {@link Cursor} keeps the value it is currently building in a
+   * single {@code char} buffer and its pending nodes on a pair of
+   * {@code int} stacks; siblings are pushed beneath children, so that
+   * values come out in order.</p>
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private final class Cursor implements Iterator<Identifier<String, P>> {
+
+    private final int scope;
+
+    private final String upper;
+
+    private String lower;
+
+    private char[] buffer;
+
+    private int[] nodes;
+
+    private int[] bases;
+
+    private int top;
+
+    private String next;
+
+    private int expectedModCount;
+
+    private Cursor(final int scope, final int base, final String lower, final String upper) {
+      super();
+      this.scope = scope;
+      this.lower = lower;
+      this.upper = upper;
+      this.buffer = new char[32];
+      this.nodes = new int[16];
+      this.bases = new int[16];
+      this.expectedModCount = modCount;
+      this.push(scope, base);
+    }
+
+    /**
+     * Returns the buffer, ensuring it has room for at least the
+     * supplied number of characters.
+     */
+    private final char[] buffer(final int capacity) {
+      if (capacity > this.buffer.length) {
+        this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, this.buffer.length << 1));
+      }
+      return this.buffer;
+    }
+
+    private final void push(final int node, final int base) {
+      if (this.top == this.nodes.length) {
+        this.nodes = Arrays.copyOf(this.nodes, this.top << 1);
+        this.bases = Arrays.copyOf(this.bases, this.top << 1);
+      }
+      this.nodes[this.top] = node;
+      this.bases[this.top] = base;
+      this.top++;
+    }
+
+    @Override
+    public final boolean hasNext() {
+      if (modCount != this.expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (this.next == null) {
+        this.next = this.advance();
+      }
+      return this.next != null;
+    }
+
+    @Override
+    public final Identifier<String, P> next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final String value = this.next;
+      this.next = null;
+      return identifierFor(value);
+    }
+
+    @Override
+    public final void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the next value, or {@code null} if there are no more.
+     */
+    private final String advance() {
+      while (this.top > 0) {
+        this.top--;
+        final int node = this.nodes[this.top];
+        final int base = this.bases[this.top];
+        if (node != this.scope && nextSibling[node] != 0) {
+          this.push(nextSibling[node], base);
+        }
+        if (count[node] == 0) {
+          // Every value beneath this node has been removed.
+          continue;
+        }
+        final int start = labelStart[node];
+        final int length = base + labelEnd[node] - start;
+        copyLabel(start, labelEnd[node], this.buffer(length), base);
+        if (this.upper != null && compare(this.buffer, length, this.upper) >= 0) {
+          // Everything from here on is at or past the upper bound.
+          this.top = 0;
+          return null;
+        }
+        boolean emit = true;
+        if (this.lower != null) {
+          final int comparison = compare(this.buffer, length, this.lower);
+          if (comparison == Integer.MIN_VALUE) {
+            // A proper prefix of the lower bound: descend, but do not
+            // emit.
+            emit = false;
+          } else if (comparison < 0) {
+            // Every value beneath this node is below the lower bound.
+            continue;
+          } else {
+            this.lower = null;
+          }
+        }
+        if (firstChild[node] != 0) {
+          this.push(firstChild[node], length);
+        }
+        if (emit && isTerminal(node)) {
+          return new String(this.buffer, 0, length);
+        }
+      }
+      return null;
+    }
+
+  }
+
+  /**
+   * Compares the first {@code length} characters of the supplied
+   * buffer with the supplied {@link String} as {@link
+   * String#compareTo(String)} would, except that {@link
+   * Integer#MIN_VALUE} is returned if the characters are a proper
+   * prefix of the {@link String}.
+   */
+  private static final int compare(final char[] buffer, final int length, final String s) {
+    final int otherLength = s.length();
+    final int limit = Math.min(length, otherLength);
+    for (int i = 0; i < limit; i++) {
+      final int difference = buffer[i] - s.charAt(i);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return length < otherLength ? Integer.MIN_VALUE : length - otherLength;
+  }
+
+}
@@ -0,0 +1,838 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable;
+
+import java.nio.ByteBuffer;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.NoSuchElementException; // for javadoc only
+
+/**
+ * A reusable, mutable view of an {@link Identifier} whose
+ * {@linkplain Identifier#getValue() value} lies, encoded, in a
+ * region of a {@link ByteBuffer}.
+ *
+ * <p>The encodings are those of {@link IdentifierStore}: a {@link
+ * Long} or {@link Integer} value occupies eight or four bytes, read
+ * with the {@link ByteBuffer}'s {@linkplain ByteBuffer#order() byte
+ * order}, and a {@link String} value occupies a run of UTF-8
+ * bytes.</p>
+ *
+ * <p>An {@link IdentifierView} is pointed at a value with one of its
+ * {@code wrap} methods, and may be repointed as often as desired.
+ * Its value is decoded only when something asks for it, such as
+ * {@link #getValue()} or {@link #extractFrom(Object)}; {@link
+ * #getLongValue()}, {@link #getIntValue()}, {@link #hashCode()} and
+ * {@link #equals(Object)} never allocate, and neither do {@link
+ * #extractLong(Object)} and {@link #extractInt(Object)} over {@link
+ * Long} and {@link Integer} values with the primitive {@link
+ * Extractor}s that {@link Identifier#extractLong(Object)} calls
+ * directly.  Scanning a buffer of encoded values with a single {@link
+ * IdentifierView}, therefore, allocates nothing per value unless
+ * boxed extraction is performed.</p>
+ *
+ * <p>An {@link IdentifierView} is {@linkplain #equals(Object) equal
+ * to} an {@link Identifier} exactly when the {@link Identifier} that
+ * {@link #toIdentifier()} would return is, and its {@linkplain
+ * #hashCode() hashcode} is that {@link Identifier}'s too.  The
+ * relationship is not symmetric: an {@link Identifier} is never
+ * equal to an {@link IdentifierView}.  An {@link IdentifierView} is
+ * therefore suitable for probing a {@link java.util.Map} keyed by
+ * {@link Identifier}s, but must never be used as a key itself;
+ * {@link #toIdentifier()} detaches a durable copy for that.</p>
+ *
+ * <p>{@link IdentifierView}s are not safe for use by multiple
+ * threads.</p>
+ *
+ * @param <W> the type of the value
+ *
+ * @param <P> the common supertype of any semantic bits of information
+ * that might be notionally embedded in the value
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see IdentifierStore
+ */
+public final class IdentifierView<W extends Serializable, P> {
+
+  private static final int LONG = 1;
+
+  private static final int INT = 2;
+
+  private static final int STRING = 3;
+
+  /**
+   * The {@link IdType} of this {@link IdentifierView}.  This field is
+   * never {@code null}.
+   */
+  private final IdType<W, P> idType;
+
+  /**
+   * The encoding of this {@link IdentifierView}'s value: one of
+   * {@link #LONG}, {@link #INT} or {@link #STRING}.
+   */
+  private final int kind;
+
+  /**
+   * The class of the {@link Identifier} that {@link #toIdentifier()}
+   * returns.  This field is never {@code null}.
+   */
+  private final Class<?> identifierClass;
+
+  /**
+   * The {@link ByteBuffer} holding the encoded value, or {@code null}
+   * if this {@link IdentifierView} has not yet been {@linkplain
+   * #wrap(ByteBuffer, int, int) pointed at one}.
+   */
+  private ByteBuffer buffer;
+
+  /**
+   * The index within {@link #buffer} of the first byte of the encoded
+   * value.
+   */
+  private int offset;
+
+  /**
+   * The number of bytes in the encoded value.
+   */
+  private int length;
+
+  /**
+   * The decoded value, or {@code null} if it has not yet been
+   * decoded.
+   *
+   * @see #getValue()
+   */
+  private W value;
+
+  /**
+   * Creates a new {@link IdentifierView}.
+   *
+   * @param idType the {@link IdType} of the values this {@link
+   * IdentifierView} will show; must not be {@code null} and must have
+   * a {@linkplain IdType#getType() type} of {@link Long}, {@link
+   * Integer} or {@link String}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null} or unsuitable
+   */
+  public IdentifierView(final IdType<W, P> idType) {
+    super();
+    if (idType == null) {
+      throw new IllegalArgumentException("idType", new NullPointerException("idType"));
+    }
+    final Class<W> type = idType.getType();
+    if (type == Long.class) {
+      this.kind = LONG;
+    } else if (type == Integer.class) {
+      this.kind = INT;
+    } else if (type == String.class) {
+      this.kind = STRING;
+    } else {
+      throw new IllegalArgumentException("Unsupported IdType type: " + type);
+    }
+    this.idType = idType;
+    if (idType instanceof LongIdType) {
+      this.identifierClass = LongIdentifier.class;
+    } else if (idType instanceof IntegerIdType) {
+      this.identifierClass = IntIdentifier.class;
+    } else if (idType instanceof StringIdType) {
+      this.identifierClass = StringId.class;
+    } else {
+      this.identifierClass = Identifier.class;
+    }
+  }
+
+  /**
+   * Points this {@link IdentifierView} at the {@code long} or {@code
+   * int} value at the supplied index of the supplied {@link
+   * ByteBuffer}, and returns it.
+   *
+   * @param buffer the {@link ByteBuffer}; must not be {@code null}
+   *
+   * @param offset the index of the first byte of the value
+   *
+   * @return this {@link IdentifierView}
+   *
+   * @exception IllegalArgumentException if {@code buffer} is {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if the value does not lie
+   * within {@code buffer}'s limit
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * IdentifierView} shows {@link String} values, whose lengths vary
+   */
+  public final IdentifierView<W, P> wrap(final ByteBuffer buffer, final int offset) {
+    switch (this.kind) {
+    case LONG:
+      return this.wrap(buffer, offset, 8);
+    case INT:
+      return this.wrap(buffer, offset, 4);
+    default:
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Points this {@link IdentifierView} at the value occupying the
+   * supplied region of the supplied {@link ByteBuffer}, and returns
+   * it.
+   *
+   * @param buffer the {@link ByteBuffer}; must not be {@code null}
+   *
+   * @param offset the index of the first byte of the value
+   *
+   * @param length the number of bytes in the value; must be {@code
+   * 8} for {@link Long} values and {@code 4} for {@link Integer}
+   * values
+   *
+   * @return this {@link IdentifierView}
+   *
+   * @exception IllegalArgumentException if {@code buffer} is {@code
+   * null}, or if {@code length} is wrong for a {@link Long} or {@link
+   * Integer} value
+   *
+   * @exception IndexOutOfBoundsException if the region does not lie
+   * within {@code buffer}'s limit
+   */
+  public final IdentifierView<W, P> wrap(final ByteBuffer buffer, final int offset, final int length) {
+    if (buffer == null) {
+      throw new IllegalArgumentException("buffer", new NullPointerException("buffer"));
+    }
+    if ((this.kind == LONG && length != 8) || (this.kind == INT && length != 4)) {
+      throw new IllegalArgumentException("length: " + length);
+    }
+    if (offset < 0 || length < 0 || offset > buffer.limit() - length) {
+      throw new IndexOutOfBoundsException("offset: " + offset + "; length: " + length);
+    }
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+    this.value = null;
+    return this;
+  }
+
+  /**
+   * Returns the {@link IdType} of this {@link IdentifierView}.
+   *
+   * @return the {@link IdType} of this {@link IdentifierView}; never
+   * {@code null}
+   */
+  public final IdType<W, P> getIdType() {
+    return this.idType;
+  }
+
+  /**
+   * Returns the value this {@link IdentifierView} currently shows,
+   * decoding it if necessary.
+   *
+   * <p>The decoded value is retained until this {@link
+   * IdentifierView} is next {@linkplain #wrap(ByteBuffer, int, int)
+   * repointed}.</p>
+   *
+   * @return the value; never {@code null}
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   */
+  @SuppressWarnings("unchecked")
+  public final W getValue() {
+    W value = this.value;
+    if (value == null) {
+      final ByteBuffer buffer = this.checkBuffer();
+      switch (this.kind) {
+      case LONG:
+        value = (W)Long.valueOf(buffer.getLong(this.offset));
+        break;
+      case INT:
+        value = (W)Integer.valueOf(buffer.getInt(this.offset));
+        break;
+      default:
+        value = (W)this.decode();
+        break;
+      }
+      this.value = value;
+    }
+    return value;
+  }
+
+  /**
+   * Returns the {@code long} value this {@link IdentifierView}
+   * currently shows, without allocating.
+   *
+   * @return the value
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * IdentifierView} does not show {@link Long} values
+   */
+  public final long getLongValue() {
+    if (this.kind != LONG) {
+      throw new UnsupportedOperationException();
+    }
+    return this.checkBuffer().getLong(this.offset);
+  }
+
+  /**
+   * Returns the {@code int} value this {@link IdentifierView}
+   * currently shows, without allocating.
+   *
+   * @return the value
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * IdentifierView} does not show {@link Integer} values
+   */
+  public final int getIntValue() {
+    if (this.kind != INT) {
+      throw new UnsupportedOperationException();
+    }
+    return this.checkBuffer().getInt(this.offset);
+  }
+
+  /**
+   * Extracts a sub-value from the {@linkplain #getValue() value}
+   * this {@link IdentifierView} currently shows, exactly as {@link
+   * Identifier#extractFrom(Object)} does.
+   *
+   * @param extractorKey the key under which an {@link Extractor}
+   * might be found; may be {@code null}
+   *
+   * @return the sub-value, or {@code null}
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @see Identifier#extractFrom(Object)
+   */
+  public final P extractFrom(final Object extractorKey) {
+    return this.idType.extractFrom(extractorKey, this.getValue());
+  }
+
+  /**
+   * Extracts a sub-value from the {@linkplain #getValue() value}
+   * this {@link IdentifierView} currently shows, exactly as {@link
+   * Identifier#extractFrom(ExtractorHandle)} does.
+   *
+   * @param handle the {@link ExtractorHandle} referring to the {@link
+   * Extractor} to use; must not be {@code null}
+   *
+   * @return the sub-value, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @see Identifier#extractFrom(ExtractorHandle)
+   */
+  public final P extractFrom(final ExtractorHandle<W, P> handle) {
+    return this.idType.extractFrom(handle, this.getValue());
+  }
+
+  /**
+   * Extracts every sub-value from the {@linkplain #getValue() value}
+   * this {@link IdentifierView} currently shows into the supplied,
+   * reusable {@link Extraction}, exactly as {@link
+   * Identifier#extractAll(Extraction)} does.
+   *
+   * @param target the {@link Extraction} to populate; may be {@code
+   * null} in which case a new {@link Extraction} will be created and
+   * returned
+   *
+   * @return the populated {@link Extraction}; never {@code null}
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @see Identifier#extractAll(Extraction)
+   */
+  public final Extraction<W, P> extractAll(final Extraction<W, P> target) {
+    return this.idType.extractAll(this.getValue(), target);
+  }
+
+  /**
+   * Extracts a {@code long} sub-value from the value this {@link
+   * IdentifierView} currently shows, exactly as {@link
+   * Identifier#extractLong(Object)} does.
+   *
+   * <p>{@link Long} and {@link Integer} values are read straight out
+   * of the {@link ByteBuffer}, so that nothing is allocated if the
+   * {@link Extractor} is a {@link LongToLongExtractor}, a {@link
+   * LongToIntExtractor} or an {@link IntToIntExtractor}.  {@link
+   * String} values are {@linkplain #getValue() decoded} first.</p>
+   *
+   * @param extractorKey the key under which an {@link Extractor}
+   * might be found; may be {@code null}
+   *
+   * @return the sub-value
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} indexed under the supplied {@code extractorKey} or if
+   * it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @see Identifier#extractLong(Object)
+   */
+  public final long extractLong(final Object extractorKey) {
+    return this.extractLong(null, extractorKey);
+  }
+
+  /**
+   * Extracts a {@code long} sub-value from the value this {@link
+   * IdentifierView} currently shows, exactly as {@link
+   * Identifier#extractLong(ExtractorHandle)} does.
+   *
+   * <p>This method behaves exactly like {@link #extractLong(Object)},
+   * except that it avoids the hash table lookup that method
+   * performs.</p>
+   *
+   * @param handle the {@link ExtractorHandle} referring to the {@link
+   * Extractor} to use; must not be {@code null}
+   *
+   * @return the sub-value
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} referred to by the supplied {@code handle} or if it
+   * extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @see Identifier#extractLong(ExtractorHandle)
+   */
+  public final long extractLong(final ExtractorHandle<W, P> handle) {
+    if (handle == null) {
+      throw new IllegalArgumentException("handle", new NullPointerException("handle"));
+    }
+    return this.extractLong(handle, handle.getKey());
+  }
+
+  /**
+   * Extracts an {@code int} sub-value from the value this {@link
+   * IdentifierView} currently shows, exactly as {@link
+   * Identifier#extractInt(Object)} does.
+   *
+   * <p>This method behaves exactly like {@link #extractLong(Object)},
+   * except that the extraction must fit in an {@code int}.</p>
+   *
+   * @param extractorKey the key under which an {@link Extractor}
+   * might be found; may be {@code null}
+   *
+   * @return the sub-value
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} indexed under the supplied {@code extractorKey} or if
+   * it extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @exception ArithmeticException if the extraction does not fit in
+   * an {@code int}
+   *
+   * @see Identifier#extractInt(Object)
+   */
+  public final int extractInt(final Object extractorKey) {
+    return Math.toIntExact(this.extractLong(null, extractorKey));
+  }
+
+  /**
+   * Extracts an {@code int} sub-value from the value this {@link
+   * IdentifierView} currently shows, exactly as {@link
+   * Identifier#extractInt(ExtractorHandle)} does.
+   *
+   * <p>This method behaves exactly like {@link
+   * #extractLong(ExtractorHandle)}, except that the extraction must
+   * fit in an {@code int}.</p>
+   *
+   * @param handle the {@link ExtractorHandle} referring to the {@link
+   * Extractor} to use; must not be {@code null}
+   *
+   * @return the sub-value
+   *
+   * @exception IllegalArgumentException if {@code handle} is {@code
+   * null}
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @exception NoSuchElementException if there is no {@link
+   * Extractor} referred to by the supplied {@code handle} or if it
+   * extracted {@code null}
+   *
+   * @exception ClassCastException if the {@link Extractor} extracted
+   * something other than a {@link Number}
+   *
+   * @exception ArithmeticException if the extraction does not fit in
+   * an {@code int}
+   *
+   * @see Identifier#extractInt(ExtractorHandle)
+   */
+  public final int extractInt(final ExtractorHandle<W, P> handle) {
+    return Math.toIntExact(this.extractLong(handle));
+  }
+
+  private final long extractLong(final ExtractorHandle<W, P> handle, final Object key) {
+    final IdType<W, P> idType = this.idType;
+    final ExtractorHandle<W, P> ownHandle = idType.ownHandle(handle, key);
+    switch (this.kind) {
+    case LONG:
+      return idType.extractLong(ownHandle, key, this.getLongValue());
+    case INT:
+      return idType.extractLong(ownHandle, key, this.getIntValue());
+    default:
+      return idType.extractLongFromValue(ownHandle, key, this.getValue());
+    }
+  }
+
+  /**
+   * Returns a new, durable {@link Identifier} equal to this {@link
+   * IdentifierView} in its current state.
+   *
+   * <p>The class of the {@link Identifier} follows from the {@link
+   * IdType}, just as it does in {@link IdentifierParser}: a {@link
+   * LongIdType}, {@link IntegerIdType} or {@link StringIdType} yields
+   * a {@link LongIdentifier}, {@link IntIdentifier} or {@link
+   * StringId} respectively, and any other {@link IdType} yields a
+   * plain {@link Identifier}.</p>
+   *
+   * @return a new {@link Identifier}; never {@code null}
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public final Identifier<W, P> toIdentifier() {
+    final IdType idType = this.idType;
+    if (this.identifierClass == Identifier.class) {
+      return new Identifier(idType, this.getValue());
+    }
+    switch (this.kind) {
+    case LONG:
+      return new LongIdentifier(idType, this.getLongValue());
+    case INT:
+      return new IntIdentifier(idType, this.getIntValue());
+    default:
+      return new StringId((StringIdType)idType, (String)this.getValue());
+    }
+  }
+
+  /**
+   * Returns a hashcode for this {@link IdentifierView} equal to that
+   * of the {@link Identifier} that {@link #toIdentifier()} would
+   * return, without allocating.
+   *
+   * @return a hashcode for this {@link IdentifierView}
+   *
+   * @exception IllegalStateException if this {@link IdentifierView}
+   * has not been pointed at a value
+   *
+   * @see Identifier#hashCode()
+   */
+  @Override
+  public final int hashCode() {
+    final int c;
+    switch (this.kind) {
+    case LONG:
+      final long longValue = this.getLongValue();
+      c = (int)(longValue ^ (longValue >>> 32));
+      break;
+    case INT:
+      c = this.getIntValue();
+      break;
+    default:
+      c = this.stringHashCode();
+      break;
+    }
+    int hashCode = 17;
+    hashCode = 37 * hashCode + c;
+    hashCode = 37 * hashCode + this.idType.hashCode();
+    return hashCode;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Object} is an {@link
+   * Identifier} of the class that {@link #toIdentifier()} would
+   * return, or an {@link IdentifierView}, with an {@link IdType} and
+   * a value equal to this {@link IdentifierView}'s, without
+   * allocating.
+   *
+   * <p>Like {@link Identifier#equals(Object)}, this method considers
+   * the class of an {@link Identifier}: an {@link IdentifierView}
+   * whose {@link IdType} is a {@link LongIdType} is equal to a {@link
+   * LongIdentifier} but not to a plain {@link Identifier}{@code
+   * <Long, ?>} with the same value.  This relationship is not
+   * symmetric; see the {@linkplain IdentifierView class
+   * documentation}.</p>
+   *
+   * @param other the {@link Object} to test; may be {@code null}
+   *
+   * @return {@code true} if {@code other} is equal to this {@link
+   * IdentifierView}; {@code false} otherwise
+   */
+  @Override
+  public final boolean equals(final Object other) {
+    if (other == this) {
+      return true;
+    } else if (other instanceof Identifier) {
+      final Identifier<?, ?> him = (Identifier<?, ?>)other;
+      if (him.getClass() != this.identifierClass || !this.sameIdType(him.getIdType())) {
+        return false;
+      }
+      switch (this.kind) {
+      case LONG:
+        if (him instanceof LongIdentifier) {
+          return ((LongIdentifier<?>)him).getLongValue() == this.getLongValue();
+        }
+        final Object longValue = him.getValue();
+        return longValue instanceof Long && ((Long)longValue).longValue() == this.getLongValue();
+      case INT:
+        if (him instanceof IntIdentifier) {
+          return ((IntIdentifier<?>)him).getIntValue() == this.getIntValue();
+        }
+        final Object intValue = him.getValue();
+        return intValue instanceof Integer && ((Integer)intValue).intValue() == this.getIntValue();
+      default:
+        final Object stringValue = him.getValue();
+        return stringValue instanceof String && this.contentEquals((String)stringValue);
+      }
+    } else if (other instanceof IdentifierView) {
+      final IdentifierView<?, ?> him = (IdentifierView<?, ?>)other;
+      if (!this.sameIdType(him.getIdType())) {
+        return false;
+      }
+      switch (this.kind) {
+      case LONG:
+        return this.getLongValue() == him.getLongValue();
+      case INT:
+        return this.getIntValue() == him.getIntValue();
+      default:
+        break;
+      }
+      // Two views may read their buffers with different byte orders,
+      // but UTF-8 has none, and no two well-formed encodings of a
+      // String differ.
+      final ByteBuffer buffer = this.checkBuffer();
+      final ByteBuffer hisBuffer = him.checkBuffer();
+      final int length = this.length;
+      if (length != him.length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (buffer.get(this.offset + i) != hisBuffer.get(him.offset + i)) {
+          return false;
+        }
+      }
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * IdentifierView} in the same form as {@link
+   * Identifier#toString()}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    if (this.buffer == null) {
+      return String.valueOf(this.idType);
+    }
+    return this.idType + ": " + this.getValue();
+  }
+
+  private final boolean sameIdType(final IdType<?, ?> idType) {
+    return idType == this.idType || this.idType.equals(idType);
+  }
+
+  private final ByteBuffer checkBuffer() {
+    final ByteBuffer buffer = this.buffer;
+    if (buffer == null) {
+      throw new IllegalStateException();
+    }
+    return buffer;
+  }
+
+  private final String decode() {
+    final ByteBuffer buffer = this.buffer;
+    final byte[] bytes = new byte[this.length];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(this.offset + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns what {@link String#hashCode()} would return for the
+   * decoded value, decoding it only if it is malformed.
+   */
+  private final int stringHashCode() {
+    final ByteBuffer buffer = this.checkBuffer();
+    final int end = this.offset + this.length;
+    int hashCode = 0;
+    int i = this.offset;
+    while (i < end) {
+      final byte b = buffer.get(i);
+      if (b >= 0) {
+        hashCode = 31 * hashCode + b;
+        i++;
+      } else {
+        final int decoded = decodeCodePoint(buffer, i, end);
+        if (decoded < 0) {
+          return this.decode().hashCode();
+        }
+        final int codePoint = decoded & 0x1FFFFF;
+        if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+          hashCode = 31 * hashCode + Character.highSurrogate(codePoint);
+          hashCode = 31 * hashCode + Character.lowSurrogate(codePoint);
+        } else {
+          hashCode = 31 * hashCode + codePoint;
+        }
+        i += decoded >>> 21;
+      }
+    }
+    return hashCode;
+  }
+
+  /**
+   * Returns {@code true} if the decoded value would be equal to the
+   * supplied {@link String}, decoding it only if it is malformed.
+   */
+  private final boolean contentEquals(final String s) {
+    final ByteBuffer buffer = this.checkBuffer();
+    final int sLength = s.length();
+    final int end = this.offset + this.length;
+    int i = this.offset;
+    int j = 0;
+    while (i < end) {
+      if (j >= sLength) {
+        return false;
+      }
+      final byte b = buffer.get(i);
+      if (b >= 0) {
+        if (s.charAt(j++) != b) {
+          return false;
+        }
+        i++;
+      } else {
+        final int decoded = decodeCodePoint(buffer, i, end);
+        if (decoded < 0) {
+          return this.decode().equals(s);
+        }
+        final int codePoint = decoded & 0x1FFFFF;
+        if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+          if (j + 1 >= sLength || s.charAt(j) != Character.highSurrogate(codePoint) || s.charAt(j + 1) != Character.lowSurrogate(codePoint)) {
+            return false;
+          }
+          j += 2;
+        } else if (s.charAt(j++) != codePoint) {
+          return false;
+        }
+        i += decoded >>> 21;
+      }
+    }
+    return j == sLength;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Decodes the well-formed, multi-byte UTF-8 sequence beginning at
+   * the supplied index and returns its code point in the low 21 bits
+   * of the return value and its length in bytes in the remaining
+   * bits, or returns {@code -1} if the sequence is malformed.
+   */
+  private static final int decodeCodePoint(final ByteBuffer buffer, final int i, final int end) {
+    final int b0 = buffer.get(i) & 0xFF;
+    final int length;
+    int codePoint;
+    final int minimum;
+    if (b0 >= 0xC2 && b0 <= 0xDF) {
+      length = 2;
+      codePoint = b0 & 0x1F;
+      minimum = 0x80;
+    } else if (b0 >= 0xE0 && b0 <= 0xEF) {
+      length = 3;
+      codePoint = b0 & 0x0F;
+      minimum = 0x800;
+    } else if (b0 >= 0xF0 && b0 <= 0xF4) {
+      length = 4;
+      codePoint = b0 & 0x07;
+      minimum = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+    } else {
+      return -1;
+    }
+    if (i + length > end) {
+      return -1;
+    }
+    for (int k = 1; k < length; k++) {
+      final int b = buffer.get(i + k) & 0xFF;
+      if ((b & 0xC0) != 0x80) {
+        return -1;
+      }
+      codePoint = (codePoint << 6) | (b & 0x3F);
+    }
+    if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+      return -1;
+    }
+    return codePoint | (length << 21);
+  }
+
+}
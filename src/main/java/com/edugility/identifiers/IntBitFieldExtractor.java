@@ -0,0 +1,249 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable; // for javadoc only
+
+/**
+ * An {@link IntToIntExtractor} that extracts a fixed run of bits from
+ * an {@code int}, such as the shard or sequence number packed into a
+ * 32-bit identifier.
+ *
+ * <p>An {@link IntBitFieldExtractor} behaves exactly like a {@link
+ * BitFieldExtractor}, except that it operates on {@code int}s, and so
+ * is suitable for use with {@link IntegerIdType}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see BitFieldExtractor
+ *
+ * @see BitLayout
+ */
+public class IntBitFieldExtractor implements IntToIntExtractor {
+
+  /**
+   * The version of this class for {@linkplain Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The index of the least significant bit of the field.
+   *
+   * @see #getOffset()
+   */
+  private final int offset;
+
+  /**
+   * The number of bits in the field; always between {@code 1} and
+   * {@code 32}, inclusive.
+   *
+   * @see #getWidth()
+   */
+  private final int width;
+
+  /**
+   * Whether the field is sign-extended.
+   *
+   * @see #isSigned()
+   */
+  private final boolean signed;
+
+  /**
+   * Creates a new unsigned {@link IntBitFieldExtractor}.
+   *
+   * @param offset the index of the least significant bit of the
+   * field; must be greater than or equal to {@code 0}
+   *
+   * @param width the number of bits in the field; must be greater
+   * than {@code 0}, and {@code offset + width} must be less than or
+   * equal to {@code 32}
+   *
+   * @exception IllegalArgumentException if {@code offset} or {@code
+   * width} is out of range
+   *
+   * @see #IntBitFieldExtractor(int, int, boolean)
+   */
+  public IntBitFieldExtractor(final int offset, final int width) {
+    this(offset, width, false);
+  }
+
+  /**
+   * Creates a new {@link IntBitFieldExtractor}.
+   *
+   * @param offset the index of the least significant bit of the
+   * field; must be greater than or equal to {@code 0}
+   *
+   * @param width the number of bits in the field; must be greater
+   * than {@code 0}, and {@code offset + width} must be less than or
+   * equal to {@code 32}
+   *
+   * @param signed whether the field's most significant bit is a sign
+   * bit
+   *
+   * @exception IllegalArgumentException if {@code offset} or {@code
+   * width} is out of range
+   */
+  public IntBitFieldExtractor(final int offset, final int width, final boolean signed) {
+    super();
+    if (offset < 0) {
+      throw new IllegalArgumentException("offset < 0: " + offset);
+    }
+    if (width <= 0) {
+      throw new IllegalArgumentException("width <= 0: " + width);
+    }
+    if (width > Integer.SIZE - offset) {
+      throw new IllegalArgumentException("offset + width > " + Integer.SIZE + ": " + offset + " + " + width);
+    }
+    this.offset = offset;
+    this.width = width;
+    this.signed = signed;
+  }
+
+  /**
+   * Returns the index of the least significant bit of the field that
+   * this {@link IntBitFieldExtractor} extracts.
+   *
+   * @return the index of the least significant bit of the field
+   */
+  public final int getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * Returns the number of bits in the field that this {@link
+   * IntBitFieldExtractor} extracts.
+   *
+   * @return the number of bits in the field; always between {@code
+   * 1} and {@code 32}, inclusive
+   */
+  public final int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns {@code true} if the field that this {@link
+   * IntBitFieldExtractor} extracts is sign-extended.
+   *
+   * @return {@code true} if the field is signed
+   */
+  public final boolean isSigned() {
+    return this.signed;
+  }
+
+  /**
+   * Extracts this {@link IntBitFieldExtractor}'s field from the
+   * supplied {@code int}.
+   *
+   * @param value the {@code int} from which to extract
+   *
+   * @return the field, zero- or sign-extended as appropriate
+   */
+  @Override
+  public final int extractInt(final int value) {
+    final int shifted = value << (Integer.SIZE - this.offset - this.width);
+    if (this.signed) {
+      return shifted >> (Integer.SIZE - this.width);
+    }
+    return shifted >>> (Integer.SIZE - this.width);
+  }
+
+  /**
+   * Returns the supplied {@code value} with this {@link
+   * IntBitFieldExtractor}'s field replaced by the supplied {@code
+   * field}.
+   *
+   * <p>Bits of {@code value} outside of this {@link
+   * IntBitFieldExtractor}'s field are left as they are.</p>
+   *
+   * @param value the {@code int} whose field will be replaced
+   *
+   * @param field the new value of the field; must be {@linkplain
+   * #fits(int) representable} in this {@link IntBitFieldExtractor}'s
+   * field
+   *
+   * @return the supplied {@code value} with its field replaced
+   *
+   * @exception IllegalArgumentException if {@code field} does not
+   * {@linkplain #fits(int) fit}
+   */
+  public final int insert(final int value, final int field) {
+    if (!this.fits(field)) {
+      throw new IllegalArgumentException("field: " + field);
+    }
+    final int mask = -1 >>> (Integer.SIZE - this.width) << this.offset;
+    return (value & ~mask) | ((field << this.offset) & mask);
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@code field} can be
+   * represented in this {@link IntBitFieldExtractor}'s field, that
+   * is, if {@linkplain #extractInt(int) extracting} it after
+   * {@linkplain #insert(int, int) inserting} it would return it
+   * unchanged.
+   *
+   * @param field the value to test
+   *
+   * @return {@code true} if the supplied {@code field} fits
+   */
+  public final boolean fits(final int field) {
+    final int unused = Integer.SIZE - this.width;
+    if (this.signed) {
+      return (field << unused >> unused) == field;
+    }
+    return (field << unused >>> unused) == field;
+  }
+
+  @Override
+  public int hashCode() {
+    int hashCode = 17;
+    hashCode = 37 * hashCode + this.offset;
+    hashCode = 37 * hashCode + this.width;
+    hashCode = 37 * hashCode + (this.signed ? 1 : 0);
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this) {
+      return true;
+    } else if (other != null && other.getClass().equals(this.getClass())) {
+      final IntBitFieldExtractor him = (IntBitFieldExtractor)other;
+      return this.offset == him.offset && this.width == him.width && this.signed == him.signed;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(this.signed ? "%d:%d signed" : "%d:%d", this.offset, this.width);
+  }
+
+}
@@ -29,6 +29,8 @@ package com.edugility.identifiers;
 
 import java.io.Serializable; // for javadoc only
 
+import java.util.Map;
+
 /**
  * An {@link IdType} whose associated {@link Identifier}s {@linkplain
  * Identifier#getValue() have <code>Integer</code>s as their values}.
@@ -70,4 +72,132 @@ public class IntegerIdType<P> extends IdType<Integer, P> {
     super(Integer.class, name);
   }
 
+  /**
+   * Creates a new {@link IntegerIdType}.
+   *
+   * <p>This constructor calls {@link IdType#IdType(Class, String,
+   * Map) super(Integer.class, name, extractors)}.</p>
+   * 
+   * @param name the name or label of this {@link IdType}; must not be
+   * {@code null}
+   *
+   * @param extractors a {@link Map} of {@link Extractor}s indexed by
+   * arbitrary keys; may be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code name} is {@code
+   * null}
+   */
+  public IntegerIdType(final String name, final Map<?, ? extends Extractor<Integer, P>> extractors) {
+    super(Integer.class, name, extractors);
+  }
+
+
+  /**
+   * Uses the {@link Extractor} {@linkplain #getExtractor(Object)
+   * indexed under the supplied <code>extractorId</code>} to extract a
+   * sub-value from each element of the supplied {@code values} array,
+   * storing each result in the corresponding element of the supplied
+   * {@code out} array.
+   *
+   * <p>The {@link Extractor} is looked up only once.  If it is an
+   * {@link IntToIntExtractor}, each value is handed to it without
+   * being boxed, though each extraction is necessarily boxed to be
+   * stored in {@code out}.  Otherwise each value is boxed into an
+   * {@link Integer} at the point where it is handed to the {@link
+   * Extractor}.  To extract without allocating at all, call {@link
+   * #extractInt(Object, int)} for each value instead.</p>
+   *
+   * @param extractorId the identifier of the {@link Extractor} to
+   * use; may be {@code null}
+   *
+   * @param values the values from which to extract; must not be
+   * {@code null}
+   *
+   * @param out the array into which extractions will be stored; must
+   * not be {@code null} and must be at least as long as {@code
+   * values}
+   *
+   * @exception IllegalArgumentException if either array is {@code
+   * null} or if {@code out} is shorter than {@code values}
+   *
+   * @see #extractFrom(Object, Serializable[], Object[])
+   */
+  public final void extractFrom(final Object extractorId, final int[] values, final P[] out) {
+    checkArrays(values, out);
+    final Extractor<Integer, P> extractor = this.getExtractor(extractorId);
+    if (isObserved()) {
+      this.observeBatch(extractorId, extractor, out, 0, values.length, () -> extractRange(extractor, values, out));
+    } else {
+      extractRange(extractor, values, out);
+    }
+  }
+
+  /**
+   * Applies the supplied {@link Extractor} to each element of {@code
+   * values}, storing each result in the corresponding element of
+   * {@code out}.
+   *
+   * @param extractor the {@link Extractor} to apply; may be {@code
+   * null} in which case the first {@code values.length} elements of
+   * {@code out} will be set to {@code null}
+   *
+   * @param values the values from which to extract; must not be
+   * {@code null}
+   *
+   * @param out the array into which extractions will be stored; must
+   * not be {@code null} and must be at least as long as {@code
+   * values}
+   */
+  private static final <P> void extractRange(final Extractor<Integer, P> extractor, final int[] values, final P[] out) {
+    if (extractor == null) {
+      for (int i = 0; i < values.length; i++) {
+        out[i] = null;
+      }
+    } else if (extractor instanceof IntToIntExtractor) {
+      final IntToIntExtractor intExtractor = (IntToIntExtractor)extractor;
+      final Object[] intOut = out;
+      for (int i = 0; i < values.length; i++) {
+        intOut[i] = Integer.valueOf(intExtractor.extractInt(values[i]));
+      }
+    } else {
+      for (int i = 0; i < values.length; i++) {
+        out[i] = extractor.extractFrom(Integer.valueOf(values[i]));
+      }
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@linkplain IdTypeRegistry#intern(IdType) canonical}
+   * {@link IntegerIdType} with the supplied {@code name}.
+   *
+   * <p>This method never returns {@code null}.  Repeated invocations
+   * of this method with equal {@code name}s will return the same
+   * {@link IntegerIdType} instance.</p>
+   *
+   * @param <Q> the common supertype that all embedded information in
+   * an {@link Identifier} who has the returned {@link IntegerIdType} as
+   * {@linkplain Identifier#getIdType() its type} possesses
+   *
+   * @param name the name or label of the {@link IdType}; must not
+   * be {@code null}
+   *
+   * @return a canonical {@link IntegerIdType}; never {@code null}
+   *
+   * @see IdTypeRegistry#intern(IdType)
+   */
+  public static final <Q> IntegerIdType<Q> valueOf(final String name) {
+    final IdTypeRegistry registry = IdTypeRegistry.getInstance();
+    final IntegerIdType<Q> returnValue = registry.getNamed(IntegerIdType.class, name);
+    if (returnValue != null) {
+      return returnValue;
+    }
+    return registry.intern(new IntegerIdType<Q>(name));
+  }
+
 }
@@ -0,0 +1,268 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.Arrays;
+
+/**
+ * The common state and bookkeeping of the open-addressing hash tables
+ * that back an {@link IdentifierMap}: an array of values, parallel to
+ * a subclass's array of primitive or {@link String} keys, whose
+ * entries also record the state of each slot.
+ *
+ * <p>A {@code null} value marks a free slot, {@link #TOMBSTONE} marks
+ * a slot whose mapping has been removed, and {@link #NULL} stands in
+ * for a mapping to {@code null}.  Since removal leaves a tombstone
+ * rather than moving other entries, a table may be iterated by slot
+ * while entries are removed from it.</p>
+ *
+ * <p>Slots are probed linearly.  The table is resized or rebuilt when
+ * live entries and tombstones together would occupy more than
+ * two-thirds of it.</p>
+ *
+ * @param <V> the type of the values
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see IdentifierMap
+ */
+abstract class KeyTable<V> {
+
+  /**
+   * The marker for a slot whose mapping has been removed.
+   */
+  static final Object TOMBSTONE = new Object();
+
+  /**
+   * The stand-in for a mapping to {@code null}.
+   */
+  static final Object NULL = new Object();
+
+  /**
+   * The initial number of slots.
+   */
+  static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The values, or state markers, of each slot.  This field is never
+   * {@code null} and its length is always a power of two.
+   */
+  Object[] values;
+
+  /**
+   * The number of live mappings.
+   */
+  int size;
+
+  /**
+   * The number of slots that are not free: live mappings plus
+   * tombstones.
+   */
+  int used;
+
+  /**
+   * Creates a new {@link KeyTable}.
+   */
+  KeyTable() {
+    super();
+    this.values = new Object[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Returns the number of slots in this {@link KeyTable}.
+   *
+   * @return the number of slots in this {@link KeyTable}
+   */
+  final int capacity() {
+    return this.values.length;
+  }
+
+  /**
+   * Returns the number of live mappings in this {@link KeyTable}.
+   *
+   * @return the number of live mappings in this {@link KeyTable}
+   */
+  final int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns {@code true} if the supplied slot holds a live mapping.
+   *
+   * @param slot the slot in question
+   *
+   * @return {@code true} if the supplied slot holds a live mapping
+   */
+  final boolean isLive(final int slot) {
+    final Object value = this.values[slot];
+    return value != null && value != TOMBSTONE;
+  }
+
+  /**
+   * Returns the value mapped in the supplied live slot.
+   *
+   * @param slot the slot in question
+   *
+   * @return the value, which may be {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  final V valueAt(final int slot) {
+    final Object value = this.values[slot];
+    return value == NULL ? null : (V)value;
+  }
+
+  /**
+   * Replaces the value mapped in the supplied live slot, and returns
+   * the old one.
+   *
+   * @param slot the slot in question
+   *
+   * @param value the new value; may be {@code null}
+   *
+   * @return the old value, which may be {@code null}
+   */
+  final V setValueAt(final int slot, final V value) {
+    final V returnValue = this.valueAt(slot);
+    this.values[slot] = value == null ? NULL : value;
+    return returnValue;
+  }
+
+  /**
+   * Removes the mapping in the supplied live slot, and returns its
+   * value.
+   *
+   * @param slot the slot in question
+   *
+   * @return the removed value, which may be {@code null}
+   */
+  final V removeAt(final int slot) {
+    final V returnValue = this.valueAt(slot);
+    this.values[slot] = TOMBSTONE;
+    this.size--;
+    this.clearKeyAt(slot);
+    return returnValue;
+  }
+
+  /**
+   * Removes all mappings.
+   */
+  final void clear() {
+    Arrays.fill(this.values, null);
+    this.clearKeys();
+    this.size = 0;
+    this.used = 0;
+  }
+
+  /**
+   * Records a new mapping in the supplied slot, which was free or a
+   * tombstone, and grows or rebuilds this {@link KeyTable} if
+   * necessary.
+   *
+   * @param slot the slot
+   *
+   * @param value the value; may be {@code null}
+   */
+  final void occupy(final int slot, final V value) {
+    if (this.values[slot] == null) {
+      this.used++;
+    }
+    this.values[slot] = value == null ? NULL : value;
+    this.size++;
+    if (this.used * 3 > this.values.length * 2) {
+      // Grow only if live mappings alone warrant it; otherwise just
+      // sweep out the tombstones.
+      this.rehash(this.size * 3 > this.values.length ? this.values.length * 2 : this.values.length);
+    }
+  }
+
+  /**
+   * Rebuilds this {@link KeyTable} with the supplied number of
+   * slots, discarding tombstones.
+   *
+   * @param capacity the new number of slots; a power of two
+   */
+  abstract void rehash(final int capacity);
+
+  /**
+   * Releases any reference held by the key in the supplied slot.
+   *
+   * @param slot the slot
+   */
+  void clearKeyAt(final int slot) {
+
+  }
+
+  /**
+   * Releases any references held by keys.
+   */
+  void clearKeys() {
+
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Spreads the bits of the supplied {@code long} hash for use as a
+   * slot index (the finalizer of MurmurHash3).
+   *
+   * @param h the hash
+   *
+   * @return the spread hash
+   */
+  static final int mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int)h;
+  }
+
+  /**
+   * Spreads the bits of the supplied {@code int} hash for use as a
+   * slot index (the 32-bit finalizer of MurmurHash3).
+   *
+   * @param h the hash
+   *
+   * @return the spread hash
+   */
+  static final int mix(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+}
@@ -0,0 +1,227 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable; // for javadoc only
+
+/**
+ * An {@link Identifier} whose {@linkplain #getValue() value} is
+ * stored as a primitive {@code long}.
+ *
+ * <p>A {@link LongIdentifier} does not hold a {@link Long}; its
+ * {@link #getValue()} method boxes its value only when asked.
+ * Callers that know they are dealing with a {@link LongIdentifier}
+ * should use the {@link #getLongValue()} method instead.</p>
+ *
+ * <p>A {@link LongIdentifier} shares the hashcode cache it inherits
+ * from {@link Identifier}, but still carries the inherited reference
+ * to a boxed value, which it leaves {@code null}.  On a 64-bit
+ * virtual machine with compressed references that reference occupies
+ * what would otherwise be alignment padding, so a {@link
+ * LongIdentifier} occupies 32 bytes with or without it, against 48
+ * for an {@link Identifier} (24) and the {@link Long} (24) it refers
+ * to.  The saving lies in the {@link Long} that is never allocated,
+ * and in the indirection that is never followed, not in the {@link
+ * Identifier} itself.</p>
+ *
+ * <p>Like all {@link Identifier}s, a {@link LongIdentifier} is only
+ * ever {@linkplain #equals(Object) equal to} other instances of its
+ * own class.</p>
+ *
+ * @param <P> the common supertype of any semantic bits of information
+ * that might be notionally embedded in the {@link LongIdentifier}
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see LongIdType
+ */
+public class LongIdentifier<P> extends Identifier<Long, P> {
+
+  /**
+   * The version of this class for {@linkplain Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The value of this {@link LongIdentifier}.
+   *
+   * @see #getLongValue()
+   */
+  private final long value;
+
+  /**
+   * Creates a new {@link LongIdentifier}.
+   *
+   * @param idType the {@link IdType} that defines everything about
+   * this {@link LongIdentifier} except its actual {@linkplain
+   * #getLongValue() value}; must not be {@code null}
+   *
+   * @param value the value this {@link LongIdentifier} will have
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null}
+   */
+  public LongIdentifier(final IdType<Long, P> idType, final long value) {
+    super(idType);
+    this.value = value;
+  }
+
+  /**
+   * Returns the value of this {@link LongIdentifier} as a primitive
+   * {@code long}.
+   *
+   * @return the value of this {@link LongIdentifier}
+   */
+  public final long getLongValue() {
+    return this.value;
+  }
+
+  /**
+   * Returns the value of this {@link LongIdentifier} boxed into a
+   * {@link Long}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the value of this {@link LongIdentifier} as a {@link
+   * Long}; never {@code null}
+   *
+   * @see #getLongValue()
+   */
+  @Override
+  public final Long getValue() {
+    return Long.valueOf(this.value);
+  }
+
+  /**
+   * Computes the hashcode that the {@link #hashCode()} method caches,
+   * factoring in this {@link LongIdentifier}'s {@linkplain #getLongValue()
+   * value} and its {@link #getIdType() IdType}.
+   *
+   * <p>The value returned is the same as that which would be returned
+   * for an {@link Identifier} with an equal {@link Long} value, but
+   * is computed without boxing.</p>
+   *
+   * @return a hashcode for this {@link LongIdentifier}
+   */
+  @Override
+  final int computeHashCode() {
+    int hashCode = 17;
+    hashCode = 37 * hashCode + (int)(this.value ^ (this.value >>> 32));
+    hashCode = 37 * hashCode + this.getIdType().hashCode();
+    return hashCode;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Object} is equal to
+   * this {@link LongIdentifier}.
+   *
+   * @param other the {@link Object} to test; may be {@code null} in
+   * which case {@code false} will be returned
+   *
+   * @return {@code true} if the supplied {@link Object} has a {@link
+   * Object#getClass() Class} that is equal to this {@link
+   * LongIdentifier}'s {@link Object#getClass() Class}, a {@linkplain
+   * #getLongValue() value} that is equal to this {@link
+   * LongIdentifier}'s {@linkplain #getLongValue() value} and an
+   * {@link #getIdType() IdType} that is equal to this {@link
+   * LongIdentifier}'s {@link #getIdType() IdType}; {@code false}
+   * otherwise
+   */
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this) {
+      return true;
+    } else if (other != null && other.getClass().equals(this.getClass())) {
+      final LongIdentifier<?> him = (LongIdentifier<?>)other;
+      if (this.value != him.value) {
+        return false;
+      }
+      final IdType<?, ?> idType = this.getIdType();
+      final IdType<?, ?> hisIdType = him.getIdType();
+      return idType == hisIdType || idType.equals(hisIdType);
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Object} is a {@link
+   * Long} equal to this {@link LongIdentifier}'s {@linkplain #getValue()
+   * value}, without boxing.
+   *
+   * @param value the {@link Object} to test; may be {@code null}
+   *
+   * @return {@code true} if {@code value} is equal to this {@link
+   * LongIdentifier}'s value; {@code false} otherwise
+   */
+  @Override
+  final boolean hasValue(final Object value) {
+    return value instanceof Long && ((Long)value).longValue() == this.value;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a non-{@code null} {@link LongIdentifier} whose {@link
+   * #getIdType() IdType} and {@linkplain #getLongValue() value} equal
+   * the supplied {@link IdType} and {@code value}.
+   *
+   * <p>Currently, this method simply creates a new {@link
+   * LongIdentifier} with the supplied arguments, but the right is
+   * reserved for this method to change to use a caching mechanism in
+   * much the same way that {@link Long#valueOf(long)} does.</p>
+   *
+   * @param <Y> the common supertype of any semantic bits of
+   * information that might be notionally embedded in the {@link
+   * LongIdentifier}
+   *
+   * @param idType the {@link IdType} that will be equal <strong>but
+   * not necessarily identical</strong> to the {@linkplain
+   * #getIdType() <code>IdType</code> associated with the
+   * <code>LongIdentifier</code> that this method will return}; must
+   * not be {@code null}
+   *
+   * @param value the {@linkplain #getLongValue() value} of the
+   * {@link LongIdentifier} that this method will return
+   *
+   * @return a non-{@code null} {@link LongIdentifier}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null}
+   */
+  public static <Y> LongIdentifier<Y> valueOf(final IdType<Long, Y> idType, final long value) {
+    return new LongIdentifier<Y>(idType, value);
+  }
+
+}
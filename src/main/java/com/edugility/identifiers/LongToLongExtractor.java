@@ -0,0 +1,82 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+/**
+ * An {@link Extractor} that extracts a primitive {@code long} part
+ * out of a primitive {@code long} whole.
+ *
+ * <p>{@link IdType}s recognize {@link LongToLongExtractor}s and, in
+ * {@link IdType#extractLong(Object, long)} and {@link
+ * Identifier#extractLong(Object)}, call their {@link
+ * #extractLong(long)} method directly, so no boxing of either the
+ * whole or the part takes place.  The {@link #extractFrom(Long)}
+ * method is implemented in terms of {@link #extractLong(long)} for
+ * callers that use the ordinary {@link Extractor} contract.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Identifier#extractLong(Object)
+ */
+public interface LongToLongExtractor extends Extractor<Long, Long> {
+
+  /**
+   * Extracts a {@code long} part out of the supplied {@code long}
+   * whole.
+   *
+   * @param value the whole from which a part will be extracted
+   *
+   * @return the part
+   *
+   * @exception IllegalArgumentException if {@code value} is
+   * unsuitable for performing extraction on for any reason
+   */
+  public long extractLong(final long value);
+
+  /**
+   * Extracts a part out of the supplied whole by unboxing it, calling
+   * the {@link #extractLong(long)} method and boxing the result.
+   *
+   * @param value the whole from which a part will be extracted; may
+   * be {@code null} in which case {@code null} will be returned
+   *
+   * @return the part, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code value} is
+   * unsuitable for performing extraction on for any reason
+   */
+  @Override
+  public default Long extractFrom(final Long value) {
+    if (value == null) {
+      return null;
+    }
+    return Long.valueOf(this.extractLong(value.longValue()));
+  }
+
+}
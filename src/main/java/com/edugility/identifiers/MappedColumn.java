@@ -0,0 +1,249 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Arrays;
+
+/**
+ * A file of bytes addressed by {@code long} position and mapped into
+ * memory in fixed-size, power-of-two chunks, so that it may grow well
+ * beyond the two gigabyte limit of a single {@link MappedByteBuffer}.
+ *
+ * <p>Chunks are mapped on demand as the column {@linkplain
+ * #ensureCapacity(long) grows}; each one extends the underlying file
+ * by the chunk size.  {@code long}s and {@code int}s must be stored
+ * at positions that are multiples of their sizes so that they never
+ * straddle two chunks; runs of bytes may.</p>
+ *
+ * <p>Reads may proceed concurrently with one another and with a
+ * single writer, provided that they read only positions that the
+ * writer has finished writing and has published by some other
+ * means.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see IdentifierStore
+ */
+final class MappedColumn implements Closeable {
+
+  /**
+   * The {@link FileChannel} backing this {@link MappedColumn}.  This
+   * field is never {@code null}.
+   */
+  private final FileChannel channel;
+
+  /**
+   * The base-two logarithm of the size of each chunk.
+   */
+  private final int chunkShift;
+
+  /**
+   * A mask selecting the position within a chunk from a position
+   * within this {@link MappedColumn}.
+   */
+  private final long chunkMask;
+
+  /**
+   * The chunks mapped so far.  This field is never {@code null}, and
+   * is replaced, never modified, when the column grows.
+   */
+  private volatile MappedByteBuffer[] chunks;
+
+  /**
+   * Creates a new {@link MappedColumn}, creating its file if
+   * necessary, and maps every chunk that the file already spans.
+   *
+   * @param path the {@link Path} of the file; must not be {@code
+   * null}
+   *
+   * @param chunkShift the base-two logarithm of the size of each
+   * chunk; must be between {@code 3} and {@code 30}, inclusive
+   *
+   * @exception IOException if an error occurs
+   */
+  MappedColumn(final Path path, final int chunkShift) throws IOException {
+    super();
+    assert path != null;
+    assert chunkShift >= 3 && chunkShift <= 30;
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.chunkShift = chunkShift;
+    this.chunkMask = (1L << chunkShift) - 1L;
+    this.chunks = new MappedByteBuffer[0];
+    this.ensureCapacity(this.channel.size());
+  }
+
+  /**
+   * Returns the number of bytes that this {@link MappedColumn} can
+   * currently hold without mapping further chunks.
+   *
+   * @return the current capacity of this {@link MappedColumn}
+   */
+  final long capacity() {
+    return (long)this.chunks.length << this.chunkShift;
+  }
+
+  /**
+   * Makes sure that this {@link MappedColumn} can hold at least the
+   * supplied number of bytes, mapping further chunks as necessary.
+   *
+   * @param capacity the required capacity
+   *
+   * @exception IOException if an error occurs
+   */
+  final void ensureCapacity(final long capacity) throws IOException {
+    MappedByteBuffer[] chunks = this.chunks;
+    if (((long)chunks.length << this.chunkShift) < capacity) {
+      final long chunkSize = 1L << this.chunkShift;
+      final int count = (int)((capacity + chunkSize - 1L) >>> this.chunkShift);
+      final int oldCount = chunks.length;
+      chunks = Arrays.copyOf(chunks, count);
+      for (int i = oldCount; i < count; i++) {
+        chunks[i] = this.channel.map(FileChannel.MapMode.READ_WRITE, (long)i << this.chunkShift, chunkSize);
+      }
+      this.chunks = chunks;
+    }
+  }
+
+  final long getLong(final long position) {
+    return this.chunks[(int)(position >>> this.chunkShift)].getLong((int)(position & this.chunkMask));
+  }
+
+  final void putLong(final long position, final long value) {
+    this.chunks[(int)(position >>> this.chunkShift)].putLong((int)(position & this.chunkMask), value);
+  }
+
+  final int getInt(final long position) {
+    return this.chunks[(int)(position >>> this.chunkShift)].getInt((int)(position & this.chunkMask));
+  }
+
+  final void putInt(final long position, final int value) {
+    this.chunks[(int)(position >>> this.chunkShift)].putInt((int)(position & this.chunkMask), value);
+  }
+
+  /**
+   * Copies bytes out of this {@link MappedColumn} into the supplied
+   * array.
+   *
+   * @param position the position in this {@link MappedColumn} of the
+   * first byte to copy
+   *
+   * @param bytes the array to copy into; must not be {@code null}
+   *
+   * @param offset the index in {@code bytes} of the first byte to
+   * write
+   *
+   * @param length the number of bytes to copy
+   */
+  final void get(long position, final byte[] bytes, int offset, int length) {
+    final MappedByteBuffer[] chunks = this.chunks;
+    while (length > 0) {
+      final MappedByteBuffer chunk = chunks[(int)(position >>> this.chunkShift)];
+      final int index = (int)(position & this.chunkMask);
+      final int n = Math.min(length, chunk.capacity() - index);
+      // As in put(long, byte[], int, int), a duplicate stands in for
+      // the absolute bulk get that arrived only in Java 13.
+      final ByteBuffer duplicate = ((ByteBuffer)chunk).duplicate();
+      duplicate.position(index);
+      duplicate.get(bytes, offset, n);
+      offset += n;
+      position += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Copies bytes from the supplied array into this {@link
+   * MappedColumn}, which must already have the capacity to hold
+   * them.
+   *
+   * @param position the position in this {@link MappedColumn} of the
+   * first byte to write
+   *
+   * @param bytes the array to copy from; must not be {@code null}
+   *
+   * @param offset the index in {@code bytes} of the first byte to
+   * copy
+   *
+   * @param length the number of bytes to copy
+   */
+  final void put(long position, final byte[] bytes, int offset, int length) {
+    final MappedByteBuffer[] chunks = this.chunks;
+    while (length > 0) {
+      final MappedByteBuffer chunk = chunks[(int)(position >>> this.chunkShift)];
+      final int index = (int)(position & this.chunkMask);
+      final int n = Math.min(length, chunk.capacity() - index);
+      // Absolute bulk puts arrived only in Java 13; a duplicate
+      // costs one small allocation per chunk touched.
+      final ByteBuffer duplicate = ((ByteBuffer)chunk).duplicate();
+      duplicate.position(index);
+      duplicate.put(bytes, offset, n);
+      offset += n;
+      position += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Forces any changes to this {@link MappedColumn} out to the
+   * storage device.
+   *
+   * @exception IOException if an error occurs
+   */
+  final void force() throws IOException {
+    for (final MappedByteBuffer chunk : this.chunks) {
+      chunk.force();
+    }
+  }
+
+  /**
+   * Closes the {@link FileChannel} backing this {@link
+   * MappedColumn}.
+   *
+   * <p>The chunks themselves remain mapped until they are garbage
+   * collected; there is no supported way to unmap them sooner.</p>
+   *
+   * @exception IOException if an error occurs
+   */
+  @Override
+  public final void close() throws IOException {
+    this.channel.close();
+  }
+
+}
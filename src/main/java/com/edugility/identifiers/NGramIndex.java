@@ -0,0 +1,1169 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index from the <em>n</em>-grams (runs of <em>n</em>
+ * consecutive characters) of the {@link String} {@linkplain
+ * Identifier#getValue() values} of {@link Identifier}s that share a
+ * single {@link IdType} to the values containing them, so that every
+ * value containing an arbitrary fragment can be found without
+ * scanning every value.
+ *
+ * <h2>Structure</h2>
+ *
+ * <p>Each value is assigned an integer document number when it is
+ * added.  Each <em>n</em>-gram, packed into a {@code long}, maps to
+ * a posting list of the document numbers of the values containing
+ * it, held as a single {@code byte} array of variable-length deltas,
+ * so that a typical posting costs one or two bytes.  Values shorter
+ * than the gram length are posted under a key of their own.</p>
+ *
+ * <h2>Queries</h2>
+ *
+ * <p>{@link #findContaining(CharSequence)} looks up the posting lists
+ * of every <em>n</em>-gram of the fragment, intersects them starting
+ * with the shortest (stopping early once the candidates are few
+ * compared with the next list), and then verifies each surviving
+ * candidate, since values that contain every gram of a fragment need
+ * not contain the fragment itself.  A fragment shorter than the gram
+ * length is answered by scanning the (comparatively small) set of
+ * distinct grams, rather than the values, for grams containing it,
+ * and uniting their posting lists.</p>
+ *
+ * <h2>Modification</h2>
+ *
+ * <p>{@link #add(String)} appends the new document number to the end
+ * of each of its grams' posting lists.  {@link #remove(String)}
+ * merely marks a document as removed; removed documents are skipped
+ * by queries, and once they outnumber the remaining ones the index
+ * is rebuilt without them.  {@link #build(IdType, int, Collection)}
+ * indexes many values at once in parallel.</p>
+ *
+ * <h2>Thread Safety</h2>
+ *
+ * <p>This class is safe for use by multiple concurrent threads.
+ * Queries proceed in parallel with one another; modifications are
+ * exclusive.</p>
+ *
+ * @param <P> the common supertype of any semantic bits of information
+ * that might be notionally embedded in the values
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see StringIdType
+ */
+public class NGramIndex<P> {
+
+  /**
+   * The gram length used by {@link #NGramIndex(IdType)} and {@link
+   * #build(IdType, Collection)}: {@value}.
+   */
+  public static final int DEFAULT_GRAM_LENGTH = 3;
+
+  /**
+   * The number of independently built partitions of the gram
+   * dictionary: {@value}.
+   */
+  private static final int PARTITIONS = 16;
+
+  /**
+   * The minimum number of values indexed by each task during a
+   * parallel build.
+   */
+  private static final int MINIMUM_CHUNK = 16384;
+
+  /**
+   * The bit set in the key under which a value shorter than the gram
+   * length is posted.
+   */
+  private static final long SHORT = 1L << 62;
+
+  /**
+   * The minimum number of removed documents that will cause the
+   * index to be rebuilt.
+   */
+  private static final int MINIMUM_REMOVED = 1024;
+
+  /**
+   * An empty array of document numbers.
+   */
+  private static final int[] EMPTY = new int[0];
+
+  /**
+   * The {@link IdType} of every {@link Identifier} whose value is in
+   * this {@link NGramIndex}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final IdType<String, P> idType;
+
+  /**
+   * The gram length; either {@code 2} or {@code 3}.
+   */
+  private final int gramLength;
+
+  /**
+   * The lock guarding all mutable state.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ReadWriteLock lock;
+
+  /**
+   * The values, indexed by document number; removed documents are
+   * {@code null}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private String[] documents;
+
+  /**
+   * The number of document numbers assigned so far.
+   */
+  private int documentCount;
+
+  /**
+   * The number of documents that have been removed.
+   */
+  private int removed;
+
+  /**
+   * The gram dictionary, partitioned by the high bits of each key's
+   * hash.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private LongKeyTable<Postings>[] partitions;
+
+  /**
+   * Creates a new, empty {@link NGramIndex} that indexes {@linkplain
+   * #DEFAULT_GRAM_LENGTH trigrams}.
+   *
+   * @param idType the {@link IdType} of every {@link Identifier} whose
+   * value will be in this {@link NGramIndex}; must not be {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null}
+   */
+  public NGramIndex(final IdType<String, P> idType) {
+    this(idType, DEFAULT_GRAM_LENGTH);
+  }
+
+  /**
+   * Creates a new, empty {@link NGramIndex}.
+   *
+   * @param idType the {@link IdType} of every {@link Identifier} whose
+   * value will be in this {@link NGramIndex}; must not be {@code
+   * null}
+   *
+   * @param gramLength the gram length; must be {@code 2} or {@code 3}
+   *
+   * @exception IllegalArgumentException if {@code idType} is {@code
+   * null} or {@code gramLength} is out of range
+   */
+  public NGramIndex(final IdType<String, P> idType, final int gramLength) {
+    super();
+    if (idType == null) {
+      throw new IllegalArgumentException("idType", new NullPointerException("idType"));
+    }
+    if (gramLength < 2 || gramLength > 3) {
+      throw new IllegalArgumentException("gramLength: " + gramLength);
+    }
+    this.idType = idType;
+    this.gramLength = gramLength;
+    this.lock = new ReentrantReadWriteLock();
+    this.documents = new String[16];
+    this.partitions = newPartitions();
+  }
+
+  /**
+   * Returns the {@link IdType} of every {@link Identifier} whose value
+   * is in this {@link NGramIndex}.
+   *
+   * @return the {@link IdType}; never {@code null}
+   */
+  public final IdType<String, P> getIdType() {
+    return this.idType;
+  }
+
+  /**
+   * Returns the gram length.
+   *
+   * @return the gram length
+   */
+  public final int getGramLength() {
+    return this.gramLength;
+  }
+
+  /**
+   * Returns the number of values in this {@link NGramIndex}.
+   *
+   * @return the number of values in this {@link NGramIndex}
+   */
+  public final int size() {
+    final Lock lock = this.lock.readLock();
+    lock.lock();
+    try {
+      return this.documentCount - this.removed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /*
+   * Modification methods.
+   */
+
+
+  /**
+   * Adds the {@linkplain Identifier#getValue() value} of the supplied
+   * {@link Identifier} to this {@link NGramIndex} if it is not
+   * already present.
+   *
+   * <p>Only the value is kept, so the {@link Identifier}s that this
+   * {@link NGramIndex} later returns are of the class that its {@link
+   * IdType} implies, whatever the class of the one added: a {@link
+   * StringId} if the {@link IdType} is a {@link StringIdType} and a
+   * plain {@link Identifier} otherwise, just as {@link
+   * IdentifierParser} would parse them.  Likewise, an {@link
+   * Identifier} whose value is already present is not added again,
+   * whatever its class.</p>
+   *
+   * @param id the {@link Identifier}; must not be {@code null} and
+   * must have an {@link IdType} {@linkplain IdType#equals(Object)
+   * equal to} {@linkplain #getIdType() this index's}
+   *
+   * @return {@code true} if this {@link NGramIndex} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   */
+  public final boolean add(final Identifier<String, P> id) {
+    return this.add(this.valueOf(id));
+  }
+
+  /**
+   * Adds the supplied value to this {@link NGramIndex} if it is not
+   * already present.
+   *
+   * @param value the value; must not be {@code null}
+   *
+   * @return {@code true} if this {@link NGramIndex} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code value} is {@code
+   * null}
+   */
+  public boolean add(final String value) {
+    if (value == null) {
+      throw new IllegalArgumentException("value", new NullPointerException("value"));
+    }
+    final Lock lock = this.lock.writeLock();
+    lock.lock();
+    try {
+      if (this.search(value, true).length > 0) {
+        return false;
+      }
+      final int document = this.documentCount;
+      if (document == this.documents.length) {
+        this.documents = Arrays.copyOf(this.documents, document + (document >>> 1));
+      }
+      this.documents[document] = value;
+      this.documentCount = document + 1;
+      post(this.partitions, this.gramLength, value, document);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the {@linkplain Identifier#getValue() value} of the
+   * supplied {@link Identifier} from this {@link NGramIndex} if it is
+   * present.
+   *
+   * @param id the {@link Identifier}; must not be {@code null} and
+   * must have an {@link IdType} {@linkplain IdType#equals(Object)
+   * equal to} {@linkplain #getIdType() this index's}
+   *
+   * @return {@code true} if this {@link NGramIndex} changed as a
+   * result of this call
+   *
+   * @exception IllegalArgumentException if {@code id} is {@code null}
+   * or of the wrong {@link IdType}
+   */
+  public final boolean remove(final Identifier<String, P> id) {
+    return this.remove(this.valueOf(id));
+  }
+
+  /**
+   * Removes the supplied value from this {@link NGramIndex} if it is
+   * present.
+   *
+   * @param value the value; may be {@code null} in which case {@code
+   * false} will be returned
+   *
+   * @return {@code true} if this {@link NGramIndex} changed as a
+   * result of this call
+   */
+  public boolean remove(final String value) {
+    if (value == null) {
+      return false;
+    }
+    final Lock lock = this.lock.writeLock();
+    lock.lock();
+    try {
+      final int[] found = this.search(value, true);
+      if (found.length == 0) {
+        return false;
+      }
+      this.documents[found[0]] = null;
+      this.removed++;
+      if (this.removed >= MINIMUM_REMOVED && this.removed > this.documentCount - this.removed) {
+        this.compact();
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /*
+   * Query methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied value is in this {@link
+   * NGramIndex}.
+   *
+   * @param value the value; may be {@code null} in which case {@code
+   * false} will be returned
+   *
+   * @return {@code true} if the supplied value is in this {@link
+   * NGramIndex}; {@code false} otherwise
+   */
+  public boolean contains(final CharSequence value) {
+    if (value == null) {
+      return false;
+    }
+    final Lock lock = this.lock.readLock();
+    lock.lock();
+    try {
+      return this.search(value, true).length > 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns {@link Identifier}s for every value in this {@link
+   * NGramIndex} that contains the supplied fragment.
+   *
+   * <p>Values that were {@linkplain #build(IdType, int, Collection)
+   * built} into the index come first, in {@linkplain
+   * String#compareTo(String) order}, followed by those {@linkplain
+   * #add(String) added} since, in the order in which they were
+   * added.  {@link Identifier}s whose {@link IdType} is a {@link
+   * StringIdType} are returned as {@link StringId}s, even if they
+   * were {@linkplain #add(Identifier) added} as plain {@link
+   * Identifier}s.</p>
+   *
+   * @param fragment the fragment; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link List} of {@link Identifier}s
+   *
+   * @exception IllegalArgumentException if {@code fragment} is {@code
+   * null}
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public List<Identifier<String, P>> findContaining(final CharSequence fragment) {
+    if (fragment == null) {
+      throw new IllegalArgumentException("fragment", new NullPointerException("fragment"));
+    }
+    final Lock lock = this.lock.readLock();
+    lock.lock();
+    try {
+      final int[] found = this.search(fragment, false);
+      if (found.length == 0) {
+        return Collections.emptyList();
+      }
+      final List<Identifier<String, P>> returnValue = new ArrayList<Identifier<String, P>>(found.length);
+      final boolean stringIdType = this.idType instanceof StringIdType;
+      for (final int document : found) {
+        final String value = this.documents[document];
+        if (stringIdType) {
+          returnValue.add(new StringId((StringIdType)this.idType, value));
+        } else {
+          returnValue.add(new Identifier<String, P>(this.idType, value));
+        }
+      }
+      return returnValue;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of values in this {@link NGramIndex} that
+   * contain the supplied fragment.
+   *
+   * @param fragment the fragment; must not be {@code null}
+   *
+   * @return the number of matching values
+   *
+   * @exception IllegalArgumentException if {@code fragment} is {@code
+   * null}
+   */
+  public int countContaining(final CharSequence fragment) {
+    if (fragment == null) {
+      throw new IllegalArgumentException("fragment", new NullPointerException("fragment"));
+    }
+    final Lock lock = this.lock.readLock();
+    lock.lock();
+    try {
+      return this.search(fragment, false).length;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * NGramIndex}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public String toString() {
+    final Lock lock = this.lock.readLock();
+    lock.lock();
+    try {
+      int grams = 0;
+      long bytes = 0L;
+      for (final LongKeyTable<Postings> partition : this.partitions) {
+        grams += partition.size();
+        for (int slot = 0; slot < partition.capacity(); slot++) {
+          if (partition.isLive(slot)) {
+            bytes += partition.valueAt(slot).length;
+          }
+        }
+      }
+      return this.idType + " (" + (this.documentCount - this.removed) + " values, " + grams + " " + this.gramLength + "-grams, " + bytes + " posting bytes)";
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the value of the supplied {@link Identifier} after
+   * checking its {@link IdType}.
+   */
+  private final String valueOf(final Identifier<String, P> id) {
+    if (id == null) {
+      throw new IllegalArgumentException("id", new NullPointerException("id"));
+    }
+    final IdType<String, P> idType = id.getIdType();
+    if (idType != this.idType && !this.idType.equals(idType)) {
+      throw new IllegalArgumentException("id: " + id);
+    }
+    return id.getValue();
+  }
+
+
+  /*
+   * Search methods.
+   */
+
+
+  /**
+   * Returns the live documents, in ascending order, whose values
+   * contain (or, if {@code exact} is {@code true}, equal) the
+   * supplied {@link CharSequence}.
+   */
+  private final int[] search(final CharSequence s, final boolean exact) {
+    final int length = s.length();
+    final int n = this.gramLength;
+    if (length < n) {
+      if (exact) {
+        final Postings postings = get(this.partitions, shortKey(s));
+        return postings == null ? EMPTY : this.verify(postings.decode(), postings.count, s, true, true);
+      }
+      return this.scanGrams(s);
+    }
+
+    // Gather the distinct grams' posting lists, shortest first.
+    final Postings[] lists = new Postings[length - n + 1];
+    int listCount = 0;
+    final long mask = (1L << (16 * n)) - 1L;
+    long key = 0L;
+    for (int i = 0; i < length; i++) {
+      key = ((key << 16) | s.charAt(i)) & mask;
+      if (i >= n - 1) {
+        final Postings postings = get(this.partitions, key);
+        if (postings == null) {
+          return EMPTY;
+        }
+        int j = listCount;
+        boolean duplicate = false;
+        while (j > 0 && lists[j - 1].count >= postings.count) {
+          if (lists[j - 1] == postings) {
+            duplicate = true;
+            break;
+          }
+          j--;
+        }
+        if (!duplicate) {
+          System.arraycopy(lists, j, lists, j + 1, listCount - j);
+          lists[j] = postings;
+          listCount++;
+        }
+      }
+    }
+
+    // Intersect, stopping once verifying the remaining candidates
+    // directly would be cheaper than decoding the next list.
+    final int[] candidates = lists[0].decode();
+    int candidateCount = lists[0].count;
+    for (int i = 1; i < listCount && candidateCount > 0; i++) {
+      if (lists[i].count > candidateCount * 8) {
+        break;
+      }
+      candidateCount = lists[i].intersect(candidates, candidateCount);
+    }
+    // A fragment that is itself a single gram is contained in every
+    // value posted under it, so only its liveness needs checking.
+    return this.verify(candidates, candidateCount, s, exact, exact || length > n);
+  }
+
+  /**
+   * Returns those of the first {@code candidateCount} supplied
+   * documents that are live and, if {@code check} is {@code true},
+   * whose values contain (or, if {@code exact} is {@code true},
+   * equal) the supplied {@link CharSequence}, reusing the supplied
+   * array where possible.
+   */
+  private final int[] verify(final int[] candidates, final int candidateCount, final CharSequence s, final boolean exact, final boolean check) {
+    final String[] documents = this.documents;
+    int count = 0;
+    for (int i = 0; i < candidateCount; i++) {
+      final String value = documents[candidates[i]];
+      if (value != null && (!check || (exact ? value.contentEquals(s) : value.contains(s)))) {
+        candidates[count++] = candidates[i];
+      }
+    }
+    return count == candidates.length ? candidates : Arrays.copyOf(candidates, count);
+  }
+
+  /**
+   * Returns the live documents, in ascending order, whose values
+   * contain a {@link CharSequence} shorter than the gram length, by
+   * uniting the posting lists of every gram, and every short value,
+   * that contains it.
+   */
+  private final int[] scanGrams(final CharSequence s) {
+    final int n = this.gramLength;
+    final long[] bits = new long[(this.documentCount + 63) >>> 6];
+    final char[] gram = new char[n];
+    for (final LongKeyTable<Postings> partition : this.partitions) {
+      for (int slot = 0; slot < partition.capacity(); slot++) {
+        if (partition.isLive(slot) && contains(unpack(partition.keyAt(slot), n, gram), gram, s)) {
+          partition.valueAt(slot).setBits(bits);
+        }
+      }
+    }
+    final String[] documents = this.documents;
+    int[] returnValue = new int[16];
+    int count = 0;
+    for (int word = 0; word < bits.length; word++) {
+      long w = bits[word];
+      while (w != 0L) {
+        final int document = (word << 6) + Long.numberOfTrailingZeros(w);
+        w &= w - 1L;
+        if (documents[document] != null) {
+          if (count == returnValue.length) {
+            returnValue = Arrays.copyOf(returnValue, count + (count >>> 1));
+          }
+          returnValue[count++] = document;
+        }
+      }
+    }
+    return Arrays.copyOf(returnValue, count);
+  }
+
+
+  /*
+   * Building methods.
+   */
+
+
+  /**
+   * Rebuilds this {@link NGramIndex} without its removed documents.
+   */
+  private final void compact() {
+    final String[] documents = new String[this.documentCount - this.removed + 16];
+    int count = 0;
+    for (int i = 0; i < this.documentCount; i++) {
+      final String value = this.documents[i];
+      if (value != null) {
+        documents[count++] = value;
+      }
+    }
+    this.index(documents, count);
+  }
+
+  /**
+   * Replaces the contents of this {@link NGramIndex} with the supplied
+   * distinct values, indexing them in parallel.
+   */
+  private final void index(final String[] documents, final int count) {
+    final int n = this.gramLength;
+    final ForkJoinPool pool = ForkJoinPool.commonPool();
+    final int chunkSize = Math.max(MINIMUM_CHUNK, (count + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4));
+    final int chunkCount = (count + chunkSize - 1) / chunkSize;
+    final LongKeyTable<Postings>[] partitions;
+    if (chunkCount <= 1) {
+      partitions = newPartitions();
+      for (int i = 0; i < count; i++) {
+        post(partitions, n, documents[i], i);
+      }
+    } else {
+      // Index each chunk of documents into partitions of its own...
+      final LongKeyTable<Postings>[][] chunks = newChunks(chunkCount);
+      pool.invoke(new ChunkTask(documents, count, n, chunks, chunkSize, 0, chunkCount));
+      // ...then splice each partition's chunks together.
+      partitions = newPartitions();
+      pool.invoke(new MergeTask(chunks, partitions, 0, PARTITIONS));
+    }
+    for (final LongKeyTable<Postings> partition : partitions) {
+      for (int slot = 0; slot < partition.capacity(); slot++) {
+        if (partition.isLive(slot)) {
+          partition.valueAt(slot).trim();
+        }
+      }
+    }
+    this.documents = documents;
+    this.documentCount = count;
+    this.removed = 0;
+    this.partitions = partitions;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Builds a new {@link NGramIndex} of {@linkplain
+   * #DEFAULT_GRAM_LENGTH trigrams} over the supplied values, in
+   * parallel.
+   *
+   * @param <P> the common supertype of any semantic bits of
+   * information that might be notionally embedded in the values
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param values the values; must not be {@code null} and must not
+   * contain {@code null}; duplicates are ignored
+   *
+   * @return a new {@link NGramIndex}; never {@code null}
+   *
+   * @exception IllegalArgumentException if either parameter is {@code
+   * null} or {@code values} contains {@code null}
+   *
+   * @see #build(IdType, int, Collection)
+   */
+  public static final <P> NGramIndex<P> build(final IdType<String, P> idType, final Collection<String> values) {
+    return build(idType, DEFAULT_GRAM_LENGTH, values);
+  }
+
+  /**
+   * Builds a new {@link NGramIndex} over the supplied values, in
+   * parallel.
+   *
+   * <p>The values are first sorted with {@link
+   * Arrays#parallelSort(Object[])}, which removes duplicates cheaply,
+   * keeps the deltas in posting lists small, and means that queries
+   * return values in order.  Contiguous ranges of values are then
+   * indexed independently by the {@linkplain
+   * ForkJoinPool#commonPool() common <code>ForkJoinPool</code>}, and
+   * the resulting posting lists are spliced together, again in
+   * parallel, one partition of the gram dictionary per task.</p>
+   *
+   * @param <P> the common supertype of any semantic bits of
+   * information that might be notionally embedded in the values
+   *
+   * @param idType the {@link IdType}; must not be {@code null}
+   *
+   * @param gramLength the gram length; must be {@code 2} or {@code 3}
+   *
+   * @param values the values; must not be {@code null} and must not
+   * contain {@code null}; duplicates are ignored
+   *
+   * @return a new {@link NGramIndex}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code idType} or {@code
+   * values} is {@code null}, {@code values} contains {@code null}, or
+   * {@code gramLength} is out of range
+   */
+  public static final <P> NGramIndex<P> build(final IdType<String, P> idType, final int gramLength, final Collection<String> values) {
+    final NGramIndex<P> returnValue = new NGramIndex<P>(idType, gramLength);
+    if (values == null) {
+      throw new IllegalArgumentException("values", new NullPointerException("values"));
+    }
+    final String[] documents = values.toArray(new String[values.size() + 16]);
+    int count = values.size();
+    for (int i = 0; i < count; i++) {
+      if (documents[i] == null) {
+        throw new IllegalArgumentException("values contains null");
+      }
+    }
+    Arrays.parallelSort(documents, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || !documents[i].equals(documents[distinct - 1])) {
+        documents[distinct++] = documents[i];
+      }
+    }
+    Arrays.fill(documents, distinct, count, null);
+    returnValue.index(documents, distinct);
+    return returnValue;
+  }
+
+  /**
+   * Posts the supplied document under each of the supplied value's
+   * grams, or under its {@linkplain #shortKey(CharSequence) short
+   * key} if it is shorter than the gram length.
+   *
+   * <p>Documents must be posted in ascending order.</p>
+   */
+  private static final void post(final LongKeyTable<Postings>[] partitions, final int n, final String value, final int document) {
+    final int length = value.length();
+    if (length < n) {
+      postings(partitions, shortKey(value)).add(document);
+      return;
+    }
+    final long mask = (1L << (16 * n)) - 1L;
+    long key = 0L;
+    for (int i = 0; i < length; i++) {
+      key = ((key << 16) | value.charAt(i)) & mask;
+      if (i >= n - 1) {
+        // Postings.add() ignores a document that is already last, so
+        // repeated grams are posted once.
+        postings(partitions, key).add(document);
+      }
+    }
+  }
+
+  /**
+   * Returns the key under which a value shorter than the gram length
+   * is posted: {@link #SHORT}, plus the value's length in bits 48
+   * through 55, plus its characters.
+   */
+  private static final long shortKey(final CharSequence s) {
+    final int length = s.length();
+    long returnValue = SHORT | ((long)length << 48);
+    for (int i = 0; i < length; i++) {
+      returnValue |= (long)s.charAt(i) << (16 * (length - 1 - i));
+    }
+    return returnValue;
+  }
+
+  /**
+   * Unpacks the characters of the supplied key into the supplied
+   * array and returns how many there are.
+   */
+  private static final int unpack(final long key, final int n, final char[] gram) {
+    final int length = (key & SHORT) != 0L ? (int)(key >>> 48) & 0xFF : n;
+    for (int i = 0; i < length; i++) {
+      gram[i] = (char)(key >>> (16 * (length - 1 - i)));
+    }
+    return length;
+  }
+
+  /**
+   * Returns {@code true} if the first {@code length} characters of the
+   * supplied array contain the supplied {@link CharSequence}.
+   */
+  private static final boolean contains(final int length, final char[] gram, final CharSequence s) {
+    final int sLength = s.length();
+    outer:
+    for (int i = 0; i + sLength <= length; i++) {
+      for (int j = 0; j < sLength; j++) {
+        if (gram[i + j] != s.charAt(j)) {
+          continue outer;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private static final int partition(final long key) {
+    // LongKeyTable uses the low bits of the same hash to choose a
+    // slot, so partitions are chosen by the high bits.
+    return KeyTable.mix(key) >>> 28;
+  }
+
+  private static final Postings get(final LongKeyTable<Postings>[] partitions, final long key) {
+    return partitions[partition(key)].get(key);
+  }
+
+  private static final Postings postings(final LongKeyTable<Postings>[] partitions, final long key) {
+    final LongKeyTable<Postings> partition = partitions[partition(key)];
+    Postings returnValue = partition.get(key);
+    if (returnValue == null) {
+      returnValue = new Postings();
+      partition.put(key, returnValue);
+    }
+    return returnValue;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static final LongKeyTable<Postings>[] newPartitions() {
+    final LongKeyTable<Postings>[] returnValue = new LongKeyTable[PARTITIONS];
+    for (int i = 0; i < PARTITIONS; i++) {
+      returnValue[i] = new LongKeyTable<Postings>();
+    }
+    return returnValue;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static final LongKeyTable<Postings>[][] newChunks(final int chunkCount) {
+    return new LongKeyTable[chunkCount][];
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A posting list: an ascending sequence of document numbers, each
+   * stored as an unsigned variable-length delta from its predecessor.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Postings {
+
+    private byte[] bytes;
+
+    private int length;
+
+    private int count;
+
+    private int last;
+
+    private Postings() {
+      super();
+      this.bytes = new byte[4];
+      this.last = -1;
+    }
+
+    /**
+     * Appends the supplied document, which must be no less than the
+     * last one, unless it is already last.
+     */
+    private final void add(final int document) {
+      if (document != this.last) {
+        assert document > this.last;
+        this.write(document - this.last);
+        this.last = document;
+        this.count++;
+      }
+    }
+
+    /**
+     * Appends every document of the supplied {@link Postings}, all of
+     * which must be greater than the last one of this {@link
+     * Postings}, by rewriting its first delta and copying the rest of
+     * its bytes.
+     */
+    private final void addAll(final Postings other) {
+      final byte[] bytes = other.bytes;
+      int position = 0;
+      int first = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes[position++];
+        first |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      first--; // the first delta is relative to -1
+      assert first > this.last;
+      this.write(first - this.last);
+      final int rest = other.length - position;
+      this.ensureCapacity(rest);
+      System.arraycopy(bytes, position, this.bytes, this.length, rest);
+      this.length += rest;
+      this.count += other.count;
+      this.last = other.last;
+    }
+
+    private final void write(int delta) {
+      this.ensureCapacity(5);
+      final byte[] bytes = this.bytes;
+      int length = this.length;
+      while ((delta & ~0x7F) != 0) {
+        bytes[length++] = (byte)((delta & 0x7F) | 0x80);
+        delta >>>= 7;
+      }
+      bytes[length++] = (byte)delta;
+      this.length = length;
+    }
+
+    private final void ensureCapacity(final int extra) {
+      if (this.length + extra > this.bytes.length) {
+        this.bytes = Arrays.copyOf(this.bytes, Math.max(this.length + extra, this.bytes.length + (this.bytes.length >>> 1)));
+      }
+    }
+
+    private final void trim() {
+      if (this.length < this.bytes.length) {
+        this.bytes = Arrays.copyOf(this.bytes, this.length);
+      }
+    }
+
+    /**
+     * Returns a new array holding every document.
+     */
+    private final int[] decode() {
+      final int[] returnValue = new int[this.count];
+      final byte[] bytes = this.bytes;
+      int position = 0;
+      int document = -1;
+      for (int i = 0; i < returnValue.length; i++) {
+        int delta = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = bytes[position++];
+          delta |= (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        document += delta;
+        returnValue[i] = document;
+      }
+      return returnValue;
+    }
+
+    /**
+     * Removes from the first {@code candidateCount} elements of the
+     * supplied ascending array every document not in this {@link
+     * Postings}, compacting the survivors to the front, and returns
+     * how many survive.
+     */
+    private final int intersect(final int[] candidates, final int candidateCount) {
+      final byte[] bytes = this.bytes;
+      final int length = this.length;
+      int position = 0;
+      int document = -1;
+      int read = 0;
+      int written = 0;
+      while (position < length && read < candidateCount) {
+        int delta = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = bytes[position++];
+          delta |= (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        document += delta;
+        while (read < candidateCount && candidates[read] < document) {
+          read++;
+        }
+        if (read < candidateCount && candidates[read] == document) {
+          candidates[written++] = document;
+          read++;
+        }
+      }
+      return written;
+    }
+
+    /**
+     * Sets the bit for each document in the supplied bit set.
+     */
+    private final void setBits(final long[] bits) {
+      final byte[] bytes = this.bytes;
+      final int length = this.length;
+      int position = 0;
+      int document = -1;
+      while (position < length) {
+        int delta = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = bytes[position++];
+          delta |= (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        document += delta;
+        bits[document >>> 6] |= 1L << document;
+      }
+    }
+
+  }
+
+  /**
+   * A {@link RecursiveAction} that indexes a range of chunks of
+   * documents, each into partitions of its own, by recursively
+   * splitting the range in half.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class ChunkTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] documents;
+
+    private final int count;
+
+    private final int n;
+
+    private final LongKeyTable<Postings>[][] chunks;
+
+    private final int chunkSize;
+
+    private final int from;
+
+    private final int to;
+
+    private ChunkTask(final String[] documents, final int count, final int n, final LongKeyTable<Postings>[][] chunks, final int chunkSize, final int from, final int to) {
+      super();
+      this.documents = documents;
+      this.count = count;
+      this.n = n;
+      this.chunks = chunks;
+      this.chunkSize = chunkSize;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected final void compute() {
+      if (this.to - this.from == 1) {
+        final LongKeyTable<Postings>[] partitions = newPartitions();
+        final int start = this.from * this.chunkSize;
+        final int end = Math.min(this.count, start + this.chunkSize);
+        for (int i = start; i < end; i++) {
+          post(partitions, this.n, this.documents[i], i);
+        }
+        this.chunks[this.from] = partitions;
+      } else {
+        final int middle = (this.from + this.to) >>> 1;
+        invokeAll(new ChunkTask(this.documents, this.count, this.n, this.chunks, this.chunkSize, this.from, middle),
+                  new ChunkTask(this.documents, this.count, this.n, this.chunks, this.chunkSize, middle, this.to));
+      }
+    }
+
+  }
+
+  /**
+   * A {@link RecursiveAction} that splices together, in chunk order,
+   * the posting lists of a range of partitions, by recursively
+   * splitting the range in half.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class MergeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final LongKeyTable<Postings>[][] chunks;
+
+    private final LongKeyTable<Postings>[] partitions;
+
+    private final int from;
+
+    private final int to;
+
+    private MergeTask(final LongKeyTable<Postings>[][] chunks, final LongKeyTable<Postings>[] partitions, final int from, final int to) {
+      super();
+      this.chunks = chunks;
+      this.partitions = partitions;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected final void compute() {
+      if (this.to - this.from == 1) {
+        final LongKeyTable<Postings> partition = this.partitions[this.from];
+        for (final LongKeyTable<Postings>[] chunk : this.chunks) {
+          final LongKeyTable<Postings> source = chunk[this.from];
+          for (int slot = 0; slot < source.capacity(); slot++) {
+            if (source.isLive(slot)) {
+              final long key = source.keyAt(slot);
+              final Postings postings = source.valueAt(slot);
+              final Postings existing = partition.get(key);
+              if (existing == null) {
+                partition.put(key, postings);
+              } else {
+                existing.addAll(postings);
+              }
+            }
+          }
+          chunk[this.from] = null;
+        }
+      } else {
+        final int middle = (this.from + this.to) >>> 1;
+        invokeAll(new MergeTask(this.chunks, this.partitions, this.from, middle),
+                  new MergeTask(this.chunks, this.partitions, middle, this.to));
+      }
+    }
+
+  }
+
+}
@@ -31,6 +31,22 @@ package com.edugility.identifiers;
 
 import java.io.Serializable;
 
+/**
+ * An {@link Extractor} that extracts a fixed range of characters from
+ * a {@link String}.
+ *
+ * <p>In addition to the {@link #extractFrom(String)} method, which
+ * returns a new {@link String}, this class offers ways to extract its
+ * range of characters without copying them ({@link
+ * #extractSliceFrom(String)}) or without allocating anything at all
+ * ({@link #extractInto(String, StringBuilder)} and {@link
+ * #extractInto(String, char[], int)}).</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see StringSliceExtractor
+ */
 public class StringExtractor implements Extractor<String, String> {
   
   private static final long serialVersionUID = 1L;
@@ -44,17 +60,144 @@ public class StringExtractor implements Extractor<String, String> {
     this.inclusiveStart = Math.max(0, inclusiveStart);
     this.exclusiveEnd = Math.max(inclusiveStart, exclusiveEnd);
   }
+
+  /**
+   * Returns the index of the first character that this {@link
+   * StringExtractor} extracts.
+   *
+   * @return the index of the first character that this {@link
+   * StringExtractor} extracts
+   */
+  public final int getInclusiveStart() {
+    return this.inclusiveStart;
+  }
+
+  /**
+   * Returns the index one past the last character that this {@link
+   * StringExtractor} extracts.
+   *
+   * @return the index one past the last character that this {@link
+   * StringExtractor} extracts
+   */
+  public final int getExclusiveEnd() {
+    return this.exclusiveEnd;
+  }
     
   @Override
   public String extractFrom(final String value) {
-    if (value == null) {
+    final int end = this.end(value);
+    if (end < 0) {
+      return null;
+    }
+    return value.substring(this.inclusiveStart, end);
+  }
+
+  /**
+   * Extracts this {@link StringExtractor}'s range of characters from
+   * the supplied {@link String} as a {@link CharSequenceSlice}, which
+   * is a view over the supplied {@link String}, without copying any
+   * characters.
+   *
+   * <p>This method returns {@code null} in exactly those cases where
+   * {@link #extractFrom(String)} would.</p>
+   *
+   * @param value the {@link String} from which to extract; may be
+   * {@code null}
+   *
+   * @return a {@link CharSequenceSlice} over the supplied {@link
+   * String}, or {@code null}
+   */
+  public final CharSequenceSlice extractSliceFrom(final String value) {
+    final int end = this.end(value);
+    if (end < 0) {
       return null;
     }
+    return new CharSequenceSlice(value, this.inclusiveStart, end);
+  }
+
+  /**
+   * Appends this {@link StringExtractor}'s range of characters from
+   * the supplied {@link String} to the supplied {@link StringBuilder}
+   * and returns the number of characters appended, or {@code -1} if
+   * {@link #extractFrom(String)} would have returned {@code null}.
+   *
+   * @param value the {@link String} from which to extract; may be
+   * {@code null}
+   *
+   * @param target the {@link StringBuilder} to append to; must not
+   * be {@code null}
+   *
+   * @return the number of characters appended, or {@code -1}
+   *
+   * @exception IllegalArgumentException if {@code target} is {@code
+   * null}
+   */
+  public final int extractInto(final String value, final StringBuilder target) {
+    if (target == null) {
+      throw new IllegalArgumentException("target", new NullPointerException("target"));
+    }
+    final int end = this.end(value);
+    if (end < 0) {
+      return -1;
+    }
+    target.append(value, this.inclusiveStart, end);
+    return end - this.inclusiveStart;
+  }
+
+  /**
+   * Copies this {@link StringExtractor}'s range of characters from
+   * the supplied {@link String} into the supplied character array and
+   * returns the number of characters copied, or {@code -1} if {@link
+   * #extractFrom(String)} would have returned {@code null}.
+   *
+   * @param value the {@link String} from which to extract; may be
+   * {@code null}
+   *
+   * @param target the character array to copy into; must not be
+   * {@code null}
+   *
+   * @param offset the index within {@code target} at which to start
+   * copying
+   *
+   * @return the number of characters copied, or {@code -1}
+   *
+   * @exception IllegalArgumentException if {@code target} is {@code
+   * null}
+   *
+   * @exception IndexOutOfBoundsException if {@code target} is too
+   * small
+   */
+  public final int extractInto(final String value, final char[] target, final int offset) {
+    if (target == null) {
+      throw new IllegalArgumentException("target", new NullPointerException("target"));
+    }
+    final int end = this.end(value);
+    if (end < 0) {
+      return -1;
+    }
+    value.getChars(this.inclusiveStart, end, target, offset);
+    return end - this.inclusiveStart;
+  }
+
+  /**
+   * Returns the index within the supplied {@link String} one past the
+   * last character that this {@link StringExtractor} would extract,
+   * or {@code -1} if nothing can be extracted.
+   *
+   * @param value the {@link String} in question; may be {@code null}
+   *
+   * @return the index one past the last character to extract, or
+   * {@code -1}
+   */
+  private final int end(final String value) {
+    if (value == null) {
+      return -1;
+    }
     final int length = value.length();
     if (length - 1 < this.inclusiveStart) {
-      return null;
+      return -1;
     }
-    return value.subSequence(this.inclusiveStart, Math.min(this.exclusiveEnd, length)).toString();
+    return Math.min(this.exclusiveEnd, length);
   }
     
   @Override
@@ -32,7 +32,11 @@ public class StringId<P> extends Identifier<String, P> {
   private static final long serialVersionUID = 1L;
 
   public StringId(final String idTypeName, final String value) {
-    super(new StringIdType<P>(idTypeName), value);
+    super(StringIdType.<P>valueOf(idTypeName), value);
+  }
+
+  StringId(final StringIdType<P> idType, final String value) {
+    super(idType, value);
   }
 
 }
@@ -29,6 +29,8 @@ package com.edugility.identifiers;
 
 import java.io.Serializable; // for javadoc only
 
+import java.util.Map;
+
 /**
  * An {@link IdType} whose associated {@link Identifier}s {@linkplain
  * Identifier#getValue() have <code>String</code>s as their values}.
@@ -70,4 +72,57 @@ public class StringIdType<P> extends IdType<String, P> {
     super(String.class, name);
   }
 
+  /**
+   * Creates a new {@link StringIdType}.
+   *
+   * <p>This constructor calls {@link IdType#IdType(Class, String,
+   * Map) super(String.class, name, extractors)}.</p>
+   * 
+   * @param name the name or label of this {@link IdType}; must not be
+   * {@code null}
+   *
+   * @param extractors a {@link Map} of {@link Extractor}s indexed by
+   * arbitrary keys; may be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code name} is {@code
+   * null}
+   */
+  public StringIdType(final String name, final Map<?, ? extends Extractor<String, P>> extractors) {
+    super(String.class, name, extractors);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@linkplain IdTypeRegistry#intern(IdType) canonical}
+   * {@link StringIdType} with the supplied {@code name}.
+   *
+   * <p>This method never returns {@code null}.  Repeated invocations
+   * of this method with equal {@code name}s will return the same
+   * {@link StringIdType} instance.</p>
+   *
+   * @param <Q> the common supertype that all embedded information in
+   * an {@link Identifier} who has the returned {@link StringIdType} as
+   * {@linkplain Identifier#getIdType() its type} possesses
+   *
+   * @param name the name or label of the {@link IdType}; must not
+   * be {@code null}
+   *
+   * @return a canonical {@link StringIdType}; never {@code null}
+   *
+   * @see IdTypeRegistry#intern(IdType)
+   */
+  public static final <Q> StringIdType<Q> valueOf(final String name) {
+    final IdTypeRegistry registry = IdTypeRegistry.getInstance();
+    final StringIdType<Q> returnValue = registry.getNamed(StringIdType.class, name);
+    if (returnValue != null) {
+      return returnValue;
+    }
+    return registry.intern(new StringIdType<Q>(name));
+  }
+
 }
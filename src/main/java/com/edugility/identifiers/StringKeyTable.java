@@ -0,0 +1,172 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.Arrays;
+
+/**
+ * A {@link KeyTable} whose keys are {@link String}s.
+ *
+ * @param <V> the type of the values
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see IdentifierMap
+ */
+final class StringKeyTable<V> extends KeyTable<V> {
+
+  /**
+   * The keys of each slot.  This field is never {@code null} and is
+   * parallel to {@link #values}.
+   */
+  private String[] keys;
+
+  /**
+   * Creates a new {@link StringKeyTable}.
+   */
+  StringKeyTable() {
+    super();
+    this.keys = new String[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Returns the key in the supplied live slot.
+   *
+   * @param slot the slot
+   *
+   * @return the key
+   */
+  final String keyAt(final int slot) {
+    return this.keys[slot];
+  }
+
+  /**
+   * Returns the slot holding the supplied key, or {@code -1}.
+   *
+   * @param key the key
+   *
+   * @return the slot holding the supplied key, or {@code -1}
+   */
+  final int find(final String key) {
+    assert key != null;
+    final Object[] values = this.values;
+    final String[] keys = this.keys;
+    final int mask = values.length - 1;
+    int slot = mix(key.hashCode()) & mask;
+    Object value;
+    while ((value = values[slot]) != null) {
+      if (value != TOMBSTONE && key.equals(keys[slot])) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the value mapped under the supplied key, or {@code null}.
+   *
+   * @param key the key
+   *
+   * @return the value mapped under the supplied key, or {@code null}
+   */
+  final V get(final String key) {
+    final int slot = this.find(key);
+    return slot < 0 ? null : this.valueAt(slot);
+  }
+
+  /**
+   * Maps the supplied value under the supplied key, and returns the
+   * value previously mapped under it, or {@code null}.
+   *
+   * @param key the key
+   *
+   * @param value the value; may be {@code null}
+   *
+   * @return the previous value, or {@code null}
+   */
+  final V put(final String key, final V value) {
+    final Object[] values = this.values;
+    final int mask = values.length - 1;
+    int slot = mix(key.hashCode()) & mask;
+    int free = -1;
+    Object v;
+    while ((v = values[slot]) != null) {
+      if (v == TOMBSTONE) {
+        if (free < 0) {
+          free = slot;
+        }
+      } else if (key.equals(this.keys[slot])) {
+        return this.setValueAt(slot, value);
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (free < 0) {
+      free = slot;
+    }
+    this.keys[free] = key;
+    this.occupy(free, value);
+    return null;
+  }
+
+  @Override
+  final void rehash(final int capacity) {
+    final Object[] oldValues = this.values;
+    final String[] oldKeys = this.keys;
+    final Object[] values = new Object[capacity];
+    final String[] keys = new String[capacity];
+    final int mask = capacity - 1;
+    for (int i = 0; i < oldValues.length; i++) {
+      final Object value = oldValues[i];
+      if (value != null && value != TOMBSTONE) {
+        final String key = oldKeys[i];
+        int slot = mix(key.hashCode()) & mask;
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        values[slot] = value;
+        keys[slot] = key;
+      }
+    }
+    this.values = values;
+    this.keys = keys;
+    this.used = this.size;
+  }
+
+  @Override
+  final void clearKeyAt(final int slot) {
+    this.keys[slot] = null;
+  }
+
+  @Override
+  final void clearKeys() {
+    Arrays.fill(this.keys, null);
+  }
+
+}
@@ -0,0 +1,143 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable; // for javadoc only
+
+/**
+ * An {@link Extractor} that extracts a fixed range of characters from
+ * a {@link String} as a {@link CharSequenceSlice} without copying
+ * them.
+ *
+ * <p>A {@link StringSliceExtractor} behaves exactly like a {@link
+ * StringExtractor} with the same bounds, except that its {@link
+ * #extractFrom(String)} method returns a {@linkplain
+ * CharSequenceSlice view} over the supplied {@link String} rather
+ * than a new {@link String}.  It is suitable for use with {@link
+ * IdType}s whose extractions are {@link CharSequence}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see StringExtractor#extractSliceFrom(String)
+ */
+public class StringSliceExtractor implements Extractor<String, CharSequence> {
+
+  /**
+   * The version of this class for {@linkplain Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The {@link StringExtractor} that defines the range of characters
+   * that this {@link StringSliceExtractor} extracts.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final StringExtractor delegate;
+
+  /**
+   * Creates a new {@link StringSliceExtractor}.
+   *
+   * @param inclusiveStart the index of the first character to
+   * extract
+   *
+   * @param exclusiveEnd the index one past the last character to
+   * extract
+   *
+   * @see StringExtractor#StringExtractor(int, int)
+   */
+  public StringSliceExtractor(final int inclusiveStart, final int exclusiveEnd) {
+    super();
+    this.delegate = new StringExtractor(inclusiveStart, exclusiveEnd);
+  }
+
+  /**
+   * Returns the index of the first character that this {@link
+   * StringSliceExtractor} extracts.
+   *
+   * @return the index of the first character that this {@link
+   * StringSliceExtractor} extracts
+   */
+  public final int getInclusiveStart() {
+    return this.delegate.getInclusiveStart();
+  }
+
+  /**
+   * Returns the index one past the last character that this {@link
+   * StringSliceExtractor} extracts.
+   *
+   * @return the index one past the last character that this {@link
+   * StringSliceExtractor} extracts
+   */
+  public final int getExclusiveEnd() {
+    return this.delegate.getExclusiveEnd();
+  }
+
+  /**
+   * Returns a {@link CharSequenceSlice} over this {@link
+   * StringSliceExtractor}'s range of characters in the supplied
+   * {@link String}, or {@code null} if no characters could be
+   * extracted.
+   *
+   * @param value the {@link String} from which to extract; may be
+   * {@code null}
+   *
+   * @return a {@link CharSequenceSlice}, or {@code null}
+   *
+   * @see StringExtractor#extractSliceFrom(String)
+   */
+  @Override
+  public CharSequenceSlice extractFrom(final String value) {
+    return this.delegate.extractSliceFrom(value);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * this.delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this) {
+      return true;
+    } else if (other != null && other.getClass().equals(this.getClass())) {
+      final StringSliceExtractor him = (StringSliceExtractor)other;
+      return this.delegate.equals(him.delegate);
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return this.delegate.toString();
+  }
+
+}
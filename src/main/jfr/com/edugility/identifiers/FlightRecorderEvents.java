@@ -0,0 +1,383 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.Serializable;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The {@link IdentifierEvents} that emits Java Flight Recorder
+ * events.
+ *
+ * <p>This class is compiled separately from the rest of this project,
+ * and is loaded only reflectively, and only once {@link
+ * IdentifierEvents} has found the {@code jdk.jfr} API, so that
+ * nothing else in this project depends on that API.</p>
+ *
+ * <p>Whether each event is enabled is read from an {@link EventType}
+ * resolved once, so that asking allocates nothing.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+final class FlightRecorderEvents extends IdentifierEvents {
+
+  /**
+   * The {@link EventType} of {@link CreationEvent}.
+   */
+  private final EventType creationType;
+
+  /**
+   * The {@link EventType} of {@link ExtractionEvent}.
+   */
+  private final EventType extractionType;
+
+  /**
+   * The {@link EventType} of {@link URIConversionEvent}.
+   */
+  private final EventType uriConversionType;
+
+  /**
+   * The {@link EventType} of {@link IOEvent}.
+   */
+  private final EventType ioType;
+
+  /**
+   * Creates a new {@link FlightRecorderEvents} and begins listening
+   * for recordings.
+   */
+  FlightRecorderEvents() {
+    super();
+    this.creationType = EventType.getEventType(CreationEvent.class);
+    this.extractionType = EventType.getEventType(ExtractionEvent.class);
+    this.uriConversionType = EventType.getEventType(URIConversionEvent.class);
+    this.ioType = EventType.getEventType(IOEvent.class);
+    try {
+      FlightRecorder.addListener(new RecordingListener());
+    } catch (final SecurityException notPermitted) {
+      // Without a listener there is no telling when a recording
+      // starts, so behave as though one always might have.
+      setRecording(true);
+    }
+  }
+
+
+  /*
+   * Event methods.
+   */
+
+
+  @Override
+  final void recordCreation(final IdType<?, ?> idType, final Class<?> identifierClass) {
+    if (this.creationType.isEnabled() && (ThreadLocalRandom.current().nextInt() & (CREATION_SAMPLE_INTERVAL - 1)) == 0) {
+      final CreationEvent event = new CreationEvent();
+      event.idType = idType.getName();
+      event.valueType = idType.getType();
+      event.identifierClass = identifierClass;
+      event.sampleInterval = CREATION_SAMPLE_INTERVAL;
+      event.commit();
+    }
+  }
+
+  @Override
+  final boolean isExtractionEventEnabled() {
+    return this.extractionType.isEnabled();
+  }
+
+  @Override
+  final <W extends Serializable, P> P recordExtraction(final IdType<W, P> idType,
+                                                       final ExtractorHandle<W, P> handle,
+                                                       final Object key,
+                                                       final Extractor<W, P> extractor,
+                                                       final W sourceValue) {
+    if (!this.extractionType.isEnabled()) {
+      return idType.recordExtractFrom(handle, key, extractor, sourceValue);
+    }
+    final ExtractionEvent event = new ExtractionEvent();
+    event.begin();
+    final P returnValue = idType.recordExtractFrom(handle, key, extractor, sourceValue);
+    event.end();
+    if (event.shouldCommit()) {
+      event.idType = idType.getName();
+      event.extractorKey = String.valueOf(key);
+      event.miss = extractor == null;
+      event.nullExtraction = extractor != null && returnValue == null;
+      event.count = 1;
+      event.commit();
+    }
+    return returnValue;
+  }
+
+  @Override
+  final Object startExtraction() {
+    if (!this.extractionType.isEnabled()) {
+      return null;
+    }
+    final ExtractionEvent event = new ExtractionEvent();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  final void recordExtractionBatch(final Object timer, final IdType<?, ?> idType, final Object key, final boolean miss, final int count, final int nulls) {
+    final ExtractionEvent event = (ExtractionEvent)timer;
+    event.end();
+    if (event.shouldCommit()) {
+      event.idType = idType.getName();
+      event.extractorKey = String.valueOf(key);
+      event.miss = miss;
+      event.nullExtraction = nulls > 0;
+      event.count = count;
+      event.commit();
+    }
+  }
+
+  @Override
+  final <W extends Serializable> URI recordURIConversion(final IdType<W, ?> idType, final W value) throws URISyntaxException {
+    if (!this.uriConversionType.isEnabled()) {
+      return idType.toURI(value);
+    }
+    final URIConversionEvent event = new URIConversionEvent();
+    event.begin();
+    try {
+      return idType.toURI(value);
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.idType = idType.getName();
+        event.commit();
+      }
+    }
+  }
+
+  @Override
+  final Object startIO() {
+    if (!this.ioType.isEnabled()) {
+      return null;
+    }
+    final IOEvent event = new IOEvent();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  final void recordIO(final Object timer, final long bytes, final boolean read) {
+    final IOEvent event = (IOEvent)timer;
+    event.end();
+    if (event.shouldCommit()) {
+      event.bytes = bytes;
+      event.read = read;
+      event.commit();
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A {@link FlightRecorderListener} that keeps {@link
+   * IdentifierEvents#isRecording()} up to date.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class RecordingListener implements FlightRecorderListener {
+
+    /**
+     * Creates a new {@link RecordingListener}.
+     */
+    private RecordingListener() {
+      super();
+    }
+
+    /**
+     * Notes whether any recording is running once the supplied
+     * {@link FlightRecorder} has been initialized, which may be
+     * before this {@link RecordingListener} was added.
+     *
+     * @param recorder the {@link FlightRecorder}; must not be {@code
+     * null}
+     */
+    @Override
+    public final void recorderInitialized(final FlightRecorder recorder) {
+      update(recorder);
+    }
+
+    /**
+     * Notes whether any recording is running now that the supplied
+     * {@link Recording} has changed state.
+     *
+     * @param changed the {@link Recording} whose state changed;
+     * ignored
+     */
+    @Override
+    public final void recordingStateChanged(final Recording changed) {
+      update(FlightRecorder.getFlightRecorder());
+    }
+
+    private static final synchronized void update(final FlightRecorder recorder) {
+      boolean running = false;
+      for (final Recording r : recorder.getRecordings()) {
+        if (r.getState() == RecordingState.RUNNING) {
+          running = true;
+          break;
+        }
+      }
+      setRecording(running);
+    }
+
+  }
+
+  /**
+   * The creation of an {@link Identifier}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  @Name("com.edugility.identifiers.IdentifierCreation")
+  @Label("Identifier Creation")
+  @Category({ "Edugility", "Identifiers" })
+  @Description("The creation of a sample of Identifiers")
+  @StackTrace(false)
+  static final class CreationEvent extends Event {
+
+    @Label("IdType")
+    String idType;
+
+    @Label("Value Type")
+    Class<?> valueType;
+
+    @Label("Identifier Class")
+    Class<?> identifierClass;
+
+    @Label("Sample Interval")
+    @Description("The number of creations this event stands for, on average")
+    int sampleInterval;
+
+  }
+
+  /**
+   * The extraction of a sub-value from an {@link Identifier}'s value.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  @Name("com.edugility.identifiers.Extraction")
+  @Label("Extraction")
+  @Category({ "Edugility", "Identifiers" })
+  @Description("The extraction of a sub-value from an Identifier's value, or from each of a batch of values")
+  @StackTrace(false)
+  @Threshold(THRESHOLD)
+  static final class ExtractionEvent extends Event {
+
+    @Label("IdType")
+    String idType;
+
+    @Label("Extractor Key")
+    String extractorKey;
+
+    @Label("Miss")
+    @Description("Whether there was no Extractor under the key")
+    boolean miss;
+
+    @Label("Null Extraction")
+    @Description("Whether the Extractor returned null, for any value in a batch")
+    boolean nullExtraction;
+
+    @Label("Count")
+    @Description("The number of values extracted from")
+    int count;
+
+  }
+
+  /**
+   * The conversion of an {@link Identifier} to a {@link URI}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  @Name("com.edugility.identifiers.URIConversion")
+  @Label("URI Conversion")
+  @Category({ "Edugility", "Identifiers" })
+  @Description("The conversion of an Identifier to a URI")
+  @StackTrace(false)
+  @Threshold(THRESHOLD)
+  static final class URIConversionEvent extends Event {
+
+    @Label("IdType")
+    String idType;
+
+  }
+
+  /**
+   * A read from or a write to the channel underlying an {@link
+   * IdentifierCodec}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  @Name("com.edugility.identifiers.CodecIO")
+  @Label("Identifier Codec I/O")
+  @Category({ "Edugility", "Identifiers" })
+  @Description("A read from or a write to the channel underlying an IdentifierCodec")
+  @StackTrace(false)
+  @Threshold(THRESHOLD)
+  static final class IOEvent extends Event {
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Read")
+    @Description("Whether bytes were read rather than written")
+    boolean read;
+
+  }
+
+}
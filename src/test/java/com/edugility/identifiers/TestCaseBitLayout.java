@@ -0,0 +1,198 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseBitLayout {
+
+  public TestCaseBitLayout() {
+    super();
+  }
+
+  @Test
+  public void testBitFieldExtractor() {
+    final BitFieldExtractor unsigned = new BitFieldExtractor(4, 8);
+    assertEquals(0xABL, unsigned.extractLong(0xFABCL));
+    assertEquals(Long.valueOf(0xABL), unsigned.extractFrom(Long.valueOf(0xFABCL)));
+    assertEquals(0xF12CL, unsigned.insert(0xFABCL, 0x12L));
+    assertTrue(unsigned.fits(255L));
+    assertFalse(unsigned.fits(256L));
+    assertFalse(unsigned.fits(-1L));
+
+    final BitFieldExtractor signed = new BitFieldExtractor(4, 8, true);
+    assertEquals(-0x55L, signed.extractLong(0xFABCL));
+    assertEquals(-1L, signed.extractLong(signed.insert(0L, -1L)));
+    assertEquals(-128L, signed.extractLong(signed.insert(-1L, -128L)));
+    assertTrue(signed.fits(127L));
+    assertFalse(signed.fits(128L));
+    assertFalse(signed.fits(-129L));
+
+    final BitFieldExtractor whole = new BitFieldExtractor(0, 64);
+    assertEquals(Long.MIN_VALUE, whole.extractLong(Long.MIN_VALUE));
+    assertEquals(-1L, whole.insert(0L, -1L));
+    assertEquals(1L, new BitFieldExtractor(63, 1).extractLong(Long.MIN_VALUE));
+
+    assertEquals(new BitFieldExtractor(4, 8), unsigned);
+    assertFalse(signed.equals(unsigned));
+    try {
+      new BitFieldExtractor(60, 5);
+      fail();
+    } catch (final IllegalArgumentException expected) {
+
+    }
+    try {
+      unsigned.insert(0L, 256L);
+      fail();
+    } catch (final IllegalArgumentException expected) {
+
+    }
+  }
+
+  @Test
+  public void testIntBitFieldExtractor() {
+    final IntBitFieldExtractor unsigned = new IntBitFieldExtractor(4, 8);
+    assertEquals(0xAB, unsigned.extractInt(0xFABC));
+    assertEquals(0xF12C, unsigned.insert(0xFABC, 0x12));
+    final IntBitFieldExtractor signed = new IntBitFieldExtractor(24, 8, true);
+    assertEquals(-1, signed.extractInt(0xFF000000));
+    assertEquals(0x80000000, signed.insert(0, -128));
+    assertEquals(-1, new IntBitFieldExtractor(0, 32).extractInt(-1));
+    try {
+      new IntBitFieldExtractor(0, 33);
+      fail();
+    } catch (final IllegalArgumentException expected) {
+
+    }
+  }
+
+  @Test
+  public void testLongLayout() throws ClassNotFoundException, IOException {
+    final BitLayout layout = new BitLayout()
+      .field("region", 4)
+      .field("shard", 10)
+      .field("timestamp", 41)
+      .signedField("skew", 9);
+    assertEquals(64, layout.getWidth());
+    assertEquals(Arrays.<Object>asList("region", "shard", "timestamp", "skew"), layout.getKeys());
+    assertEquals(new BitFieldExtractor(60, 4), layout.getExtractor("region"));
+    assertEquals(new BitFieldExtractor(0, 9, true), layout.getExtractor("skew"));
+    assertNull(layout.getExtractor("bogus"));
+
+    final long timestamp = 1381000000000L;
+    final long value = layout.pack(13L, 1000L, timestamp, -7L);
+    final long[] fields = new long[4];
+    layout.unpack(value, fields);
+    assertArrayEquals(new long[] { 13L, 1000L, timestamp, -7L }, fields);
+
+    final LongIdType<Long> idType = new LongIdType<Long>("packed", layout.getExtractors());
+    final LongIdentifier<Long> id = new LongIdentifier<Long>(idType, value);
+    assertEquals(13L, id.extractLong("region"));
+    assertEquals(1000, id.extractInt("shard"));
+    assertEquals(timestamp, id.extractLong("timestamp"));
+    assertEquals(-7L, id.extractLong("skew"));
+    assertEquals(Long.valueOf(1000L), id.extractFrom("shard"));
+
+    // The compact serialized form preserves the extractors.
+    final IdType<?, ?> copy = (IdType<?, ?>)roundTrip(new LongIdType<Long>("packed", layout.getExtractors()));
+    assertEquals(idType, copy);
+    assertEquals(layout.getExtractor("skew"), copy.getExtractor("skew"));
+
+    try {
+      layout.field("bogus", 1);
+      fail();
+    } catch (final IllegalArgumentException expected) {
+
+    }
+    try {
+      layout.pack(16L, 0L, 0L, 0L);
+      fail();
+    } catch (final IllegalArgumentException expected) {
+
+    }
+    try {
+      layout.pack(0L, 0L, 0L);
+      fail();
+    } catch (final IllegalArgumentException expected) {
+
+    }
+    try {
+      layout.getIntExtractors();
+      fail();
+    } catch (final IllegalStateException expected) {
+
+    }
+  }
+
+  @Test
+  public void testIntLayout() throws ClassNotFoundException, IOException {
+    final BitLayout layout = new BitLayout()
+      .field("kind", 3)
+      .field("shard", 5)
+      .field("sequence", 20);
+    assertEquals(28, layout.getWidth());
+    final Map<Object, IntBitFieldExtractor> extractors = layout.getIntExtractors();
+    assertEquals(new IntBitFieldExtractor(25, 3), extractors.get("kind"));
+
+    final int value = layout.packInt(5, 17, 123456);
+    assertEquals((5 << 25) | (17 << 20) | 123456, value);
+    assertEquals((long)value, layout.pack(5L, 17L, 123456L));
+    final int[] fields = new int[3];
+    layout.unpack(value, fields);
+    assertArrayEquals(new int[] { 5, 17, 123456 }, fields);
+
+    final IntegerIdType<Integer> idType = new IntegerIdType<Integer>("small", extractors);
+    final IntIdentifier<Integer> id = new IntIdentifier<Integer>(idType, value);
+    assertEquals(17, id.extractInt("shard"));
+    assertEquals(123456L, id.extractLong("sequence"));
+    assertEquals(idType, roundTrip(idType));
+  }
+
+  private static final Object roundTrip(final Object object) throws ClassNotFoundException, IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeObject(object);
+    oos.close();
+    final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    final Object returnValue = ois.readObject();
+    ois.close();
+    return returnValue;
+  }
+
+}
@@ -0,0 +1,227 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseExtractionMetrics {
+
+  public TestCaseExtractionMetrics() {
+    super();
+  }
+
+  @Test
+  public void testBuckets() {
+    final Random random = new Random(19L);
+    int previous = -1;
+    for (long v = 0L; v < 5000L; v++) {
+      final int bucket = ExtractionMetrics.bucketFor(v);
+      assertTrue(bucket >= previous);
+      previous = bucket;
+      assertTrue(ExtractionMetrics.lowestNanosIn(bucket) <= v);
+      assertTrue(ExtractionMetrics.highestNanosIn(bucket) >= v);
+    }
+    for (int i = 0; i < 100000; i++) {
+      final long v = random.nextLong() >>> (28 + random.nextInt(36));
+      final int bucket = ExtractionMetrics.bucketFor(v);
+      final long lowest = ExtractionMetrics.lowestNanosIn(bucket);
+      final long highest = ExtractionMetrics.highestNanosIn(bucket);
+      assertTrue(v + " " + lowest, lowest <= v);
+      assertTrue(v + " " + highest, highest >= v);
+      assertTrue(v + " " + lowest + " " + highest, (highest - lowest) * ExtractionMetrics.SUB_BUCKETS <= Math.max(lowest, ExtractionMetrics.SUB_BUCKETS));
+    }
+    assertEquals(ExtractionMetrics.bucketFor(Long.MAX_VALUE), ExtractionMetrics.bucketFor(1L << 36));
+    assertEquals(0, ExtractionMetrics.bucketFor(-1L));
+  }
+
+  @Test
+  public void testRecording() throws InterruptedException {
+    final StringIdType<String> idType = idType("testRecording");
+    final ExtractorHandle<String, String> handle = idType.getExtractorHandle("year");
+    final Extractor<String, String> extractor = idType.getExtractor("year");
+    assertEquals("2013", ExtractionMetrics.extractFrom(handle, extractor, "ORD-2013-0001"));
+    assertNull(ExtractionMetrics.extractFrom(handle, extractor, "ORD"));
+    ExtractionMetrics.recordMiss(idType, "month");
+
+    List<ExtractionMetrics.Snapshot> snapshots = ExtractionMetrics.snapshot(idType);
+    assertEquals(2, snapshots.size());
+    final Map<Object, ExtractionMetrics.Snapshot> byKey = new HashMap<Object, ExtractionMetrics.Snapshot>();
+    for (final ExtractionMetrics.Snapshot snapshot : snapshots) {
+      assertEquals(idType, snapshot.getIdType());
+      byKey.put(snapshot.getKey(), snapshot);
+    }
+    final ExtractionMetrics.Snapshot year = byKey.get("year");
+    assertEquals(2L, year.getCalls());
+    assertEquals(1L, year.getNulls());
+    assertEquals(0L, year.getMisses());
+    assertTrue(year.getNanosAtPercentile(50.0) <= year.getNanosAtPercentile(100.0));
+    assertTrue(year.getNanosAtPercentile(100.0) <= year.getMaximumNanos());
+    assertTrue(year.getTotalNanos() >= year.getMaximumNanos());
+    assertNotNull(year.toString());
+    final ExtractionMetrics.Snapshot month = byKey.get("month");
+    assertEquals(1L, month.getCalls());
+    assertEquals(1L, month.getMisses());
+    assertEquals(0L, month.getNanosAtPercentile(99.0));
+
+    // Threads share the striped counters.
+    final List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      threads.add(new Thread() {
+          @Override
+          public final void run() {
+            for (int j = 0; j < 10000; j++) {
+              ExtractionMetrics.extractFrom(handle, extractor, "ORD-2013-0001");
+            }
+          }
+        });
+    }
+    for (final Thread thread : threads) {
+      thread.start();
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    snapshots = ExtractionMetrics.snapshot(idType("testRecording"));
+    for (final ExtractionMetrics.Snapshot snapshot : snapshots) {
+      if ("year".equals(snapshot.getKey())) {
+        assertEquals(40002L, snapshot.getCalls());
+      }
+    }
+
+    ExtractionMetrics.reset();
+    for (final ExtractionMetrics.Snapshot snapshot : ExtractionMetrics.snapshot(idType)) {
+      assertEquals(0L, snapshot.getCalls());
+      assertEquals(0L, snapshot.getMaximumNanos());
+    }
+  }
+
+  @Test
+  public void testRecordBatch() {
+    final StringIdType<String> idType = idType("testRecordBatch");
+    ExtractionMetrics.recordBatch(idType, "year", false, 1000, 10, 50000L);
+    ExtractionMetrics.recordBatch(idType, "month", true, 1000, 0, 50000L);
+    ExtractionMetrics.recordBatch(idType, "day", false, 0, 0, 50000L);
+    final Map<Object, ExtractionMetrics.Snapshot> byKey = new HashMap<Object, ExtractionMetrics.Snapshot>();
+    for (final ExtractionMetrics.Snapshot snapshot : ExtractionMetrics.snapshot(idType)) {
+      byKey.put(snapshot.getKey(), snapshot);
+    }
+    assertEquals(2, byKey.size());
+    final ExtractionMetrics.Snapshot year = byKey.get("year");
+    assertEquals(1000L, year.getCalls());
+    assertEquals(10L, year.getNulls());
+    assertEquals(50000L, year.getTotalNanos());
+    // Each extraction in the batch is entered at the batch's mean.
+    assertEquals(50L, year.getMaximumNanos());
+    assertTrue(year.getNanosAtPercentile(1.0) <= 50L);
+    assertTrue(year.getNanosAtPercentile(1.0) >= ExtractionMetrics.lowestNanosIn(ExtractionMetrics.bucketFor(50L)));
+    final ExtractionMetrics.Snapshot month = byKey.get("month");
+    assertEquals(1000L, month.getCalls());
+    assertEquals(1000L, month.getMisses());
+    assertEquals(0L, month.getTotalNanos());
+  }
+
+  @Test
+  public void testIdType() {
+    final StringIdType<String> idType = idType("testIdType");
+    final ExtractorHandle<String, String> handle = idType.getExtractorHandle("year");
+    final Identifier<String, String> id = new Identifier<String, String>(idType, "ORD-2013-0001");
+    for (int i = 0; i < 10; i++) {
+      assertEquals("2013", id.extractFrom("year"));
+      assertEquals("2013", id.extractFrom(handle));
+      assertNull(id.extractFrom("month"));
+      assertNull(idType.extractFrom("year", "ORD"));
+    }
+    final String[] values = { "ORD-2013-0001", "ORD", "ORD-2014-0002" };
+    final String[] out = new String[values.length];
+    idType.extractFrom("year", values, out);
+    idType.extractFrom("month", values, out);
+    int count = 0;
+    for (final String year : idType.extractEach("year", Arrays.asList(values))) {
+      count++;
+    }
+    assertEquals(3, count);
+    assertEquals(3, idType.extractEach("year", Stream.of(values)).collect(Collectors.toList()).size());
+    idType.extractAll(values[0]);
+    final List<ExtractionMetrics.Snapshot> snapshots = ExtractionMetrics.snapshot(idType);
+    if (!ExtractionMetrics.ENABLED) {
+      assertTrue(snapshots.isEmpty());
+      return;
+    }
+    assertEquals(2, snapshots.size());
+    for (final ExtractionMetrics.Snapshot snapshot : snapshots) {
+      if ("year".equals(snapshot.getKey())) {
+        // 30 single extractions, an array of 3, an Iterable of 3, a
+        // Stream of 3 and extractAll's 1.
+        assertEquals(40L, snapshot.getCalls());
+        assertEquals(13L, snapshot.getNulls());
+        assertEquals(0L, snapshot.getMisses());
+      } else {
+        assertEquals("month", snapshot.getKey());
+        assertEquals(13L, snapshot.getCalls());
+        assertEquals(13L, snapshot.getMisses());
+      }
+    }
+  }
+
+  @Test
+  public void testPrimitiveBatch() {
+    final Map<Object, Extractor<Long, Long>> extractors = new HashMap<Object, Extractor<Long, Long>>();
+    extractors.put("high", (LongToLongExtractor)v -> v >>> 32);
+    final LongIdType<Long> idType = new LongIdType<Long>(TestCaseExtractionMetrics.class.getName() + ".testPrimitiveBatch", extractors);
+    final Long[] out = new Long[4];
+    idType.extractFrom("high", new long[] { 1L << 32, 2L << 32, 3L << 32, 4L << 32 }, out);
+    assertEquals(Long.valueOf(4L), out[3]);
+    final List<ExtractionMetrics.Snapshot> snapshots = ExtractionMetrics.snapshot(idType);
+    if (!ExtractionMetrics.ENABLED) {
+      assertTrue(snapshots.isEmpty());
+      return;
+    }
+    assertEquals(1, snapshots.size());
+    assertEquals(4L, snapshots.get(0).getCalls());
+    assertEquals(0L, snapshots.get(0).getNulls());
+  }
+
+  private static final StringIdType<String> idType(final String name) {
+    final Map<Object, Extractor<String, String>> extractors = new HashMap<Object, Extractor<String, String>>();
+    extractors.put("year", new StringExtractor(4, 8));
+    return new StringIdType<String>(TestCaseExtractionMetrics.class.getName() + "." + name, extractors);
+  }
+
+}
@@ -0,0 +1,208 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseExtractorIndex {
+
+  private StringIdType<String> idType;
+
+  public TestCaseExtractorIndex() {
+    super();
+  }
+
+  @Before
+  public void setUp() {
+    this.idType = new StringIdType<String>("indexed", Collections.singletonMap("prefix", new StringExtractor(0, 2)));
+  }
+
+  @Test
+  public void testAddGetRemove() {
+    final ExtractorIndex<String, String> index = new ExtractorIndex<String, String>(this.idType, "prefix");
+    assertSame(this.idType, index.getIdType());
+    final Identifier<String, String> a = new Identifier<String, String>(this.idType, "abcd");
+    final Identifier<String, String> b = new StringId<String>(this.idType, "abef");
+    final Identifier<String, String> c = new Identifier<String, String>(this.idType, "xyz");
+    assertTrue(index.add(a));
+    assertTrue(index.add(b));
+    assertTrue(index.add(c));
+    assertFalse(index.add(new Identifier<String, String>(this.idType, "abcd")));
+    assertTrue(index.add(new StringId<String>(this.idType, "abcd")));
+    assertFalse(index.add(new Identifier<String, String>(this.idType, "")));
+    assertEquals(4, index.size());
+    assertEquals(3, index.count("ab"));
+    final List<Identifier<String, String>> ab = index.get("ab");
+    assertEquals(3, ab.size());
+    assertSame(a, ab.get(0));
+    assertSame(b, ab.get(1));
+    assertEquals(Collections.singletonList(c), index.get("xy"));
+    assertTrue(index.get("zz").isEmpty());
+    assertTrue(index.get(null).isEmpty());
+    assertEquals(new HashSet<String>(java.util.Arrays.asList("ab", "xy")), index.values());
+
+    assertTrue(index.contains(new Identifier<String, String>(this.idType, "abcd")));
+    assertTrue(index.remove(new Identifier<String, String>(this.idType, "abcd")));
+    assertFalse(index.contains(a));
+    assertFalse(index.remove(a));
+    assertEquals(3, ab.size()); // Snapshots are unaffected.
+    assertEquals(2, index.count("ab"));
+    assertTrue(index.remove(c));
+    assertFalse(index.values().contains("xy"));
+    assertEquals(2, index.size());
+
+    index.clear();
+    assertEquals(0, index.size());
+    assertTrue(index.values().isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongIdType() {
+    final ExtractorIndex<String, String> index = new ExtractorIndex<String, String>(this.idType, "prefix");
+    index.add(new Identifier<String, String>(new StringIdType<String>("other", Collections.singletonMap("prefix", new StringExtractor(0, 2))), "abcd"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoSuchExtractor() {
+    new ExtractorIndex<String, String>(this.idType, "suffix");
+  }
+
+  @Test
+  public void testAgainstScan() {
+    final ExtractorIndex<String, String> index = new ExtractorIndex<String, String>(this.idType, "prefix");
+    final Random random = new Random(14L);
+    final Set<Identifier<String, String>> expected = new HashSet<Identifier<String, String>>();
+    for (int i = 0; i < 50000; i++) {
+      // Few distinct prefixes, so that groups grow large enough to
+      // carry position tables.
+      final Identifier<String, String> id = new Identifier<String, String>(this.idType, (char)('a' + random.nextInt(3)) + "" + (char)('a' + random.nextInt(3)) + random.nextInt(20000));
+      if (random.nextInt(4) == 0) {
+        assertEquals(expected.remove(id), index.remove(id));
+      } else {
+        assertEquals(expected.add(id), index.add(id));
+      }
+    }
+    assertEquals(expected.size(), index.size());
+    final Map<String, Set<Identifier<String, String>>> groups = new HashMap<String, Set<Identifier<String, String>>>();
+    for (final Identifier<String, String> id : expected) {
+      final String prefix = id.extractFrom("prefix");
+      Set<Identifier<String, String>> group = groups.get(prefix);
+      if (group == null) {
+        group = new HashSet<Identifier<String, String>>();
+        groups.put(prefix, group);
+      }
+      group.add(id);
+    }
+    assertEquals(groups.keySet(), index.values());
+    for (final Map.Entry<String, Set<Identifier<String, String>>> entry : groups.entrySet()) {
+      final List<Identifier<String, String>> group = index.get(entry.getKey());
+      assertEquals(entry.getValue().size(), group.size());
+      assertEquals(entry.getValue(), new HashSet<Identifier<String, String>>(group));
+    }
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    final ExtractorIndex<String, String> index = new ExtractorIndex<String, String>(this.idType, "prefix");
+    final List<Identifier<String, String>> ids = new ArrayList<Identifier<String, String>>();
+    for (int i = 0; i < 2000; i++) {
+      ids.add(new Identifier<String, String>(this.idType, "p" + ((i / 2) % 4) + "-" + i));
+    }
+    final AtomicBoolean done = new AtomicBoolean();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+      for (int r = 0; r < 3; r++) {
+        readers.add(executor.submit(new Callable<Integer>() {
+            @Override
+            public final Integer call() {
+              int reads = 0;
+              while (!done.get()) {
+                for (int p = 0; p < 4; p++) {
+                  final String prefix = "p" + p;
+                  final List<Identifier<String, String>> group = index.get(prefix);
+                  final Set<Identifier<String, String>> seen = new HashSet<Identifier<String, String>>();
+                  for (final Identifier<String, String> id : group) {
+                    assertEquals(prefix, id.extractFrom("prefix"));
+                    assertTrue(seen.add(id));
+                  }
+                  reads++;
+                }
+              }
+              return reads;
+            }
+          }));
+      }
+      final Future<?> writer = executor.submit(new Runnable() {
+          @Override
+          public final void run() {
+            for (int round = 0; round < 20; round++) {
+              for (final Identifier<String, String> id : ids) {
+                index.add(id);
+              }
+              for (int i = 0; i < ids.size(); i += 2) {
+                index.remove(ids.get(i));
+              }
+            }
+          }
+        });
+      writer.get(60, TimeUnit.SECONDS);
+      done.set(true);
+      for (final Future<Integer> reader : readers) {
+        assertTrue(reader.get() > 0);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(ids.size() / 2, index.size());
+    for (int p = 0; p < 4; p++) {
+      assertEquals(ids.size() / 8, index.count("p" + p));
+    }
+  }
+
+}
@@ -0,0 +1,258 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseFuzzyIndex {
+
+  public TestCaseFuzzyIndex() {
+    super();
+  }
+
+  @Test
+  public void testDistance() {
+    assertEquals(0, FuzzyIndex.distance("", ""));
+    assertEquals(3, FuzzyIndex.distance("", "abc"));
+    assertEquals(3, FuzzyIndex.distance("abc", ""));
+    assertEquals(3, FuzzyIndex.distance("kitten", "sitting"));
+    assertEquals(1, FuzzyIndex.distance("abcd", "acbd"));
+    assertEquals(1, FuzzyIndex.distance("AB-1234", "AB-1324"));
+    assertEquals(1, FuzzyIndex.distance("Āā", "āĀ"));
+    // Optimal string alignment would say 3.
+    assertEquals(2, FuzzyIndex.distance("ca", "abc"));
+    final Random random = new Random(17L);
+    for (int i = 0; i < 20000; i++) {
+      final String a = randomValue(random);
+      final String b = randomValue(random);
+      final String c = randomValue(random);
+      final int ab = FuzzyIndex.distance(a, b);
+      assertEquals(ab, FuzzyIndex.distance(b, a));
+      assertTrue(ab <= levenshtein(a, b));
+      assertTrue(a + " " + b + " " + c, FuzzyIndex.distance(a, c) <= ab + FuzzyIndex.distance(b, c));
+    }
+  }
+
+  @Test
+  public void testAgainstScan() {
+    final StringIdType<String> idType = StringIdType.valueOf("fuzzy");
+    final FuzzyIndex<String> index = new FuzzyIndex<String>(idType, 3);
+    final TreeSet<String> expected = new TreeSet<String>();
+    final Random random = new Random(17L);
+    for (int i = 0; i < 20000; i++) {
+      final String value = randomValue(random);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(value), index.remove(value));
+      } else {
+        assertEquals(expected.add(value), index.add(value));
+      }
+      assertEquals(expected.size(), index.size());
+    }
+    for (int i = 0; i < 300; i++) {
+      final String query = randomValue(random);
+      assertEquals(expected.contains(query), index.contains(query));
+      for (int k = 0; k <= 3; k++) {
+        assertEquals(query + " " + k, scan(expected, query, k), values(index.findWithin(query, k)));
+      }
+    }
+  }
+
+  @Test
+  public void testRebuild() {
+    final FuzzyIndex<String> index = new FuzzyIndex<String>(StringIdType.<String>valueOf("fuzzy"));
+    for (int i = 0; i < 5000; i++) {
+      assertTrue(index.add("ID-" + i));
+    }
+    for (int i = 0; i < 5000; i += 4) {
+      assertFalse(index.add(new StringId<String>(StringIdType.<String>valueOf("fuzzy"), "ID-" + i)));
+    }
+    for (int i = 0; i < 5000; i++) {
+      if (i % 4 != 0) {
+        assertTrue(index.remove("ID-" + i));
+      }
+    }
+    assertEquals(1250, index.size());
+    assertFalse(index.contains("ID-1"));
+    assertTrue(index.contains("ID-4"));
+    final List<Identifier<String, String>> matches = index.findWithin("ID-4004", 1);
+    assertEquals("ID-4004", matches.get(0).getValue());
+    assertTrue(matches.get(0) instanceof StringId);
+    final List<String> live = new ArrayList<String>();
+    for (int i = 0; i < 5000; i += 4) {
+      live.add("ID-" + i);
+    }
+    assertEquals(scan(live, "ID-4004", 1), values(matches));
+    assertTrue(index.add("ID-1"));
+    assertEquals(1251, index.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDistanceBeyondMaximum() {
+    new FuzzyIndex<String>(StringIdType.<String>valueOf("fuzzy")).findWithin("x", 2);
+  }
+
+  @Test
+  public void testLongValues() {
+    final FuzzyIndex<String> index = new FuzzyIndex<String>(StringIdType.<String>valueOf("fuzzy"), 2);
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      sb.append((char)('a' + (i * 7) % 26));
+    }
+    final String value = sb.toString();
+    assertTrue(index.add(value));
+    sb.setCharAt(100, sb.charAt(101));
+    sb.setCharAt(101, value.charAt(100));
+    sb.deleteCharAt(10);
+    assertEquals(1, index.findWithin(sb, 2).size());
+    assertTrue(index.findWithin(sb, 1).isEmpty());
+  }
+
+  @Test
+  public void testPrefixLength() {
+    final StringIdType<String> idType = StringIdType.valueOf("fuzzy");
+    assertEquals(1023, new FuzzyIndex<String>(idType, 1).getPrefixLength());
+    assertEquals(44, new FuzzyIndex<String>(idType, 2).getPrefixLength());
+    assertEquals(18, new FuzzyIndex<String>(idType, 3).getPrefixLength());
+  }
+
+  @Test
+  public void testLongValuesAgainstScan() {
+    final StringIdType<String> idType = StringIdType.valueOf("fuzzy");
+    final FuzzyIndex<String> index = new FuzzyIndex<String>(idType, 3);
+    final List<String> expected = new ArrayList<String>();
+    final Random random = new Random(23L);
+    // Many values share more than the prefix, and differ in, and
+    // around, its last characters.
+    for (int i = 0; i < 2000; i++) {
+      final String value = randomValue(random, 12 + random.nextInt(20));
+      if (index.add(value)) {
+        expected.add(value);
+      }
+    }
+    for (int i = 0; i < 200; i++) {
+      final String query = randomValue(random, 12 + random.nextInt(20));
+      for (int k = 0; k <= 3; k++) {
+        assertEquals(query + " " + k, scan(expected, query, k), values(index.findWithin(query, k)));
+      }
+    }
+  }
+
+  @Test
+  public void testIdentifierClassFollowsIdType() {
+    final StringIdType<String> idType = StringIdType.valueOf("fuzzy");
+    final FuzzyIndex<String> index = new FuzzyIndex<String>(idType);
+    final Identifier<String, String> plain = new Identifier<String, String>(idType, "abc");
+    assertTrue(index.add(plain));
+    assertFalse(index.add(new StringId<String>(idType, "abc")));
+    final Identifier<String, String> found = index.findWithin("abd", 1).get(0);
+    assertSame(StringId.class, found.getClass());
+    assertEquals(plain.getValue(), found.getValue());
+
+    final IdType<String, String> plainIdType = new IdType<String, String>(String.class, "plainStrings");
+    final FuzzyIndex<String> plainIndex = new FuzzyIndex<String>(plainIdType);
+    plainIndex.add("abc");
+    assertEquals(new Identifier<String, String>(plainIdType, "abc"), plainIndex.findWithin("abd", 1).get(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongIdType() {
+    final FuzzyIndex<String> index = new FuzzyIndex<String>(StringIdType.<String>valueOf("fuzzy"));
+    index.add(new StringId<String>(StringIdType.<String>valueOf("other"), "x"));
+  }
+
+  private static final List<String> scan(final Iterable<String> values, final String query, final int k) {
+    final List<String> returnValue = new ArrayList<String>();
+    for (final String value : values) {
+      if (FuzzyIndex.distance(query, value) <= k) {
+        returnValue.add(value);
+      }
+    }
+    Collections.sort(returnValue, new Comparator<String>() {
+        @Override
+        public final int compare(final String a, final String b) {
+          final int returnValue = Integer.compare(FuzzyIndex.distance(query, a), FuzzyIndex.distance(query, b));
+          return returnValue == 0 ? a.compareTo(b) : returnValue;
+        }
+      });
+    return returnValue;
+  }
+
+  private static final List<String> values(final List<Identifier<String, String>> ids) {
+    final List<String> returnValue = new ArrayList<String>(ids.size());
+    for (final Identifier<String, String> id : ids) {
+      returnValue.add(id.getValue());
+    }
+    return returnValue;
+  }
+
+  private static final int levenshtein(final String a, final String b) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      for (int j = 1; j <= b.length(); j++) {
+        final int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        current[j] = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      final int[] temp = previous;
+      previous = current;
+      current = temp;
+    }
+    return previous[b.length()];
+  }
+
+  private static final String randomValue(final Random random, final int length) {
+    final char[] chars = new char[length];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = i < 16 && random.nextInt(8) != 0 ? 'x' : (char)('a' + random.nextInt(2));
+    }
+    return new String(chars);
+  }
+
+  private static final String randomValue(final Random random) {
+    final String alphabet = "abcĀ";
+    final char[] chars = new char[random.nextInt(8)];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+    }
+    return new String(chars);
+  }
+
+}
@@ -29,9 +29,16 @@
  */
 package com.edugility.identifiers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import java.util.stream.Collectors;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -51,4 +58,108 @@ public class TestCaseIdType {
     assertEquals("1234", accountIdType.extractFrom("fund", "12345678"));
   }
 
+  @Test
+  public void testExtractorHandles() {
+    final Map<Object, Extractor<String, String>> extractors = new LinkedHashMap<Object, Extractor<String, String>>();
+    extractors.put("fund", new StringExtractor(0, 4));
+    extractors.put("department", new StringExtractor(4, 8));
+    final IdType<String, String> accountIdType = new IdType<String, String>(String.class, "AccountID", extractors);
+    assertEquals(2, accountIdType.getExtractorCount());
+    assertEquals(Arrays.<Object>asList("fund", "department"), new ArrayList<Object>(accountIdType.getExtractorKeys()));
+    assertSame(accountIdType.getExtractorKeys(), accountIdType.getExtractorKeys());
+
+    final ExtractorHandle<String, String> department = accountIdType.getExtractorHandle("department");
+    assertNotNull(department);
+    assertSame(department, accountIdType.getExtractorHandle("department"));
+    assertSame(department, accountIdType.getExtractorHandles().get(1));
+    assertEquals(1, department.getOrdinal());
+    assertEquals("5678", accountIdType.extractFrom(department, "12345678"));
+    assertEquals("5678", new Identifier<String, String>(accountIdType, "12345678").extractFrom(department));
+    assertNull(accountIdType.getExtractorHandle("bogus"));
+
+    // A handle issued by an equal but distinct IdType is resolved by
+    // key.
+    extractors.remove("fund");
+    extractors.put("fund", new StringExtractor(0, 4));
+    final IdType<String, String> equalIdType = new IdType<String, String>(String.class, "AccountID", extractors);
+    assertEquals(accountIdType, equalIdType);
+    assertEquals(0, equalIdType.getExtractorHandle("department").getOrdinal());
+    assertEquals("5678", equalIdType.extractFrom(department, "12345678"));
+  }
+
+  @Test
+  public void testBulkExtraction() {
+    final IdType<String, String> accountIdType = new IdType<String, String>(String.class, "AccountID", "fund", new StringExtractor(0, 4));
+    final String[] values = new String[100000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = String.format("%08d", i);
+    }
+    values[17] = null;
+
+    final String[] out = new String[values.length];
+    accountIdType.extractFrom("fund", values, out);
+    assertEquals("0001", out[12345]);
+    assertNull(out[17]);
+
+    final String[] parallelOut = new String[values.length];
+    accountIdType.parallelExtractFrom("fund", values, parallelOut);
+    assertArrayEquals(out, parallelOut);
+
+    accountIdType.extractFrom(accountIdType.getExtractorHandle("fund"), values, parallelOut);
+    assertArrayEquals(out, parallelOut);
+
+    accountIdType.extractFrom("bogus", values, parallelOut);
+    assertNull(parallelOut[12345]);
+
+    final List<String> streamed = accountIdType.extractEach("fund", Arrays.stream(values).parallel()).collect(Collectors.<String>toList());
+    assertEquals(Arrays.asList(out), streamed);
+
+    final Iterator<String> iterator = accountIdType.extractEach("fund", Arrays.asList("12345678", "87654321")).iterator();
+    assertEquals("1234", iterator.next());
+    assertEquals("8765", iterator.next());
+    assertFalse(iterator.hasNext());
+
+    final Map<Object, Extractor<Long, Long>> longExtractors = new HashMap<Object, Extractor<Long, Long>>();
+    longExtractors.put("negated", new Extractor<Long, Long>() {
+        private static final long serialVersionUID = 1L;
+        @Override
+        public final Long extractFrom(final Long value) {
+          return value == null ? null : Long.valueOf(-value.longValue());
+        }
+      });
+    final LongIdType<Long> longIdType = new LongIdType<Long>("sequence", longExtractors);
+    final Long[] longOut = new Long[2];
+    longIdType.extractFrom("negated", new long[] { 1L, 2L }, longOut);
+    assertEquals(Long.valueOf(-2L), longOut[1]);
+    longIdType.extractFrom("bogus", new long[] { 1L, 2L }, longOut);
+    assertNull(longOut[0]);
+  }
+
+  @Test
+  public void testFingerprint() {
+    final Map<Object, Extractor<String, String>> extractors = new HashMap<Object, Extractor<String, String>>();
+    extractors.put("fund", new StringExtractor(0, 4));
+    extractors.put("department", new StringExtractor(4, 8));
+    final IdType<String, String> a = new IdType<String, String>(String.class, "AccountID", extractors);
+    final IdType<String, String> b = new IdType<String, String>(String.class, "AccountID", extractors);
+    assertNotSame(a, b);
+    assertEquals(a.getFingerprint(), b.getFingerprint());
+    assertEquals(a.hashCode(), b.hashCode());
+    assertEquals(a, b);
+
+    final IdType<String, String> c = new IdType<String, String>(String.class, "AccountId", extractors);
+    assertFalse(a.getFingerprint() == c.getFingerprint());
+    assertFalse(a.equals(c));
+
+    extractors.put("department", new StringExtractor(4, 9));
+    final IdType<String, String> d = new IdType<String, String>(String.class, "AccountID", extractors);
+    assertFalse(a.getFingerprint() == d.getFingerprint());
+    assertFalse(a.equals(d));
+
+    final IdType<String, String> e = new StringIdType<String>("AccountID");
+    final IdType<String, String> f = new IdType<String, String>(String.class, "AccountID");
+    assertFalse(e.getFingerprint() == f.getFingerprint());
+    assertFalse(e.equals(f));
+  }
+
 }
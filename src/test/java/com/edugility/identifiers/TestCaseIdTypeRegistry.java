@@ -0,0 +1,133 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdTypeRegistry {
+
+  public TestCaseIdTypeRegistry() {
+    super();
+  }
+
+  @Test
+  public void testIntern() {
+    final IdTypeRegistry registry = new IdTypeRegistry();
+    final Map<Object, Extractor<String, String>> extractors = new HashMap<Object, Extractor<String, String>>();
+    extractors.put("fund", new StringExtractor(0, 4));
+    final IdType<String, String> a = registry.intern(new IdType<String, String>(String.class, "AccountID", extractors));
+    final IdType<String, String> b = registry.intern(new IdType<String, String>(String.class, "AccountID", extractors));
+    assertSame(a, b);
+    assertTrue(registry.isCanonical(a));
+    assertFalse(registry.isCanonical(new IdType<String, String>(String.class, "AccountID", extractors)));
+
+    // Different extractors means a different IdType.
+    extractors.put("fund", new StringExtractor(0, 5));
+    final IdType<String, String> c = registry.intern(new IdType<String, String>(String.class, "AccountID", extractors));
+    assertNotSame(a, c);
+
+    // Different IdType subclasses are never conflated.
+    final StringIdType<String> d = registry.intern(new StringIdType<String>("AccountID"));
+    final IdType<String, String> e = registry.intern(new IdType<String, String>(String.class, "AccountID"));
+    assertNotSame(d, e);
+    assertSame(StringIdType.class, d.getClass());
+    assertEquals(4, registry.size());
+  }
+
+  @Test
+  public void testFactoriesReturnCanonicalInstances() {
+    assertSame(StringIdType.valueOf("a"), StringIdType.valueOf("a"));
+    assertSame(LongIdType.valueOf("a"), LongIdType.valueOf("a"));
+    assertSame(IntegerIdType.valueOf("a"), IntegerIdType.valueOf("a"));
+    assertNotSame(StringIdType.valueOf("a"), StringIdType.valueOf("b"));
+    assertSame(IdType.valueOf(String.class, "a", null), IdType.valueOf(String.class, "a", null));
+    assertSame(new StringId<String>("a", "1").getIdType(), new StringId<String>("a", "2").getIdType());
+  }
+
+  @Test
+  public void testGetNamed() {
+    final IdTypeRegistry registry = new IdTypeRegistry();
+    assertNull(registry.getNamed(StringIdType.class, "AccountID"));
+    final StringIdType<String> withExtractors = registry.intern(new StringIdType<String>("AccountID", Collections.<Object, Extractor<String, String>>singletonMap("fund", new StringExtractor(0, 4))));
+    assertNull(registry.getNamed(StringIdType.class, "AccountID"));
+    final StringIdType<String> plain = registry.intern(new StringIdType<String>("AccountID"));
+    assertNotSame(withExtractors, plain);
+    assertSame(plain, registry.getNamed(StringIdType.class, "AccountID"));
+    assertNull(registry.getNamed(LongIdType.class, "AccountID"));
+    assertNull(registry.getNamed(IdType.class, "AccountID"));
+    assertNull(registry.getNamed(StringIdType.class, null));
+
+    // The factories find what was interned directly.
+    final LongIdType<Long> interned = IdTypeRegistry.getInstance().intern(new LongIdType<Long>("getNamed"));
+    assertSame(interned, LongIdType.valueOf("getNamed"));
+  }
+
+  @Test
+  public void testReadResolve() throws ClassNotFoundException, IOException {
+    final StringIdType<String> idType = StringIdType.valueOf("serialized");
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeObject(new StringId<String>("serialized", "x"));
+    oos.close();
+    final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    final Identifier<?, ?> id = (Identifier<?, ?>)ois.readObject();
+    ois.close();
+    assertSame(idType, id.getIdType());
+  }
+
+  @Test
+  public void testIdentifiersShareCanonicalIdTypes() {
+    final IdTypeRegistry registry = IdTypeRegistry.getInstance();
+    final StringIdType<String> canonical = StringIdType.valueOf("glAccountIdType");
+    final int size = registry.size();
+    for (int i = 0; i < 1000; i++) {
+      assertSame(canonical, new StringId<String>("glAccountIdType", String.valueOf(i)).getIdType());
+    }
+    assertEquals(size, registry.size());
+
+    // An IdType constructed directly is equal to, but is not, the
+    // canonical instance.
+    final StringIdType<String> unshared = new StringIdType<String>("glAccountIdType");
+    assertEquals(canonical, unshared);
+    assertFalse(registry.isCanonical(unshared));
+    assertTrue(registry.isCanonical(canonical));
+  }
+
+}
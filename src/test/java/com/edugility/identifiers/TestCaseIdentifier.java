@@ -31,6 +31,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.junit.Test;
@@ -56,6 +57,54 @@ public class TestCaseIdentifier {
     assertEquals("aaaa", id.extractFrom("first segment"));
   }
 
+  @Test
+  public void testExtractAll() {
+    final Map<Object, Extractor<String, String>> extractors = new LinkedHashMap<Object, Extractor<String, String>>();
+    extractors.put("first segment", new StringExtractor(0, 4));
+    extractors.put("second segment", new StringExtractor(4, 8));
+    extractors.put("fifth segment", new StringExtractor(16, 20));
+    final IdType<String, String> glAccountIdType = new IdType<String, String>(String.class, "glAccountIdType", extractors);
+
+    final Extraction<String, String> extraction = new Identifier<String, String>(glAccountIdType, "aaaabbbbccccdddd").extractAll(null);
+    assertEquals(3, extraction.size());
+    assertEquals("aaaa", extraction.get(0));
+    assertEquals("bbbb", extraction.get(glAccountIdType.getExtractorHandle("second segment")));
+    assertNull(extraction.get(2));
+    assertEquals("fifth segment", extraction.getKey(2));
+
+    assertSame(extraction, new Identifier<String, String>(glAccountIdType, "eeeeffffgggghhhhiiii").extractAll(extraction));
+    assertEquals("eeee", extraction.get(0));
+    assertEquals("iiii", extraction.get(2));
+
+    final IdType<String, String> oneExtractorIdType = new IdType<String, String>(String.class, "first segment", new StringExtractor(0, 4));
+    assertSame(extraction, oneExtractorIdType.extractAll("jjjj", extraction));
+    assertEquals(1, extraction.size());
+    assertEquals("jjjj", extraction.get(0));
+  }
+
+  @Test
+  public void testLongIdentifier() {
+    final LongIdType<Long> idType = LongIdType.valueOf("sequence");
+    final LongIdentifier<Long> id = LongIdentifier.valueOf(idType, 1234567890123L);
+    assertEquals(1234567890123L, id.getLongValue());
+    assertEquals(Long.valueOf(1234567890123L), id.getValue());
+    assertEquals(id, new LongIdentifier<Long>(idType, 1234567890123L));
+    assertFalse(id.equals(new LongIdentifier<Long>(idType, 1234567890124L)));
+    assertFalse(id.equals(new LongIdentifier<Long>(LongIdType.<Long>valueOf("other"), 1234567890123L)));
+    assertEquals(new Identifier<Long, Long>(idType, 1234567890123L).hashCode(), id.hashCode());
+  }
+
+  @Test
+  public void testIntIdentifier() {
+    final IntegerIdType<Integer> idType = IntegerIdType.valueOf("sequence");
+    final IntIdentifier<Integer> id = IntIdentifier.valueOf(idType, -12345);
+    assertEquals(-12345, id.getIntValue());
+    assertEquals(Integer.valueOf(-12345), id.getValue());
+    assertEquals(id, new IntIdentifier<Integer>(idType, -12345));
+    assertFalse(id.equals(new IntIdentifier<Integer>(idType, 12345)));
+    assertEquals(new Identifier<Integer, Integer>(idType, -12345).hashCode(), id.hashCode());
+  }
+
   @Test
   public void testURIEdgeConditions() throws URISyntaxException {
     final URI uri = new URI("test%20");
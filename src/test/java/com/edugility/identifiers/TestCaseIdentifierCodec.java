@@ -0,0 +1,263 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InvalidClassException;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+
+import java.nio.channels.Channels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdentifierCodec {
+
+  private static final int COUNT = 100000;
+
+  private final Logger logger;
+
+  public TestCaseIdentifierCodec() {
+    super();
+    this.logger = Logger.getLogger(this.getClass().getName());
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    final List<Identifier<?, ?>> ids = sample();
+    for (final int bufferSize : new int[] { 64, 100, IdentifierCodec.DEFAULT_BUFFER_SIZE }) {
+      final byte[] bytes = encode(ids, bufferSize);
+      final List<Identifier<?, ?>> copy = decode(bytes, bufferSize);
+      assertEquals(ids, copy);
+      for (int i = 0; i < ids.size(); i++) {
+        assertSame(ids.get(i).getClass(), copy.get(i).getClass());
+        assertSame(ids.get(i).getIdType(), copy.get(i).getIdType());
+      }
+    }
+  }
+
+  @Test
+  public void testWiderTypedRoundTrip() throws IOException {
+    final IdType<Serializable, Object> idType = new IdType<Serializable, Object>(Serializable.class, "serializable");
+    final List<Identifier<?, ?>> ids = new ArrayList<Identifier<?, ?>>();
+    ids.add(new Identifier<Serializable, Object>(idType, "abc"));
+    ids.add(new Identifier<Serializable, Object>(idType, Long.valueOf(37L)));
+    ids.add(new Identifier<Serializable, Object>(idType, Integer.valueOf(37)));
+    assertEquals(ids, decode(encode(ids, 64), 64));
+  }
+
+  @Test
+  public void testUnpermittedClass() throws IOException {
+    final IdType<Date, Object> idType = new IdType<Date, Object>(Date.class, "dates");
+    final List<Identifier<?, ?>> ids = new ArrayList<Identifier<?, ?>>();
+    ids.add(new Identifier<Date, Object>(idType, new Date(0L)));
+    final byte[] bytes = encode(ids, 64);
+    try {
+      decode(bytes, 64);
+      fail();
+    } catch (final InvalidClassException expected) {
+
+    }
+    final IdentifierCodec.Decoder decoder = new IdentifierCodec.Decoder(new ByteArrayInputStream(bytes));
+    try {
+      decoder.permit(Date.class);
+      assertEquals(ids.get(0), decoder.read());
+    } finally {
+      decoder.close();
+    }
+  }
+
+  @Test(expected = InvalidClassException.class)
+  public void testUnpermittedBlob() throws IOException {
+    final byte[] blob = serialize(new AtomicLong(37L));
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    baos.write(new byte[] { 'E', 'D', 'I', 'D', IdentifierCodec.VERSION });
+    // A SERIALIZED record, then its length as a variable-length
+    // integer.
+    baos.write(7);
+    for (int length = blob.length; ; length >>>= 7) {
+      if (length < 0x80) {
+        baos.write(length);
+        break;
+      }
+      baos.write((length & 0x7F) | 0x80);
+    }
+    baos.write(blob);
+    decode(baos.toByteArray(), 64);
+  }
+
+  @Test
+  public void testUtf8() {
+    for (final String s : new String[] { "", "abc", "été", "€", "😀", "\ud83d", "x\ude00y", "\ud83d😀" }) {
+      final byte[] expected = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+      assertEquals(s, expected.length, IdentifierCodec.utf8Length(s));
+      final byte[] actual = new byte[expected.length];
+      assertEquals(expected.length, IdentifierCodec.encodeUtf8(s, actual, 0));
+      assertArrayEquals(s, expected, actual);
+    }
+  }
+
+  @Test
+  public void testEmptyStream() throws IOException {
+    assertTrue(decode(encode(new ArrayList<Identifier<?, ?>>(), 64), 64).isEmpty());
+  }
+
+  @Test(expected = EOFException.class)
+  public void testTruncatedStream() throws IOException {
+    final byte[] bytes = encode(sample(), 64);
+    decode(Arrays.copyOf(bytes, bytes.length - 1), 64);
+  }
+
+  @Test(expected = StreamCorruptedException.class)
+  public void testBadMagicNumber() throws IOException {
+    decode(new byte[] { 'J', 'U', 'N', 'K', 1 }, 64);
+  }
+
+  @Test
+  public void testSizeAndSpeed() throws IOException {
+    final LongIdType<Long> longIdType = LongIdType.valueOf("seq");
+    final StringIdType<String> stringIdType = StringIdType.valueOf("glAccountIdType");
+    final List<Identifier<?, ?>> ids = new ArrayList<Identifier<?, ?>>(COUNT);
+    for (int i = 0; i < COUNT; i++) {
+      if (i % 2 == 0) {
+        ids.add(LongIdentifier.valueOf(longIdType, i * 1000L));
+      } else {
+        ids.add(new Identifier<String, String>(stringIdType, String.format("%016d", i)));
+      }
+    }
+
+    // Warm up.
+    for (int i = 0; i < 3; i++) {
+      decode(encode(ids, IdentifierCodec.DEFAULT_BUFFER_SIZE), IdentifierCodec.DEFAULT_BUFFER_SIZE);
+      serialize(ids);
+    }
+
+    long start = System.nanoTime();
+    final byte[] encoded = encode(ids, IdentifierCodec.DEFAULT_BUFFER_SIZE);
+    final long encodeTime = System.nanoTime() - start;
+    start = System.nanoTime();
+    final byte[] serialized = serialize(ids);
+    final long serializeTime = System.nanoTime() - start;
+
+    this.logger.info(String.format("Writing %d identifiers: IdentifierCodec %d bytes in %d ms; ObjectOutputStream %d bytes in %d ms",
+                                   COUNT, encoded.length, encodeTime / 1000000L, serialized.length, serializeTime / 1000000L));
+    assertTrue(encoded.length * 2 < serialized.length);
+    assertEquals(ids, decode(encoded, IdentifierCodec.DEFAULT_BUFFER_SIZE));
+  }
+
+  private static final List<Identifier<?, ?>> sample() {
+    final Map<Object, Extractor<String, String>> extractors = new LinkedHashMap<Object, Extractor<String, String>>();
+    extractors.put("first", new StringExtractor(0, 4));
+    final IdType<String, String> idType = IdType.valueOf(String.class, "glAccountIdType", extractors);
+    final LongIdType<Long> longIdType = LongIdType.valueOf("seq");
+    final IntegerIdType<Integer> integerIdType = IntegerIdType.valueOf("seq");
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append("é😀x");
+    }
+    final List<Identifier<?, ?>> ids = new ArrayList<Identifier<?, ?>>();
+    ids.add(new Identifier<String, String>(idType, "aaaabbbbccccdddd"));
+    ids.add(new Identifier<String, String>(idType, ""));
+    ids.add(new Identifier<String, String>(idType, sb.toString()));
+    ids.add(new StringId<String>("glAccountIdType", "aaaabbbb"));
+    ids.add(new StringId<String>("other", sb.toString()));
+    ids.add(LongIdentifier.valueOf(longIdType, 0L));
+    ids.add(LongIdentifier.valueOf(longIdType, -1L));
+    ids.add(LongIdentifier.valueOf(longIdType, Long.MIN_VALUE));
+    ids.add(LongIdentifier.valueOf(longIdType, Long.MAX_VALUE));
+    ids.add(IntIdentifier.valueOf(integerIdType, Integer.MIN_VALUE));
+    ids.add(IntIdentifier.valueOf(integerIdType, 300));
+    ids.add(new Identifier<Long, Long>(longIdType, Long.valueOf(-300L)));
+    ids.add(new Identifier<Integer, Integer>(integerIdType, Integer.valueOf(Integer.MAX_VALUE)));
+    ids.add(new Identifier<String, String>(idType, "aaaabbbbccccdddd"));
+    ids.add(new SubclassIdentifier(idType, "subclass"));
+    return ids;
+  }
+
+  private static final byte[] encode(final List<Identifier<?, ?>> ids, final int bufferSize) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final IdentifierCodec.Encoder encoder = new IdentifierCodec.Encoder(Channels.newChannel(baos), bufferSize);
+    try {
+      for (final Identifier<?, ?> id : ids) {
+        encoder.write(id);
+      }
+      assertEquals(ids.size(), encoder.getCount());
+    } finally {
+      encoder.close();
+    }
+    return baos.toByteArray();
+  }
+
+  private static final List<Identifier<?, ?>> decode(final byte[] bytes, final int bufferSize) throws IOException {
+    final List<Identifier<?, ?>> returnValue = new ArrayList<Identifier<?, ?>>();
+    final IdentifierCodec.Decoder decoder = new IdentifierCodec.Decoder(Channels.newChannel(new ByteArrayInputStream(bytes)), bufferSize);
+    try {
+      Identifier<?, ?> id;
+      while ((id = decoder.read()) != null) {
+        returnValue.add(id);
+      }
+    } finally {
+      decoder.close();
+    }
+    return returnValue;
+  }
+
+  private static final byte[] serialize(final Object object) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeObject(object);
+    oos.close();
+    return baos.toByteArray();
+  }
+
+  private static final class SubclassIdentifier extends Identifier<String, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private SubclassIdentifier(final IdType<String, String> idType, final String value) {
+      super(idType, value);
+    }
+
+  }
+
+}
@@ -0,0 +1,171 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import java.nio.channels.Channels;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdentifierFormatter {
+
+  public TestCaseIdentifierFormatter() {
+    super();
+  }
+
+  @Test
+  public void testToString() {
+    final StringIdType<String> named = StringIdType.valueOf("name");
+    assertEquals("name (class java.lang.String)", named.toString());
+    assertSame(named.toString(), named.toString());
+    assertEquals("name (class java.lang.String): abc", new StringId<String>(named, "abc").toString());
+    assertEquals("(class java.lang.Long): -5", new Identifier<Long, Long>(new IdType<Long, Long>(Long.class), Long.valueOf(-5L)).toString());
+  }
+
+  @Test
+  public void testWriteToAppendable() throws IOException {
+    for (final Identifier<?, ?> id : sample()) {
+      final String expected = expected(id);
+      assertEquals(expected, id.toString());
+      final StringWriter writer = new StringWriter();
+      id.writeTo(writer);
+      assertEquals(expected, writer.toString());
+    }
+  }
+
+  @Test
+  public void testWriteToByteBuffer() {
+    for (final Identifier<?, ?> id : sample()) {
+      final byte[] expected = expected(id).getBytes(StandardCharsets.UTF_8);
+      for (final ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(512), ByteBuffer.allocateDirect(512) }) {
+        buffer.position(3);
+        id.writeTo(buffer);
+        assertEquals(3 + expected.length, buffer.position());
+        final byte[] actual = new byte[expected.length];
+        buffer.position(3);
+        buffer.get(actual);
+        assertArrayEquals(expected, actual);
+
+        // Too small by one byte: nothing is written.
+        buffer.clear();
+        buffer.limit(expected.length - 1);
+        try {
+          id.writeTo(buffer);
+          fail();
+        } catch (final BufferOverflowException expectedException) {
+          assertEquals(0, buffer.position());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFormatter() throws IOException {
+    final List<Identifier<?, ?>> ids = new ArrayList<Identifier<?, ?>>();
+    for (int i = 0; i < 100; i++) {
+      ids.addAll(sample());
+    }
+    final StringBuilder sb = new StringBuilder();
+    for (final Identifier<?, ?> id : ids) {
+      sb.append(expected(id)).append('\n');
+    }
+    final String expected = sb.toString();
+
+    for (final int bufferSize : new int[] { 64, 100, IdentifierFormatter.DEFAULT_BUFFER_SIZE }) {
+      final StringWriter writer = new StringWriter();
+      final IdentifierFormatter charFormatter = new IdentifierFormatter(writer, bufferSize);
+      assertEquals(ids.size(), charFormatter.writeAll(ids));
+      charFormatter.close();
+      assertEquals(expected, writer.toString());
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final IdentifierFormatter byteFormatter = new IdentifierFormatter(Channels.newChannel(out), bufferSize);
+      assertEquals(ids.size(), byteFormatter.writeAll(ids));
+      assertEquals(ids.size(), byteFormatter.getCount());
+      byteFormatter.close();
+      assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+
+      try {
+        byteFormatter.write(ids.get(0));
+        fail();
+      } catch (final IOException closed) {
+
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSmallBuffer() {
+    new IdentifierFormatter(new StringWriter(), 10);
+  }
+
+  private static final String expected(final Identifier<?, ?> id) {
+    return id.getIdType().toString() + ": " + id.getValue();
+  }
+
+  private static final List<Identifier<?, ?>> sample() {
+    final List<Identifier<?, ?>> ids = new ArrayList<Identifier<?, ?>>();
+    final StringIdType<String> named = StringIdType.valueOf("named");
+    final IdType<String, String> anonymous = new IdType<String, String>(String.class);
+    final LongIdType<Long> longs = LongIdType.valueOf("longs");
+    final IntegerIdType<Integer> ints = IntegerIdType.valueOf("ints");
+    ids.add(new StringId<String>(named, "abc"));
+    ids.add(new StringId<String>(named, ""));
+    ids.add(new Identifier<String, String>(anonymous, "été € 😀 \ud83d"));
+    ids.add(new StringId<String>("naïve", "x"));
+    for (final long value : new long[] { 0L, 7L, -7L, 10L, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+      ids.add(new LongIdentifier<Long>(longs, value));
+      ids.add(new Identifier<Long, Long>(longs, Long.valueOf(value)));
+    }
+    for (final int value : new int[] { 0, 9, -10, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+      ids.add(new IntIdentifier<Integer>(ints, value));
+    }
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      sb.append((char)('a' + i % 26));
+    }
+    // Longer than the smallest buffers.
+    ids.add(new StringId<String>(named, sb.toString()));
+    ids.add(new Identifier<java.math.BigInteger, Object>(new IdType<java.math.BigInteger, Object>(java.math.BigInteger.class, "big"), java.math.BigInteger.TEN.pow(40)));
+    return ids;
+  }
+
+}
@@ -0,0 +1,121 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdentifierInterner {
+
+  public TestCaseIdentifierInterner() {
+    super();
+  }
+
+  @Test
+  public void testIntern() {
+    final IdentifierInterner interner = new IdentifierInterner();
+    final StringIdType<String> idType = StringIdType.valueOf("interned");
+    final Identifier<String, String> a = interner.intern(idType, new String("a"));
+    final Identifier<String, String> b = interner.intern(new Identifier<String, String>(idType, new String("a")));
+    assertSame(a, b);
+    assertNotSame(a, interner.intern(idType, "b"));
+    assertNotSame(a, interner.intern(new StringId<String>("interned", "a")));
+    assertEquals(3, interner.size());
+    interner.clear();
+    assertEquals(0, interner.size());
+  }
+
+  @Test
+  public void testWeakReferencesAreCleared() throws InterruptedException {
+    final IdentifierInterner interner = new IdentifierInterner();
+    final StringIdType<String> idType = StringIdType.valueOf("interned");
+    for (int i = 0; i < 1000; i++) {
+      interner.intern(idType, String.valueOf(i));
+    }
+    for (int i = 0; i < 100 && interner.size() > 0; i++) {
+      System.gc();
+      Thread.sleep(10L);
+    }
+    assertEquals(0, interner.size());
+  }
+
+  @Test
+  public void testBounded() {
+    final IdentifierInterner interner = new IdentifierInterner(1000);
+    final LongIdType<Long> idType = LongIdType.valueOf("interned");
+    final Identifier<Long, Long> first = interner.intern(new LongIdentifier<Long>(idType, 0L));
+    assertSame(first, interner.intern(new LongIdentifier<Long>(idType, 0L)));
+    for (long i = 0L; i < 100000L; i++) {
+      interner.intern(new LongIdentifier<Long>(idType, i));
+    }
+    assertTrue(interner.size() <= 1000);
+    assertTrue(interner.size() > 0);
+  }
+
+  @Test
+  public void testConcurrentIntern() throws Exception {
+    final IdentifierInterner interner = new IdentifierInterner();
+    final StringIdType<String> idType = StringIdType.valueOf("interned");
+    final int threadCount = 8;
+    final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      final List<Future<Identifier<?, ?>[]>> futures = new ArrayList<Future<Identifier<?, ?>[]>>();
+      for (int t = 0; t < threadCount; t++) {
+        futures.add(executor.submit(new Callable<Identifier<?, ?>[]>() {
+            @Override
+            public final Identifier<?, ?>[] call() {
+              final Identifier<?, ?>[] results = new Identifier<?, ?>[10000];
+              for (int i = 0; i < results.length; i++) {
+                results[i] = interner.intern(idType, String.valueOf(i));
+              }
+              return results;
+            }
+          }));
+      }
+      final Identifier<?, ?>[] expected = futures.get(0).get();
+      for (final Future<Identifier<?, ?>[]> future : futures) {
+        final Identifier<?, ?>[] results = future.get();
+        for (int i = 0; i < results.length; i++) {
+          assertSame(expected[i], results[i]);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,221 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.math.BigInteger;
+
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdentifierMap {
+
+  public TestCaseIdentifierMap() {
+    super();
+  }
+
+  @Test
+  public void testAgainstHashMap() {
+    final Random random = new Random(42L);
+    final Map<Identifier<?, ?>, Integer> expected = new HashMap<Identifier<?, ?>, Integer>();
+    final IdentifierMap<Integer> actual = new IdentifierMap<Integer>();
+    for (int i = 0; i < 200000; i++) {
+      final Identifier<?, ?> key = randomKey(random);
+      final Integer value = random.nextInt(10) == 0 ? null : Integer.valueOf(i);
+      switch (random.nextInt(4)) {
+      case 0:
+      case 1:
+        assertEquals(expected.put(key, value), actual.put(key, value));
+        break;
+      case 2:
+        assertEquals(expected.remove(key), actual.remove(key));
+        break;
+      default:
+        assertEquals(expected.containsKey(key), actual.containsKey(key));
+        assertEquals(expected.get(key), actual.get(key));
+        break;
+      }
+      assertEquals(expected.size(), actual.size());
+    }
+    assertEquals(expected, actual);
+    assertEquals(actual, expected);
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(expected.keySet(), actual.keySet());
+
+    // Remove every other entry through the iterator.
+    boolean remove = false;
+    for (final Iterator<Identifier<?, ?>> iterator = actual.keySet().iterator(); iterator.hasNext(); ) {
+      final Identifier<?, ?> key = iterator.next();
+      if (remove) {
+        iterator.remove();
+        expected.remove(key);
+      }
+      remove = !remove;
+    }
+    assertEquals(expected, actual);
+
+    // Entry.setValue writes through.
+    for (final Entry<Identifier<?, ?>, Integer> entry : actual.entrySet()) {
+      entry.setValue(Integer.valueOf(-1));
+    }
+    for (final Integer value : actual.values()) {
+      assertEquals(Integer.valueOf(-1), value);
+    }
+
+    actual.clear();
+    assertTrue(actual.isEmpty());
+    assertFalse(actual.entrySet().iterator().hasNext());
+  }
+
+  @Test
+  public void testKeyClassesAreDistinct() {
+    final LongIdType<Long> idType = LongIdType.valueOf("seq");
+    final IdentifierMap<String> map = new IdentifierMap<String>();
+    map.put(LongIdentifier.valueOf(idType, 1L), "primitive");
+    map.put(new Identifier<Long, Long>(idType, Long.valueOf(1L)), "boxed");
+    assertEquals(2, map.size());
+    assertEquals("primitive", map.get(LongIdentifier.valueOf(idType, 1L)));
+    assertEquals("boxed", map.get(new Identifier<Long, Long>(idType, Long.valueOf(1L))));
+    final Identifier<?, ?> key = map.keySet().iterator().next();
+    assertSame(idType, key.getIdType());
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void testFailFast() {
+    final IdentifierMap<String> map = new IdentifierMap<String>();
+    map.put(new StringId<String>("a", "1"), "x");
+    map.put(new StringId<String>("a", "2"), "y");
+    for (final Identifier<?, ?> key : map.keySet()) {
+      map.put(new StringId<String>("a", "3"), "z");
+    }
+  }
+
+  @Test
+  public void testStaleEntrySetValue() {
+    final LongIdType<Long> idType = LongIdType.valueOf("seq");
+    final IdentifierMap<String> map = new IdentifierMap<String>();
+    final LongIdentifier<Long> key = LongIdentifier.valueOf(idType, 1L);
+    map.put(key, "one");
+
+    // A removed key's entry is detached from the map.
+    Entry<Identifier<?, ?>, String> entry = map.entrySet().iterator().next();
+    map.remove(key);
+    assertEquals("one", entry.setValue("zombie"));
+    assertEquals("zombie", entry.getValue());
+    assertEquals(0, map.size());
+    assertNull(map.get(key));
+    assertFalse(map.containsValue("zombie"));
+
+    // A key that is still mapped is written through even after its
+    // table has been rehashed.
+    map.put(key, "one");
+    entry = map.entrySet().iterator().next();
+    for (long i = 2L; i < 1000L; i++) {
+      map.put(LongIdentifier.valueOf(idType, i), "many");
+    }
+    assertEquals("one", entry.setValue("moved"));
+    assertEquals("moved", map.get(key));
+    assertEquals(999, map.size());
+  }
+
+  @Test
+  public void testKeysAreNotRetained() {
+    final LongIdType<Long> longIdType = LongIdType.valueOf("seq");
+    final IntegerIdType<Integer> intIdType = IntegerIdType.valueOf("seq");
+    final Set<Identifier<?, ?>> originals = Collections.newSetFromMap(new IdentityHashMap<Identifier<?, ?>, Boolean>());
+    final IdentifierMap<Object> map = new IdentifierMap<Object>();
+    for (int i = 0; i < 1000; i++) {
+      originals.add(LongIdentifier.valueOf(longIdType, i * 7919L));
+      originals.add(new Identifier<Long, Long>(longIdType, Long.valueOf(i)));
+      originals.add(IntIdentifier.valueOf(intIdType, i));
+      originals.add(new StringId<String>("seq", String.valueOf(i)));
+    }
+    for (final Identifier<?, ?> key : originals) {
+      map.put(key, Boolean.TRUE);
+    }
+    assertEquals(originals.size(), map.size());
+
+    // Every key comes back equal to one that was put, but is a new
+    // Identifier: the map kept only its value.
+    for (final Identifier<?, ?> key : map.keySet()) {
+      assertFalse(originals.contains(key));
+      assertTrue(map.containsKey(key));
+    }
+    assertEquals(new HashSet<Identifier<?, ?>>(originals), map.keySet());
+
+    // Keys of other types are held as they are.
+    final Identifier<BigInteger, BigInteger> big = new Identifier<BigInteger, BigInteger>(IdType.valueOf(BigInteger.class, "big", null), BigInteger.ONE);
+    map.clear();
+    map.put(big, Boolean.TRUE);
+    assertSame(big, map.keySet().iterator().next());
+  }
+
+  private static final Identifier<?, ?> randomKey(final Random random) {
+    final int n = random.nextInt(500);
+    switch (random.nextInt(8)) {
+    case 0:
+      return LongIdentifier.valueOf(LongIdType.<Long>valueOf(random.nextBoolean() ? "a" : "b"), n);
+    case 1:
+      return new Identifier<Long, Long>(LongIdType.<Long>valueOf("a"), Long.valueOf(n));
+    case 2:
+      return IntIdentifier.valueOf(IntegerIdType.<Integer>valueOf("a"), n);
+    case 3:
+      return new Identifier<Integer, Integer>(IntegerIdType.<Integer>valueOf("a"), Integer.valueOf(n));
+    case 4:
+      return new StringId<String>("a", String.valueOf(n));
+    case 5:
+      return new Identifier<String, String>(StringIdType.<String>valueOf("a"), String.valueOf(n));
+    case 6:
+      return new Identifier<BigInteger, BigInteger>(IdType.valueOf(BigInteger.class, "big", null), BigInteger.valueOf(n));
+    default:
+      return new SubclassIdentifier(StringIdType.<String>valueOf("a"), String.valueOf(n));
+    }
+  }
+
+  private static final class SubclassIdentifier extends Identifier<String, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private SubclassIdentifier(final IdType<String, String> idType, final String value) {
+      super(idType, value);
+    }
+
+  }
+
+}
@@ -0,0 +1,237 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import java.nio.charset.StandardCharsets;
+
+import java.text.ParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdentifierParser {
+
+  public TestCaseIdentifierParser() {
+    super();
+  }
+
+  @Test
+  public void testCanonicalRoundTrip() throws ParseException {
+    final List<Identifier<?, ?>> ids = sample();
+    final IdentifierParser parser = new IdentifierParser(idTypes(ids));
+    for (final Identifier<?, ?> id : ids) {
+      final String text = id.toString();
+      assertRoundTrip(id, parser.parse(text));
+      assertRoundTrip(id, parser.parse(new StringBuilder("xx").append(text).append("yy"), 2, text.length() + 2));
+      final char[] chars = ("xx" + text + "yy").toCharArray();
+      assertRoundTrip(id, parser.parse(chars, 2, text.length()));
+      final byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+      final byte[] bytes = new byte[utf8.length + 4];
+      System.arraycopy(utf8, 0, bytes, 2, utf8.length);
+      assertRoundTrip(id, parser.parse(bytes, 2, utf8.length));
+    }
+  }
+
+  @Test
+  public void testCompactRoundTrip() throws IOException, ParseException {
+    final List<Identifier<?, ?>> ids = sample();
+    final IdentifierParser parser = new IdentifierParser(idTypes(ids));
+    final StringWriter writer = new StringWriter();
+    final IdentifierFormatter formatter = new IdentifierFormatter(writer, 64, true);
+    formatter.writeAll(ids);
+    formatter.close();
+    final String[] lines = writer.toString().split("\n", -1);
+    assertEquals(ids.size() + 1, lines.length);
+    assertEquals("", lines[ids.size()]);
+    assertEquals("longs:-42", lines[3]);
+    for (int i = 0; i < ids.size(); i++) {
+      assertRoundTrip(ids.get(i), parser.parseCompact(lines[i]));
+      final byte[] bytes = lines[i].getBytes(StandardCharsets.UTF_8);
+      assertRoundTrip(ids.get(i), parser.parseCompact(bytes, 0, bytes.length));
+      final char[] chars = lines[i].toCharArray();
+      assertRoundTrip(ids.get(i), parser.parseCompact(chars, 0, chars.length));
+    }
+  }
+
+  @Test
+  public void testRegistry() throws ParseException {
+    final IdTypeRegistry registry = new IdTypeRegistry();
+    final IdentifierParser parser = new IdentifierParser(registry);
+    try {
+      parser.parseCompact("late:1");
+      fail();
+    } catch (final ParseException expected) {
+      assertEquals(0, expected.getErrorOffset());
+    }
+    final LongIdType<Long> late = registry.intern(new LongIdType<Long>("late"));
+    final Identifier<?, ?> id = parser.parseCompact("late:1");
+    assertEquals(new LongIdentifier<Long>(late, 1L), id);
+    assertSame(late, id.getIdType());
+  }
+
+  @Test
+  public void testClassFollowsIdType() throws ParseException {
+    final IdType<Long, Long> plainLongs = new IdType<Long, Long>(Long.class, "plainLongs");
+    final LongIdType<Long> longs = new LongIdType<Long>("longs");
+    final StringIdType<String> strings = new StringIdType<String>("strings");
+    final IdentifierParser parser = new IdentifierParser(Arrays.<IdType<?, ?>>asList(plainLongs, longs, strings));
+    assertSame(Identifier.class, parser.parseCompact("plainLongs:1").getClass());
+    assertSame(LongIdentifier.class, parser.parseCompact("longs:1").getClass());
+    assertSame(StringId.class, parser.parseCompact("strings:a").getClass());
+    // The text does not say which class was written, so an
+    // Identifier of a class other than the one its IdType implies
+    // does not parse back into an equal one.
+    final Identifier<Long, Long> plain = new Identifier<Long, Long>(longs, Long.valueOf(1L));
+    assertFalse(plain.equals(parser.parse(plain.toString())));
+  }
+
+  @Test
+  public void testAmbiguity() throws ParseException {
+    final IdType<String, String> plain = new IdType<String, String>(String.class, "order");
+    final IdType<String, String> extracting = new IdType<String, String>(String.class, "order", "year", new StringExtractor(0, 4));
+    final LongIdType<Long> longs = new LongIdType<Long>("order");
+    final IdentifierParser parser = new IdentifierParser(Arrays.<IdType<?, ?>>asList(plain, extracting, longs));
+    assertEquals(new LongIdentifier<Long>(longs, 5L), parser.parse(new LongIdentifier<Long>(longs, 5L).toString()));
+    assertParseFails(parser, "order (class java.lang.String): 2013", false, 0);
+    assertParseFails(parser, "order:5", true, 0);
+  }
+
+  @Test
+  public void testDelimitersInNames() throws ParseException {
+    final StringIdType<String> odd = new StringIdType<String>("a): b:c");
+    final IdentifierParser parser = new IdentifierParser(Arrays.<IdType<?, ?>>asList(odd));
+    final StringId<String> id = new StringId<String>(odd, "x): y:z");
+    assertEquals(id, parser.parse(id.toString()));
+    assertEquals(id, parser.parseCompact("a): b:c:x): y:z"));
+  }
+
+  @Test
+  public void testErrors() throws ParseException {
+    final LongIdType<Long> longs = new LongIdType<Long>("longs");
+    final IntegerIdType<Integer> ints = new IntegerIdType<Integer>("ints");
+    final IdType<java.math.BigInteger, Object> big = new IdType<java.math.BigInteger, Object>(java.math.BigInteger.class, "big");
+    final IdentifierParser parser = new IdentifierParser(Arrays.<IdType<?, ?>>asList(longs, ints, big));
+    assertEquals(Long.MIN_VALUE, ((LongIdentifier<?>)parser.parseCompact("longs:-9223372036854775808")).getLongValue());
+    assertEquals(Integer.MIN_VALUE, ((IntIdentifier<?>)parser.parseCompact("ints:-2147483648")).getIntValue());
+    assertParseFails(parser, "longs:9223372036854775808", true, 6);
+    assertParseFails(parser, "ints:2147483648", true, 5);
+    assertParseFails(parser, "ints:-2147483649", true, 5);
+    assertParseFails(parser, "ints:12x4", true, 7);
+    assertParseFails(parser, "ints:-", true, 6);
+    assertParseFails(parser, "ints:", true, 5);
+    assertParseFails(parser, "ints:+1", true, 5);
+    assertParseFails(parser, "big:1", true, 0);
+    assertParseFails(parser, "unknown:1", true, 0);
+    assertParseFails(parser, "longs (class java.lang.Long):1", false, 0);
+  }
+
+  private static final void assertParseFails(final IdentifierParser parser, final String text, final boolean compact, final int errorOffset) {
+    final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    final char[] chars = text.toCharArray();
+    for (int i = 0; i < 3; i++) {
+      try {
+        if (compact) {
+          switch (i) {
+          case 0:
+            parser.parseCompact(text);
+            break;
+          case 1:
+            parser.parseCompact(chars, 0, chars.length);
+            break;
+          default:
+            parser.parseCompact(bytes, 0, bytes.length);
+            break;
+          }
+        } else {
+          switch (i) {
+          case 0:
+            parser.parse(text);
+            break;
+          case 1:
+            parser.parse(chars, 0, chars.length);
+            break;
+          default:
+            parser.parse(bytes, 0, bytes.length);
+            break;
+          }
+        }
+        fail(text);
+      } catch (final ParseException expected) {
+        assertEquals(text, errorOffset, expected.getErrorOffset());
+      }
+    }
+  }
+
+  private static final void assertRoundTrip(final Identifier<?, ?> expected, final Identifier<?, ?> actual) {
+    assertSame(expected.getClass(), actual.getClass());
+    assertEquals(expected, actual);
+    assertSame(expected.getIdType(), actual.getIdType());
+  }
+
+  private static final List<IdType<?, ?>> idTypes(final List<Identifier<?, ?>> ids) {
+    final List<IdType<?, ?>> idTypes = new ArrayList<IdType<?, ?>>();
+    for (final Identifier<?, ?> id : ids) {
+      if (!idTypes.contains(id.getIdType())) {
+        idTypes.add(id.getIdType());
+      }
+    }
+    return idTypes;
+  }
+
+  private static final List<Identifier<?, ?>> sample() {
+    final StringIdType<String> named = new StringIdType<String>("named");
+    final IdType<String, String> anonymous = new IdType<String, String>(String.class);
+    final LongIdType<Long> longs = new LongIdType<Long>("longs");
+    final IntegerIdType<Integer> ints = new IntegerIdType<Integer>("ints");
+    final IdType<String, String> unicode = new IdType<String, String>(String.class, "naïve €");
+    final List<Identifier<?, ?>> ids = new ArrayList<Identifier<?, ?>>();
+    ids.add(new StringId<String>(named, "abc"));
+    ids.add(new StringId<String>(named, ""));
+    ids.add(new Identifier<String, String>(anonymous, "a: b (c): d"));
+    ids.add(new LongIdentifier<Long>(longs, -42L));
+    ids.add(new LongIdentifier<Long>(longs, Long.MAX_VALUE));
+    ids.add(new IntIdentifier<Integer>(ints, 0));
+    ids.add(new IntIdentifier<Integer>(ints, Integer.MIN_VALUE));
+    ids.add(new Identifier<String, String>(unicode, "été 😀"));
+    // Plain Identifiers whose values are Longs and Integers.
+    final IdType<Long, Long> plainLongs = new IdType<Long, Long>(Long.class, "plainLongs");
+    final IdType<Integer, Integer> plainInts = new IdType<Integer, Integer>(Integer.class, "plainInts");
+    ids.add(new Identifier<Long, Long>(plainLongs, Long.valueOf(-7L)));
+    ids.add(new Identifier<Integer, Integer>(plainInts, Integer.valueOf(7)));
+    return ids;
+  }
+
+}
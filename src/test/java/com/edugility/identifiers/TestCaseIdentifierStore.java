@@ -0,0 +1,264 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.IOException;
+
+import java.nio.file.Path;
+
+import java.util.List;
+import java.util.Spliterator;
+
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdentifierStore {
+
+  @Rule
+  public final TemporaryFolder temporaryFolder;
+
+  public TestCaseIdentifierStore() {
+    super();
+    this.temporaryFolder = new TemporaryFolder();
+  }
+
+  @Test
+  public void testLongStore() throws IOException {
+    final Path directory = this.temporaryFolder.newFolder().toPath().resolve("longs");
+    final LongIdType<Long> idType = LongIdType.valueOf("seq");
+    IdentifierStore<Long, Long> store = new IdentifierStore<Long, Long>(directory, idType, 6);
+    try {
+      assertEquals(0L, store.size());
+      for (long i = 0L; i < 1000L; i++) {
+        assertEquals(i, store.appendLong(i * 31L - 500L));
+      }
+      assertEquals(1000L, store.append(LongIdentifier.valueOf(idType, 42L)));
+      assertEquals(1001L, store.append(Long.valueOf(-1L)));
+      assertEquals(1002L, store.size());
+      assertEquals(LongIdentifier.valueOf(idType, 7L * 31L - 500L), store.get(7L));
+      assertEquals(42L, store.getLong(1000L));
+      assertEquals(Long.valueOf(-1L), store.getValue(1001L));
+    } finally {
+      store.close();
+    }
+
+    // Reopen.
+    store = new IdentifierStore<Long, Long>(directory, idType, 6);
+    try {
+      assertEquals(1002L, store.size());
+      assertEquals(999L * 31L - 500L, store.getLong(999L));
+      store.appendLong(5L);
+      assertEquals(5L, store.getLong(1002L));
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testIntStore() throws IOException {
+    final Path directory = this.temporaryFolder.newFolder().toPath();
+    final IntegerIdType<Integer> idType = IntegerIdType.valueOf("seq");
+    final IdentifierStore<Integer, Integer> store = new IdentifierStore<Integer, Integer>(directory, idType, 6);
+    try {
+      store.appendInt(Integer.MIN_VALUE);
+      store.append(Integer.valueOf(3));
+      assertEquals(Integer.MIN_VALUE, store.getInt(0L));
+      assertEquals(IntIdentifier.valueOf(idType, 3), store.get(1L));
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testStringStore() throws IOException {
+    final Path directory = this.temporaryFolder.newFolder().toPath();
+    final StringIdType<String> idType = StringIdType.valueOf("glAccountIdType");
+    IdentifierStore<String, String> store = new IdentifierStore<String, String>(directory, idType, 5);
+    final String[] values = new String[] { "aaaabbbbccccdddd", "", "été", "😀", "0123456789012345678901234567890123456789012345678901234567890123456789" };
+    try {
+      for (int i = 0; i < 100; i++) {
+        store.append(values[i % values.length]);
+      }
+      final Identifier<String, String> id = store.get(2L);
+      assertSame(StringId.class, id.getClass());
+      assertEquals(new StringId<String>("glAccountIdType", values[2]), id);
+    } finally {
+      store.close();
+    }
+
+    // Reopen.
+    store = new IdentifierStore<String, String>(directory, idType, 5);
+    try {
+      assertEquals(100L, store.size());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(values[i % values.length], store.getValue(i));
+      }
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testClassPreserved() throws IOException {
+    final Path directory = this.temporaryFolder.newFolder().toPath();
+    final LongIdType<Long> idType = LongIdType.valueOf("seq");
+    IdentifierStore<Long, Long> store = new IdentifierStore<Long, Long>(directory, idType, 6);
+    final Identifier<Long, Long> plain = new Identifier<Long, Long>(idType, Long.valueOf(7L));
+    try {
+      for (long i = 0L; i < 200L; i++) {
+        store.append(i % 3L == 0L ? new Identifier<Long, Long>(idType, Long.valueOf(i)) : LongIdentifier.valueOf(idType, i));
+      }
+      store.appendLong(200L);
+      store.append(plain);
+      assertSame(Identifier.class, store.get(0L).getClass());
+      assertSame(LongIdentifier.class, store.get(1L).getClass());
+      assertSame(LongIdentifier.class, store.get(200L).getClass());
+      assertEquals(plain, store.get(201L));
+    } finally {
+      store.close();
+    }
+
+    // Reopen.
+    store = new IdentifierStore<Long, Long>(directory, idType, 6);
+    try {
+      for (long i = 0L; i < 200L; i++) {
+        assertSame(i % 3L == 0L ? Identifier.class : LongIdentifier.class, store.get(i).getClass());
+      }
+    } finally {
+      store.close();
+    }
+
+    // A plain IdType yields plain Identifiers unless told otherwise.
+    final IdType<Integer, Integer> plainIdType = new IdType<Integer, Integer>(Integer.class, "plainInts");
+    final IdentifierStore<Integer, Integer> intStore = new IdentifierStore<Integer, Integer>(this.temporaryFolder.newFolder().toPath(), plainIdType, 6);
+    try {
+      intStore.appendInt(1);
+      intStore.append(new IntIdentifier<Integer>(plainIdType, 2));
+      assertSame(Identifier.class, intStore.get(0L).getClass());
+      assertSame(IntIdentifier.class, intStore.get(1L).getClass());
+    } finally {
+      intStore.close();
+    }
+
+    final StringIdType<String> stringIdType = StringIdType.valueOf("glAccountIdType");
+    final IdentifierStore<String, String> stringStore = new IdentifierStore<String, String>(this.temporaryFolder.newFolder().toPath(), stringIdType, 5);
+    try {
+      stringStore.append(new Identifier<String, String>(stringIdType, "a"));
+      stringStore.append("b");
+      assertEquals(new Identifier<String, String>(stringIdType, "a"), stringStore.get(0L));
+      assertSame(StringId.class, stringStore.get(1L).getClass());
+    } finally {
+      stringStore.close();
+    }
+  }
+
+  @Test
+  public void testUnflushedRowsAreDropped() throws IOException {
+    final Path directory = this.temporaryFolder.newFolder().toPath();
+    final LongIdType<Long> idType = LongIdType.valueOf("seq");
+    final IdentifierStore<Long, Long> crashed = new IdentifierStore<Long, Long>(directory, idType, 6);
+    crashed.appendLong(1L);
+    crashed.flush();
+    crashed.append(new Identifier<Long, Long>(idType, Long.valueOf(2L)));
+    assertEquals(2L, crashed.size());
+
+    // Open the directory again without closing, as if the process
+    // had died.
+    final IdentifierStore<Long, Long> store = new IdentifierStore<Long, Long>(directory, idType, 6);
+    try {
+      assertEquals(1L, store.size());
+      store.appendLong(3L);
+      assertEquals(3L, store.getLong(1L));
+      assertSame(LongIdentifier.class, store.get(1L).getClass());
+    } finally {
+      try {
+        store.close();
+      } finally {
+        crashed.close();
+      }
+    }
+  }
+
+  @Test
+  public void testParallelStream() throws IOException {
+    final Path directory = this.temporaryFolder.newFolder().toPath();
+    final LongIdType<Long> idType = LongIdType.valueOf("seq");
+    final IdentifierStore<Long, Long> store = new IdentifierStore<Long, Long>(directory, idType, 10);
+    try {
+      for (long i = 0L; i < 100000L; i++) {
+        store.appendLong(i);
+      }
+      final Spliterator<Identifier<Long, Long>> spliterator = store.spliterator();
+      final Spliterator<Identifier<Long, Long>> prefix = spliterator.trySplit();
+      assertNotNull(prefix);
+      assertEquals(100000L, prefix.estimateSize() + spliterator.estimateSize());
+
+      long sum = 0L;
+      for (final Identifier<Long, Long> id : store.parallelStream().collect(Collectors.<Identifier<Long, Long>>toList())) {
+        sum += id.getValue().longValue();
+      }
+      assertEquals(100000L * 99999L / 2L, sum);
+      final List<Identifier<Long, Long>> ordered = store.parallelStream().skip(99998L).collect(Collectors.<Identifier<Long, Long>>toList());
+      assertEquals(2, ordered.size());
+      assertEquals(Long.valueOf(99998L), ordered.get(0).getValue());
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testWrongIdType() throws IOException {
+    final Path directory = this.temporaryFolder.newFolder().toPath();
+    new IdentifierStore<Long, Long>(directory, LongIdType.<Long>valueOf("seq")).close();
+    try {
+      new IdentifierStore<Long, Long>(directory, LongIdType.<Long>valueOf("other"));
+      fail();
+    } catch (final IllegalArgumentException expected) {
+
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testRowOutOfRange() throws IOException {
+    final Path directory = this.temporaryFolder.newFolder().toPath();
+    final IdentifierStore<Long, Long> store = new IdentifierStore<Long, Long>(directory, LongIdType.<Long>valueOf("seq"), 6);
+    try {
+      store.appendLong(1L);
+      store.getLong(1L);
+    } finally {
+      store.close();
+    }
+  }
+
+}
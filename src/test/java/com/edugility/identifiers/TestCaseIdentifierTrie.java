@@ -0,0 +1,238 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdentifierTrie {
+
+  public TestCaseIdentifierTrie() {
+    super();
+  }
+
+  @Test
+  public void testAgainstTreeSet() {
+    final StringIdType<String> idType = StringIdType.valueOf("trie");
+    final IdentifierTrie<String> trie = new IdentifierTrie<String>(idType);
+    final TreeSet<String> expected = new TreeSet<String>();
+    final Random random = new Random(15L);
+    for (int i = 0; i < 20000; i++) {
+      final String value = randomValue(random);
+      if (random.nextInt(4) == 0) {
+        assertEquals(expected.remove(value), trie.remove(value));
+      } else {
+        assertEquals(expected.add(value), trie.add(value));
+      }
+      assertEquals(expected.size(), trie.size());
+    }
+    assertEquals(new ArrayList<String>(expected), values(trie));
+    for (int i = 0; i < 500; i++) {
+      final String prefix = randomValue(random);
+      final List<String> matches = new ArrayList<String>();
+      for (final String value : expected) {
+        if (value.startsWith(prefix)) {
+          matches.add(value);
+        }
+      }
+      assertEquals(prefix, matches, values(trie.withPrefix(prefix)));
+      assertEquals(prefix, matches.size(), trie.countWithPrefix(prefix));
+      assertEquals(expected.contains(prefix), trie.contains(prefix));
+
+      String from = randomValue(random);
+      String to = randomValue(random);
+      if (from.compareTo(to) > 0) {
+        final String temp = from;
+        from = to;
+        to = temp;
+      }
+      assertEquals(from + ".." + to, new ArrayList<String>(expected.subSet(from, to)), values(trie.range(from, to)));
+      assertEquals(new ArrayList<String>(expected.tailSet(from)), values(trie.range(from, null)));
+      assertEquals(new ArrayList<String>(expected.headSet(to)), values(trie.range(null, to)));
+    }
+
+    final IdentifierTrie<String> built = IdentifierTrie.build(idType, expected.stream());
+    assertEquals(expected.size(), built.size());
+    assertEquals(new ArrayList<String>(expected), values(built));
+    for (final String value : expected) {
+      assertTrue(built.contains(value));
+    }
+    assertTrue(built.add("zzzz"));
+    assertTrue(built.contains("zzzz"));
+  }
+
+  @Test
+  public void testEmptyAndIdentifiers() {
+    final StringIdType<String> idType = StringIdType.valueOf("trie");
+    final IdentifierTrie<String> trie = IdentifierTrie.build(idType, Arrays.asList("", "a", "a", "ab", "b"));
+    assertEquals(4, trie.size());
+    assertTrue(trie.contains(""));
+    assertEquals(Arrays.asList("", "a", "ab", "b"), values(trie));
+    final Identifier<String, String> first = trie.iterator().next();
+    assertSame(StringId.class, first.getClass());
+    assertTrue(trie.contains(new Identifier<String, String>(idType, "ab")));
+    assertFalse(trie.contains(new Identifier<String, String>(StringIdType.<String>valueOf("other"), "ab")));
+    assertTrue(trie.remove(new StringId<String>(idType, "")));
+    assertEquals(Arrays.asList("a", "ab", "b"), values(trie));
+    assertFalse(trie.withPrefix("c").iterator().hasNext());
+
+    // Characters beyond Latin-1 widen the label storage.
+    assertTrue(trie.add("a\u4e00"));
+    assertTrue(trie.add("a\u00ff"));
+    assertEquals(Arrays.asList("a", "ab", "a\u00ff", "a\u4e00", "b"), values(trie));
+    assertEquals(4, trie.countWithPrefix("a"));
+    assertTrue(trie.contains("a\u4e00"));
+  }
+
+  @Test
+  public void testIdentifierClassFollowsIdType() {
+    final StringIdType<String> idType = StringIdType.valueOf("trie");
+    final IdentifierTrie<String> trie = new IdentifierTrie<String>(idType);
+    final Identifier<String, String> plain = new Identifier<String, String>(idType, "a");
+    assertTrue(trie.add(plain));
+    assertFalse(trie.add(new StringId<String>(idType, "a")));
+    assertTrue(trie.contains(plain));
+    final Identifier<String, String> returned = trie.iterator().next();
+    assertSame(StringId.class, returned.getClass());
+    assertFalse(plain.equals(returned));
+    assertEquals(plain.getValue(), returned.getValue());
+
+    final IdType<String, String> plainIdType = new IdType<String, String>(String.class, "plainStrings");
+    final IdentifierTrie<String> plainTrie = IdentifierTrie.build(plainIdType, Arrays.asList("a"));
+    assertEquals(new Identifier<String, String>(plainIdType, "a"), plainTrie.iterator().next());
+  }
+
+  @Test
+  public void testAddAfterBuild() {
+    final StringIdType<String> idType = StringIdType.valueOf("trie");
+    // Building trims the node arrays to a single node, the root.
+    final IdentifierTrie<String> empty = IdentifierTrie.build(idType, Collections.<String>emptyList());
+    assertTrue(empty.add("a"));
+    assertTrue(empty.add("ab"));
+    assertEquals(Arrays.asList("a", "ab"), values(empty));
+    final IdentifierTrie<String> onlyEmpty = IdentifierTrie.build(idType, Arrays.asList(""));
+    assertTrue(onlyEmpty.add("a"));
+    assertEquals(2, onlyEmpty.size());
+    assertEquals(Arrays.asList("", "a"), values(onlyEmpty));
+  }
+
+  @Test
+  public void testRemoveFreesNodes() {
+    final StringIdType<String> idType = StringIdType.valueOf("trie");
+    final IdentifierTrie<String> trie = new IdentifierTrie<String>(idType);
+    trie.add("abc");
+    trie.add("abd");
+    trie.add("x");
+    assertTrue(trie.toString().endsWith("(3 values, 5 nodes)"));
+    // "abd" and "x" each free a leaf; "abc" then frees the rest.
+    trie.remove("abd");
+    trie.remove("x");
+    assertTrue(trie.toString().endsWith("(1 values, 3 nodes)"));
+    trie.remove("abc");
+    assertTrue(trie.toString().endsWith("(0 values, 1 nodes)"));
+    assertFalse(trie.iterator().hasNext());
+    for (int i = 0; i < 100; i++) {
+      trie.add("abc");
+      trie.add("abd");
+      trie.remove("abc");
+      trie.remove("abd");
+    }
+    assertTrue(trie.toString().endsWith("(0 values, 1 nodes)"));
+    trie.add("abd");
+    trie.add("ab");
+    assertEquals(Arrays.asList("ab", "abd"), values(trie));
+    assertTrue(trie.toString().endsWith("(2 values, 3 nodes)"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBuildUnsorted() {
+    IdentifierTrie.build(StringIdType.<String>valueOf("trie"), Arrays.asList("b", "a"));
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void testFailFast() {
+    final IdentifierTrie<String> trie = IdentifierTrie.build(StringIdType.<String>valueOf("trie"), Arrays.asList("a", "b"));
+    final Iterator<Identifier<String, String>> iterator = trie.iterator();
+    iterator.next();
+    trie.add("c");
+    iterator.hasNext();
+  }
+
+  @Test
+  public void testPrefixesAreShared() {
+    final StringIdType<String> idType = StringIdType.valueOf("glAccount");
+    final List<String> values = new ArrayList<String>();
+    int length = 0;
+    for (int i = 0; i < 10000; i++) {
+      final String value = String.format("%04d-%04d-%06d", i / 1000, i / 100 % 10 * 37, i);
+      values.add(value);
+      length += value.length();
+    }
+    final IdentifierTrie<String> trie = IdentifierTrie.build(idType, values);
+    assertEquals(values.size(), trie.size());
+    // Each value's first ten characters are shared with at least
+    // ninety-nine others, and its last six are its own.
+    assertTrue(trie.getLabelLength() <= values.size() * 6 + (values.size() / 100) * 10 + 10 * 10);
+    assertTrue(trie.getLabelLength() < length / 2);
+    // Adding a value that is already present stores nothing.
+    final int labelLength = trie.getLabelLength();
+    assertFalse(trie.add(values.get(500)));
+    assertEquals(labelLength, trie.getLabelLength());
+    assertTrue(trie.add("0000-0000-999999"));
+    assertEquals(labelLength + 6, trie.getLabelLength());
+  }
+
+  private static final String randomValue(final Random random) {
+    final int length = random.nextInt(7);
+    final char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = "ab\u00ff".charAt(random.nextInt(3));
+    }
+    return new String(chars);
+  }
+
+  private static final List<String> values(final Iterable<Identifier<String, String>> ids) {
+    final List<String> returnValue = new ArrayList<String>();
+    for (final Identifier<String, String> id : ids) {
+      returnValue.add(id.getValue());
+    }
+    return returnValue;
+  }
+
+}
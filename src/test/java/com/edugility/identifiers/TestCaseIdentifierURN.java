@@ -0,0 +1,150 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.lang.ref.WeakReference;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import java.text.ParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdentifierURN {
+
+  public TestCaseIdentifierURN() {
+    super();
+  }
+
+  @Test
+  public void testRendering() throws URISyntaxException {
+    final StringIdType<String> order = new StringIdType<String>("order");
+    assertEquals("urn:order:ORD-2013-0001", new StringId<String>(order, "ORD-2013-0001").toURN().toString());
+    assertEquals("urn:order:a:b/c@d!$&'()*+,;=-._~", new StringId<String>(order, "a:b/c@d!$&'()*+,;=-._~").toURN().toString());
+    assertEquals("urn:order:a%20b%3Fc%23d%25e", new StringId<String>(order, "a b?c#d%e").toURN().toString());
+    assertEquals("urn:order:%C3%A9%E2%82%AC%F0%9F%98%80%3F", new StringId<String>(order, "é€😀\ud83d").toURN().toString());
+    assertEquals("urn:a%3Ab%2Fc%20d:x", new IdType<String, String>(String.class, "a:b/c d").toURN("x").toString());
+    assertEquals("urn::x", new IdType<String, String>(String.class).toURN("x").toString());
+    assertEquals("urn:longs:-42", new LongIdentifier<Long>(new LongIdType<Long>("longs"), -42L).toURN().toString());
+    assertNull(new IdType<String, String>(String.class).toURN((String)null));
+
+    // The default toURI() cannot cope with the same value.
+    try {
+      new StringId<String>(order, "a b").toURI();
+      fail();
+    } catch (final URISyntaxException expected) {
+
+    }
+
+    // Java's own decoding agrees with the encoding.
+    final URI urn = new StringId<String>(order, "a b/é:?").toURN();
+    assertEquals("order:a b/é:?", urn.getSchemeSpecificPart());
+  }
+
+  @Test
+  public void testCache() {
+    final StringIdType<String> order = new StringIdType<String>("order");
+    final StringId<String> id = new StringId<String>(order, "a b");
+    final URI urn = id.toURN();
+    assertSame(urn, id.toURN());
+    // Equal but distinct Identifiers share cached URNs.
+    assertSame(urn, new StringId<String>(order, new String("a b")).toURN());
+    // Unequal Identifiers do not, even if they collide.
+    for (int i = 0; i < 10000; i++) {
+      final String value = "v" + i;
+      assertEquals("urn:order:" + value, new StringId<String>(order, value).toURN().toString());
+    }
+
+    // The cache is keyed by value, so a LongIdentifier and a plain
+    // Identifier with equal values share a URN.
+    final LongIdType<Long> seq = new LongIdType<Long>("seq");
+    final URI longUrn = LongIdentifier.valueOf(seq, 123456789L).toURN();
+    assertSame(longUrn, new Identifier<Long, Long>(seq, Long.valueOf(123456789L)).toURN());
+    assertEquals("urn:seq:123456789", longUrn.toString());
+  }
+
+  @Test
+  public void testCacheDoesNotRetainIdentifiers() throws InterruptedException {
+    final StringIdType<String> order = new StringIdType<String>("order");
+    StringId<String> id = new StringId<String>(order, "retained?");
+    final URI urn = id.toURN();
+    final WeakReference<StringId<String>> reference = new WeakReference<StringId<String>>(id);
+    id = null;
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10L);
+    }
+    assertNull(reference.get());
+    assertSame(urn, new StringId<String>(order, "retained?").toURN());
+  }
+
+  @Test
+  public void testParseURI() throws ParseException {
+    final StringIdType<String> order = new StringIdType<String>("order");
+    final IdType<String, String> odd = new IdType<String, String>(String.class, "a:b/c d");
+    final IdType<String, String> anonymous = new IdType<String, String>(String.class);
+    final LongIdType<Long> longs = new LongIdType<Long>("longs");
+    final IntegerIdType<Integer> ints = new IntegerIdType<Integer>("ints");
+    final IdentifierParser parser = new IdentifierParser(Arrays.<IdType<?, ?>>asList(order, odd, anonymous, longs, ints));
+    final List<Identifier<?, ?>> ids = new ArrayList<Identifier<?, ?>>();
+    ids.add(new StringId<String>(order, "ORD-1"));
+    ids.add(new StringId<String>(order, "a b?c#d%e:f/g"));
+    ids.add(new StringId<String>(order, ""));
+    ids.add(new Identifier<String, String>(odd, "é€😀"));
+    ids.add(new Identifier<String, String>(anonymous, "x:y"));
+    ids.add(new LongIdentifier<Long>(longs, Long.MIN_VALUE));
+    ids.add(new IntIdentifier<Integer>(ints, 7));
+    for (final Identifier<?, ?> id : ids) {
+      final Identifier<?, ?> copy = parser.parseURI(id.toURN());
+      assertEquals(id, copy);
+      assertSame(id.getIdType(), copy.getIdType());
+    }
+
+    assertParseFails(parser, "http://example.com/x", 0);
+    assertParseFails(parser, "urn:order", 9);
+    assertParseFails(parser, "urn:nobody:x", 4);
+    assertParseFails(parser, "urn:longs:12x", 12);
+  }
+
+  private static final void assertParseFails(final IdentifierParser parser, final String uri, final int errorOffset) {
+    try {
+      parser.parseURI(URI.create(uri));
+      fail(uri);
+    } catch (final ParseException expected) {
+      assertEquals(uri, errorOffset, expected.getErrorOffset());
+    }
+  }
+
+}
@@ -0,0 +1,196 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseIdentifierView {
+
+  public TestCaseIdentifierView() {
+    super();
+  }
+
+  @Test
+  public void testLongView() {
+    final LongIdType<Long> idType = LongIdType.valueOf("seq");
+    final ByteBuffer buffer = ByteBuffer.allocate(24);
+    buffer.putLong(0, 1L).putLong(8, -5L).putLong(16, Long.MAX_VALUE);
+    final IdentifierView<Long, Long> view = new IdentifierView<Long, Long>(idType);
+    final Map<Identifier<Long, Long>, String> map = new HashMap<Identifier<Long, Long>, String>();
+    map.put(LongIdentifier.valueOf(idType, -5L), "minus five");
+    for (int i = 0; i < 3; i++) {
+      view.wrap(buffer, i * 8);
+      final Identifier<Long, Long> id = view.toIdentifier();
+      assertSame(LongIdentifier.class, id.getClass());
+      assertEquals(id.hashCode(), view.hashCode());
+      assertTrue(view.equals(id));
+      final Identifier<Long, Long> plain = new Identifier<Long, Long>(idType, id.getValue());
+      assertFalse(view.equals(plain));
+      assertFalse(id.equals(plain));
+      assertFalse(id.equals(view));
+    }
+    assertEquals(Long.MAX_VALUE, view.getLongValue());
+    assertEquals("minus five", map.get(view.wrap(buffer, 8)));
+    assertFalse(view.equals(LongIdentifier.valueOf(LongIdType.<Long>valueOf("other"), -5L)));
+  }
+
+  @Test
+  public void testIntView() {
+    final IntegerIdType<Integer> idType = IntegerIdType.valueOf("seq");
+    final ByteBuffer buffer = ByteBuffer.allocate(8);
+    buffer.putInt(4, 42);
+    final IdentifierView<Integer, Integer> view = new IdentifierView<Integer, Integer>(idType).wrap(buffer, 4);
+    assertEquals(42, view.getIntValue());
+    assertEquals(IntIdentifier.valueOf(idType, 42).hashCode(), view.hashCode());
+    assertTrue(view.equals(IntIdentifier.valueOf(idType, 42)));
+    assertEquals(Integer.valueOf(42), view.getValue());
+  }
+
+  @Test
+  public void testStringView() {
+    final StringIdType<String> idType = new StringIdType<String>("glAccountIdType", Collections.singletonMap("first", new StringExtractor(0, 4)));
+    final String[] values = new String[] { "aaaabbbbccccdddd", "", "été", "日本語", "a😀b" };
+    final ByteBuffer buffer = ByteBuffer.allocate(256);
+    final int[] offsets = new int[values.length + 1];
+    for (int i = 0; i < values.length; i++) {
+      buffer.put(values[i].getBytes(StandardCharsets.UTF_8));
+      offsets[i + 1] = buffer.position();
+    }
+    final IdentifierView<String, String> view = new IdentifierView<String, String>(idType);
+    final IdentifierView<String, String> other = new IdentifierView<String, String>(idType);
+    for (int i = 0; i < values.length; i++) {
+      view.wrap(buffer, offsets[i], offsets[i + 1] - offsets[i]);
+      final Identifier<String, String> id = new StringId<String>(idType, values[i]);
+      assertEquals(id.hashCode(), view.hashCode());
+      assertTrue(view.equals(id));
+      assertFalse(view.equals(new Identifier<String, String>(idType, values[i])));
+      assertTrue(view.equals(view.toIdentifier()));
+      assertEquals(values[i], view.getValue());
+      assertTrue(view.equals(other.wrap(buffer, offsets[i], offsets[i + 1] - offsets[i])));
+      assertFalse(view.equals(new StringId<String>(idType, values[i] + "x")));
+    }
+    view.wrap(buffer, offsets[0], offsets[1]);
+    assertEquals("aaaa", view.extractFrom("first"));
+    assertSame(view.getValue(), view.getValue());
+    assertSame(StringId.class, view.toIdentifier().getClass());
+  }
+
+  @Test
+  public void testMalformedString() {
+    final IdType<String, String> idType = new IdType<String, String>(String.class, "bad");
+    final byte[] bytes = new byte[] { 'a', (byte)0xC0, (byte)0xAF, 'b', (byte)0xE2, (byte)0x82 };
+    final String decoded = new String(bytes, StandardCharsets.UTF_8);
+    final IdentifierView<String, String> view = new IdentifierView<String, String>(idType).wrap(ByteBuffer.wrap(bytes), 0, bytes.length);
+    assertEquals(new Identifier<String, String>(idType, decoded).hashCode(), view.hashCode());
+    assertTrue(view.equals(new Identifier<String, String>(idType, decoded)));
+  }
+
+  @Test
+  public void testPlainIdType() {
+    final IdType<Long, Long> idType = new IdType<Long, Long>(Long.class, "plainLongs");
+    final ByteBuffer buffer = ByteBuffer.allocate(8).putLong(0, 3L);
+    final IdentifierView<Long, Long> view = new IdentifierView<Long, Long>(idType).wrap(buffer, 0);
+    final Identifier<Long, Long> id = view.toIdentifier();
+    assertSame(Identifier.class, id.getClass());
+    assertEquals(new Identifier<Long, Long>(idType, Long.valueOf(3L)), id);
+    assertEquals(id.hashCode(), view.hashCode());
+    assertTrue(view.equals(id));
+    assertFalse(view.equals(new LongIdentifier<Long>(idType, 3L)));
+  }
+
+  @Test
+  public void testByteOrder() {
+    final LongIdType<Long> idType = LongIdType.valueOf("seq");
+    final ByteBuffer big = ByteBuffer.allocate(8).putLong(0, 0x0102030405060708L);
+    final ByteBuffer little = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, 0x0102030405060708L);
+    final IdentifierView<Long, Long> bigView = new IdentifierView<Long, Long>(idType).wrap(big, 0);
+    final IdentifierView<Long, Long> littleView = new IdentifierView<Long, Long>(idType).wrap(little, 0);
+    assertTrue(bigView.equals(littleView));
+    assertEquals(bigView.hashCode(), littleView.hashCode());
+    final ByteBuffer same = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).put(big.array());
+    assertFalse(bigView.equals(littleView.wrap(same, 0)));
+  }
+
+  @Test
+  public void testPrimitiveExtraction() {
+    final Map<Object, Extractor<Long, Long>> extractors = new HashMap<Object, Extractor<Long, Long>>();
+    extractors.put("high", (LongToLongExtractor)v -> v >>> 32);
+    extractors.put("boxed", (Extractor<Long, Long>)v -> Long.valueOf(v.longValue() & 0xFFL));
+    final LongIdType<Long> idType = new LongIdType<Long>("packed", extractors);
+    final ByteBuffer buffer = ByteBuffer.allocate(16).putLong(0, (7L << 32) | 9L).putLong(8, 5L << 32);
+    final IdentifierView<Long, Long> view = new IdentifierView<Long, Long>(idType);
+    final ExtractorHandle<Long, Long> high = idType.getExtractorHandle("high");
+    for (int i = 0; i < 2; i++) {
+      view.wrap(buffer, i * 8);
+      final Identifier<Long, Long> id = view.toIdentifier();
+      assertEquals(id.extractLong("high"), view.extractLong("high"));
+      assertEquals(id.extractInt(high), view.extractInt(high));
+      assertEquals(id.extractLong("boxed"), view.extractLong("boxed"));
+    }
+
+    final IntegerIdType<Integer> intIdType = new IntegerIdType<Integer>("packed", Collections.<Object, Extractor<Integer, Integer>>singletonMap("high", (IntToIntExtractor)v -> v >>> 16));
+    final IdentifierView<Integer, Integer> intView = new IdentifierView<Integer, Integer>(intIdType).wrap(ByteBuffer.allocate(4).putInt(0, 3 << 16), 0);
+    assertEquals(3, intView.extractInt("high"));
+
+    final StringIdType<Long> stringIdType = new StringIdType<Long>("lengths", Collections.<Object, Extractor<String, Long>>singletonMap("length", new CharSequenceToLongExtractor<String>() {
+        private static final long serialVersionUID = 1L;
+        @Override
+        public final long extractLong(final CharSequence value) {
+          return value.length();
+        }
+      }));
+    final byte[] bytes = "été".getBytes(StandardCharsets.UTF_8);
+    final IdentifierView<String, Long> stringView = new IdentifierView<String, Long>(stringIdType).wrap(ByteBuffer.wrap(bytes), 0, bytes.length);
+    assertEquals(3L, stringView.extractLong("length"));
+
+    try {
+      view.extractLong("missing");
+      fail();
+    } catch (final NoSuchElementException expected) {
+
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnwrapped() {
+    new IdentifierView<Long, Long>(LongIdType.<Long>valueOf("seq")).getLongValue();
+  }
+
+}
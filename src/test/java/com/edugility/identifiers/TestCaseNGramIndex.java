@@ -0,0 +1,163 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseNGramIndex {
+
+  public TestCaseNGramIndex() {
+    super();
+  }
+
+  @Test
+  public void testAgainstScan() {
+    for (int n = 2; n <= 3; n++) {
+      final NGramIndex<String> index = new NGramIndex<String>(StringIdType.<String>valueOf("ngram"), n);
+      final Set<String> expected = new LinkedHashSet<String>();
+      final Random random = new Random(16L + n);
+      for (int i = 0; i < 20000; i++) {
+        final String value = randomValue(random, 9);
+        // Remove often enough that the index compacts itself.
+        if (random.nextInt(5) < 2) {
+          assertEquals(expected.remove(value), index.remove(value));
+        } else {
+          assertEquals(expected.add(value), index.add(value));
+        }
+        assertEquals(expected.size(), index.size());
+      }
+      for (final String value : expected) {
+        assertTrue(value, index.contains(value));
+      }
+      assertFalse(index.contains("zzz"));
+      for (int i = 0; i < 300; i++) {
+        final String fragment = randomValue(random, 5);
+        final List<String> matches = new ArrayList<String>();
+        for (final String value : expected) {
+          if (value.contains(fragment)) {
+            matches.add(value);
+          }
+        }
+        final List<String> found = values(index.findContaining(fragment));
+        assertEquals(fragment, new HashSet<String>(matches), new HashSet<String>(found));
+        assertEquals(fragment, matches.size(), found.size());
+        assertEquals(fragment, matches.size(), index.countContaining(fragment));
+      }
+    }
+  }
+
+  @Test
+  public void testParallelBuild() {
+    final StringIdType<String> idType = StringIdType.valueOf("ngram");
+    final Random random = new Random(16L);
+    final List<String> values = new ArrayList<String>();
+    for (int i = 0; i < 200000; i++) {
+      values.add(String.format("%s-%05d", randomValue(random, 4), random.nextInt(100000)));
+    }
+    values.add(values.get(0)); // a duplicate
+    final NGramIndex<String> built = NGramIndex.build(idType, values);
+    final TreeSet<String> expected = new TreeSet<String>(values);
+    assertEquals(expected.size(), built.size());
+    for (final String fragment : Arrays.asList("ab-0", "c-12", "99", "a", "-", "bca", "00000", "zz")) {
+      final List<String> matches = new ArrayList<String>();
+      for (final String value : expected) {
+        if (value.contains(fragment)) {
+          matches.add(value);
+        }
+      }
+      // Built values come back in order.
+      assertEquals(fragment, matches, values(built.findContaining(fragment)));
+    }
+    assertTrue(built.add("new-value"));
+    assertEquals(Collections.singletonList("new-value"), values(built.findContaining("new-")));
+    assertTrue(built.remove(new StringId<String>(idType, "new-value")));
+    assertEquals(0, built.countContaining("new-"));
+  }
+
+  @Test
+  public void testIdentifiers() {
+    final StringIdType<String> idType = StringIdType.valueOf("ngram");
+    final NGramIndex<String> index = NGramIndex.build(idType, Arrays.asList("aaaabbbbcccc", "aaaabbbbdddd", "x"));
+    final List<Identifier<String, String>> found = index.findContaining("bbcc");
+    assertEquals(1, found.size());
+    assertEquals(new StringId<String>(idType, "aaaabbbbcccc"), found.get(0));
+    assertTrue(index.contains("x"));
+    assertEquals(3, index.countContaining(""));
+    assertFalse(index.add(new Identifier<String, String>(idType, "x")));
+  }
+
+  @Test
+  public void testIdentifierClassFollowsIdType() {
+    final StringIdType<String> idType = StringIdType.valueOf("ngram");
+    final NGramIndex<String> index = new NGramIndex<String>(idType);
+    final Identifier<String, String> plain = new Identifier<String, String>(idType, "abcdef");
+    assertTrue(index.add(plain));
+    final Identifier<String, String> found = index.findContaining("bcd").get(0);
+    assertSame(StringId.class, found.getClass());
+    assertEquals(plain.getValue(), found.getValue());
+
+    final IdType<String, String> plainIdType = new IdType<String, String>(String.class, "plainStrings");
+    final NGramIndex<String> plainIndex = NGramIndex.build(plainIdType, Arrays.asList("abcdef"));
+    assertEquals(new Identifier<String, String>(plainIdType, "abcdef"), plainIndex.findContaining("bcd").get(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongIdType() {
+    new NGramIndex<String>(StringIdType.<String>valueOf("ngram")).add(new StringId<String>("other", "abc"));
+  }
+
+  private static final String randomValue(final Random random, final int maximumLength) {
+    final int length = random.nextInt(maximumLength);
+    final char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char)('a' + random.nextInt(3));
+    }
+    return new String(chars);
+  }
+
+  private static final List<String> values(final List<Identifier<String, String>> ids) {
+    final List<String> returnValue = new ArrayList<String>(ids.size());
+    for (final Identifier<String, String> id : ids) {
+      returnValue.add(id.getValue());
+    }
+    return returnValue;
+  }
+
+}
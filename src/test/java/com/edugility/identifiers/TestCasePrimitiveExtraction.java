@@ -0,0 +1,154 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCasePrimitiveExtraction {
+
+  public TestCasePrimitiveExtraction() {
+    super();
+  }
+
+  @Test
+  public void testLongExtraction() {
+    final Map<Object, Extractor<Long, Number>> extractors = new HashMap<Object, Extractor<Long, Number>>();
+    extractors.put("high", extractor((LongToLongExtractor)v -> v >>> 32));
+    extractors.put("low", extractor((LongToIntExtractor)v -> (int)v));
+    extractors.put("boxed", (Extractor<Long, Number>)v -> Long.valueOf(v.longValue() * 2L));
+    extractors.put("null", (Extractor<Long, Number>)v -> null);
+    final LongIdType<Number> idType = new LongIdType<Number>("packed", extractors);
+    final long value = (7L << 32) | 9L;
+
+    final LongIdentifier<Number> id = new LongIdentifier<Number>(idType, value);
+    assertEquals(7L, id.extractLong("high"));
+    assertEquals(9, id.extractInt("low"));
+    assertEquals(9L, id.extractLong("low"));
+    assertEquals(value * 2L, id.extractLong("boxed"));
+    assertEquals(7L, id.extractLong(idType.getExtractorHandle("high")));
+    assertEquals(9, id.extractInt(idType.getExtractorHandle("low")));
+    assertEquals(Long.valueOf(7L), id.extractFrom("high"));
+    assertEquals(Integer.valueOf(9), id.extractFrom("low"));
+
+    assertEquals(7L, idType.extractLong("high", value));
+    assertEquals(9, idType.extractInt("low", value));
+
+    final Number[] out = new Number[2];
+    idType.extractFrom("high", new long[] { value, 5L << 32 }, out);
+    assertArrayEquals(new Number[] { Long.valueOf(7L), Long.valueOf(5L) }, out);
+    idType.extractFrom("low", new long[] { value, 5L }, out);
+    assertArrayEquals(new Number[] { Integer.valueOf(9), Integer.valueOf(5) }, out);
+    idType.extractFrom("boxed", new long[] { 1L, 2L }, out);
+    assertArrayEquals(new Number[] { Long.valueOf(2L), Long.valueOf(4L) }, out);
+
+    // A plain Identifier holding a Long takes the same path.
+    final Identifier<Long, Number> plain = new Identifier<Long, Number>(idType, Long.valueOf(value));
+    assertEquals(7L, plain.extractLong("high"));
+    assertEquals(9, plain.extractInt("low"));
+
+    try {
+      id.extractInt("boxed");
+      fail();
+    } catch (final ArithmeticException expected) {
+
+    }
+    try {
+      id.extractLong("null");
+      fail();
+    } catch (final NoSuchElementException expected) {
+
+    }
+    try {
+      id.extractLong("missing");
+      fail();
+    } catch (final NoSuchElementException expected) {
+
+    }
+  }
+
+  @Test
+  public void testIntExtraction() {
+    final Map<Object, Extractor<Integer, Integer>> extractors = new HashMap<Object, Extractor<Integer, Integer>>();
+    extractors.put("high", (IntToIntExtractor)v -> v >>> 16);
+    extractors.put("boxed", (Extractor<Integer, Integer>)v -> Integer.valueOf(v.intValue() & 0xFFFF));
+    final IntegerIdType<Integer> idType = new IntegerIdType<Integer>("packed", extractors);
+    final int value = (3 << 16) | 5;
+
+    final IntIdentifier<Integer> id = new IntIdentifier<Integer>(idType, value);
+    assertEquals(3, id.extractInt("high"));
+    assertEquals(3L, id.extractLong("high"));
+    assertEquals(5, id.extractInt("boxed"));
+    assertEquals(Integer.valueOf(3), id.extractFrom("high"));
+    assertEquals(3, idType.extractInt("high", value));
+    assertEquals(5L, idType.extractLong("boxed", value));
+
+    final Integer[] out = new Integer[2];
+    idType.extractFrom("high", new int[] { value, 4 << 16 }, out);
+    assertArrayEquals(new Integer[] { Integer.valueOf(3), Integer.valueOf(4) }, out);
+    idType.extractFrom("boxed", new int[] { value, 6 }, out);
+    assertArrayEquals(new Integer[] { Integer.valueOf(5), Integer.valueOf(6) }, out);
+  }
+
+  @Test
+  public void testCharSequenceExtraction() {
+    final CharSequenceToLongExtractor<String> digits = new CharSequenceToLongExtractor<String>() {
+        private static final long serialVersionUID = 1L;
+        @Override
+        public final long extractLong(final CharSequence value) {
+          long returnValue = 0L;
+          for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+              returnValue = returnValue * 10L + (c - '0');
+            }
+          }
+          return returnValue;
+        }
+      };
+    final Map<Object, Extractor<String, Long>> extractors = new HashMap<Object, Extractor<String, Long>>();
+    extractors.put("digits", digits);
+    final StringIdType<Long> idType = new StringIdType<Long>("order", extractors);
+    final Identifier<String, Long> id = new Identifier<String, Long>(idType, "ORD-12-34");
+    assertEquals(1234L, id.extractLong("digits"));
+    assertEquals(1234, id.extractInt("digits"));
+    assertEquals(Long.valueOf(1234L), id.extractFrom("digits"));
+    assertNull(digits.extractFrom(null));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static final Extractor<Long, Number> extractor(final Extractor<Long, ? extends Number> extractor) {
+    return (Extractor<Long, Number>)extractor;
+  }
+
+}
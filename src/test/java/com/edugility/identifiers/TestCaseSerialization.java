@@ -0,0 +1,326 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseSerialization {
+
+  private static final int COUNT = 10000;
+
+  private final Logger logger;
+
+  public TestCaseSerialization() {
+    super();
+    this.logger = Logger.getLogger(this.getClass().getName());
+  }
+
+  @Test
+  public void testRoundTrip() throws ClassNotFoundException, IOException {
+    final IdType<String, String> idType = IdType.valueOf(String.class, "glAccountIdType", extractors());
+    final Identifier<String, String> id = new Identifier<String, String>(idType, "aaaabbbbccccdddd");
+    final Identifier<?, ?> copy = (Identifier<?, ?>)roundTrip(id);
+    assertEquals(id, copy);
+    assertSame(Identifier.class, copy.getClass());
+    assertSame(idType, copy.getIdType());
+
+    final StringId<String> stringId = new StringId<String>("glAccountIdType", "aaaabbbbccccdddd");
+    final Identifier<?, ?> stringIdCopy = (Identifier<?, ?>)roundTrip(stringId);
+    assertEquals(stringId, stringIdCopy);
+    assertSame(stringId.getIdType(), stringIdCopy.getIdType());
+
+    final LongIdentifier<Long> longId = LongIdentifier.valueOf(LongIdType.<Long>valueOf("seq"), Long.MIN_VALUE);
+    final Identifier<?, ?> longIdCopy = (Identifier<?, ?>)roundTrip(longId);
+    assertEquals(longId, longIdCopy);
+    assertSame(longId.getIdType(), longIdCopy.getIdType());
+
+    final IntIdentifier<Integer> intId = IntIdentifier.valueOf(IntegerIdType.<Integer>valueOf("seq"), 42);
+    final Identifier<?, ?> intIdCopy = (Identifier<?, ?>)roundTrip(intId);
+    assertEquals(intId, intIdCopy);
+    assertSame(intId.getIdType(), intIdCopy.getIdType());
+
+    final Identifier<Long, Long> boxedLongId = new Identifier<Long, Long>(LongIdType.<Long>valueOf("seq"), Long.valueOf(7L));
+    final Identifier<?, ?> boxedLongIdCopy = (Identifier<?, ?>)roundTrip(boxedLongId);
+    assertSame(Identifier.class, boxedLongIdCopy.getClass());
+    assertEquals(boxedLongId, boxedLongIdCopy);
+
+    final Identifier<Integer, Integer> boxedIntId = new Identifier<Integer, Integer>(IntegerIdType.<Integer>valueOf("seq"), Integer.valueOf(7));
+    assertEquals(boxedIntId, roundTrip(boxedIntId));
+  }
+
+  @Test
+  public void testWiderTypedRoundTrip() throws ClassNotFoundException, IOException {
+    final IdType<Number, Number> idType = new IdType<Number, Number>(Number.class, "number");
+    final Identifier<Number, Number> longId = new Identifier<Number, Number>(idType, Long.valueOf(37L));
+    assertEquals(longId, roundTrip(longId));
+    final Identifier<Number, Number> intId = new Identifier<Number, Number>(idType, Integer.valueOf(37));
+    assertEquals(intId, roundTrip(intId));
+  }
+
+  @Test
+  public void testIdTypeRoundTrip() throws ClassNotFoundException, IOException {
+    final Map<Object, Extractor<String, CharSequence>> sliceExtractors = new LinkedHashMap<Object, Extractor<String, CharSequence>>();
+    sliceExtractors.put(Integer.valueOf(1), new StringSliceExtractor(0, 2));
+    sliceExtractors.put("rest", new StringSliceExtractor(2, 4));
+    final IdType<String, CharSequence> sliceIdType = IdType.valueOf(String.class, null, sliceExtractors);
+    assertSame(sliceIdType, roundTrip(sliceIdType));
+
+    // A name too long for writeUTF.
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 30000; i++) {
+      sb.append('\u20ac');
+    }
+    final StringIdType<String> longName = StringIdType.valueOf(sb.toString());
+    assertSame(longName, roundTrip(longName));
+
+    // Extractors other than the ones that ship with this package are
+    // serialized normally.
+    final Map<Object, Extractor<Long, Long>> extractors = new LinkedHashMap<Object, Extractor<Long, Long>>();
+    extractors.put("self", new IdentityExtractor());
+    final LongIdType<Long> custom = IdTypeRegistry.getInstance().intern(new LongIdType<Long>("custom", extractors));
+    assertSame(custom, roundTrip(custom));
+  }
+
+  @Test
+  public void testSubclassesUseDefaultForm() throws ClassNotFoundException, IOException {
+    final DefaultFormIdType idType = new DefaultFormIdType(extractors());
+    final DefaultFormIdentifier id = new DefaultFormIdentifier(idType, "x");
+    final Identifier<?, ?> copy = (Identifier<?, ?>)roundTrip(id);
+    assertSame(DefaultFormIdentifier.class, copy.getClass());
+    assertSame(DefaultFormIdType.class, copy.getIdType().getClass());
+    assertEquals(id, copy);
+  }
+
+  @Test
+  public void testSizeAndThroughput() throws ClassNotFoundException, IOException {
+    final IdType<String, String> idType = IdType.valueOf(String.class, "glAccountIdType", extractors());
+    final IdType<String, String> defaultFormIdType = new DefaultFormIdType(extractors());
+    final LongIdType<Long> longIdType = LongIdType.valueOf("seq");
+
+    final List<Identifier<?, ?>> strings = new ArrayList<Identifier<?, ?>>(COUNT);
+    final List<Identifier<?, ?>> defaultFormStrings = new ArrayList<Identifier<?, ?>>(COUNT);
+    final List<Identifier<?, ?>> longs = new ArrayList<Identifier<?, ?>>(COUNT);
+    final List<Identifier<?, ?>> boxedLongs = new ArrayList<Identifier<?, ?>>(COUNT);
+    for (int i = 0; i < COUNT; i++) {
+      final String value = String.format("%016d", i);
+      strings.add(new Identifier<String, String>(idType, value));
+      defaultFormStrings.add(new DefaultFormIdentifier(defaultFormIdType, value));
+      longs.add(LongIdentifier.valueOf(longIdType, i));
+      boxedLongs.add(new Identifier<Long, Long>(longIdType, Long.valueOf(i)));
+    }
+
+    final int single = serialize(strings.get(0)).length;
+    final int defaultFormSingle = serialize(defaultFormStrings.get(0)).length;
+    this.logger.info(String.format("Serialized size of one Identifier<String>: %d bytes; %d bytes in the default form", single, defaultFormSingle));
+    assertTrue(single < defaultFormSingle);
+
+    final int many = serialize(strings).length;
+    final int defaultFormMany = serialize(defaultFormStrings).length;
+    this.logger.info(String.format("Serialized size of %d Identifier<String>s: %d bytes; %d bytes in the default form", COUNT, many, defaultFormMany));
+    assertTrue(many < defaultFormMany);
+
+    final int longsSize = serialize(longs).length;
+    final int boxedLongsSize = serialize(boxedLongs).length;
+    this.logger.info(String.format("Serialized size of %d LongIdentifiers: %d bytes; of %d Identifier<Long>s: %d bytes", COUNT, longsSize, COUNT, boxedLongsSize));
+    assertTrue(longsSize < many);
+
+    // Warm up both paths before timing either.
+    time(strings);
+    time(defaultFormStrings);
+    time(longs);
+    this.logger.info(String.format("Round trips of %d Identifier<String>s: %d ms; %d ms in the default form", COUNT, time(strings), time(defaultFormStrings)));
+    this.logger.info(String.format("Round trips of %d LongIdentifiers: %d ms", COUNT, time(longs)));
+  }
+
+  @Test
+  public void testPrimitiveFormsAreSmaller() throws ClassNotFoundException, IOException {
+    final LongIdType<Long> longIdType = LongIdType.valueOf("seq");
+    final IntegerIdType<Integer> intIdType = IntegerIdType.valueOf("port");
+
+    final List<Identifier<?, ?>> longs = new ArrayList<Identifier<?, ?>>(COUNT);
+    final List<Identifier<?, ?>> defaultFormLongs = new ArrayList<Identifier<?, ?>>(COUNT);
+    final List<Identifier<?, ?>> ints = new ArrayList<Identifier<?, ?>>(COUNT);
+    final List<Identifier<?, ?>> defaultFormInts = new ArrayList<Identifier<?, ?>>(COUNT);
+    for (int i = 0; i < COUNT; i++) {
+      longs.add(LongIdentifier.valueOf(longIdType, i));
+      defaultFormLongs.add(new DefaultFormLongIdentifier(longIdType, i));
+      ints.add(IntIdentifier.valueOf(intIdType, i));
+      defaultFormInts.add(new DefaultFormIntIdentifier(intIdType, i));
+    }
+
+    // A single LongIdentifier or IntIdentifier in its compact form
+    // avoids the class descriptors of both its own class and
+    // Identifier, with Identifier's unused value field.
+    final int longSingle = serialize(longs.get(0)).length;
+    final int defaultFormLongSingle = serialize(defaultFormLongs.get(0)).length;
+    this.logger.info(String.format("Serialized size of one LongIdentifier: %d bytes; %d bytes in the default form", longSingle, defaultFormLongSingle));
+    assertTrue(longSingle < defaultFormLongSingle);
+
+    final int intSingle = serialize(ints.get(0)).length;
+    final int defaultFormIntSingle = serialize(defaultFormInts.get(0)).length;
+    this.logger.info(String.format("Serialized size of one IntIdentifier: %d bytes; %d bytes in the default form", intSingle, defaultFormIntSingle));
+    assertTrue(intSingle < defaultFormIntSingle);
+
+    // In a stream of many, the descriptors are written once, but each
+    // instance in the default form still writes the null value.
+    final int longsSize = serialize(longs).length;
+    final int defaultFormLongsSize = serialize(defaultFormLongs).length;
+    this.logger.info(String.format("Serialized size of %d LongIdentifiers: %d bytes; %d bytes in the default form", COUNT, longsSize, defaultFormLongsSize));
+    assertTrue(defaultFormLongsSize - longsSize >= COUNT);
+
+    final int intsSize = serialize(ints).length;
+    final int defaultFormIntsSize = serialize(defaultFormInts).length;
+    this.logger.info(String.format("Serialized size of %d IntIdentifiers: %d bytes; %d bytes in the default form", COUNT, intsSize, defaultFormIntsSize));
+    assertTrue(defaultFormIntsSize - intsSize >= COUNT);
+
+    assertEquals(longs, roundTrip(longs));
+    assertEquals(ints, roundTrip(ints));
+  }
+
+  private static final long time(final Object object) throws ClassNotFoundException, IOException {
+    final long start = System.nanoTime();
+    for (int i = 0; i < 10; i++) {
+      roundTrip(object);
+    }
+    return (System.nanoTime() - start) / 1000000L;
+  }
+
+  private static final Map<Object, Extractor<String, String>> extractors() {
+    final Map<Object, Extractor<String, String>> extractors = new LinkedHashMap<Object, Extractor<String, String>>();
+    extractors.put("first", new StringExtractor(0, 4));
+    extractors.put("second", new StringExtractor(4, 8));
+    return extractors;
+  }
+
+  private static final byte[] serialize(final Object object) throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeObject(object);
+    oos.close();
+    return baos.toByteArray();
+  }
+
+  private static final Object roundTrip(final Object object) throws ClassNotFoundException, IOException {
+    final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialize(object)));
+    final Object returnValue = ois.readObject();
+    ois.close();
+    return returnValue;
+  }
+
+  private static final class IdentityExtractor implements Extractor<Long, Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Long extractFrom(final Long value) {
+      return value;
+    }
+
+    @Override
+    public int hashCode() {
+      return 1;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      return other instanceof IdentityExtractor;
+    }
+
+  }
+
+  /**
+   * An {@link IdType} that, being a subclass, is serialized in the
+   * default form, as all {@link IdType}s once were.
+   */
+  private static final class DefaultFormIdType extends IdType<String, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private DefaultFormIdType(final Map<Object, Extractor<String, String>> extractors) {
+      super(String.class, "glAccountIdType", extractors);
+    }
+
+  }
+
+  /**
+   * An {@link Identifier} that, being a subclass, is serialized in
+   * the default form.
+   */
+  private static final class DefaultFormIdentifier extends Identifier<String, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private DefaultFormIdentifier(final IdType<String, String> idType, final String value) {
+      super(idType, value);
+    }
+
+  }
+
+  /**
+   * A {@link LongIdentifier} that, being a subclass, is serialized in
+   * the default form.
+   */
+  private static final class DefaultFormLongIdentifier extends LongIdentifier<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    private DefaultFormLongIdentifier(final IdType<Long, Long> idType, final long value) {
+      super(idType, value);
+    }
+
+  }
+
+  /**
+   * An {@link IntIdentifier} that, being a subclass, is serialized in
+   * the default form.
+   */
+  private static final class DefaultFormIntIdentifier extends IntIdentifier<Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private DefaultFormIntIdentifier(final IdType<Integer, Integer> idType, final int value) {
+      super(idType, value);
+    }
+
+  }
+
+}
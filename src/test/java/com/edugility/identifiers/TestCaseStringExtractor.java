@@ -0,0 +1,86 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseStringExtractor {
+
+  public TestCaseStringExtractor() {
+    super();
+  }
+
+  @Test
+  public void testExtractFrom() {
+    final StringExtractor extractor = new StringExtractor(4, 8);
+    assertEquals("bbbb", extractor.extractFrom("aaaabbbbcccc"));
+    assertEquals("bb", extractor.extractFrom("aaaabb"));
+    assertNull(extractor.extractFrom("aaaa"));
+    assertNull(extractor.extractFrom(null));
+  }
+
+  @Test
+  public void testExtractSliceFrom() {
+    final StringExtractor extractor = new StringExtractor(4, 8);
+    final CharSequenceSlice slice = extractor.extractSliceFrom("aaaabbbbcccc");
+    assertEquals(4, slice.length());
+    assertEquals('b', slice.charAt(0));
+    assertEquals("bbbb", slice.toString());
+    assertTrue(slice.contentEquals("bbbb"));
+    assertEquals("bbbb".hashCode(), slice.hashCode());
+    assertEquals(slice, extractor.extractSliceFrom("xxxxbbbb"));
+    assertFalse(slice.equals(extractor.extractSliceFrom("xxxxbbbc")));
+    assertTrue(slice.compareTo("bbbc") < 0);
+    assertTrue(slice.compareTo("bbb") > 0);
+    assertEquals(0, slice.compareTo("bbbb"));
+    assertEquals("bb", slice.subSequence(1, 3).toString());
+    assertSame(slice, slice.subSequence(0, 4));
+    assertNull(extractor.extractSliceFrom("aaaa"));
+    assertEquals("bbbb", new StringSliceExtractor(4, 8).extractFrom("aaaabbbbcccc").toString());
+  }
+
+  @Test
+  public void testExtractInto() {
+    final StringExtractor extractor = new StringExtractor(4, 8);
+    final StringBuilder sb = new StringBuilder("x");
+    assertEquals(4, extractor.extractInto("aaaabbbbcccc", sb));
+    assertEquals("xbbbb", sb.toString());
+    assertEquals(-1, extractor.extractInto("aaa", sb));
+    assertEquals("xbbbb", sb.toString());
+
+    final char[] chars = new char[6];
+    assertEquals(2, extractor.extractInto("aaaabb", chars, 1));
+    assertEquals('b', chars[1]);
+    assertEquals('b', chars[2]);
+    assertEquals(0, chars[3]);
+    assertEquals(-1, extractor.extractInto(null, chars, 0));
+  }
+
+}
@@ -0,0 +1,160 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2011-2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.identifiers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.time.Duration;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class TestCaseIdentifierEvents {
+
+  private static final String PREFIX = "com.edugility.identifiers.";
+
+  public TestCaseIdentifierEvents() {
+    super();
+  }
+
+  @Test
+  public void testRecording() throws Exception {
+    assumeTrue(IdentifierEvents.AVAILABLE);
+    final Map<Object, Extractor<String, String>> extractors = new HashMap<Object, Extractor<String, String>>();
+    extractors.put("year", new StringExtractor(4, 8));
+    final StringIdType<String> idType = new StringIdType<String>("testRecording", extractors);
+    final LongIdType<Object> longIdType = LongIdType.valueOf("testRecordingLong");
+
+    final Recording recording = new Recording();
+    recording.enable(PREFIX + "IdentifierCreation");
+    recording.enable(PREFIX + "Extraction").withThreshold(Duration.ZERO);
+    recording.enable(PREFIX + "URIConversion").withThreshold(Duration.ZERO);
+    recording.enable(PREFIX + "CodecIO").withThreshold(Duration.ZERO);
+    final Path file = Files.createTempFile("identifiers", ".jfr");
+    try {
+      recording.start();
+      assertTrue(IdentifierEvents.isRecording());
+      final Identifier<String, String> id = new Identifier<String, String>(idType, "ORD-2013-0001");
+      assertEquals("2013", id.extractFrom("year"));
+      assertNull(id.extractFrom("month"));
+      assertNull(idType.extractFrom("year", "ORD"));
+      assertNotNull(id.toURI());
+      final String[] years = new String[3];
+      idType.extractFrom("year", new String[] { "ORD-2013-0001", "ORD", "ORD-2014-0002" }, years);
+      assertEquals("2014", years[2]);
+      for (int i = 0; i < 100000; i++) {
+        new LongIdentifier<Object>(longIdType, i);
+      }
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final IdentifierCodec.Encoder out = new IdentifierCodec.Encoder(bytes);
+      out.write(new LongIdentifier<Object>(longIdType, 17L));
+      out.close();
+      final IdentifierCodec.Decoder in = new IdentifierCodec.Decoder(new ByteArrayInputStream(bytes.toByteArray()));
+      assertEquals(17L, ((LongIdentifier<?>)in.read()).getLongValue());
+      assertNull(in.read());
+      in.close();
+      recording.stop();
+      recording.dump(file);
+
+      final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+      int creations = 0;
+      int extractions = 0;
+      int misses = 0;
+      int nulls = 0;
+      int batches = 0;
+      int conversions = 0;
+      long written = 0L;
+      long read = 0L;
+      for (final RecordedEvent event : events) {
+        final String name = event.getEventType().getName();
+        if (name.equals(PREFIX + "IdentifierCreation")) {
+          assertEquals(IdentifierEvents.CREATION_SAMPLE_INTERVAL, event.getInt("sampleInterval"));
+          if ("testRecordingLong".equals(event.getString("idType"))) {
+            assertEquals(LongIdentifier.class.getName(), event.getClass("identifierClass").getName());
+            creations++;
+          }
+        } else if (name.equals(PREFIX + "Extraction")) {
+          assertEquals("testRecording", event.getString("idType"));
+          if (event.getBoolean("miss")) {
+            assertEquals("month", event.getString("extractorKey"));
+            misses++;
+          } else {
+            assertEquals("year", event.getString("extractorKey"));
+            if (event.getBoolean("nullExtraction")) {
+              nulls++;
+            }
+            if (event.getInt("count") == 3) {
+              batches++;
+            } else {
+              assertEquals(1, event.getInt("count"));
+            }
+          }
+          extractions++;
+        } else if (name.equals(PREFIX + "URIConversion")) {
+          assertEquals("testRecording", event.getString("idType"));
+          conversions++;
+        } else if (name.equals(PREFIX + "CodecIO")) {
+          if (event.getBoolean("read")) {
+            read += event.getLong("bytes");
+          } else {
+            written += event.getLong("bytes");
+          }
+        }
+      }
+      assertEquals(4, extractions);
+      assertEquals(1, misses);
+      assertEquals(2, nulls);
+      assertEquals(1, batches);
+      assertEquals(1, conversions);
+      assertEquals(bytes.size(), written);
+      assertEquals(bytes.size(), read);
+      // About 100000 / 1024 of the LongIdentifiers are sampled.
+      assertTrue(String.valueOf(creations), creations > 0 && creations < 1000);
+    } finally {
+      recording.close();
+      Files.deleteIfExists(file);
+    }
+    assertFalse(IdentifierEvents.isRecording());
+  }
+
+}